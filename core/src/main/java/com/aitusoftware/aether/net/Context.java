@@ -0,0 +1,491 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net;
+
+import com.aitusoftware.aether.net.ingest.SnapshotSource;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.rate.TrendTracker;
+import org.agrona.LangUtil;
+import org.agrona.SystemUtil;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+public final class Context
+{
+    private Mode mode = Configuration.mode();
+    private List<SnapshotSource> sources = Configuration.sources();
+    private long pollIntervalMs = Configuration.pollIntervalMs();
+    private int serverInstances = Configuration.serverInstances();
+    private IngestThreading ingestThreading = Configuration.ingestThreading();
+    private int webSocketCompressionLevel = Configuration.webSocketCompressionLevel();
+    private long conflationWindowMs = Configuration.conflationWindowMs();
+    private int topCount = Configuration.topCount();
+    private long trendTimeConstantMs = Configuration.trendTimeConstantMs();
+    private long processEvictionTimeoutMs = Configuration.processEvictionTimeoutMs();
+    private String aggregatorChannel = Configuration.aggregatorChannel();
+    private int aggregatorStreamId = Configuration.aggregatorStreamId();
+    private long aggregatorIntervalMs = Configuration.aggregatorIntervalMs();
+    private RateWindows rateWindows = Configuration.rateWindows();
+    private IdleStrategy idleStrategy = Configuration.idleStrategy();
+    private Properties alertProperties = Configuration.alertProperties();
+    private String alertWebhookUrl = Configuration.alertWebhookUrl();
+    private String historyDirectory = Configuration.historyDirectory();
+    private long historySegmentLength = Configuration.historySegmentLength();
+    private int historySegmentCount = Configuration.historySegmentCount();
+    private String journalFile = Configuration.journalFile();
+    private double replaySpeed = Configuration.replaySpeed();
+
+    public Mode mode()
+    {
+        return mode;
+    }
+
+    public Context mode(final Mode mode)
+    {
+        this.mode = mode;
+        return this;
+    }
+
+    // if empty, a single source is configured by mode and Aether's own properties
+    public List<SnapshotSource> sources()
+    {
+        return sources;
+    }
+
+    public Context sources(final List<SnapshotSource> sources)
+    {
+        this.sources = sources;
+        return this;
+    }
+
+    public long pollIntervalMs()
+    {
+        return pollIntervalMs;
+    }
+
+    public Context pollIntervalMs(final long pollIntervalMs)
+    {
+        this.pollIntervalMs = pollIntervalMs;
+        return this;
+    }
+
+    // HTTP and WebSocket event loops, all serving frames from one shared ingest
+    public int serverInstances()
+    {
+        return serverInstances;
+    }
+
+    public Context serverInstances(final int serverInstances)
+    {
+        this.serverInstances = serverInstances;
+        return this;
+    }
+
+    public IngestThreading ingestThreading()
+    {
+        return ingestThreading;
+    }
+
+    public Context ingestThreading(final IngestThreading ingestThreading)
+    {
+        this.ingestThreading = ingestThreading;
+        return this;
+    }
+
+    // deflate level for WebSocket messages, or 0 to disable compression
+    public int webSocketCompressionLevel()
+    {
+        return webSocketCompressionLevel;
+    }
+
+    public Context webSocketCompressionLevel(final int webSocketCompressionLevel)
+    {
+        this.webSocketCompressionLevel = webSocketCompressionLevel;
+        return this;
+    }
+
+    // snapshots arriving within the window are conflated to the latest per label, or 0 to apply every snapshot
+    public long conflationWindowMs()
+    {
+        return conflationWindowMs;
+    }
+
+    public Context conflationWindowMs(final long conflationWindowMs)
+    {
+        this.conflationWindowMs = conflationWindowMs;
+        return this;
+    }
+
+    // sessions kept in each /top ranking
+    public int topCount()
+    {
+        return topCount;
+    }
+
+    public Context topCount(final int topCount)
+    {
+        this.topCount = topCount;
+        return this;
+    }
+
+    // smoothing of the lag and remaining buffer trends
+    public long trendTimeConstantMs()
+    {
+        return trendTimeConstantMs;
+    }
+
+    public Context trendTimeConstantMs(final long trendTimeConstantMs)
+    {
+        this.trendTimeConstantMs = trendTimeConstantMs;
+        return this;
+    }
+
+    // time without a snapshot after which a process is removed from the model
+    public long processEvictionTimeoutMs()
+    {
+        return processEvictionTimeoutMs;
+    }
+
+    public Context processEvictionTimeoutMs(final long processEvictionTimeoutMs)
+    {
+        this.processEvictionTimeoutMs = processEvictionTimeoutMs;
+        return this;
+    }
+
+    // channel on which an aggregator republishes snapshots
+    public String aggregatorChannel()
+    {
+        return aggregatorChannel;
+    }
+
+    public Context aggregatorChannel(final String aggregatorChannel)
+    {
+        this.aggregatorChannel = aggregatorChannel;
+        return this;
+    }
+
+    public int aggregatorStreamId()
+    {
+        return aggregatorStreamId;
+    }
+
+    public Context aggregatorStreamId(final int aggregatorStreamId)
+    {
+        this.aggregatorStreamId = aggregatorStreamId;
+        return this;
+    }
+
+    // minimum interval between republished snapshots of each label, or 0 to republish every snapshot
+    public long aggregatorIntervalMs()
+    {
+        return aggregatorIntervalMs;
+    }
+
+    public Context aggregatorIntervalMs(final long aggregatorIntervalMs)
+    {
+        this.aggregatorIntervalMs = aggregatorIntervalMs;
+        return this;
+    }
+
+    public RateWindows rateWindows()
+    {
+        return rateWindows;
+    }
+
+    public Context rateWindows(final RateWindows rateWindows)
+    {
+        this.rateWindows = rateWindows;
+        return this;
+    }
+
+    public IdleStrategy idleStrategy()
+    {
+        return idleStrategy;
+    }
+
+    public Context idleStrategy(final IdleStrategy idleStrategy)
+    {
+        this.idleStrategy = idleStrategy;
+        return this;
+    }
+
+    // source of AlertRule definitions
+    public Properties alertProperties()
+    {
+        return alertProperties;
+    }
+
+    public Context alertProperties(final Properties alertProperties)
+    {
+        this.alertProperties = alertProperties;
+        return this;
+    }
+
+    public String alertWebhookUrl()
+    {
+        return alertWebhookUrl;
+    }
+
+    public Context alertWebhookUrl(final String alertWebhookUrl)
+    {
+        this.alertWebhookUrl = alertWebhookUrl;
+        return this;
+    }
+
+    public String historyDirectory()
+    {
+        return historyDirectory;
+    }
+
+    public Context historyDirectory(final String historyDirectory)
+    {
+        this.historyDirectory = historyDirectory;
+        return this;
+    }
+
+    public long historySegmentLength()
+    {
+        return historySegmentLength;
+    }
+
+    public Context historySegmentLength(final long historySegmentLength)
+    {
+        this.historySegmentLength = historySegmentLength;
+        return this;
+    }
+
+    public int historySegmentCount()
+    {
+        return historySegmentCount;
+    }
+
+    public Context historySegmentCount(final int historySegmentCount)
+    {
+        this.historySegmentCount = historySegmentCount;
+        return this;
+    }
+
+    // journal recorded to, or replayed from in REPLAY mode
+    public String journalFile()
+    {
+        return journalFile;
+    }
+
+    public Context journalFile(final String journalFile)
+    {
+        this.journalFile = journalFile;
+        return this;
+    }
+
+    // multiple of the recorded rate at which a journal is replayed, or 0 for as fast as possible
+    public double replaySpeed()
+    {
+        return replaySpeed;
+    }
+
+    public Context replaySpeed(final double replaySpeed)
+    {
+        this.replaySpeed = replaySpeed;
+        return this;
+    }
+
+    public static final class Configuration
+    {
+        public static final String MODE_PROPERTY_NAME = "aether.net.mode";
+        public static final String POLL_INTERVAL_MS_PROPERTY_NAME = "aether.net.poll.interval.ms";
+        public static final String SERVER_INSTANCES_PROPERTY_NAME = "aether.net.server.instances";
+        public static final String INGEST_THREADING_PROPERTY_NAME = "aether.net.ingest.threading";
+        public static final String WEBSOCKET_COMPRESSION_LEVEL_PROPERTY_NAME =
+            "aether.net.websocket.compression.level";
+        public static final String CONFLATION_WINDOW_MS_PROPERTY_NAME = "aether.net.conflation.window.ms";
+        public static final String TOP_COUNT_PROPERTY_NAME = "aether.net.top.count";
+        public static final String TREND_TIME_CONSTANT_MS_PROPERTY_NAME = "aether.net.trend.time.constant.ms";
+        public static final String PROCESS_EVICTION_TIMEOUT_MS_PROPERTY_NAME =
+            "aether.net.process.eviction.timeout.ms";
+        public static final String AGGREGATOR_CHANNEL_PROPERTY_NAME = "aether.net.aggregator.channel";
+        public static final String AGGREGATOR_STREAM_ID_PROPERTY_NAME = "aether.net.aggregator.stream.id";
+        public static final String AGGREGATOR_INTERVAL_MS_PROPERTY_NAME = "aether.net.aggregator.interval.ms";
+        public static final String IDLE_STRATEGY_PROPERTY_NAME = "aether.net.idle.strategy";
+        public static final String RATE_WINDOWS_PROPERTY_NAME = "aether.net.rate.windows";
+        public static final String ALERT_FILE_PROPERTY_NAME = "aether.net.alert.file";
+        public static final String ALERT_WEBHOOK_URL_PROPERTY_NAME = "aether.net.alert.webhook.url";
+        public static final String HISTORY_DIR_PROPERTY_NAME = "aether.net.history.dir";
+        public static final String HISTORY_SEGMENT_LENGTH_PROPERTY_NAME = "aether.net.history.segment.length";
+        public static final String HISTORY_SEGMENT_COUNT_PROPERTY_NAME = "aether.net.history.segment.count";
+        public static final String JOURNAL_FILE_PROPERTY_NAME = "aether.net.journal.file";
+        public static final String REPLAY_SPEED_PROPERTY_NAME = "aether.net.replay.speed";
+
+        public static Mode mode()
+        {
+            return Optional.ofNullable(System.getProperty(MODE_PROPERTY_NAME))
+                .map(Mode::valueOf).orElse(Mode.NETWORK);
+        }
+
+        public static long pollIntervalMs()
+        {
+            return Long.getLong(POLL_INTERVAL_MS_PROPERTY_NAME, 100L);
+        }
+
+        public static int serverInstances()
+        {
+            return Integer.getInteger(SERVER_INSTANCES_PROPERTY_NAME, 1);
+        }
+
+        public static IngestThreading ingestThreading()
+        {
+            return Optional.ofNullable(System.getProperty(INGEST_THREADING_PROPERTY_NAME))
+                .map(IngestThreading::valueOf).orElse(IngestThreading.DEDICATED);
+        }
+
+        public static int webSocketCompressionLevel()
+        {
+            return Integer.getInteger(WEBSOCKET_COMPRESSION_LEVEL_PROPERTY_NAME, 6);
+        }
+
+        public static long conflationWindowMs()
+        {
+            return Long.getLong(CONFLATION_WINDOW_MS_PROPERTY_NAME, 0L);
+        }
+
+        public static int topCount()
+        {
+            return Integer.getInteger(TOP_COUNT_PROPERTY_NAME, 20);
+        }
+
+        public static long trendTimeConstantMs()
+        {
+            return Long.getLong(TREND_TIME_CONSTANT_MS_PROPERTY_NAME, TrendTracker.DEFAULT_TIME_CONSTANT_MS);
+        }
+
+        public static long processEvictionTimeoutMs()
+        {
+            return Long.getLong(PROCESS_EVICTION_TIMEOUT_MS_PROPERTY_NAME, TopologyIndex.DEFAULT_EVICTION_TIMEOUT_MS);
+        }
+
+        public static String aggregatorChannel()
+        {
+            return System.getProperty(AGGREGATOR_CHANNEL_PROPERTY_NAME);
+        }
+
+        public static int aggregatorStreamId()
+        {
+            return Integer.getInteger(AGGREGATOR_STREAM_ID_PROPERTY_NAME, SnapshotSource.DEFAULT_STREAM_ID);
+        }
+
+        public static long aggregatorIntervalMs()
+        {
+            return Long.getLong(AGGREGATOR_INTERVAL_MS_PROPERTY_NAME, 0L);
+        }
+
+        public static RateWindows rateWindows()
+        {
+            return RateWindows.parse(System.getProperty(RATE_WINDOWS_PROPERTY_NAME, "1s,10s,1m,5m,1h"));
+        }
+
+        public static List<SnapshotSource> sources()
+        {
+            return SnapshotSource.parse(System.getProperties());
+        }
+
+        // rules are read from the alert file if one is configured, otherwise from system properties
+        public static Properties alertProperties()
+        {
+            final String alertFile = System.getProperty(ALERT_FILE_PROPERTY_NAME);
+            if (alertFile == null)
+            {
+                return System.getProperties();
+            }
+            final Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Paths.get(alertFile)))
+            {
+                properties.load(reader);
+            }
+            catch (final IOException e)
+            {
+                LangUtil.rethrowUnchecked(e);
+            }
+            return properties;
+        }
+
+        public static String alertWebhookUrl()
+        {
+            return System.getProperty(ALERT_WEBHOOK_URL_PROPERTY_NAME);
+        }
+
+        // history is only recorded when a directory is configured
+        public static String historyDirectory()
+        {
+            return System.getProperty(HISTORY_DIR_PROPERTY_NAME);
+        }
+
+        public static long historySegmentLength()
+        {
+            return SystemUtil.getSizeAsLong(HISTORY_SEGMENT_LENGTH_PROPERTY_NAME, 16 * 1024 * 1024);
+        }
+
+        public static int historySegmentCount()
+        {
+            return Integer.getInteger(HISTORY_SEGMENT_COUNT_PROPERTY_NAME, 16);
+        }
+
+        public static String journalFile()
+        {
+            return System.getProperty(JOURNAL_FILE_PROPERTY_NAME);
+        }
+
+        public static double replaySpeed()
+        {
+            return Double.parseDouble(System.getProperty(REPLAY_SPEED_PROPERTY_NAME, "1"));
+        }
+
+        public static IdleStrategy idleStrategy()
+        {
+            final String name = System.getProperty(IDLE_STRATEGY_PROPERTY_NAME, "sleeping");
+            switch (name)
+            {
+                case "sleeping":
+                    return new SleepingMillisIdleStrategy(1L);
+                case "backoff":
+                    return new BackoffIdleStrategy(
+                        1, 10, TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+                case "yielding":
+                    return new YieldingIdleStrategy();
+                case "busy":
+                    return new BusySpinIdleStrategy();
+                case "noop":
+                    return new NoOpIdleStrategy();
+                default:
+                    throw new IllegalArgumentException("Unknown idle strategy: " + name);
+            }
+        }
+    }
+}
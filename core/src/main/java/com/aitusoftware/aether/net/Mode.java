@@ -20,5 +20,9 @@ package com.aitusoftware.aether.net;
 public enum Mode
 {
     NETWORK,
-    LOCAL
+    LOCAL,
+    // receives snapshots from the configured sources and republishes them, without serving a dashboard
+    AGGREGATOR,
+    // serves a dashboard fed from a recorded journal rather than live sources
+    REPLAY
 }
\ No newline at end of file
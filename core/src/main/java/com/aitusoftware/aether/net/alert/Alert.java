@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+public final class Alert
+{
+    public enum State
+    {
+        FIRING,
+        RESOLVED
+    }
+
+    private final String rule;
+    private final State state;
+    private final String key;
+    private final long value;
+    private final long threshold;
+    private final long timestamp;
+
+    public Alert(
+        final String rule, final State state, final String key, final long value, final long threshold,
+        final long timestamp)
+    {
+        this.rule = rule;
+        this.state = state;
+        this.key = key;
+        this.value = value;
+        this.threshold = threshold;
+        this.timestamp = timestamp;
+    }
+
+    public String rule()
+    {
+        return rule;
+    }
+
+    public State state()
+    {
+        return state;
+    }
+
+    // label/channel/streamId/sessionId for publishers and subscribers, the label for system counters
+    public String key()
+    {
+        return key;
+    }
+
+    public long value()
+    {
+        return value;
+    }
+
+    public long threshold()
+    {
+        return threshold;
+    }
+
+    public long timestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Alert{" +
+            "rule='" + rule + '\'' +
+            ", state=" + state +
+            ", key='" + key + '\'' +
+            ", value=" + value +
+            ", threshold=" + threshold +
+            ", timestamp=" + timestamp +
+            '}';
+    }
+}
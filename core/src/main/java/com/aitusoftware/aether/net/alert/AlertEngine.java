@@ -0,0 +1,298 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+import com.aitusoftware.aether.net.rate.RateRollup;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.TrendTracker;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.EpochClock;
+
+import java.util.List;
+
+/**
+ * Evaluates alert rules against each snapshot generation. State is held per rule and keyed by the rate series
+ * of the publisher, subscriber or system counters it applies to, so evaluation does not allocate unless an
+ * alert changes state. An alert fires once its threshold has been breached for the rule's duration, and
+ * resolves when the value returns past the clear threshold or the source disappears.
+ */
+public final class AlertEngine
+{
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final long NOT_BREACHED = Long.MIN_VALUE;
+
+    private final AlertRule[] rules;
+    private final AlertSink[] sinks;
+    private final EpochClock clock;
+    private final RuleState[] states;
+    private final IntHashSet present = new IntHashSet();
+    private long nowMs;
+
+    public AlertEngine(final List<AlertRule> rules, final EpochClock clock, final AlertSink... sinks)
+    {
+        this.rules = rules.toArray(new AlertRule[0]);
+        this.sinks = sinks;
+        this.clock = clock;
+        states = new RuleState[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++)
+        {
+            states[i] = new RuleState();
+        }
+    }
+
+    public boolean hasRules()
+    {
+        return rules.length != 0;
+    }
+
+    public void evaluate(final SnapshotModel model, final RateTracker rateTracker)
+    {
+        nowMs = clock.time();
+        final RateRollup rollup = rateTracker.rollup();
+        for (int r = 0; r < rules.length; r++)
+        {
+            final AlertRule rule = rules[r];
+            present.clear();
+            switch (rule.metric().scope())
+            {
+                case PUBLISHER:
+                    for (int i = 0; i < model.publisherCount(); i++)
+                    {
+                        final PublisherRow row = model.publisher(i);
+                        if (row.rateSeries() >= 0)
+                        {
+                            check(r, row.rateSeries(), publisherValue(rule, row, rollup), row, null, null);
+                        }
+                    }
+                    break;
+                case SUBSCRIBER:
+                    for (int i = 0; i < model.publisherCount(); i++)
+                    {
+                        final PublisherRow row = model.publisher(i);
+                        for (int j = 0; j < row.subscriberCount(); j++)
+                        {
+                            final SubscriberRow subscriber = row.subscriber(j);
+                            if (subscriber.rateSeries() >= 0)
+                            {
+                                final long value = subscriberValue(rule, subscriber);
+                                check(r, subscriber.rateSeries(), value, null, subscriber, null);
+                            }
+                        }
+                    }
+                    break;
+                case SYSTEM:
+                    for (int i = 0; i < model.systemCountersCount(); i++)
+                    {
+                        final SystemCountersRow row = model.systemCounters(i);
+                        if (row.rateSeries() >= 0)
+                        {
+                            check(r, row.rateSeries(), systemCountersValue(rule, row), null, null, row);
+                        }
+                    }
+                    break;
+            }
+            resolveAbsent(r);
+        }
+    }
+
+    private void check(
+        final int ruleIndex,
+        final int series,
+        final long value,
+        final PublisherRow publisher,
+        final SubscriberRow subscriber,
+        final SystemCountersRow systemCounters)
+    {
+        present.add(series);
+        if (value == NO_VALUE)
+        {
+            return;
+        }
+        final AlertRule rule = rules[ruleIndex];
+        final Int2ObjectHashMap<String> firingKeys = states[ruleIndex].firingKeys;
+        final Long2LongHashMap breaches = states[ruleIndex].breachStartMs;
+        final String firingKey = firingKeys.get(series);
+        if (firingKey != null)
+        {
+            if (rule.isCleared(value))
+            {
+                firingKeys.remove(series);
+                publish(new Alert(rule.name(), Alert.State.RESOLVED, firingKey, value, rule.threshold(), nowMs));
+            }
+        }
+        else if (rule.isBreached(value))
+        {
+            long breachStart = breaches.get(series);
+            if (breachStart == NOT_BREACHED)
+            {
+                breachStart = nowMs;
+                breaches.put(series, breachStart);
+            }
+            if (nowMs - breachStart >= rule.durationMs())
+            {
+                breaches.remove(series);
+                final String key = key(publisher, subscriber, systemCounters);
+                firingKeys.put(series, key);
+                publish(new Alert(rule.name(), Alert.State.FIRING, key, value, rule.threshold(), nowMs));
+            }
+        }
+        else
+        {
+            breaches.remove(series);
+        }
+    }
+
+    private void resolveAbsent(final int ruleIndex)
+    {
+        final AlertRule rule = rules[ruleIndex];
+        final RuleState state = states[ruleIndex];
+        final Int2ObjectHashMap<String>.KeyIterator keys = state.firingKeys.keySet().iterator();
+        while (keys.hasNext())
+        {
+            final int series = keys.nextInt();
+            if (!present.contains(series))
+            {
+                final String key = state.firingKeys.get(series);
+                keys.remove();
+                publish(new Alert(rule.name(), Alert.State.RESOLVED, key, NO_VALUE, rule.threshold(), nowMs));
+            }
+        }
+        final Long2LongHashMap.KeyIterator breaches = state.breachStartMs.keySet().iterator();
+        while (breaches.hasNext())
+        {
+            if (!present.contains((int)breaches.nextValue()))
+            {
+                breaches.remove();
+            }
+        }
+    }
+
+    private void publish(final Alert alert)
+    {
+        for (final AlertSink sink : sinks)
+        {
+            sink.onAlert(alert);
+        }
+    }
+
+    private static long publisherValue(final AlertRule rule, final PublisherRow row, final RateRollup rollup)
+    {
+        switch (rule.metric())
+        {
+            case SEND_BACKLOG:
+                return row.sendBacklog();
+            case REMAINING_BUFFER_PERCENT:
+                final long windowLength = row.publisherLimit() - consumerPosition(row);
+                return windowLength <= 0 ? NO_VALUE : Math.max(0, row.remainingBuffer()) * 100 / windowLength;
+            case TIME_TO_BACK_PRESSURE_MS:
+                return estimate(row.timeToBackPressureMs());
+            case BACK_PRESSURE_RATE:
+                final int series = row.rateSeries() + RateTracker.BACK_PRESSURE_SERIES;
+                return rollup.hasRate(series, rule.rateWindow()) ? rollup.rate(series, rule.rateWindow()) : NO_VALUE;
+            default:
+                throw new IllegalStateException("Not a publisher metric: " + rule.metric());
+        }
+    }
+
+    private static long subscriberValue(final AlertRule rule, final SubscriberRow row)
+    {
+        switch (rule.metric())
+        {
+            case SUBSCRIBER_LAG:
+                return row.lag();
+            case SUBSCRIBER_CATCH_UP_MS:
+                return estimate(row.catchUpMs());
+            default:
+                throw new IllegalStateException("Not a subscriber metric: " + rule.metric());
+        }
+    }
+
+    // no estimate means the value is not converging, so never, which breaches an above and clears a below threshold
+    private static long estimate(final long estimateMs)
+    {
+        return estimateMs == TrendTracker.NO_ESTIMATE ? Long.MAX_VALUE : estimateMs;
+    }
+
+    private static long systemCountersValue(final AlertRule rule, final SystemCountersRow row)
+    {
+        final int counter;
+        switch (rule.metric())
+        {
+            case NAKS_SENT_RATE:
+                counter = SystemCountersRow.NAKS_SENT;
+                break;
+            case NAKS_RECEIVED_RATE:
+                counter = SystemCountersRow.NAKS_RECEIVED;
+                break;
+            case ERROR_RATE:
+                counter = SystemCountersRow.ERRORS;
+                break;
+            default:
+                throw new IllegalStateException("Not a system counters metric: " + rule.metric());
+        }
+        return row.rates(counter).has(rule.rateWindow()) ? row.rates(counter).get(rule.rateWindow()) : NO_VALUE;
+    }
+
+    // the position that limits the publisher: the sender, or for IPC the slowest subscriber
+    private static long consumerPosition(final PublisherRow row)
+    {
+        if (!row.isIpc())
+        {
+            return row.senderPosition();
+        }
+        long position = row.publisherPosition();
+        for (int i = 0; i < row.subscriberCount(); i++)
+        {
+            final SubscriberRow subscriber = row.subscriber(i);
+            for (int j = 0; j < subscriber.positionCount(); j++)
+            {
+                position = Math.min(position, subscriber.position(j));
+            }
+        }
+        return position;
+    }
+
+    private static String key(
+        final PublisherRow publisher, final SubscriberRow subscriber, final SystemCountersRow systemCounters)
+    {
+        if (publisher != null)
+        {
+            return SessionKeys.key(publisher.label(), publisher.channel(), publisher.streamId(), publisher.sessionId());
+        }
+        if (subscriber != null)
+        {
+            return SessionKeys.key(
+                subscriber.label(), subscriber.channel(), subscriber.streamId(), subscriber.sessionId());
+        }
+        return systemCounters.label();
+    }
+
+    // by rate series of the publisher, subscriber or system counters row
+    private static final class RuleState
+    {
+        private final Long2LongHashMap breachStartMs = new Long2LongHashMap(NOT_BREACHED);
+        private final Int2ObjectHashMap<String> firingKeys = new Int2ObjectHashMap<>();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+public enum AlertMetric
+{
+    /**
+     * Largest number of bytes available to, but not yet consumed by, any subscriber of a subscription.
+     */
+    SUBSCRIBER_LAG(Scope.SUBSCRIBER, false),
+    /**
+     * Estimated milliseconds until a subscriber consumes its lag at the current trend; unbounded if the lag is not
+     * falling.
+     */
+    SUBSCRIBER_CATCH_UP_MS(Scope.SUBSCRIBER, false),
+    /**
+     * Bytes published but not yet sent.
+     */
+    SEND_BACKLOG(Scope.PUBLISHER, false),
+    /**
+     * Remaining publisher buffer as a percentage of the publication window.
+     */
+    REMAINING_BUFFER_PERCENT(Scope.PUBLISHER, false),
+    /**
+     * Estimated milliseconds until the publisher is back-pressured at the current trend of its remaining buffer;
+     * unbounded if the buffer is not shrinking.
+     */
+    TIME_TO_BACK_PRESSURE_MS(Scope.PUBLISHER, false),
+    BACK_PRESSURE_RATE(Scope.PUBLISHER, true),
+    NAKS_SENT_RATE(Scope.SYSTEM, true),
+    NAKS_RECEIVED_RATE(Scope.SYSTEM, true),
+    ERROR_RATE(Scope.SYSTEM, true);
+
+    enum Scope
+    {
+        PUBLISHER,
+        SUBSCRIBER,
+        SYSTEM
+    }
+
+    private final Scope scope;
+    private final boolean rate;
+
+    AlertMetric(final Scope scope, final boolean rate)
+    {
+        this.scope = scope;
+        this.rate = rate;
+    }
+
+    Scope scope()
+    {
+        return scope;
+    }
+
+    public boolean isRate()
+    {
+        return rate;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import com.aitusoftware.aether.net.rate.RateWindows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A threshold on a metric, with a separate clear threshold for hysteresis. Rules are configured as:
+ *
+ * <pre>
+ * aether.net.alert.rules=lag,buffer
+ * aether.net.alert.lag.metric=SUBSCRIBER_LAG
+ * aether.net.alert.lag.above=1048576
+ * aether.net.alert.lag.clear=65536
+ * aether.net.alert.lag.for=10s
+ * aether.net.alert.buffer.metric=REMAINING_BUFFER_PERCENT
+ * aether.net.alert.buffer.below=10
+ * </pre>
+ *
+ * Rate metrics use the first configured rate window unless {@code window} is set.
+ */
+public final class AlertRule
+{
+    public static final String RULES_PROPERTY_NAME = "aether.net.alert.rules";
+    private static final String PREFIX = "aether.net.alert.";
+
+    private final String name;
+    private final AlertMetric metric;
+    private final boolean above;
+    private final long threshold;
+    private final long clearThreshold;
+    private final long durationMs;
+    private final int rateWindow;
+
+    public AlertRule(
+        final String name,
+        final AlertMetric metric,
+        final boolean above,
+        final long threshold,
+        final long clearThreshold,
+        final long durationMs,
+        final int rateWindow)
+    {
+        if (above ? clearThreshold > threshold : clearThreshold < threshold)
+        {
+            throw new IllegalArgumentException("Clear threshold of " + name + " must not be beyond its threshold");
+        }
+        this.name = name;
+        this.metric = metric;
+        this.above = above;
+        this.threshold = threshold;
+        this.clearThreshold = clearThreshold;
+        this.durationMs = durationMs;
+        this.rateWindow = rateWindow;
+    }
+
+    public static List<AlertRule> parse(final Properties properties, final RateWindows rateWindows)
+    {
+        final List<AlertRule> rules = new ArrayList<>();
+        final String ruleNames = properties.getProperty(RULES_PROPERTY_NAME, "").trim();
+        if (ruleNames.isEmpty())
+        {
+            return rules;
+        }
+        for (final String ruleName : ruleNames.split(","))
+        {
+            final String name = ruleName.trim();
+            final String prefix = PREFIX + name + ".";
+            final AlertMetric metric = AlertMetric.valueOf(required(properties, prefix + "metric"));
+            final String aboveValue = properties.getProperty(prefix + "above");
+            final String belowValue = properties.getProperty(prefix + "below");
+            if ((aboveValue == null) == (belowValue == null))
+            {
+                throw new IllegalArgumentException("Exactly one of above or below must be set for alert " + name);
+            }
+            final long threshold = Long.parseLong(aboveValue != null ? aboveValue : belowValue);
+            final String clearValue = properties.getProperty(prefix + "clear");
+            final String duration = properties.getProperty(prefix + "for");
+            int rateWindow = 0;
+            final String window = properties.getProperty(prefix + "window");
+            if (window != null)
+            {
+                rateWindow = rateWindows.indexOf(RateWindows.parseMillis(window));
+                if (rateWindow < 0)
+                {
+                    throw new IllegalArgumentException("Rate window " + window + " of alert " + name +
+                        " is not configured");
+                }
+            }
+            rules.add(new AlertRule(
+                name,
+                metric,
+                aboveValue != null,
+                threshold,
+                clearValue == null ? threshold : Long.parseLong(clearValue),
+                duration == null ? 0 : RateWindows.parseMillis(duration),
+                rateWindow));
+        }
+        return rules;
+    }
+
+    public String name()
+    {
+        return name;
+    }
+
+    public AlertMetric metric()
+    {
+        return metric;
+    }
+
+    public long threshold()
+    {
+        return threshold;
+    }
+
+    public int rateWindow()
+    {
+        return rateWindow;
+    }
+
+    boolean isBreached(final long value)
+    {
+        return above ? value > threshold : value < threshold;
+    }
+
+    boolean isCleared(final long value)
+    {
+        return above ? value <= clearThreshold : value >= clearThreshold;
+    }
+
+    long durationMs()
+    {
+        return durationMs;
+    }
+
+    private static String required(final Properties properties, final String name)
+    {
+        final String value = properties.getProperty(name);
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Missing property: " + name);
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import java.util.Arrays;
+
+/**
+ * Passes alerts to every registered sink. Sinks may be added and removed from any thread while alerts are raised.
+ */
+public final class FanOutAlertSink implements AlertSink
+{
+    private volatile AlertSink[] sinks = new AlertSink[0];
+
+    @Override
+    public void onAlert(final Alert alert)
+    {
+        for (final AlertSink sink : sinks)
+        {
+            sink.onAlert(alert);
+        }
+    }
+
+    public synchronized void add(final AlertSink sink)
+    {
+        final AlertSink[] newSinks = Arrays.copyOf(sinks, sinks.length + 1);
+        newSinks[newSinks.length - 1] = sink;
+        sinks = newSinks;
+    }
+
+    public synchronized void remove(final AlertSink sink)
+    {
+        sinks = Arrays.stream(sinks).filter(existing -> existing != sink).toArray(AlertSink[]::new);
+    }
+}
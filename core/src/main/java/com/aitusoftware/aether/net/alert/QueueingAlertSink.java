@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.util.function.Consumer;
+
+/**
+ * Hands alerts to another thread; alerts are dropped if the consumer falls behind by more than the capacity.
+ */
+public final class QueueingAlertSink implements AlertSink
+{
+    private final ManyToOneConcurrentArrayQueue<Alert> queue;
+
+    public QueueingAlertSink(final int capacity)
+    {
+        queue = new ManyToOneConcurrentArrayQueue<>(capacity);
+    }
+
+    @Override
+    public void onAlert(final Alert alert)
+    {
+        queue.offer(alert);
+    }
+
+    public int drain(final Consumer<Alert> consumer)
+    {
+        return queue.drain(consumer);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import com.aitusoftware.aether.net.json.AlertEncoder;
+import com.aitusoftware.aether.net.json.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POSTs each alert as JSON to a URL from a background thread, discarding the oldest pending alerts if the
+ * endpoint cannot keep up.
+ */
+public final class WebhookAlertSink implements AlertSink, AutoCloseable
+{
+    private static final int TIMEOUT_MS = 5_000;
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024),
+        runnable ->
+        {
+            final Thread thread = new Thread(runnable, "aether-net-webhook");
+            thread.setDaemon(true);
+            return thread;
+        },
+        new ThreadPoolExecutor.DiscardOldestPolicy());
+    private final URL url;
+
+    public WebhookAlertSink(final URL url)
+    {
+        this.url = url;
+    }
+
+    @Override
+    public void onAlert(final Alert alert)
+    {
+        executor.execute(() -> post(alert));
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+    }
+
+    private void post(final Alert alert)
+    {
+        try
+        {
+            final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream())
+            {
+                body.write(AlertEncoder.encode(alert, new JsonWriter(256)).toByteArray());
+            }
+            final int status = connection.getResponseCode();
+            if (status >= 300)
+            {
+                System.err.println("Alert webhook " + url + " returned " + status);
+            }
+            connection.disconnect();
+        }
+        catch (final IOException e)
+        {
+            System.err.println("Failed to deliver alert to " + url + ": " + e.getMessage());
+        }
+    }
+}
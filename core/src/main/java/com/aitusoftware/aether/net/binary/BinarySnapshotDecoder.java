@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.binary;
+
+import org.agrona.DirectBuffer;
+
+import java.nio.ByteOrder;
+
+import static com.aitusoftware.aether.net.binary.BinarySnapshotLayout.*;
+
+/**
+ * Allocation-free reader for snapshots produced by {@link BinarySnapshotEncoder}. The flyweights returned
+ * by {@link #publisher(int)}, {@link #subscriber(int)} and {@link #systemCounters(int)} are reused on each call.
+ */
+public final class BinarySnapshotDecoder
+{
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private final PublisherDecoder publisherDecoder = new PublisherDecoder();
+    private final SubscriberDecoder subscriberDecoder = new SubscriberDecoder();
+    private final SystemCountersDecoder systemCountersDecoder = new SystemCountersDecoder();
+    private DirectBuffer buffer;
+    private int offset;
+    private int rateCount;
+    private int publisherBlockLength;
+    private int subscriberBlockLength;
+    private int systemCountersBlockLength;
+    private int publishersOffset;
+    private int subscribersOffset;
+    private int positionsOffset;
+    private int systemCountersOffset;
+    private int stringOffsetsOffset;
+
+    public BinarySnapshotDecoder wrap(final DirectBuffer buffer, final int offset)
+    {
+        final int magic = buffer.getInt(offset + MAGIC_OFFSET, ORDER);
+        if (magic != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a binary snapshot: " + Integer.toHexString(magic));
+        }
+        final short version = buffer.getShort(offset + VERSION_OFFSET, ORDER);
+        if (version != VERSION)
+        {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        rateCount = buffer.getShort(offset + RATE_COUNT_OFFSET, ORDER);
+        publisherBlockLength = publisherBlockLength(rateCount);
+        subscriberBlockLength = subscriberBlockLength(rateCount);
+        systemCountersBlockLength = systemCountersBlockLength(rateCount);
+        publishersOffset = offset + HEADER_LENGTH + rateCount * RATE_WINDOW_LENGTH;
+        subscribersOffset = publishersOffset + publisherCount() * publisherBlockLength;
+        positionsOffset = subscribersOffset + subscriberCount() * subscriberBlockLength;
+        systemCountersOffset = positionsOffset + positionCount() * POSITION_BLOCK_LENGTH;
+        stringOffsetsOffset = systemCountersOffset + systemCountersCount() * systemCountersBlockLength;
+        return this;
+    }
+
+    public long sequence()
+    {
+        return buffer.getLong(offset + SEQUENCE_OFFSET, ORDER);
+    }
+
+    public int rateCount()
+    {
+        return rateCount;
+    }
+
+    public long rateWindowMillis(final int rateIndex)
+    {
+        return buffer.getLong(offset + HEADER_LENGTH + rateIndex * RATE_WINDOW_LENGTH, ORDER);
+    }
+
+    public int publisherCount()
+    {
+        return buffer.getInt(offset + PUBLISHER_COUNT_OFFSET, ORDER);
+    }
+
+    public int subscriberCount()
+    {
+        return buffer.getInt(offset + SUBSCRIBER_COUNT_OFFSET, ORDER);
+    }
+
+    public int positionCount()
+    {
+        return buffer.getInt(offset + POSITION_COUNT_OFFSET, ORDER);
+    }
+
+    public int systemCountersCount()
+    {
+        return buffer.getInt(offset + SYSTEM_COUNTERS_COUNT_OFFSET, ORDER);
+    }
+
+    public int stringCount()
+    {
+        return buffer.getInt(offset + STRING_COUNT_OFFSET, ORDER);
+    }
+
+    // changes whenever string ids may have been reused, so that strings cached by id can be discarded
+    public int stringTableVersion()
+    {
+        return buffer.getInt(offset + STRING_TABLE_VERSION_OFFSET, ORDER);
+    }
+
+    public PublisherDecoder publisher(final int index)
+    {
+        publisherDecoder.offset = publishersOffset + index * publisherBlockLength;
+        return publisherDecoder;
+    }
+
+    public SubscriberDecoder subscriber(final int index)
+    {
+        subscriberDecoder.offset = subscribersOffset + index * subscriberBlockLength;
+        return subscriberDecoder;
+    }
+
+    public long registrationId(final int positionIndex)
+    {
+        return buffer.getLong(positionsOffset + positionIndex * POSITION_BLOCK_LENGTH + REGISTRATION_ID_OFFSET, ORDER);
+    }
+
+    public long position(final int positionIndex)
+    {
+        return buffer.getLong(positionsOffset + positionIndex * POSITION_BLOCK_LENGTH + POSITION_OFFSET, ORDER);
+    }
+
+    public SystemCountersDecoder systemCounters(final int index)
+    {
+        systemCountersDecoder.offset = systemCountersOffset + index * systemCountersBlockLength;
+        return systemCountersDecoder;
+    }
+
+    /**
+     * Offset within the wrapped buffer of the UTF-8 bytes of a string.
+     *
+     * @param stringId id of the string, as returned by a label or channel accessor
+     * @return offset of the first byte of the string
+     */
+    public int stringOffset(final int stringId)
+    {
+        return stringHeaderOffset(stringId) + 4;
+    }
+
+    public int stringLength(final int stringId)
+    {
+        return buffer.getInt(stringHeaderOffset(stringId), ORDER);
+    }
+
+    public String string(final int stringId)
+    {
+        return buffer.getStringUtf8(stringHeaderOffset(stringId), ORDER);
+    }
+
+    private int stringHeaderOffset(final int stringId)
+    {
+        return offset + buffer.getInt(stringOffsetsOffset + stringId * STRING_OFFSET_LENGTH, ORDER);
+    }
+
+    public final class PublisherDecoder
+    {
+        private int offset;
+
+        public int labelId()
+        {
+            return buffer.getInt(offset + PUBLISHER_LABEL_ID_OFFSET, ORDER);
+        }
+
+        public int channelId()
+        {
+            return buffer.getInt(offset + PUBLISHER_CHANNEL_ID_OFFSET, ORDER);
+        }
+
+        public int streamId()
+        {
+            return buffer.getInt(offset + PUBLISHER_STREAM_ID_OFFSET, ORDER);
+        }
+
+        public int sessionId()
+        {
+            return buffer.getInt(offset + PUBLISHER_SESSION_ID_OFFSET, ORDER);
+        }
+
+        public long publisherPosition()
+        {
+            return buffer.getLong(offset + PUBLISHER_POSITION_OFFSET, ORDER);
+        }
+
+        public long publisherLimit()
+        {
+            return buffer.getLong(offset + PUBLISHER_LIMIT_OFFSET, ORDER);
+        }
+
+        public long senderPosition()
+        {
+            return buffer.getLong(offset + SENDER_POSITION_OFFSET, ORDER);
+        }
+
+        public long senderLimit()
+        {
+            return buffer.getLong(offset + SENDER_LIMIT_OFFSET, ORDER);
+        }
+
+        public long backPressureEvents()
+        {
+            return buffer.getLong(offset + BACK_PRESSURE_EVENTS_OFFSET, ORDER);
+        }
+
+        public long sendBacklog()
+        {
+            return buffer.getLong(offset + SEND_BACKLOG_OFFSET, ORDER);
+        }
+
+        public long remainingBuffer()
+        {
+            return buffer.getLong(offset + REMAINING_BUFFER_OFFSET, ORDER);
+        }
+
+        public int firstSubscriber()
+        {
+            return buffer.getInt(offset + FIRST_SUBSCRIBER_OFFSET, ORDER);
+        }
+
+        public int subscriberCount()
+        {
+            return buffer.getInt(offset + SUBSCRIBER_COUNT_IN_PUBLISHER_OFFSET, ORDER);
+        }
+
+        public boolean hasRate(final int rateIndex)
+        {
+            return (buffer.getLong(offset + RATE_MASK_OFFSET, ORDER) & (1L << rateIndex)) != 0;
+        }
+
+        public long rate(final int rateIndex)
+        {
+            return buffer.getLong(offset + RATES_OFFSET + rateIndex * 8, ORDER);
+        }
+    }
+
+    public final class SubscriberDecoder
+    {
+        private int offset;
+
+        public int labelId()
+        {
+            return buffer.getInt(offset + SUBSCRIBER_LABEL_ID_OFFSET, ORDER);
+        }
+
+        public int channelId()
+        {
+            return buffer.getInt(offset + SUBSCRIBER_CHANNEL_ID_OFFSET, ORDER);
+        }
+
+        public int streamId()
+        {
+            return buffer.getInt(offset + SUBSCRIBER_STREAM_ID_OFFSET, ORDER);
+        }
+
+        public int sessionId()
+        {
+            return buffer.getInt(offset + SUBSCRIBER_SESSION_ID_OFFSET, ORDER);
+        }
+
+        public long receiverPosition()
+        {
+            return buffer.getLong(offset + RECEIVER_POSITION_OFFSET, ORDER);
+        }
+
+        public long receiverHighWaterMark()
+        {
+            return buffer.getLong(offset + RECEIVER_HIGH_WATER_MARK_OFFSET, ORDER);
+        }
+
+        public int firstPosition()
+        {
+            return buffer.getInt(offset + FIRST_POSITION_OFFSET, ORDER);
+        }
+
+        public int positionCount()
+        {
+            return buffer.getInt(offset + POSITION_COUNT_IN_SUBSCRIBER_OFFSET, ORDER);
+        }
+
+        public boolean hasReceiverRate(final int rateIndex)
+        {
+            return (buffer.getLong(offset + RECEIVER_RATE_MASK_OFFSET, ORDER) & (1L << rateIndex)) != 0;
+        }
+
+        public long receiverRate(final int rateIndex)
+        {
+            return buffer.getLong(offset + RECEIVER_RATES_OFFSET + rateIndex * 8, ORDER);
+        }
+
+        public boolean hasSubscriberRate(final int rateIndex)
+        {
+            return (buffer.getLong(offset + SUBSCRIBER_RATE_MASK_OFFSET, ORDER) & (1L << rateIndex)) != 0;
+        }
+
+        public long subscriberRate(final int rateIndex)
+        {
+            return buffer.getLong(offset + subscriberRatesOffset(rateCount) + rateIndex * 8, ORDER);
+        }
+    }
+
+    public final class SystemCountersDecoder
+    {
+        private int offset;
+
+        public int labelId()
+        {
+            return buffer.getInt(offset + SYSTEM_COUNTERS_LABEL_ID_OFFSET, ORDER);
+        }
+
+        /**
+         * Value of a system counter.
+         *
+         * @param counter one of the counter indices defined in
+         *                {@link com.aitusoftware.aether.net.model.SystemCountersRow}
+         * @return the counter value
+         */
+        public long value(final int counter)
+        {
+            return buffer.getLong(offset + SYSTEM_COUNTER_VALUES_OFFSET + counter * 8, ORDER);
+        }
+
+        public boolean hasRate(final int counter, final int rateIndex)
+        {
+            return (buffer.getLong(offset + SYSTEM_COUNTER_RATE_MASKS_OFFSET + counter * 8, ORDER) &
+                (1L << rateIndex)) != 0;
+        }
+
+        public long rate(final int counter, final int rateIndex)
+        {
+            return buffer.getLong(offset + SYSTEM_COUNTER_RATES_OFFSET + (counter * rateCount + rateIndex) * 8, ORDER);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.binary;
+
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.RateKeys;
+import com.aitusoftware.aether.net.model.RateSet;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+
+import java.nio.ByteOrder;
+
+import static com.aitusoftware.aether.net.binary.BinarySnapshotLayout.*;
+
+public final class BinarySnapshotEncoder
+{
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+    private final SnapshotModel model;
+    private int length;
+
+    public BinarySnapshotEncoder(final SnapshotModel model)
+    {
+        this.model = model;
+    }
+
+    public int encode(final long sequence)
+    {
+        final RateKeys rateKeys = model.rateKeys();
+        final int rateCount = rateKeys.count();
+        final int publisherBlockLength = publisherBlockLength(rateCount);
+        final int subscriberBlockLength = subscriberBlockLength(rateCount);
+        final int systemCountersBlockLength = systemCountersBlockLength(rateCount);
+        int subscriberCount = 0;
+        int positionCount = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow publisher = model.publisher(i);
+            subscriberCount += publisher.subscriberCount();
+            for (int j = 0; j < publisher.subscriberCount(); j++)
+            {
+                positionCount += publisher.subscriber(j).positionCount();
+            }
+        }
+
+        buffer.putInt(MAGIC_OFFSET, MAGIC, ORDER);
+        buffer.putShort(VERSION_OFFSET, VERSION, ORDER);
+        buffer.putShort(RATE_COUNT_OFFSET, (short)rateCount, ORDER);
+        buffer.putLong(SEQUENCE_OFFSET, sequence, ORDER);
+        buffer.putInt(PUBLISHER_COUNT_OFFSET, model.publisherCount(), ORDER);
+        buffer.putInt(SUBSCRIBER_COUNT_OFFSET, subscriberCount, ORDER);
+        buffer.putInt(POSITION_COUNT_OFFSET, positionCount, ORDER);
+        buffer.putInt(SYSTEM_COUNTERS_COUNT_OFFSET, model.systemCountersCount(), ORDER);
+        buffer.putInt(STRING_COUNT_OFFSET, model.stringCount(), ORDER);
+        buffer.putInt(STRING_TABLE_VERSION_OFFSET, model.stringTableVersion(), ORDER);
+
+        int offset = HEADER_LENGTH;
+        for (int i = 0; i < rateCount; i++)
+        {
+            buffer.putLong(offset, rateKeys.unit(i).toMillis(rateKeys.duration(i)), ORDER);
+            offset += RATE_WINDOW_LENGTH;
+        }
+
+        int subscriberOffset = offset + model.publisherCount() * publisherBlockLength;
+        int positionOffset = subscriberOffset + subscriberCount * subscriberBlockLength;
+        int subscriberIndex = 0;
+        int positionIndex = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow publisher = model.publisher(i);
+            encodePublisher(offset, publisher, rateCount, subscriberIndex);
+            offset += publisherBlockLength;
+            for (int j = 0; j < publisher.subscriberCount(); j++)
+            {
+                final SubscriberRow subscriber = publisher.subscriber(j);
+                encodeSubscriber(subscriberOffset, subscriber, rateCount, positionIndex);
+                subscriberOffset += subscriberBlockLength;
+                subscriberIndex++;
+                for (int k = 0; k < subscriber.positionCount(); k++)
+                {
+                    buffer.putLong(positionOffset + REGISTRATION_ID_OFFSET, subscriber.registrationId(k), ORDER);
+                    buffer.putLong(positionOffset + POSITION_OFFSET, subscriber.position(k), ORDER);
+                    positionOffset += POSITION_BLOCK_LENGTH;
+                    positionIndex++;
+                }
+            }
+        }
+
+        offset = positionOffset;
+        for (int i = 0; i < model.systemCountersCount(); i++)
+        {
+            final SystemCountersRow systemCounters = model.systemCounters(i);
+            buffer.putInt(offset + SYSTEM_COUNTERS_LABEL_ID_OFFSET, systemCounters.labelId(), ORDER);
+            buffer.putInt(offset + SYSTEM_COUNTERS_LABEL_ID_OFFSET + 4, 0, ORDER);
+            for (int j = 0; j < SystemCountersRow.COUNTER_COUNT; j++)
+            {
+                buffer.putLong(offset + SYSTEM_COUNTER_VALUES_OFFSET + j * 8, systemCounters.value(j), ORDER);
+                encodeRates(
+                    offset + SYSTEM_COUNTER_RATE_MASKS_OFFSET + j * 8,
+                    offset + SYSTEM_COUNTER_RATES_OFFSET + j * rateCount * 8,
+                    systemCounters.rates(j),
+                    rateCount);
+            }
+            offset += systemCountersBlockLength;
+        }
+
+        int stringOffset = offset + model.stringCount() * STRING_OFFSET_LENGTH;
+        for (int i = 0; i < model.stringCount(); i++)
+        {
+            buffer.putInt(offset, stringOffset, ORDER);
+            offset += STRING_OFFSET_LENGTH;
+            final String value = model.string(i);
+            stringOffset += buffer.putStringUtf8(stringOffset, value == null ? "" : value, ORDER);
+        }
+        length = stringOffset;
+
+        return length;
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    public byte[] toByteArray()
+    {
+        final byte[] copy = new byte[length];
+        buffer.getBytes(0, copy);
+        return copy;
+    }
+
+    private void encodePublisher(
+        final int offset, final PublisherRow publisher, final int rateCount, final int firstSubscriber)
+    {
+        buffer.putInt(offset + PUBLISHER_LABEL_ID_OFFSET, publisher.labelId(), ORDER);
+        buffer.putInt(offset + PUBLISHER_CHANNEL_ID_OFFSET, publisher.channelId(), ORDER);
+        buffer.putInt(offset + PUBLISHER_STREAM_ID_OFFSET, publisher.streamId(), ORDER);
+        buffer.putInt(offset + PUBLISHER_SESSION_ID_OFFSET, publisher.sessionId(), ORDER);
+        buffer.putLong(offset + PUBLISHER_POSITION_OFFSET, publisher.publisherPosition(), ORDER);
+        buffer.putLong(offset + PUBLISHER_LIMIT_OFFSET, publisher.publisherLimit(), ORDER);
+        buffer.putLong(offset + SENDER_POSITION_OFFSET, publisher.senderPosition(), ORDER);
+        buffer.putLong(offset + SENDER_LIMIT_OFFSET, publisher.senderLimit(), ORDER);
+        buffer.putLong(offset + BACK_PRESSURE_EVENTS_OFFSET, publisher.backPressureEvents(), ORDER);
+        buffer.putLong(offset + SEND_BACKLOG_OFFSET, publisher.sendBacklog(), ORDER);
+        buffer.putLong(offset + REMAINING_BUFFER_OFFSET, publisher.remainingBuffer(), ORDER);
+        buffer.putInt(offset + FIRST_SUBSCRIBER_OFFSET, firstSubscriber, ORDER);
+        buffer.putInt(offset + SUBSCRIBER_COUNT_IN_PUBLISHER_OFFSET, publisher.subscriberCount(), ORDER);
+        encodeRates(offset + RATE_MASK_OFFSET, offset + RATES_OFFSET, publisher.publishRates(), rateCount);
+    }
+
+    private void encodeSubscriber(
+        final int offset, final SubscriberRow subscriber, final int rateCount, final int firstPosition)
+    {
+        buffer.putInt(offset + SUBSCRIBER_LABEL_ID_OFFSET, subscriber.labelId(), ORDER);
+        buffer.putInt(offset + SUBSCRIBER_CHANNEL_ID_OFFSET, subscriber.channelId(), ORDER);
+        buffer.putInt(offset + SUBSCRIBER_STREAM_ID_OFFSET, subscriber.streamId(), ORDER);
+        buffer.putInt(offset + SUBSCRIBER_SESSION_ID_OFFSET, subscriber.sessionId(), ORDER);
+        buffer.putLong(offset + RECEIVER_POSITION_OFFSET, subscriber.receiverPosition(), ORDER);
+        buffer.putLong(offset + RECEIVER_HIGH_WATER_MARK_OFFSET, subscriber.receiverHighWaterMark(), ORDER);
+        buffer.putInt(offset + FIRST_POSITION_OFFSET, firstPosition, ORDER);
+        buffer.putInt(offset + POSITION_COUNT_IN_SUBSCRIBER_OFFSET, subscriber.positionCount(), ORDER);
+        encodeRates(
+            offset + RECEIVER_RATE_MASK_OFFSET, offset + RECEIVER_RATES_OFFSET, subscriber.receiverRates(), rateCount);
+        encodeRates(
+            offset + SUBSCRIBER_RATE_MASK_OFFSET,
+            offset + subscriberRatesOffset(rateCount),
+            subscriber.subscriberRates(),
+            rateCount);
+    }
+
+    private void encodeRates(final int maskOffset, final int ratesOffset, final RateSet rates, final int rateCount)
+    {
+        for (int i = 0; i < rateCount; i++)
+        {
+            buffer.putLong(ratesOffset + i * 8, rates.has(i) ? rates.get(i) : 0, ORDER);
+        }
+        buffer.putLong(maskOffset, rates.mask(), ORDER);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.binary;
+
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+
+/**
+ * Fixed layout of a binary snapshot. All values are little-endian.
+ *
+ * <pre>
+ * header            HEADER_LENGTH bytes
+ * rate windows      rateCount * RATE_WINDOW_LENGTH
+ * publishers        publisherCount * publisherBlockLength(rateCount)
+ * subscribers       subscriberCount * subscriberBlockLength(rateCount)
+ * positions         positionCount * POSITION_BLOCK_LENGTH
+ * system counters   systemCountersCount * systemCountersBlockLength(rateCount)
+ * string offsets    stringCount * STRING_OFFSET_LENGTH
+ * strings           int length followed by UTF-8 bytes, empty if the id is not in use
+ * </pre>
+ * String ids released by the model may be reused for different strings once the string table version changes.
+ */
+public final class BinarySnapshotLayout
+{
+    public static final int MAGIC = 0x48544541;
+    public static final short VERSION = 2;
+    public static final String WEBSOCKET_SUB_PROTOCOL = "aether-binary";
+
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int RATE_COUNT_OFFSET = 6;
+    public static final int SEQUENCE_OFFSET = 8;
+    public static final int PUBLISHER_COUNT_OFFSET = 16;
+    public static final int SUBSCRIBER_COUNT_OFFSET = 20;
+    public static final int POSITION_COUNT_OFFSET = 24;
+    public static final int SYSTEM_COUNTERS_COUNT_OFFSET = 28;
+    public static final int STRING_COUNT_OFFSET = 32;
+    public static final int STRING_TABLE_VERSION_OFFSET = 36;
+    public static final int HEADER_LENGTH = 40;
+
+    public static final int RATE_WINDOW_LENGTH = 8;
+
+    public static final int PUBLISHER_LABEL_ID_OFFSET = 0;
+    public static final int PUBLISHER_CHANNEL_ID_OFFSET = 4;
+    public static final int PUBLISHER_STREAM_ID_OFFSET = 8;
+    public static final int PUBLISHER_SESSION_ID_OFFSET = 12;
+    public static final int PUBLISHER_POSITION_OFFSET = 16;
+    public static final int PUBLISHER_LIMIT_OFFSET = 24;
+    public static final int SENDER_POSITION_OFFSET = 32;
+    public static final int SENDER_LIMIT_OFFSET = 40;
+    public static final int BACK_PRESSURE_EVENTS_OFFSET = 48;
+    public static final int SEND_BACKLOG_OFFSET = 56;
+    public static final int REMAINING_BUFFER_OFFSET = 64;
+    public static final int FIRST_SUBSCRIBER_OFFSET = 72;
+    public static final int SUBSCRIBER_COUNT_IN_PUBLISHER_OFFSET = 76;
+    public static final int RATE_MASK_OFFSET = 80;
+    public static final int RATES_OFFSET = 88;
+
+    public static final int SUBSCRIBER_LABEL_ID_OFFSET = 0;
+    public static final int SUBSCRIBER_CHANNEL_ID_OFFSET = 4;
+    public static final int SUBSCRIBER_STREAM_ID_OFFSET = 8;
+    public static final int SUBSCRIBER_SESSION_ID_OFFSET = 12;
+    public static final int RECEIVER_POSITION_OFFSET = 16;
+    public static final int RECEIVER_HIGH_WATER_MARK_OFFSET = 24;
+    public static final int FIRST_POSITION_OFFSET = 32;
+    public static final int POSITION_COUNT_IN_SUBSCRIBER_OFFSET = 36;
+    public static final int RECEIVER_RATE_MASK_OFFSET = 40;
+    public static final int SUBSCRIBER_RATE_MASK_OFFSET = 48;
+    public static final int RECEIVER_RATES_OFFSET = 56;
+
+    public static final int REGISTRATION_ID_OFFSET = 0;
+    public static final int POSITION_OFFSET = 8;
+    public static final int POSITION_BLOCK_LENGTH = 16;
+
+    public static final int SYSTEM_COUNTERS_LABEL_ID_OFFSET = 0;
+    public static final int SYSTEM_COUNTER_VALUES_OFFSET = 8;
+    public static final int SYSTEM_COUNTER_RATE_MASKS_OFFSET = 56;
+    public static final int SYSTEM_COUNTER_RATES_OFFSET = 104;
+
+    public static final int STRING_OFFSET_LENGTH = 4;
+
+    private BinarySnapshotLayout()
+    {
+    }
+
+    public static int publisherBlockLength(final int rateCount)
+    {
+        return RATES_OFFSET + rateCount * 8;
+    }
+
+    // receiver rates followed by subscriber rates
+    public static int subscriberBlockLength(final int rateCount)
+    {
+        return RECEIVER_RATES_OFFSET + 2 * rateCount * 8;
+    }
+
+    public static int subscriberRatesOffset(final int rateCount)
+    {
+        return RECEIVER_RATES_OFFSET + rateCount * 8;
+    }
+
+    // a rate mask per counter, then the rates of each counter in turn
+    public static int systemCountersBlockLength(final int rateCount)
+    {
+        return SYSTEM_COUNTER_RATES_OFFSET + SystemCountersRow.COUNTER_COUNT * rateCount * 8;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.history;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Layout of a history segment: a file of fixed-length records, zero-filled on creation.
+ * A record is visible once its timestamp is non-zero; the timestamp is written last.
+ *
+ * <pre>
+ * timestamp   long
+ * keyId       int, id of a line of the keys file
+ * type        int, PUBLISHER or SUBSCRIBER
+ * columns     COLUMN_COUNT longs
+ * </pre>
+ */
+public final class HistoryLayout
+{
+    public static final int PUBLISHER = 1;
+    public static final int SUBSCRIBER = 2;
+    public static final int COLUMN_COUNT = 5;
+
+    public static final int TIMESTAMP_OFFSET = 0;
+    public static final int KEY_ID_OFFSET = 8;
+    public static final int TYPE_OFFSET = 12;
+    public static final int COLUMNS_OFFSET = 16;
+    public static final int RECORD_LENGTH = COLUMNS_OFFSET + COLUMN_COUNT * Long.BYTES;
+
+    // one "keyId key" line per session key
+    public static final String KEYS_FILE_NAME = "keys.txt";
+    public static final String SEGMENT_SUFFIX = ".segment";
+
+    private static final String[] PUBLISHER_COLUMNS =
+    {
+        "publisherPosition", "publisherLimit", "senderPosition", "senderLimit", "backPressureEvents"
+    };
+    // subscriberCount is -1 if the subscriber positions were not reported
+    private static final String[] SUBSCRIBER_COLUMNS =
+    {
+        "receiverPosition", "receiverHighWaterMark", "minSubscriberPosition", "maxSubscriberPosition",
+        "subscriberCount"
+    };
+
+    private HistoryLayout()
+    {
+    }
+
+    public static String columnName(final int type, final int column)
+    {
+        return type == PUBLISHER ? PUBLISHER_COLUMNS[column] : SUBSCRIBER_COLUMNS[column];
+    }
+
+    public static String typeName(final int type)
+    {
+        return type == PUBLISHER ? "publisher" : "subscriber";
+    }
+
+    static String segmentFileName(final long segmentIndex)
+    {
+        return String.format("%020d%s", segmentIndex, SEGMENT_SUFFIX);
+    }
+
+    static boolean isSegmentFile(final String fileName)
+    {
+        return fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    static long segmentIndex(final String fileName)
+    {
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // oldest first
+    static File[] segmentFiles(final File directory)
+    {
+        final File[] files = directory.listFiles((dir, name) -> isSegmentFile(name));
+        if (files == null)
+        {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingLong(file -> segmentIndex(file.getName())));
+        return files;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.history;
+
+import org.agrona.IoUtil;
+import org.agrona.collections.Object2IntHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+import static com.aitusoftware.aether.net.history.HistoryLayout.COLUMNS_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.COLUMN_COUNT;
+import static com.aitusoftware.aether.net.history.HistoryLayout.KEY_ID_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.RECORD_LENGTH;
+import static com.aitusoftware.aether.net.history.HistoryLayout.TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.TYPE_OFFSET;
+
+/**
+ * Range queries over the segments of a {@link HistoryWriter}. Safe to use from any thread, and concurrently,
+ * while the writer is appending; each query maps the segments read-only. The key table is cached and only
+ * reloaded when the writer has added keys or replaced the keys file on compaction.
+ */
+public final class HistoryReader
+{
+    public static final int ANY_TYPE = 0;
+
+    private final File directory;
+    private final File keysFile;
+    private volatile KeyTable keyTable = new KeyTable(0, null, null, new Object2IntHashMap<>(-1));
+
+    public HistoryReader(final File directory)
+    {
+        this.directory = directory;
+        this.keysFile = new File(directory, HistoryLayout.KEYS_FILE_NAME);
+    }
+
+    public int query(
+        final String key,
+        final int type,
+        final long fromTimestamp,
+        final long toTimestamp,
+        final HistoryConsumer consumer) throws IOException
+    {
+        final int keyId = keyId(key);
+        if (keyId < 0)
+        {
+            return 0;
+        }
+        int recordCount = 0;
+        final long[] columns = new long[COLUMN_COUNT];
+        final UnsafeBuffer segment = new UnsafeBuffer(0, 0);
+        for (final File file : HistoryLayout.segmentFiles(directory))
+        {
+            final MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            catch (final NoSuchFileException e)
+            {
+                // removed by retention since listing
+                continue;
+            }
+            try
+            {
+                segment.wrap(mapped);
+                final int segmentRecords = segment.capacity() / RECORD_LENGTH;
+                if (segmentRecords != 0 && segment.getLongVolatile(TIMESTAMP_OFFSET) > toTimestamp)
+                {
+                    break;
+                }
+                for (int i = 0; i < segmentRecords; i++)
+                {
+                    final int offset = i * RECORD_LENGTH;
+                    final long timestamp = segment.getLongVolatile(offset + TIMESTAMP_OFFSET);
+                    if (timestamp == 0)
+                    {
+                        break;
+                    }
+                    final int recordType = segment.getInt(offset + TYPE_OFFSET);
+                    if (segment.getInt(offset + KEY_ID_OFFSET) == keyId &&
+                        (type == ANY_TYPE || type == recordType) &&
+                        timestamp >= fromTimestamp && timestamp <= toTimestamp)
+                    {
+                        for (int c = 0; c < COLUMN_COUNT; c++)
+                        {
+                            columns[c] = segment.getLong(offset + COLUMNS_OFFSET + c * Long.BYTES);
+                        }
+                        consumer.onRecord(timestamp, recordType, columns);
+                        recordCount++;
+                    }
+                }
+            }
+            finally
+            {
+                IoUtil.unmap(mapped);
+            }
+        }
+
+        return recordCount;
+    }
+
+    private int keyId(final String key) throws IOException
+    {
+        KeyTable table = keyTable;
+        final BasicFileAttributes attributes;
+        try
+        {
+            attributes = Files.readAttributes(keysFile.toPath(), BasicFileAttributes.class);
+        }
+        catch (final NoSuchFileException e)
+        {
+            return table.ids.getValue(key);
+        }
+        if (!table.isCurrent(attributes))
+        {
+            table = reloadKeys(attributes);
+        }
+        return table.ids.getValue(key);
+    }
+
+    private synchronized KeyTable reloadKeys(final BasicFileAttributes attributes) throws IOException
+    {
+        final byte[] content;
+        try
+        {
+            content = Files.readAllBytes(keysFile.toPath());
+        }
+        catch (final NoSuchFileException e)
+        {
+            return keyTable;
+        }
+        final Object2IntHashMap<String> ids = new Object2IntHashMap<>(-1);
+        final int length = readKeys(content, ids);
+        keyTable = new KeyTable(length, attributes.fileKey(), attributes.lastModifiedTime(), ids);
+        return keyTable;
+    }
+
+    static String keyLine(final int keyId, final String key)
+    {
+        return keyId + " " + key + "\n";
+    }
+
+    // returns the length of the complete lines read, as a trailing partial line may still be being written
+    static int readKeys(final byte[] content, final Object2IntHashMap<String> ids)
+    {
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++)
+        {
+            if (content[i] == '\n')
+            {
+                final String line = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                final int separator = line.indexOf(' ');
+                ids.put(line.substring(separator + 1), Integer.parseInt(line.substring(0, separator)));
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    private static final class KeyTable
+    {
+        // of the complete lines read, so that a key still being written is read again once it is complete
+        private final long length;
+        // compaction replaces the file, which may then be appended to the same length
+        private final Object fileKey;
+        private final FileTime lastModified;
+        private final Object2IntHashMap<String> ids;
+
+        KeyTable(
+            final long length, final Object fileKey, final FileTime lastModified, final Object2IntHashMap<String> ids)
+        {
+            this.length = length;
+            this.fileKey = fileKey;
+            this.lastModified = lastModified;
+            this.ids = ids;
+        }
+
+        boolean isCurrent(final BasicFileAttributes attributes)
+        {
+            return attributes.size() == length &&
+                Objects.equals(attributes.fileKey(), fileKey) &&
+                attributes.lastModifiedTime().equals(lastModified);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.history;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.util.ReportedSessions;
+import org.agrona.IoUtil;
+import org.agrona.LangUtil;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Object2IntHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.aitusoftware.aether.net.history.HistoryLayout.COLUMNS_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.KEY_ID_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.RECORD_LENGTH;
+import static com.aitusoftware.aether.net.history.HistoryLayout.TIMESTAMP_OFFSET;
+import static com.aitusoftware.aether.net.history.HistoryLayout.TYPE_OFFSET;
+
+/**
+ * Appends every received counter snapshot to a rolling set of memory-mapped segments,
+ * deleting the oldest segment once the retention limit is reached.
+ * <p>
+ * Keys first seen during a snapshot are buffered and appended to the keys file in a single write once the
+ * snapshot has been recorded. When retention deletes a segment, keys no longer referenced by any remaining
+ * segment, or by the sessions last reported, are removed and the keys file is replaced.
+ */
+public final class HistoryWriter implements CounterSnapshotListener, AutoCloseable
+{
+    private final File directory;
+    private final File keysFile;
+    private final File compactedKeysFile;
+    private final long segmentLength;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final Object2IntHashMap<String> keyIds = new Object2IntHashMap<>(-1);
+    private final Map<String, ReportedKeys> reportedKeys = new HashMap<>();
+    private final ArrayDeque<File> segmentFiles = new ArrayDeque<>();
+    private final ArrayDeque<IntHashSet> segmentKeyIds = new ArrayDeque<>();
+    private final IntHashSet liveKeyIds = new IntHashSet();
+    private final UnsafeBuffer segment = new UnsafeBuffer(0, 0);
+    private ByteBuffer pendingKeys = ByteBuffer.allocate(4096);
+    private FileChannel keysChannel;
+    private IntHashSet currentKeyIds;
+    private MappedByteBuffer mappedSegment;
+    private int nextKeyId;
+    private long segmentIndex;
+    private int recordIndex;
+
+    public HistoryWriter(final File directory, final long segmentLength, final int maxSegments)
+    {
+        if (segmentLength < RECORD_LENGTH || segmentLength > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Invalid segment length: " + segmentLength);
+        }
+        if (maxSegments < 1)
+        {
+            throw new IllegalArgumentException("Invalid segment count: " + maxSegments);
+        }
+        this.directory = directory;
+        this.keysFile = new File(directory, HistoryLayout.KEYS_FILE_NAME);
+        this.compactedKeysFile = new File(directory, HistoryLayout.KEYS_FILE_NAME + ".tmp");
+        this.recordsPerSegment = (int)(segmentLength / RECORD_LENGTH);
+        this.segmentLength = (long)recordsPerSegment * RECORD_LENGTH;
+        this.maxSegments = maxSegments;
+
+        IoUtil.ensureDirectoryExists(directory, "history");
+        loadKeys();
+        openKeys();
+        for (final File file : HistoryLayout.segmentFiles(directory))
+        {
+            segmentFiles.addLast(file);
+            segmentKeyIds.addLast(keyIdsOf(file));
+        }
+        if (segmentFiles.isEmpty())
+        {
+            mapNewSegment(0);
+        }
+        else
+        {
+            resumeSegment(segmentFiles.peekLast());
+            currentKeyIds = segmentKeyIds.peekLast();
+        }
+        enforceRetention();
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        final ReportedKeys reported = reportedKeys.computeIfAbsent(label, ignored -> new ReportedKeys());
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet counters = publisherCounters.get(i);
+            final int offset = nextRecordOffset();
+            putKeyId(offset,
+                keyId(reported.publishers, i, label, counters.channel(), counters.streamId(), counters.sessionId()));
+            segment.putInt(offset + TYPE_OFFSET, HistoryLayout.PUBLISHER);
+            putColumn(offset, 0, counters.publisherPosition());
+            putColumn(offset, 1, counters.publisherLimit());
+            putColumn(offset, 2, counters.senderPosition());
+            putColumn(offset, 3, counters.senderLimit());
+            putColumn(offset, 4, counters.backPressureEvents());
+            segment.putLongOrdered(offset + TIMESTAMP_OFFSET, timestamp);
+        }
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet counters = subscriberCounters.get(i);
+            final Map<Long, Long> subscriberPositions = counters.subscriberPositions();
+            long minPosition = 0;
+            long maxPosition = 0;
+            boolean first = true;
+            if (subscriberPositions != null)
+            {
+                for (final Long position : subscriberPositions.values())
+                {
+                    minPosition = first ? position : Math.min(minPosition, position);
+                    maxPosition = first ? position : Math.max(maxPosition, position);
+                    first = false;
+                }
+            }
+            final int offset = nextRecordOffset();
+            putKeyId(offset,
+                keyId(reported.subscribers, i, label, counters.channel(), counters.streamId(), counters.sessionId()));
+            segment.putInt(offset + TYPE_OFFSET, HistoryLayout.SUBSCRIBER);
+            putColumn(offset, 0, counters.receiverPosition());
+            putColumn(offset, 1, counters.receiverHighWaterMark());
+            putColumn(offset, 2, minPosition);
+            putColumn(offset, 3, maxPosition);
+            putColumn(offset, 4, subscriberPositions == null ? -1 : subscriberPositions.size());
+            segment.putLongOrdered(offset + TIMESTAMP_OFFSET, timestamp);
+        }
+        reported.publishers.truncate(publisherCounters.size());
+        reported.subscribers.truncate(subscriberCounters.size());
+        flushKeys();
+    }
+
+    @Override
+    public void close()
+    {
+        flushKeys();
+        IoUtil.unmap(mappedSegment);
+        mappedSegment = null;
+        closeKeys();
+    }
+
+    private int nextRecordOffset()
+    {
+        if (recordIndex == recordsPerSegment)
+        {
+            IoUtil.unmap(mappedSegment);
+            mapNewSegment(segmentIndex + 1);
+            enforceRetention();
+        }
+        return recordIndex++ * RECORD_LENGTH;
+    }
+
+    private void putKeyId(final int recordOffset, final int keyId)
+    {
+        segment.putInt(recordOffset + KEY_ID_OFFSET, keyId);
+        currentKeyIds.add(keyId);
+    }
+
+    private void putColumn(final int recordOffset, final int column, final long value)
+    {
+        segment.putLong(recordOffset + COLUMNS_OFFSET + column * Long.BYTES, value);
+    }
+
+    private int keyId(
+        final ReportedSessions reported, final int index, final String label, final CharSequence channel,
+        final int streamId, final int sessionId)
+    {
+        int keyId = reported.id(index, channel, streamId, sessionId);
+        if (keyId == ReportedSessions.UNKNOWN_ID)
+        {
+            keyId = keyId(label, channel, streamId, sessionId);
+            reported.set(index, channel, streamId, sessionId, keyId);
+        }
+        return keyId;
+    }
+
+    private int keyId(final String label, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        final String key = SessionKeys.key(label, channel, streamId, sessionId);
+        int keyId = keyIds.getValue(key);
+        if (keyId == keyIds.missingValue())
+        {
+            keyId = nextKeyId++;
+            keyIds.put(key, keyId);
+            final byte[] line = HistoryReader.keyLine(keyId, key).getBytes(StandardCharsets.UTF_8);
+            if (pendingKeys.remaining() < line.length)
+            {
+                final ByteBuffer expanded =
+                    ByteBuffer.allocate(Math.max(pendingKeys.capacity() * 2, pendingKeys.position() + line.length));
+                pendingKeys.flip();
+                pendingKeys = expanded.put(pendingKeys);
+            }
+            pendingKeys.put(line);
+        }
+        return keyId;
+    }
+
+    private void flushKeys()
+    {
+        if (pendingKeys.position() == 0)
+        {
+            return;
+        }
+        pendingKeys.flip();
+        try
+        {
+            while (pendingKeys.hasRemaining())
+            {
+                keysChannel.write(pendingKeys);
+            }
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+        pendingKeys.clear();
+    }
+
+    private void loadKeys()
+    {
+        if (!keysFile.exists())
+        {
+            return;
+        }
+        try
+        {
+            HistoryReader.readKeys(Files.readAllBytes(keysFile.toPath()), keyIds);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+        final Object2IntHashMap<String>.ValueIterator ids = keyIds.values().iterator();
+        while (ids.hasNext())
+        {
+            nextKeyId = Math.max(nextKeyId, ids.nextInt() + 1);
+        }
+    }
+
+    private void openKeys()
+    {
+        try
+        {
+            keysChannel = FileChannel.open(
+                keysFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    private void closeKeys()
+    {
+        try
+        {
+            keysChannel.close();
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+    }
+
+    // the pending keys are rewritten with the retained ones, so the file is always replaced by a complete table
+    private void compactKeys()
+    {
+        liveKeyIds.clear();
+        for (final IntHashSet ids : segmentKeyIds)
+        {
+            liveKeyIds.addAll(ids);
+        }
+        for (final ReportedKeys reported : reportedKeys.values())
+        {
+            addReportedKeyIds(reported.publishers);
+            addReportedKeyIds(reported.subscribers);
+        }
+        final Object2IntHashMap<String>.ValueIterator ids = keyIds.values().iterator();
+        while (ids.hasNext())
+        {
+            if (!liveKeyIds.contains(ids.nextInt()))
+            {
+                ids.remove();
+            }
+        }
+
+        final StringBuilder content = new StringBuilder();
+        final Object2IntHashMap<String>.EntryIterator keys = keyIds.entrySet().iterator();
+        while (keys.hasNext())
+        {
+            keys.next();
+            content.append(HistoryReader.keyLine(keys.getIntValue(), keys.getKey()));
+        }
+        closeKeys();
+        try
+        {
+            Files.write(compactedKeysFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(compactedKeysFile.toPath(), keysFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+        pendingKeys.clear();
+        openKeys();
+    }
+
+    private void addReportedKeyIds(final ReportedSessions reported)
+    {
+        for (int i = 0; i < reported.count(); i++)
+        {
+            liveKeyIds.add(reported.id(i));
+        }
+    }
+
+    private IntHashSet keyIdsOf(final File file)
+    {
+        final IntHashSet ids = new IntHashSet();
+        final MappedByteBuffer mapped = IoUtil.mapExistingFile(file, "history segment");
+        try
+        {
+            final UnsafeBuffer buffer = new UnsafeBuffer(mapped);
+            final int recordCount = buffer.capacity() / RECORD_LENGTH;
+            for (int i = 0; i < recordCount && buffer.getLong(i * RECORD_LENGTH + TIMESTAMP_OFFSET) != 0; i++)
+            {
+                ids.add(buffer.getInt(i * RECORD_LENGTH + KEY_ID_OFFSET));
+            }
+        }
+        finally
+        {
+            IoUtil.unmap(mapped);
+        }
+        return ids;
+    }
+
+    private void mapNewSegment(final long index)
+    {
+        segmentIndex = index;
+        final File file = new File(directory, HistoryLayout.segmentFileName(index));
+        mappedSegment = IoUtil.mapNewFile(file, segmentLength);
+        segment.wrap(mappedSegment);
+        segmentFiles.addLast(file);
+        currentKeyIds = new IntHashSet();
+        segmentKeyIds.addLast(currentKeyIds);
+        recordIndex = 0;
+    }
+
+    private void resumeSegment(final File file)
+    {
+        segmentIndex = HistoryLayout.segmentIndex(file.getName());
+        mappedSegment = IoUtil.mapExistingFile(file, "history segment");
+        segment.wrap(mappedSegment);
+        final int recordCount = segment.capacity() / RECORD_LENGTH;
+        recordIndex = 0;
+        while (recordIndex < recordCount && segment.getLong(recordIndex * RECORD_LENGTH + TIMESTAMP_OFFSET) != 0)
+        {
+            recordIndex++;
+        }
+        if (recordCount != recordsPerSegment)
+        {
+            // segment length was reconfigured, start afresh rather than mix record counts
+            recordIndex = recordsPerSegment;
+        }
+    }
+
+    private void enforceRetention()
+    {
+        if (segmentFiles.size() <= maxSegments)
+        {
+            return;
+        }
+        while (segmentFiles.size() > maxSegments)
+        {
+            IoUtil.delete(segmentFiles.removeFirst(), true);
+            segmentKeyIds.removeFirst();
+        }
+        compactKeys();
+    }
+
+    // the keys of the sessions each process reported in its previous snapshot, so that keys are built only on change
+    private static final class ReportedKeys
+    {
+        private final ReportedSessions publishers = new ReportedSessions();
+        private final ReportedSessions subscribers = new ReportedSessions();
+    }
+}
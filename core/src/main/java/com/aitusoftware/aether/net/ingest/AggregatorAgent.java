@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.Context;
+import com.aitusoftware.aether.net.Mode;
+import com.aitusoftware.aether.net.util.DownsamplingListener;
+import com.aitusoftware.aether.transport.CounterSnapshotPublisher;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.Agent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Polls every configured source and republishes the merged, optionally downsampled, snapshots on the aggregator
+ * channel, so that a tree of aggregators can feed a top-level server. No model is built.
+ */
+public final class AggregatorAgent implements Agent, CounterSnapshotListener
+{
+    private final SnapshotSources sources;
+    private final CounterSnapshotPublisher publisher;
+
+    public AggregatorAgent(final Context context)
+    {
+        if (context.aggregatorChannel() == null)
+        {
+            throw new IllegalArgumentException("Aggregator mode requires " +
+                Context.Configuration.AGGREGATOR_CHANNEL_PROPERTY_NAME);
+        }
+        final CounterSnapshotListener listener = context.aggregatorIntervalMs() > 0 ?
+            new DownsamplingListener(context.aggregatorIntervalMs(), this) : this;
+        // without configured sources, an aggregator receives from a collector over Aeron
+        sources = new SnapshotSources(context.sources().isEmpty() ?
+            Collections.singletonList(SnapshotSource.untagged(Mode.NETWORK)) : context.sources(), listener);
+        try
+        {
+            final CounterSnapshotPublisher.Context publisherContext = new CounterSnapshotPublisher.Context()
+                .aeronDirectoryName(sources.aeronDirectoryName())
+                .publicationChannel(context.aggregatorChannel());
+            if (context.aggregatorStreamId() != SnapshotSource.DEFAULT_STREAM_ID)
+            {
+                publisherContext.publicationStreamId(context.aggregatorStreamId());
+            }
+            publisher = new CounterSnapshotPublisher(publisherContext);
+        }
+        catch (final RuntimeException e)
+        {
+            sources.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int doWork()
+    {
+        return sources.doWork();
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        // snapshots are only delivered from doWork, after construction has completed
+        publisher.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+    }
+
+    @Override
+    public void onClose()
+    {
+        CloseHelper.quietClose(publisher);
+        CloseHelper.quietClose(sources);
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "aether-net-aggregator";
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+/**
+ * Notified on the engine's duty cycle each time snapshots have been applied to the model. The model, rankings and
+ * rates may be read during the callback without allocation, but are only valid until the engine next does work.
+ */
+@FunctionalInterface
+public interface GenerationListener
+{
+    /**
+     * @param engine          the engine whose model has been updated
+     * @param topologyChanged true if publishers, subscribers or system counter labels have changed
+     */
+    void onGeneration(MonitoringEngine engine, boolean topologyChanged);
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.net.journal.JournalReader;
+import org.agrona.concurrent.NanoClock;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a recorded journal to the listener, paced by the recorded timestamps relative to the first snapshot.
+ * Timestamps are delivered as recorded, so rates are unaffected by the replay speed.
+ */
+final class JournalReplay implements SnapshotFeed
+{
+    private static final int MAX_SNAPSHOTS_PER_POLL = 1024;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final JournalReader reader;
+    private final double speed;
+    private final NanoClock nanoClock;
+    private final CounterSnapshotListener listener;
+    private boolean hasSnapshot;
+    private long startNs = NOT_STARTED;
+    private long firstTimestamp;
+
+    /**
+     * @param file      journal to replay
+     * @param speed     multiple of the recorded rate, or 0 to replay as fast as the agent polls
+     * @param nanoClock clock for pacing
+     * @param listener  receives the recorded snapshots
+     */
+    JournalReplay(
+        final File file, final double speed, final NanoClock nanoClock, final CounterSnapshotListener listener)
+    {
+        if (speed < 0)
+        {
+            throw new IllegalArgumentException("Invalid replay speed: " + speed);
+        }
+        this.reader = new JournalReader(file);
+        this.speed = speed;
+        this.nanoClock = nanoClock;
+        this.listener = listener;
+        hasSnapshot = reader.next();
+    }
+
+    @Override
+    public int doWork()
+    {
+        if (!hasSnapshot)
+        {
+            return 0;
+        }
+        final long nowNs = nanoClock.nanoTime();
+        if (startNs == NOT_STARTED)
+        {
+            startNs = nowNs;
+            firstTimestamp = reader.timestamp();
+        }
+
+        int workCount = 0;
+        while (hasSnapshot && workCount < MAX_SNAPSHOTS_PER_POLL && (speed == 0 || dueNs(reader.timestamp()) <= nowNs))
+        {
+            reader.deliver(listener);
+            hasSnapshot = reader.next();
+            workCount++;
+        }
+        return workCount;
+    }
+
+    @Override
+    public void close()
+    {
+        reader.close();
+    }
+
+    private long dueNs(final long timestamp)
+    {
+        return startNs + (long)(TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.net.model.ModelFilter;
+import com.aitusoftware.aether.net.model.TopMetric;
+import com.aitusoftware.aether.net.util.Gzip;
+
+import java.util.Map;
+
+/**
+ * Immutable, fully encoded view of one snapshot generation, shared by all readers. Messages are held as strings for
+ * WebSocket text frames, along with their UTF-8 encoded lengths.
+ */
+public final class ModelFrame
+{
+    private final long sequence;
+    private final boolean topologyChanged;
+    private final byte[] model;
+    private final String snapshotMessage;
+    private final int snapshotMessageLength;
+    private final String updateMessage;
+    private final int updateMessageLength;
+    private final byte[] binarySnapshot;
+    private final Map<ModelFilter, FilteredMessages> filteredMessages;
+    private final String topMessage;
+    private final byte[][] topRankings;
+    private volatile byte[] gzipModel;
+
+    public ModelFrame(
+        final long sequence,
+        final boolean topologyChanged,
+        final byte[] model,
+        final String snapshotMessage,
+        final int snapshotMessageLength,
+        final String updateMessage,
+        final int updateMessageLength,
+        final byte[] binarySnapshot,
+        final Map<ModelFilter, FilteredMessages> filteredMessages,
+        final String topMessage,
+        final byte[][] topRankings)
+    {
+        this.sequence = sequence;
+        this.topologyChanged = topologyChanged;
+        this.model = model;
+        this.snapshotMessage = snapshotMessage;
+        this.snapshotMessageLength = snapshotMessageLength;
+        this.updateMessage = updateMessage;
+        this.updateMessageLength = updateMessageLength;
+        this.binarySnapshot = binarySnapshot;
+        this.filteredMessages = filteredMessages;
+        this.topMessage = topMessage;
+        this.topRankings = topRankings;
+    }
+
+    public long sequence()
+    {
+        return sequence;
+    }
+
+    public boolean topologyChanged()
+    {
+        return topologyChanged;
+    }
+
+    // the /data.json document
+    public byte[] model()
+    {
+        return model;
+    }
+
+    // compressed on first use and shared by every reader of this generation; a racing reader may compress it twice
+    public byte[] gzipModel()
+    {
+        byte[] compressed = gzipModel;
+        if (compressed == null)
+        {
+            compressed = Gzip.compress(model);
+            gzipModel = compressed;
+        }
+        return compressed;
+    }
+
+    public String snapshotMessage()
+    {
+        return snapshotMessage;
+    }
+
+    // a delta against the previous sequence, or the snapshot message if the topology changed
+    public String updateMessage()
+    {
+        return updateMessage;
+    }
+
+    public byte[] binarySnapshot()
+    {
+        return binarySnapshot;
+    }
+
+    // every ranking, as served from /top; null if sessions were not ranked
+    public String topMessage()
+    {
+        return topMessage;
+    }
+
+    // a single ranking, as served from /top/<metric>; null if sessions were not ranked
+    public byte[] topRanking(final TopMetric metric)
+    {
+        return topRankings == null ? null : topRankings[metric.ordinal()];
+    }
+
+    // null if the filter was not subscribed when this frame was encoded
+    public String snapshotMessage(final ModelFilter filter)
+    {
+        if (filter.isAll())
+        {
+            return snapshotMessage;
+        }
+        final FilteredMessages messages = filteredMessages.get(filter);
+        return messages == null ? null : messages.snapshotMessage;
+    }
+
+    public String updateMessage(final ModelFilter filter)
+    {
+        if (filter.isAll())
+        {
+            return updateMessage;
+        }
+        final FilteredMessages messages = filteredMessages.get(filter);
+        return messages == null ? null : messages.updateMessage;
+    }
+
+    // encoded bytes of the snapshot message for the filter, or 0 if the filter was not subscribed
+    public int snapshotMessageLength(final ModelFilter filter)
+    {
+        if (filter.isAll())
+        {
+            return snapshotMessageLength;
+        }
+        final FilteredMessages messages = filteredMessages.get(filter);
+        return messages == null ? 0 : messages.snapshotMessageLength;
+    }
+
+    public int updateMessageLength(final ModelFilter filter)
+    {
+        if (filter.isAll())
+        {
+            return updateMessageLength;
+        }
+        final FilteredMessages messages = filteredMessages.get(filter);
+        return messages == null ? 0 : messages.updateMessageLength;
+    }
+
+    public static final class FilteredMessages
+    {
+        private final String snapshotMessage;
+        private final int snapshotMessageLength;
+        private final String updateMessage;
+        private final int updateMessageLength;
+
+        public FilteredMessages(
+            final String snapshotMessage,
+            final int snapshotMessageLength,
+            final String updateMessage,
+            final int updateMessageLength)
+        {
+            this.snapshotMessage = snapshotMessage;
+            this.snapshotMessageLength = snapshotMessageLength;
+            this.updateMessage = updateMessage;
+            this.updateMessageLength = updateMessageLength;
+        }
+    }
+}
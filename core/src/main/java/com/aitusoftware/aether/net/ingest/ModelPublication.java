@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.net.model.ModelFilter;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer hand-off of encoded frames from the monitoring agent to any number of reader threads.
+ * Frames are immutable, so publishing is a single volatile reference swap.
+ * <p>
+ * The most recent frames are retained so that reconnecting clients can catch up with deltas.
+ * <p>
+ * Readers register the filters that their clients subscribe to, so that each published frame carries one
+ * encoding per distinct filter, and may queue one-off filtered queries for the agent to answer.
+ */
+public final class ModelPublication
+{
+    private static final int QUERY_QUEUE_CAPACITY = 256;
+    private static final int RECENT_FRAME_COUNT = 64;
+
+    private final Map<ModelFilter, Integer> subscriptions = new ConcurrentHashMap<>();
+    private final ManyToOneConcurrentArrayQueue<ModelQuery> queries =
+        new ManyToOneConcurrentArrayQueue<>(QUERY_QUEUE_CAPACITY);
+    private final AtomicReferenceArray<ModelFrame> recentFrames = new AtomicReferenceArray<>(RECENT_FRAME_COUNT);
+    private volatile ModelFrame latest;
+    private volatile Runnable[] publishHandlers = new Runnable[0];
+
+    public void publish(final ModelFrame frame)
+    {
+        recentFrames.set(recentFrameIndex(frame.sequence()), frame);
+        latest = frame;
+        for (final Runnable publishHandler : publishHandlers)
+        {
+            publishHandler.run();
+        }
+    }
+
+    public ModelFrame latest()
+    {
+        return latest;
+    }
+
+    // null once the frame has been overwritten in the ring of recent frames
+    public ModelFrame frame(final long sequence)
+    {
+        final ModelFrame frame = recentFrames.get(recentFrameIndex(sequence));
+        return frame != null && frame.sequence() == sequence ? frame : null;
+    }
+
+    // invoked on the publishing thread, so must only schedule work elsewhere
+    public synchronized void addPublishHandler(final Runnable publishHandler)
+    {
+        final Runnable[] handlers = Arrays.copyOf(publishHandlers, publishHandlers.length + 1);
+        handlers[handlers.length - 1] = publishHandler;
+        publishHandlers = handlers;
+    }
+
+    public synchronized void removePublishHandler(final Runnable publishHandler)
+    {
+        publishHandlers = Arrays.stream(publishHandlers)
+            .filter(handler -> handler != publishHandler).toArray(Runnable[]::new);
+    }
+
+    public void subscribe(final ModelFilter filter)
+    {
+        if (!filter.isAll())
+        {
+            subscriptions.merge(filter, 1, Integer::sum);
+        }
+    }
+
+    public void unsubscribe(final ModelFilter filter)
+    {
+        if (!filter.isAll())
+        {
+            subscriptions.computeIfPresent(filter, (f, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    public Set<ModelFilter> subscriptions()
+    {
+        return subscriptions.keySet();
+    }
+
+    /**
+     * Queues a filtered encoding of the current model.
+     *
+     * @param filter        selection of the model to encode
+     * @param resultHandler invoked on the agent thread with the encoded document
+     * @return false if too many queries are outstanding
+     */
+    public boolean query(final ModelFilter filter, final Consumer<byte[]> resultHandler)
+    {
+        return queries.offer(new ModelQuery(filter, resultHandler));
+    }
+
+    int drainQueries(final Consumer<ModelQuery> handler)
+    {
+        return queries.drain(handler);
+    }
+
+    private static int recentFrameIndex(final long sequence)
+    {
+        return (int)(sequence & (RECENT_FRAME_COUNT - 1));
+    }
+
+    static final class ModelQuery
+    {
+        private final ModelFilter filter;
+        private final Consumer<byte[]> resultHandler;
+
+        ModelQuery(final ModelFilter filter, final Consumer<byte[]> resultHandler)
+        {
+            this.filter = filter;
+            this.resultHandler = resultHandler;
+        }
+
+        ModelFilter filter()
+        {
+            return filter;
+        }
+
+        void complete(final byte[] result)
+        {
+            resultHandler.accept(result);
+        }
+    }
+}
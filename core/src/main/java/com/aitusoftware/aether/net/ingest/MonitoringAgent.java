@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+
+import com.aitusoftware.aether.net.Context;
+import com.aitusoftware.aether.net.alert.AlertSink;
+import com.aitusoftware.aether.net.binary.BinarySnapshotEncoder;
+import com.aitusoftware.aether.net.json.JsonWriter;
+import com.aitusoftware.aether.net.json.ModelEncoder;
+import com.aitusoftware.aether.net.json.TopEncoder;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.model.ModelFilter;
+import com.aitusoftware.aether.net.model.TopMetric;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.SystemNanoClock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes each generation of a {@link MonitoringEngine} as an immutable {@link ModelFrame} for the web tier, and
+ * answers filtered model queries between polls.
+ */
+public final class MonitoringAgent implements Agent
+{
+    private final MonitoringEngine engine;
+    private final ModelEncoder modelEncoder;
+    private final BinarySnapshotEncoder binaryEncoder;
+    private final TopEncoder topEncoder;
+    private final JsonWriter modelWriter = new JsonWriter();
+    private final JsonWriter messageWriter = new JsonWriter();
+    private final JsonWriter filterWriter = new JsonWriter();
+    private final JsonWriter topWriter = new JsonWriter(4096);
+    private final NanoClock nanoClock = new SystemNanoClock();
+    private final ModelPublication publication;
+    private final SelfMetrics selfMetrics;
+    private long sequence;
+
+    public MonitoringAgent(
+        final Context context,
+        final ModelPublication publication,
+        final AlertSink alertSink,
+        final SelfMetrics selfMetrics)
+    {
+        this.publication = publication;
+        this.selfMetrics = selfMetrics;
+        engine = new MonitoringEngine(context, selfMetrics, alertSink);
+        modelEncoder = new ModelEncoder(engine.model());
+        binaryEncoder = new BinarySnapshotEncoder(engine.model());
+        topEncoder = new TopEncoder(engine.model(), engine.topSessions());
+        engine.addListener((source, topologyChanged) -> publishGeneration(topologyChanged));
+        // readers always have a frame to serve, even before the first snapshot arrives
+        publishGeneration(false);
+    }
+
+    @Override
+    public int doWork()
+    {
+        return publication.drainQueries(this::answerQuery) + engine.doWork();
+    }
+
+    public MonitoringEngine engine()
+    {
+        return engine;
+    }
+
+    @Override
+    public void onClose()
+    {
+        engine.onClose();
+    }
+
+    @Override
+    public String roleName()
+    {
+        return engine.roleName();
+    }
+
+    private void publishGeneration(final boolean topologyChanged)
+    {
+        final long startNs = nanoClock.nanoTime();
+        modelEncoder.encodeModel(modelWriter.reset());
+
+        sequence++;
+        binaryEncoder.encode(sequence);
+        modelEncoder.encodeSnapshot(messageWriter.reset(), sequence, modelWriter);
+        final String snapshotMessage = messageWriter.asString();
+        final int snapshotMessageLength = messageWriter.length();
+        selfMetrics.record(SelfMetrics.JSON_SNAPSHOT_BYTES, snapshotMessageLength);
+        String updateMessage = snapshotMessage;
+        int updateMessageLength = snapshotMessageLength;
+        if (!topologyChanged)
+        {
+            modelEncoder.encodeDelta(messageWriter.reset(), sequence);
+            updateMessage = messageWriter.asString();
+            updateMessageLength = messageWriter.length();
+            selfMetrics.record(SelfMetrics.JSON_DELTA_BYTES, updateMessageLength);
+        }
+
+        final ModelFrame frame = new ModelFrame(
+            sequence,
+            topologyChanged,
+            modelWriter.toByteArray(),
+            snapshotMessage,
+            snapshotMessageLength,
+            updateMessage,
+            updateMessageLength,
+            binaryEncoder.toByteArray(),
+            encodeSubscriptions(topologyChanged),
+            topEncoder.encode(topWriter.reset(), sequence).asString(),
+            encodeTopRankings());
+        selfMetrics.record(SelfMetrics.BINARY_FRAME_BYTES, frame.binarySnapshot().length);
+        selfMetrics.record(SelfMetrics.ENCODE_NS, nanoClock.nanoTime() - startNs);
+        publication.publish(frame);
+    }
+
+    private byte[][] encodeTopRankings()
+    {
+        final TopMetric[] metrics = TopMetric.values();
+        final byte[][] rankings = new byte[metrics.length][];
+        for (final TopMetric metric : metrics)
+        {
+            rankings[metric.ordinal()] = topEncoder.encode(topWriter.reset(), sequence, metric).toByteArray();
+        }
+        return rankings;
+    }
+
+    private Map<ModelFilter, ModelFrame.FilteredMessages> encodeSubscriptions(final boolean topologyChanged)
+    {
+        final Set<ModelFilter> subscriptions = publication.subscriptions();
+        if (subscriptions.isEmpty())
+        {
+            return Collections.emptyMap();
+        }
+        final Map<ModelFilter, ModelFrame.FilteredMessages> filteredMessages = new HashMap<>();
+        for (final ModelFilter filter : subscriptions)
+        {
+            modelEncoder.encodeModel(filterWriter.reset(), filter);
+            modelEncoder.encodeSnapshot(messageWriter.reset(), sequence, filterWriter);
+            final String snapshotMessage = messageWriter.asString();
+            final int snapshotMessageLength = messageWriter.length();
+            String updateMessage = snapshotMessage;
+            int updateMessageLength = snapshotMessageLength;
+            if (!topologyChanged)
+            {
+                modelEncoder.encodeDelta(messageWriter.reset(), sequence, filter);
+                updateMessage = messageWriter.asString();
+                updateMessageLength = messageWriter.length();
+            }
+            filteredMessages.put(filter, new ModelFrame.FilteredMessages(
+                snapshotMessage, snapshotMessageLength, updateMessage, updateMessageLength));
+        }
+        return filteredMessages;
+    }
+
+    private void answerQuery(final ModelPublication.ModelQuery query)
+    {
+        modelEncoder.encodeModel(filterWriter.reset(), query.filter());
+        query.complete(filterWriter.toByteArray());
+    }
+}
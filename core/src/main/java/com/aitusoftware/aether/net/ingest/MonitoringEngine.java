@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.net.Context;
+import com.aitusoftware.aether.net.Mode;
+import com.aitusoftware.aether.net.alert.AlertEngine;
+import com.aitusoftware.aether.net.alert.AlertRule;
+import com.aitusoftware.aether.net.alert.AlertSink;
+import com.aitusoftware.aether.net.alert.LoggingAlertSink;
+import com.aitusoftware.aether.net.alert.WebhookAlertSink;
+import com.aitusoftware.aether.net.history.HistoryWriter;
+import com.aitusoftware.aether.net.journal.JournalWriter;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.TopSessions;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.util.AggregateUpdateListener;
+import com.aitusoftware.aether.net.util.ConflatingListener;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.SystemNanoClock;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless monitoring that can be embedded in an application's own duty cycle: polls the configured snapshot
+ * sources, applies them to the model, and maintains rates, trends and rankings and evaluates alert rules, all on
+ * the thread calling {@link #doWork()}. It has no dependency on Vert.x; the server is an HTTP and WebSocket adapter
+ * over it.
+ * <p>
+ * After each generation, {@link GenerationListener}s may read the {@link #model()} and {@link #topSessions()}
+ * through their reusable rows without allocating.
+ */
+public final class MonitoringEngine implements Agent, AutoCloseable
+{
+    private static final GenerationListener[] NO_LISTENERS = new GenerationListener[0];
+
+    private final TopologyIndex topologyIndex;
+    private final NanoClock nanoClock = new SystemNanoClock();
+    private final RateTracker rateTracker;
+    private final AggregateUpdateListener listener;
+    private final ConflatingListener conflatingListener;
+    private final SnapshotModel snapshotModel;
+    private final TopSessions topSessions;
+    private final AlertEngine alertEngine;
+    private final SelfMetrics selfMetrics;
+    private final SnapshotFeed feed;
+    private final long pollIntervalNs;
+    private GenerationListener[] generationListeners = NO_LISTENERS;
+    private HistoryWriter historyWriter;
+    private JournalWriter journalWriter;
+    private WebhookAlertSink webhookAlertSink;
+    private long nextPollNs;
+    private long lastGeneration = -1;
+
+    public MonitoringEngine(final Context context, final AlertSink... alertSinks)
+    {
+        this(context, null, alertSinks);
+    }
+
+    /**
+     * @param context     configuration of sources, windows, history, journal and alert rules
+     * @param selfMetrics records poll and apply latencies, or null
+     * @param alertSinks  receive alerts in addition to standard output and any configured webhook
+     */
+    public MonitoringEngine(final Context context, final SelfMetrics selfMetrics, final AlertSink... alertSinks)
+    {
+        this.selfMetrics = selfMetrics;
+        this.pollIntervalNs = TimeUnit.MILLISECONDS.toNanos(context.pollIntervalMs());
+        topologyIndex = new TopologyIndex(context.processEvictionTimeoutMs());
+        rateTracker = new RateTracker(context.rateWindows());
+        snapshotModel = new SnapshotModel(context.rateWindows(), context.trendTimeConstantMs());
+        topSessions = new TopSessions(context.topCount());
+        alertEngine = newAlertEngine(context, alertSinks);
+        listener = new AggregateUpdateListener(topologyIndex, rateTracker);
+        conflatingListener = new ConflatingListener(context.conflationWindowMs(), nanoClock, listener);
+        final List<CounterSnapshotListener> ingestListeners = new ArrayList<>();
+        if (context.historyDirectory() != null)
+        {
+            historyWriter = new HistoryWriter(
+                new File(context.historyDirectory()), context.historySegmentLength(), context.historySegmentCount());
+            ingestListeners.add(historyWriter);
+        }
+        if (context.journalFile() != null && context.mode() != Mode.REPLAY)
+        {
+            journalWriter = new JournalWriter(new File(context.journalFile()));
+            ingestListeners.add(journalWriter);
+        }
+        // history and journal record every snapshot received, not just those that survive conflation
+        ingestListeners.add(conflatingListener);
+        final CounterSnapshotListener ingestListener = ingestListeners.size() == 1 ?
+            conflatingListener : new AggregateUpdateListener(ingestListeners.toArray(new CounterSnapshotListener[0]));
+        feed = newFeed(context, ingestListener);
+        // the model is valid, if empty, before the first snapshot arrives
+        applyGeneration();
+    }
+
+    // listeners are called on the duty cycle thread, and must be added from it or before it starts
+    public void addListener(final GenerationListener listener)
+    {
+        generationListeners = Arrays.copyOf(generationListeners, generationListeners.length + 1);
+        generationListeners[generationListeners.length - 1] = listener;
+    }
+
+    /**
+     * Polls the snapshot sources, at most once per poll interval, and applies any new snapshots.
+     *
+     * @return the amount of work done
+     */
+    @Override
+    public int doWork()
+    {
+        final long nowNs = nanoClock.nanoTime();
+        if (nowNs - nextPollNs < 0)
+        {
+            return 0;
+        }
+        nextPollNs = nowNs + pollIntervalNs;
+
+        int workCount = feed.doWork() + conflatingListener.flush(nowNs);
+        if (listener.generation() != lastGeneration)
+        {
+            final boolean topologyChanged = applyGeneration();
+            for (final GenerationListener generationListener : generationListeners)
+            {
+                generationListener.onGeneration(this, topologyChanged);
+            }
+            workCount++;
+        }
+        if (selfMetrics != null)
+        {
+            selfMetrics.record(SelfMetrics.POLL_NS, nanoClock.nanoTime() - nowNs);
+        }
+
+        return workCount;
+    }
+
+    // publishers, subscribers and system counters, with their rates, lags and trends
+    public SnapshotModel model()
+    {
+        return snapshotModel;
+    }
+
+    public TopSessions topSessions()
+    {
+        return topSessions;
+    }
+
+    public RateTracker rateTracker()
+    {
+        return rateTracker;
+    }
+
+    // snapshots received, conflated and applied
+    public ConflatingListener ingestCounters()
+    {
+        return conflatingListener;
+    }
+
+    @Override
+    public void onClose()
+    {
+        CloseHelper.quietClose(feed);
+        CloseHelper.quietClose(historyWriter);
+        CloseHelper.quietClose(journalWriter);
+        CloseHelper.quietClose(webhookAlertSink);
+    }
+
+    @Override
+    public void close()
+    {
+        onClose();
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "aether-net-monitor";
+    }
+
+    private boolean applyGeneration()
+    {
+        lastGeneration = listener.generation();
+        final long startNs = nanoClock.nanoTime();
+        final boolean topologyChanged = snapshotModel.update(topologyIndex, rateTracker);
+        if (alertEngine.hasRules())
+        {
+            alertEngine.evaluate(snapshotModel, rateTracker);
+        }
+        topSessions.update(snapshotModel, rateTracker);
+        if (selfMetrics != null)
+        {
+            selfMetrics.record(SelfMetrics.APPLY_NS, nanoClock.nanoTime() - startNs);
+        }
+        return topologyChanged;
+    }
+
+    private SnapshotFeed newFeed(final Context context, final CounterSnapshotListener listener)
+    {
+        if (context.mode() == Mode.REPLAY)
+        {
+            if (context.journalFile() == null)
+            {
+                throw new IllegalArgumentException("Replay mode requires " +
+                    Context.Configuration.JOURNAL_FILE_PROPERTY_NAME);
+            }
+            return new JournalReplay(new File(context.journalFile()), context.replaySpeed(), nanoClock, listener);
+        }
+        return new SnapshotSources(context.sources().isEmpty() ?
+            Collections.singletonList(SnapshotSource.untagged(context.mode())) : context.sources(), listener);
+    }
+
+    private AlertEngine newAlertEngine(final Context context, final AlertSink[] alertSinks)
+    {
+        final List<AlertRule> rules = AlertRule.parse(context.alertProperties(), context.rateWindows());
+        final List<AlertSink> sinks = new ArrayList<>();
+        sinks.add(new LoggingAlertSink());
+        if (context.alertWebhookUrl() != null)
+        {
+            try
+            {
+                webhookAlertSink = new WebhookAlertSink(new URL(context.alertWebhookUrl()));
+            }
+            catch (final MalformedURLException e)
+            {
+                throw new IllegalArgumentException("Invalid alert webhook URL: " + context.alertWebhookUrl(), e);
+            }
+            sinks.add(webhookAlertSink);
+        }
+        Collections.addAll(sinks, alertSinks);
+        return new AlertEngine(rules, new SystemEpochClock(), sinks.toArray(new AlertSink[0]));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.Aether;
+import com.aitusoftware.aether.net.Mode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A feed of counter snapshots: either an Aether collector publishing over Aeron, or processes monitored locally.
+ * <p>
+ * Sources are configured as:
+ * <pre>
+ * aether.net.sources=london,tokyo
+ * aether.net.source.london.channel=aeron:udp?endpoint=0.0.0.0:18996
+ * aether.net.source.tokyo.channel=aeron:udp?endpoint=0.0.0.0:18997
+ * aether.net.source.tokyo.streamId=7
+ * </pre>
+ * or, for locally monitored processes, {@code mode=LOCAL} with optional {@code locations=label:/aeron/dir;...}.
+ */
+public final class SnapshotSource
+{
+    public static final String SOURCES_PROPERTY_NAME = "aether.net.sources";
+    public static final int DEFAULT_STREAM_ID = -1;
+
+    private final String name;
+    private final Mode mode;
+    private final String channel;
+    private final int streamId;
+    private final List<Aether.MonitoringLocation> monitoringLocations;
+
+    SnapshotSource(
+        final String name,
+        final Mode mode,
+        final String channel,
+        final int streamId,
+        final List<Aether.MonitoringLocation> monitoringLocations)
+    {
+        this.name = name;
+        this.mode = mode;
+        this.channel = channel;
+        this.streamId = streamId;
+        this.monitoringLocations = monitoringLocations;
+    }
+
+    /**
+     * A single source configured by Aether's own properties, whose labels are not tagged.
+     *
+     * @param mode how snapshots are received
+     * @return the source
+     */
+    public static SnapshotSource untagged(final Mode mode)
+    {
+        return new SnapshotSource(null, mode, null, DEFAULT_STREAM_ID, Collections.emptyList());
+    }
+
+    public static List<SnapshotSource> parse(final Properties properties)
+    {
+        final String sourceNames = properties.getProperty(SOURCES_PROPERTY_NAME, "").trim();
+        final List<SnapshotSource> sources = new ArrayList<>();
+        if (sourceNames.isEmpty())
+        {
+            return sources;
+        }
+        for (final String sourceName : sourceNames.split(","))
+        {
+            final String name = sourceName.trim();
+            final String prefix = "aether.net.source." + name + ".";
+            final Mode mode = Mode.valueOf(properties.getProperty(prefix + "mode", Mode.NETWORK.name()));
+            if (mode != Mode.NETWORK && mode != Mode.LOCAL)
+            {
+                throw new IllegalArgumentException("Unsupported source mode: " + prefix + "mode=" + mode);
+            }
+            final String channel = properties.getProperty(prefix + "channel");
+            if (mode == Mode.NETWORK && channel == null)
+            {
+                throw new IllegalArgumentException("Missing property: " + prefix + "channel");
+            }
+            final String streamId = properties.getProperty(prefix + "streamId");
+            sources.add(new SnapshotSource(
+                name,
+                mode,
+                channel,
+                streamId == null ? DEFAULT_STREAM_ID : Integer.parseInt(streamId),
+                monitoringLocations(properties.getProperty(prefix + "locations"))));
+        }
+        return sources;
+    }
+
+    // null for an untagged source
+    public String name()
+    {
+        return name;
+    }
+
+    public Mode mode()
+    {
+        return mode;
+    }
+
+    public String channel()
+    {
+        return channel;
+    }
+
+    public int streamId()
+    {
+        return streamId;
+    }
+
+    public List<Aether.MonitoringLocation> monitoringLocations()
+    {
+        return monitoringLocations;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SnapshotSource{" +
+            "name='" + name + '\'' +
+            ", mode=" + mode +
+            ", channel='" + channel + '\'' +
+            ", streamId=" + streamId +
+            '}';
+    }
+
+    // label:/aeron/dir;label:/aeron/dir, as used by aether.monitoringLocations
+    private static List<Aether.MonitoringLocation> monitoringLocations(final String locations)
+    {
+        if (locations == null || locations.trim().isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        final List<Aether.MonitoringLocation> monitoringLocations = new ArrayList<>();
+        for (final String location : locations.split(";"))
+        {
+            final int separator = location.indexOf(':');
+            if (separator < 1)
+            {
+                throw new IllegalArgumentException("Invalid monitoring location: " + location);
+            }
+            monitoringLocations.add(new Aether.MonitoringLocation(
+                location.substring(0, separator).trim(), location.substring(separator + 1).trim()));
+        }
+        return monitoringLocations;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.Aether;
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.net.Mode;
+import com.aitusoftware.aether.net.util.SourceTaggingListener;
+import com.aitusoftware.aether.transport.CounterSnapshotSubscriber;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connections to every configured {@link SnapshotSource}, polled together from a single duty cycle. Network
+ * sources share one embedded media driver.
+ */
+final class SnapshotSources implements SnapshotFeed
+{
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private final CounterSnapshotSubscriber[] subscribers;
+    private final Aether[] localSources;
+    private MediaDriver mediaDriver;
+
+    SnapshotSources(final List<SnapshotSource> sources, final CounterSnapshotListener listener)
+    {
+        final List<CounterSnapshotSubscriber> subscriberList = new ArrayList<>();
+        final List<Aether> localSourceList = new ArrayList<>();
+        try
+        {
+            for (final SnapshotSource source : sources)
+            {
+                final CounterSnapshotListener sourceListener = source.name() == null ?
+                    listener : new SourceTaggingListener(source.name(), listener);
+                if (source.mode() == Mode.LOCAL)
+                {
+                    final Aether.Context aetherContext = new Aether.Context()
+                        .counterSnapshotListener(sourceListener)
+                        .mode(Aether.Mode.LOCAL)
+                        .transport(Aether.Transport.LOCAL);
+                    if (!source.monitoringLocations().isEmpty())
+                    {
+                        aetherContext.monitoringLocations(source.monitoringLocations());
+                    }
+                    final Aether aether = Aether.launch(aetherContext);
+                    resources.add(aether);
+                    localSourceList.add(aether);
+                }
+                else if (source.mode() == Mode.NETWORK)
+                {
+                    final CounterSnapshotSubscriber.Context subscriberContext =
+                        new CounterSnapshotSubscriber.Context()
+                        .aeronDirectoryName(mediaDriver().aeronDirectoryName())
+                        .counterSnapshotListener(sourceListener);
+                    if (source.channel() != null)
+                    {
+                        subscriberContext.subscriptionChannel(source.channel());
+                    }
+                    if (source.streamId() != SnapshotSource.DEFAULT_STREAM_ID)
+                    {
+                        subscriberContext.subscriptionStreamId(source.streamId());
+                    }
+                    final CounterSnapshotSubscriber subscriber = new CounterSnapshotSubscriber(subscriberContext);
+                    resources.add(subscriber);
+                    subscriberList.add(subscriber);
+                }
+                else
+                {
+                    throw new IllegalArgumentException("Unsupported source mode: " + source);
+                }
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            close();
+            throw e;
+        }
+        subscribers = subscriberList.toArray(new CounterSnapshotSubscriber[0]);
+        localSources = localSourceList.toArray(new Aether[0]);
+    }
+
+    @Override
+    public int doWork()
+    {
+        int workCount = 0;
+        for (final CounterSnapshotSubscriber subscriber : subscribers)
+        {
+            workCount += subscriber.doWork();
+        }
+        for (final Aether aether : localSources)
+        {
+            workCount += aether.doWork();
+        }
+        return workCount;
+    }
+
+    // the shared embedded media driver, launched on first use
+    String aeronDirectoryName()
+    {
+        return mediaDriver().aeronDirectoryName();
+    }
+
+    @Override
+    public void close()
+    {
+        // subscribers must be closed before the driver they are connected to
+        resources.forEach(CloseHelper::quietClose);
+        CloseHelper.quietClose(mediaDriver);
+    }
+
+    private MediaDriver mediaDriver()
+    {
+        if (mediaDriver == null)
+        {
+            mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+                .threadingMode(ThreadingMode.SHARED)
+                .sharedIdleStrategy(new SleepingMillisIdleStrategy(1L)));
+        }
+        return mediaDriver;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.journal;
+
+/**
+ * Layout of a snapshot journal: a header followed by length-prefixed records. Labels and channels are written
+ * once, as definitions, and referred to by id in the snapshots that follow.
+ *
+ * <pre>
+ * header      MAGIC int, VERSION int
+ * record      length int (including this field), type int, body
+ *
+ * LABEL / CHANNEL body
+ *   id          int
+ *   value       UTF-8 bytes to the end of the record
+ *
+ * SNAPSHOT body
+ *   timestamp           long
+ *   labelId             int
+ *   publisherCount      int
+ *   subscriberCount     int
+ *   hasSystemCounters   int, 0 or 1
+ *   systemCounters      SYSTEM_COUNTER_COUNT longs, if present
+ *   publishers          channelId int, streamId int, sessionId int, PUBLISHER_COUNTER_COUNT longs
+ *   subscribers         channelId int, streamId int, sessionId int, receiverPosition long,
+ *                       receiverHighWaterMark long, positionCount int, (registrationId long, position long)...
+ * </pre>
+ * A positionCount of -1 records a subscriber whose positions were not reported.
+ * A trailing record shorter than its length was still being written and is ignored.
+ */
+public final class JournalLayout
+{
+    public static final int MAGIC = 0x4145_4A4E;
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 2 * Integer.BYTES;
+
+    public static final int LABEL = 1;
+    public static final int CHANNEL = 2;
+    public static final int SNAPSHOT = 3;
+
+    public static final int LENGTH_OFFSET = 0;
+    public static final int TYPE_OFFSET = 4;
+    public static final int BODY_OFFSET = 8;
+
+    public static final int PUBLISHER_COUNTER_COUNT = 5;
+    public static final int SYSTEM_COUNTER_COUNT = 6;
+
+    private JournalLayout()
+    {
+    }
+}
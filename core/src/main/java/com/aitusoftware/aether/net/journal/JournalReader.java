@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.journal;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.agrona.CloseHelper;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.LangUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.aitusoftware.aether.net.journal.JournalLayout.BODY_OFFSET;
+import static com.aitusoftware.aether.net.journal.JournalLayout.LENGTH_OFFSET;
+import static com.aitusoftware.aether.net.journal.JournalLayout.TYPE_OFFSET;
+
+/**
+ * Reads the snapshots of a {@link JournalWriter} journal in order. Counter sets are decoded into reused holders,
+ * so a snapshot is only valid until the next call to {@link #next()}.
+ */
+public final class JournalReader implements AutoCloseable
+{
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+    private final List<String> labels = new ArrayList<>();
+    private final List<String> channels = new ArrayList<>();
+    private final List<PublisherCounterSet> publishers = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+    private final List<MutablePublisherCounterSet> publisherPool = new ArrayList<>();
+    private final List<MutableSubscriberCounterSet> subscriberPool = new ArrayList<>();
+    private final MutableSystemCounters systemCounters = new MutableSystemCounters();
+    private final FileChannel fileChannel;
+    private long filePosition;
+    private int position;
+    private long timestamp;
+    private String label;
+    private boolean hasSystemCounters;
+
+    public JournalReader(final File file)
+    {
+        fileChannel = open(file);
+        if (!read(JournalLayout.HEADER_LENGTH) ||
+            buffer.getInt(0) != JournalLayout.MAGIC || buffer.getInt(Integer.BYTES) != JournalLayout.VERSION)
+        {
+            CloseHelper.quietClose(fileChannel);
+            throw new IllegalArgumentException("Not a snapshot journal: " + file);
+        }
+        filePosition = JournalLayout.HEADER_LENGTH;
+    }
+
+    /**
+     * Advances to the next snapshot, applying any definitions recorded before it.
+     *
+     * @return false at the end of the journal
+     */
+    public boolean next()
+    {
+        while (read(Integer.BYTES))
+        {
+            final int length = buffer.getInt(LENGTH_OFFSET);
+            if (length < BODY_OFFSET || !read(length))
+            {
+                // incomplete trailing record
+                return false;
+            }
+            filePosition += length;
+            position = BODY_OFFSET;
+            switch (buffer.getInt(TYPE_OFFSET))
+            {
+                case JournalLayout.LABEL:
+                    define(labels, length);
+                    break;
+                case JournalLayout.CHANNEL:
+                    define(channels, length);
+                    break;
+                case JournalLayout.SNAPSHOT:
+                    decodeSnapshot();
+                    return true;
+                default:
+                    throw new IllegalStateException("Unknown journal record type: " + buffer.getInt(TYPE_OFFSET));
+            }
+        }
+        return false;
+    }
+
+    public long timestamp()
+    {
+        return timestamp;
+    }
+
+    public void deliver(final CounterSnapshotListener listener)
+    {
+        listener.onSnapshot(label, timestamp, publishers, subscribers, hasSystemCounters ? systemCounters : null);
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.close(fileChannel);
+    }
+
+    private void define(final List<String> values, final int length)
+    {
+        final int id = getInt();
+        if (id != values.size())
+        {
+            throw new IllegalStateException("Out of order journal definition: " + id);
+        }
+        values.add(buffer.getStringWithoutLengthUtf8(position, length - position));
+    }
+
+    private void decodeSnapshot()
+    {
+        timestamp = getLong();
+        label = labels.get(getInt());
+        final int publisherCount = getInt();
+        final int subscriberCount = getInt();
+        hasSystemCounters = getInt() != 0;
+        if (hasSystemCounters)
+        {
+            systemCounters.set(getLong(), getLong(), getLong(), getLong(), getLong(), getLong());
+        }
+        publishers.clear();
+        for (int i = 0; i < publisherCount; i++)
+        {
+            if (i == publisherPool.size())
+            {
+                publisherPool.add(new MutablePublisherCounterSet());
+            }
+            publishers.add(publisherPool.get(i).set(
+                channels.get(getInt()), getInt(), getInt(), getLong(), getLong(), getLong(), getLong(), getLong()));
+        }
+        subscribers.clear();
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            if (i == subscriberPool.size())
+            {
+                subscriberPool.add(new MutableSubscriberCounterSet());
+            }
+            final MutableSubscriberCounterSet counters = subscriberPool.get(i).set(
+                channels.get(getInt()), getInt(), getInt(), getLong(), getLong());
+            subscribers.add(counters);
+            final int positionCount = getInt();
+            if (positionCount < 0)
+            {
+                counters.withoutPositions();
+                continue;
+            }
+            final Map<Long, Long> subscriberPositions = counters.subscriberPositions();
+            for (int j = 0; j < positionCount; j++)
+            {
+                subscriberPositions.put(getLong(), getLong());
+            }
+        }
+    }
+
+    private int getInt()
+    {
+        final int value = buffer.getInt(position);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    private long getLong()
+    {
+        final long value = buffer.getLong(position);
+        position += Long.BYTES;
+        return value;
+    }
+
+    // reads length bytes from the current file position into the start of the buffer
+    private boolean read(final int length)
+    {
+        buffer.checkLimit(length);
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        byteBuffer.limit(length).position(0);
+        try
+        {
+            while (byteBuffer.hasRemaining())
+            {
+                if (fileChannel.read(byteBuffer, filePosition + byteBuffer.position()) < 0)
+                {
+                    return false;
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+        finally
+        {
+            byteBuffer.clear();
+        }
+        return true;
+    }
+
+    private static FileChannel open(final File file)
+    {
+        try
+        {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.journal;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.util.ReportedSessions;
+import org.agrona.CloseHelper;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.LangUtil;
+import org.agrona.collections.Object2IntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.aitusoftware.aether.net.journal.JournalLayout.BODY_OFFSET;
+import static com.aitusoftware.aether.net.journal.JournalLayout.LENGTH_OFFSET;
+import static com.aitusoftware.aether.net.journal.JournalLayout.TYPE_OFFSET;
+
+/**
+ * Records every received snapshot to a journal for later replay. An existing journal at the same path is
+ * replaced. Each snapshot, with any definitions it needs, is written in a single call.
+ */
+public final class JournalWriter implements CounterSnapshotListener, AutoCloseable
+{
+    private final Object2IntHashMap<String> labelIds = new Object2IntHashMap<>(-1);
+    private final Object2IntHashMap<String> channelIds = new Object2IntHashMap<>(-1);
+    private final Map<String, ReportedChannels> reportedChannels = new HashMap<>();
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+    private final FileChannel fileChannel;
+    private int position;
+
+    public JournalWriter(final File file)
+    {
+        fileChannel = open(file);
+        buffer.putInt(0, JournalLayout.MAGIC);
+        buffer.putInt(Integer.BYTES, JournalLayout.VERSION);
+        write(JournalLayout.HEADER_LENGTH);
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        position = 0;
+        final int labelId = define(labelIds, JournalLayout.LABEL, label);
+        final ReportedChannels reported = reportedChannels.computeIfAbsent(label, ignored -> new ReportedChannels());
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet counters = publisherCounters.get(i);
+            defineChannel(reported.publishers, i, counters.channel(), counters.streamId(), counters.sessionId());
+        }
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet counters = subscriberCounters.get(i);
+            defineChannel(reported.subscribers, i, counters.channel(), counters.streamId(), counters.sessionId());
+        }
+        reported.publishers.truncate(publisherCounters.size());
+        reported.subscribers.truncate(subscriberCounters.size());
+
+        final int recordOffset = position;
+        position += BODY_OFFSET;
+        putLong(timestamp);
+        putInt(labelId);
+        putInt(publisherCounters.size());
+        putInt(subscriberCounters.size());
+        putInt(systemCounters == null ? 0 : 1);
+        if (systemCounters != null)
+        {
+            putLong(systemCounters.bytesSent());
+            putLong(systemCounters.bytesReceived());
+            putLong(systemCounters.naksSent());
+            putLong(systemCounters.naksReceived());
+            putLong(systemCounters.errors());
+            putLong(systemCounters.clientTimeouts());
+        }
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet counters = publisherCounters.get(i);
+            putInt(reported.publishers.id(i));
+            putInt(counters.streamId());
+            putInt(counters.sessionId());
+            putLong(counters.publisherPosition());
+            putLong(counters.publisherLimit());
+            putLong(counters.senderPosition());
+            putLong(counters.senderLimit());
+            putLong(counters.backPressureEvents());
+        }
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet counters = subscriberCounters.get(i);
+            putInt(reported.subscribers.id(i));
+            putInt(counters.streamId());
+            putInt(counters.sessionId());
+            putLong(counters.receiverPosition());
+            putLong(counters.receiverHighWaterMark());
+            final Map<Long, Long> subscriberPositions = counters.subscriberPositions();
+            if (subscriberPositions == null)
+            {
+                putInt(-1);
+                continue;
+            }
+            putInt(subscriberPositions.size());
+            for (final Map.Entry<Long, Long> entry : subscriberPositions.entrySet())
+            {
+                putLong(entry.getKey());
+                putLong(entry.getValue());
+            }
+        }
+        endRecord(recordOffset, JournalLayout.SNAPSHOT);
+
+        write(position);
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.close(fileChannel);
+    }
+
+    // the channel is only converted to a String when a different session is reported at the position
+    private void defineChannel(
+        final ReportedSessions reported, final int index, final CharSequence channel, final int streamId,
+        final int sessionId)
+    {
+        if (reported.id(index, channel, streamId, sessionId) == ReportedSessions.UNKNOWN_ID)
+        {
+            final int channelId = define(channelIds, JournalLayout.CHANNEL, channel.toString());
+            reported.set(index, channel, streamId, sessionId, channelId);
+        }
+    }
+
+    private int define(final Object2IntHashMap<String> ids, final int type, final String value)
+    {
+        int id = ids.getValue(value);
+        if (id == ids.missingValue())
+        {
+            id = ids.size();
+            ids.put(value, id);
+            final int recordOffset = position;
+            position += BODY_OFFSET;
+            putInt(id);
+            position += buffer.putStringWithoutLengthUtf8(position, value);
+            endRecord(recordOffset, type);
+        }
+        return id;
+    }
+
+    private void endRecord(final int recordOffset, final int type)
+    {
+        buffer.putInt(recordOffset + LENGTH_OFFSET, position - recordOffset);
+        buffer.putInt(recordOffset + TYPE_OFFSET, type);
+    }
+
+    private void putInt(final int value)
+    {
+        buffer.putInt(position, value);
+        position += Integer.BYTES;
+    }
+
+    private void putLong(final long value)
+    {
+        buffer.putLong(position, value);
+        position += Long.BYTES;
+    }
+
+    private void write(final int length)
+    {
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        byteBuffer.limit(length).position(0);
+        try
+        {
+            while (byteBuffer.hasRemaining())
+            {
+                fileChannel.write(byteBuffer);
+            }
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+        }
+        finally
+        {
+            byteBuffer.clear();
+        }
+    }
+
+    private static FileChannel open(final File file)
+    {
+        try
+        {
+            return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        catch (final IOException e)
+        {
+            LangUtil.rethrowUnchecked(e);
+            return null;
+        }
+    }
+
+    private static final class ReportedChannels
+    {
+        private final ReportedSessions publishers = new ReportedSessions();
+        private final ReportedSessions subscribers = new ReportedSessions();
+    }
+}
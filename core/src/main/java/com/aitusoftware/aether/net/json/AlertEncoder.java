@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.aitusoftware.aether.net.alert.Alert;
+
+import java.nio.charset.StandardCharsets;
+
+public final class AlertEncoder
+{
+    private static final byte[] HEADER = "{\"type\":\"alert\",".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RULE = JsonWriter.fieldName("rule");
+    private static final byte[] STATE = JsonWriter.fieldName("state");
+    private static final byte[] KEY = JsonWriter.fieldName("key");
+    private static final byte[] VALUE = JsonWriter.fieldName("value");
+    private static final byte[] THRESHOLD = JsonWriter.fieldName("threshold");
+    private static final byte[] TIMESTAMP = JsonWriter.fieldName("timestamp");
+
+    private AlertEncoder()
+    {
+    }
+
+    public static JsonWriter encode(final Alert alert, final JsonWriter writer)
+    {
+        return writer.append(HEADER)
+            .field(RULE, JsonStrings.escape(alert.rule())).append(',')
+            .field(STATE, JsonStrings.escape(alert.state().name())).append(',')
+            .field(KEY, JsonStrings.escape(alert.key())).append(',')
+            .field(VALUE, alert.value()).append(',')
+            .field(THRESHOLD, alert.threshold()).append(',')
+            .field(TIMESTAMP, alert.timestamp()).append('}');
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.aitusoftware.aether.net.history.HistoryConsumer;
+import com.aitusoftware.aether.net.history.HistoryLayout;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders history query results as {@code {"key":"...","records":[{"timestamp":...,"type":"publisher",...}]}}.
+ */
+public final class HistoryEncoder implements HistoryConsumer
+{
+    private static final byte[] KEY = JsonWriter.fieldName("key");
+    private static final byte[] RECORDS = JsonWriter.fieldName("records");
+    private static final byte[] TIMESTAMP = JsonWriter.fieldName("timestamp");
+    private static final byte[] TYPE = JsonWriter.fieldName("type");
+    private static final byte[][] PUBLISHER_COLUMNS = columnNames(HistoryLayout.PUBLISHER);
+    private static final byte[][] SUBSCRIBER_COLUMNS = columnNames(HistoryLayout.SUBSCRIBER);
+    private static final byte[] PUBLISHER_TYPE = HistoryLayout.typeName(HistoryLayout.PUBLISHER)
+        .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUBSCRIBER_TYPE = HistoryLayout.typeName(HistoryLayout.SUBSCRIBER)
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private final JsonWriter writer;
+    private boolean firstRecord;
+
+    public HistoryEncoder(final JsonWriter writer)
+    {
+        this.writer = writer;
+    }
+
+    public void begin(final String key)
+    {
+        writer.reset().append('{')
+            .field(KEY, JsonStrings.escape(key)).append(',')
+            .append(RECORDS).append('[');
+        firstRecord = true;
+    }
+
+    @Override
+    public void onRecord(final long timestamp, final int type, final long[] columns)
+    {
+        final boolean publisher = type == HistoryLayout.PUBLISHER;
+        final byte[][] columnNames = publisher ? PUBLISHER_COLUMNS : SUBSCRIBER_COLUMNS;
+        writer.separator(firstRecord).append('{')
+            .field(TIMESTAMP, timestamp).append(',')
+            .field(TYPE, publisher ? PUBLISHER_TYPE : SUBSCRIBER_TYPE);
+        for (int i = 0; i < columns.length; i++)
+        {
+            writer.append(',').field(columnNames[i], columns[i]);
+        }
+        writer.append('}');
+        firstRecord = false;
+    }
+
+    public JsonWriter end()
+    {
+        return writer.append(']').append('}');
+    }
+
+    private static byte[][] columnNames(final int type)
+    {
+        final byte[][] names = new byte[HistoryLayout.COLUMN_COUNT][];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = JsonWriter.fieldName(HistoryLayout.columnName(type, i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import java.nio.charset.StandardCharsets;
+
+public final class JsonStrings
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonStrings()
+    {
+    }
+
+    // matches the default (HTML-safe) escaping performed by Gson, without the enclosing quotes
+    public static byte[] escape(final String value)
+    {
+        final StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\b':
+                    escaped.append("\\b");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\f':
+                    escaped.append("\\f");
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    appendUnicodeEscape(escaped, c);
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        appendUnicodeEscape(escaped, c);
+                    }
+                    else
+                    {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendUnicodeEscape(final StringBuilder escaped, final char c)
+    {
+        escaped.append("\\u")
+            .append(HEX[(c >> 12) & 0xF])
+            .append(HEX[(c >> 8) & 0xF])
+            .append(HEX[(c >> 4) & 0xF])
+            .append(HEX[c & 0xF]);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+public final class JsonWriter
+{
+    private final ExpandableDirectByteBuffer buffer;
+    private int position;
+
+    public JsonWriter()
+    {
+        this(64 * 1024);
+    }
+
+    public JsonWriter(final int initialCapacity)
+    {
+        buffer = new ExpandableDirectByteBuffer(initialCapacity);
+    }
+
+    public static byte[] fieldName(final String name)
+    {
+        return ("\"" + name + "\":").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public JsonWriter reset()
+    {
+        position = 0;
+        return this;
+    }
+
+    public JsonWriter append(final char asciiChar)
+    {
+        buffer.putByte(position++, (byte)asciiChar);
+        return this;
+    }
+
+    public JsonWriter append(final byte[] encoded)
+    {
+        buffer.putBytes(position, encoded);
+        position += encoded.length;
+        return this;
+    }
+
+    public JsonWriter append(final long value)
+    {
+        position += buffer.putLongAscii(position, value);
+        return this;
+    }
+
+    public JsonWriter append(final DirectBuffer source, final int offset, final int length)
+    {
+        buffer.putBytes(position, source, offset, length);
+        position += length;
+        return this;
+    }
+
+    public JsonWriter quoted(final byte[] escaped)
+    {
+        return append('"').append(escaped).append('"');
+    }
+
+    public JsonWriter field(final byte[] fieldName, final long value)
+    {
+        return append(fieldName).append(value);
+    }
+
+    public JsonWriter field(final byte[] fieldName, final byte[] escapedValue)
+    {
+        return append(fieldName).quoted(escapedValue);
+    }
+
+    public JsonWriter separator(final boolean first)
+    {
+        if (!first)
+        {
+            append(',');
+        }
+        return this;
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int length()
+    {
+        return position;
+    }
+
+    public byte[] toByteArray()
+    {
+        final byte[] copy = new byte[position];
+        buffer.getBytes(0, copy);
+        return copy;
+    }
+
+    public String asString()
+    {
+        return buffer.getStringWithoutLengthUtf8(0, position);
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.aitusoftware.aether.net.model.ModelFilter;
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.RateKeys;
+import com.aitusoftware.aether.net.model.RateSet;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ModelEncoder
+{
+    private static final byte[] STREAMS = JsonWriter.fieldName("streams");
+    private static final byte[] SYSTEM_COUNTERS = JsonWriter.fieldName("systemCounters");
+    private static final byte[] PUBLISHERS = JsonWriter.fieldName("publishers");
+    private static final byte[] SUBSCRIBERS = JsonWriter.fieldName("subscribers");
+    private static final byte[] SNAPSHOT_HEADER = "{\"type\":\"snapshot\",\"sequence\":".getBytes();
+    private static final byte[] DELTA_HEADER = "{\"type\":\"delta\",\"sequence\":".getBytes();
+    private static final byte[] DATA = JsonWriter.fieldName("data");
+    private static final byte[] LABEL = JsonWriter.fieldName("label");
+    private static final byte[] CHANNEL = JsonWriter.fieldName("channel");
+    private static final byte[] STREAM_ID = JsonWriter.fieldName("streamId");
+    private static final byte[] SESSION_ID = JsonWriter.fieldName("sessionId");
+    private static final byte[] PUBLISHER_POSITION = JsonWriter.fieldName("publisherPosition");
+    private static final byte[] PUBLISHER_LIMIT = JsonWriter.fieldName("publisherLimit");
+    private static final byte[] SENDER_POSITION = JsonWriter.fieldName("senderPosition");
+    private static final byte[] SENDER_LIMIT = JsonWriter.fieldName("senderLimit");
+    private static final byte[] BACK_PRESSURE_EVENTS = JsonWriter.fieldName("backPressureEvents");
+    private static final byte[] SEND_BACKLOG = JsonWriter.fieldName("sendBacklog");
+    private static final byte[] REMAINING_BUFFER = JsonWriter.fieldName("remainingBuffer");
+    private static final byte[] PUBLISH_RATES = JsonWriter.fieldName("publishRates");
+    private static final byte[] SUBSCRIBER_POSITIONS = JsonWriter.fieldName("subscriberPositions");
+    private static final byte[] SUBSCRIBER_LAGS = JsonWriter.fieldName("subscriberLags");
+    private static final byte[] LAG_TREND = JsonWriter.fieldName("lagTrend");
+    private static final byte[] CATCH_UP_MS = JsonWriter.fieldName("catchUpMs");
+    private static final byte[] REMAINING_BUFFER_TREND = JsonWriter.fieldName("remainingBufferTrend");
+    private static final byte[] TIME_TO_BACK_PRESSURE_MS = JsonWriter.fieldName("timeToBackPressureMs");
+    private static final byte[] RECEIVER_POSITION = JsonWriter.fieldName("receiverPosition");
+    private static final byte[] RECEIVER_HIGH_WATER_MARK = JsonWriter.fieldName("receiverHighWaterMark");
+    private static final byte[] RECEIVER_RATES = JsonWriter.fieldName("receiverRates");
+    private static final byte[] SUBSCRIBER_RATES = JsonWriter.fieldName("subscriberRates");
+    private static final byte[] RATES = JsonWriter.fieldName("rates");
+    private static final byte[] PAGE = JsonWriter.fieldName("page");
+    private static final byte[] OFFSET = JsonWriter.fieldName("offset");
+    private static final byte[] LIMIT = JsonWriter.fieldName("limit");
+    private static final byte[] TOTAL = JsonWriter.fieldName("total");
+    private static final byte[][] SYSTEM_COUNTER_FIELDS = {
+        JsonWriter.fieldName("bytesSent"),
+        JsonWriter.fieldName("bytesReceived"),
+        JsonWriter.fieldName("naksSent"),
+        JsonWriter.fieldName("naksReceived"),
+        JsonWriter.fieldName("errors"),
+        JsonWriter.fieldName("clientTimeouts")
+    };
+
+    private final SnapshotModel model;
+    private byte[][] escapedStrings = new byte[16][];
+    private int escapedStringsVersion;
+    private byte[][] escapedRateNames = new byte[0][];
+    private int[] rateWriteOrder = new int[0];
+
+    public ModelEncoder(final SnapshotModel model)
+    {
+        this.model = model;
+    }
+
+    public void encodeModel(final JsonWriter writer)
+    {
+        encodeModel(writer, ModelFilter.ALL);
+    }
+
+    /**
+     * Encodes the subtree selected by the filter in the same document structure as the full model. Paged filters
+     * additionally report the total number of matching publishers.
+     *
+     * @param writer destination of the document
+     * @param filter selection of publishers and system counters
+     */
+    public void encodeModel(final JsonWriter writer, final ModelFilter filter)
+    {
+        writer.append('{').append(STREAMS).append('{');
+        int channelId = -1;
+        int streamId = 0;
+        int matchCount = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            if (!filter.isAll() && (!filter.matches(row) || !filter.inPage(matchCount++)))
+            {
+                continue;
+            }
+            if (channelId != row.streamChannelId())
+            {
+                if (channelId != -1)
+                {
+                    writer.append(']').append('}').append(',');
+                }
+                channelId = row.streamChannelId();
+                streamId = row.streamStreamId();
+                writer.quoted(escaped(channelId)).append(':').append('{')
+                    .append('"').append(streamId).append('"').append(':').append('[');
+            }
+            else if (streamId != row.streamStreamId())
+            {
+                streamId = row.streamStreamId();
+                writer.append(']').append(',').append('"').append(streamId).append('"').append(':').append('[');
+            }
+            else
+            {
+                writer.append(',');
+            }
+            encodePublisher(writer, row);
+        }
+        if (channelId != -1)
+        {
+            writer.append(']').append('}');
+        }
+        writer.append('}').append(',').append(SYSTEM_COUNTERS).append('{');
+        boolean first = true;
+        for (int i = 0; i < model.systemCountersCount(); i++)
+        {
+            final SystemCountersRow row = model.systemCounters(i);
+            if (!filter.matches(row))
+            {
+                continue;
+            }
+            writer.separator(first).quoted(escaped(row.labelId())).append(':').append('{');
+            first = false;
+            for (int j = 0; j < SYSTEM_COUNTER_FIELDS.length; j++)
+            {
+                writer.separator(j == 0).field(SYSTEM_COUNTER_FIELDS[j], row.value(j));
+            }
+            encodeSystemCounterRates(writer.append(','), row).append('}');
+        }
+        writer.append('}');
+        if (filter.isPaged())
+        {
+            writer.append(',').append(PAGE).append('{')
+                .field(OFFSET, filter.offset()).append(',')
+                .field(LIMIT, filter.limit()).append(',')
+                .field(TOTAL, matchCount).append('}');
+        }
+        writer.append('}');
+    }
+
+    public void encodeSnapshot(final JsonWriter writer, final long sequence, final JsonWriter encodedModel)
+    {
+        writer.append(SNAPSHOT_HEADER).append(sequence).append(',').append(DATA)
+            .append(encodedModel.buffer(), 0, encodedModel.length()).append('}');
+    }
+
+    // only valid when the last SnapshotModel.update reported an unchanged topology
+    public void encodeDelta(final JsonWriter writer, final long sequence)
+    {
+        encodeDelta(writer, sequence, ModelFilter.ALL);
+    }
+
+    public void encodeDelta(final JsonWriter writer, final long sequence, final ModelFilter filter)
+    {
+        writer.append(DELTA_HEADER).append(sequence).append(',').append(PUBLISHERS).append('{');
+        boolean first = true;
+        int matchCount = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            if (filter.isAll() || (filter.matches(row) && filter.inPage(matchCount++)))
+            {
+                first = encodePublisherDelta(writer, row, model.previousPublisher(i), first);
+            }
+        }
+        writer.append('}').append(',').append(SUBSCRIBERS).append('{');
+        first = true;
+        matchCount = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            if (!filter.isAll() && (!filter.matches(row) || !filter.inPage(matchCount++)))
+            {
+                continue;
+            }
+            final PublisherRow previousRow = model.previousPublisher(i);
+            for (int j = 0; j < row.subscriberCount(); j++)
+            {
+                first = encodeSubscriberDelta(writer, row.subscriber(j), previousRow.subscriber(j), first);
+            }
+        }
+        writer.append('}').append(',').append(SYSTEM_COUNTERS).append('{');
+        first = true;
+        for (int i = 0; i < model.systemCountersCount(); i++)
+        {
+            final SystemCountersRow row = model.systemCounters(i);
+            if (!filter.matches(row))
+            {
+                continue;
+            }
+            final SystemCountersRow previousRow = model.previousSystemCounters(i);
+            final boolean ratesChanged = !row.ratesEqual(previousRow);
+            boolean firstField = true;
+            for (int j = 0; j < SYSTEM_COUNTER_FIELDS.length; j++)
+            {
+                if (row.value(j) != previousRow.value(j))
+                {
+                    if (firstField)
+                    {
+                        writer.separator(first).quoted(escaped(row.labelId())).append(':').append('{');
+                        first = false;
+                    }
+                    writer.separator(firstField).field(SYSTEM_COUNTER_FIELDS[j], row.value(j));
+                    firstField = false;
+                }
+            }
+            if (ratesChanged)
+            {
+                if (firstField)
+                {
+                    writer.separator(first).quoted(escaped(row.labelId())).append(':').append('{');
+                    first = false;
+                }
+                encodeSystemCounterRates(writer.separator(firstField), row);
+                firstField = false;
+            }
+            if (!firstField)
+            {
+                writer.append('}');
+            }
+        }
+        writer.append('}').append('}');
+    }
+
+    private void encodePublisher(final JsonWriter writer, final PublisherRow row)
+    {
+        writer.append('{')
+            .field(LABEL, escaped(row.labelId())).append(',')
+            .field(CHANNEL, escaped(row.channelId())).append(',')
+            .field(STREAM_ID, row.streamId()).append(',')
+            .field(SESSION_ID, row.sessionId()).append(',')
+            .field(PUBLISHER_POSITION, row.publisherPosition()).append(',')
+            .field(PUBLISHER_LIMIT, row.publisherLimit()).append(',')
+            .field(SENDER_POSITION, row.senderPosition()).append(',')
+            .field(SENDER_LIMIT, row.senderLimit()).append(',')
+            .field(BACK_PRESSURE_EVENTS, row.backPressureEvents()).append(',')
+            .field(SEND_BACKLOG, row.sendBacklog()).append(',')
+            .field(REMAINING_BUFFER, row.remainingBuffer()).append(',')
+            .field(REMAINING_BUFFER_TREND, row.remainingBufferTrend()).append(',')
+            .field(TIME_TO_BACK_PRESSURE_MS, row.timeToBackPressureMs()).append(',')
+            .append(SUBSCRIBERS).append('[');
+        for (int i = 0; i < row.subscriberCount(); i++)
+        {
+            final SubscriberRow subscriber = row.subscriber(i);
+            writer.separator(i == 0).append('{')
+                .field(LABEL, escaped(subscriber.labelId())).append(',')
+                .field(CHANNEL, escaped(subscriber.channelId())).append(',')
+                .field(STREAM_ID, subscriber.streamId()).append(',')
+                .field(SESSION_ID, subscriber.sessionId()).append(',');
+            if (subscriber.hasPositions())
+            {
+                encodeSubscriberPositions(writer, subscriber).append(',');
+                encodeSubscriberLags(writer, subscriber).append(',');
+            }
+            writer
+                .field(RECEIVER_POSITION, subscriber.receiverPosition()).append(',')
+                .field(RECEIVER_HIGH_WATER_MARK, subscriber.receiverHighWaterMark()).append(',')
+                .field(LAG_TREND, subscriber.lagTrend()).append(',')
+                .field(CATCH_UP_MS, subscriber.catchUpMs()).append(',');
+            encodeRates(writer, RECEIVER_RATES, subscriber.receiverRates()).append(',');
+            encodeRates(writer, SUBSCRIBER_RATES, subscriber.subscriberRates()).append('}');
+        }
+        writer.append(']').append(',');
+        encodeRates(writer, PUBLISH_RATES, row.publishRates()).append('}');
+    }
+
+    private JsonWriter encodeRates(final JsonWriter writer, final byte[] fieldName, final RateSet rates)
+    {
+        writer.append(fieldName).append('{');
+        boolean first = true;
+        for (final int rateIndex : rateWriteOrder())
+        {
+            if (rates.has(rateIndex))
+            {
+                writer.separator(first).quoted(escapedRateNames[rateIndex]).append(':').append(rates.get(rateIndex));
+                first = false;
+            }
+        }
+        return writer.append('}');
+    }
+
+    private JsonWriter encodeSystemCounterRates(final JsonWriter writer, final SystemCountersRow row)
+    {
+        writer.append(RATES).append('{');
+        boolean first = true;
+        for (int i = 0; i < SYSTEM_COUNTER_FIELDS.length; i++)
+        {
+            if (!row.rates(i).isEmpty())
+            {
+                encodeRates(writer.separator(first), SYSTEM_COUNTER_FIELDS[i], row.rates(i));
+                first = false;
+            }
+        }
+        return writer.append('}');
+    }
+
+    private static JsonWriter encodeSubscriberPositions(final JsonWriter writer, final SubscriberRow subscriber)
+    {
+        writer.append(SUBSCRIBER_POSITIONS).append('{');
+        for (int i = 0; i < subscriber.positionCount(); i++)
+        {
+            writer.separator(i == 0).append('"').append(subscriber.registrationId(i)).append('"').append(':')
+                .append(subscriber.position(i));
+        }
+        return writer.append('}');
+    }
+
+    private static JsonWriter encodeSubscriberLags(final JsonWriter writer, final SubscriberRow subscriber)
+    {
+        writer.append(SUBSCRIBER_LAGS).append('{');
+        for (int i = 0; i < subscriber.positionCount(); i++)
+        {
+            writer.separator(i == 0).append('"').append(subscriber.registrationId(i)).append('"').append(':')
+                .append(subscriber.lag(i));
+        }
+        return writer.append('}');
+    }
+
+    private boolean encodePublisherDelta(
+        final JsonWriter writer, final PublisherRow row, final PublisherRow previousRow, final boolean first)
+    {
+        final boolean ratesChanged = !row.ratesEqual(previousRow);
+        if (row.publisherPosition() == previousRow.publisherPosition() &&
+            row.publisherLimit() == previousRow.publisherLimit() &&
+            row.senderPosition() == previousRow.senderPosition() &&
+            row.senderLimit() == previousRow.senderLimit() &&
+            row.backPressureEvents() == previousRow.backPressureEvents() &&
+            row.remainingBufferTrend() == previousRow.remainingBufferTrend() &&
+            row.timeToBackPressureMs() == previousRow.timeToBackPressureMs() &&
+            !ratesChanged)
+        {
+            return first;
+        }
+        writeKey(writer.separator(first), row.labelId(), row.channelId(), row.streamId(), row.sessionId());
+        boolean firstField = writeIfChanged(
+            writer, PUBLISHER_POSITION, row.publisherPosition(), previousRow.publisherPosition(), true);
+        firstField = writeIfChanged(
+            writer, PUBLISHER_LIMIT, row.publisherLimit(), previousRow.publisherLimit(), firstField);
+        firstField = writeIfChanged(
+            writer, SENDER_POSITION, row.senderPosition(), previousRow.senderPosition(), firstField);
+        firstField = writeIfChanged(
+            writer, SENDER_LIMIT, row.senderLimit(), previousRow.senderLimit(), firstField);
+        firstField = writeIfChanged(
+            writer, BACK_PRESSURE_EVENTS, row.backPressureEvents(), previousRow.backPressureEvents(), firstField);
+        firstField = writeIfChanged(
+            writer, SEND_BACKLOG, row.sendBacklog(), previousRow.sendBacklog(), firstField);
+        firstField = writeIfChanged(
+            writer, REMAINING_BUFFER, row.remainingBuffer(), previousRow.remainingBuffer(), firstField);
+        firstField = writeIfChanged(
+            writer, REMAINING_BUFFER_TREND, row.remainingBufferTrend(), previousRow.remainingBufferTrend(), firstField);
+        firstField = writeIfChanged(
+            writer, TIME_TO_BACK_PRESSURE_MS, row.timeToBackPressureMs(), previousRow.timeToBackPressureMs(),
+            firstField);
+        if (ratesChanged)
+        {
+            encodeRates(writer.separator(firstField), PUBLISH_RATES, row.publishRates());
+        }
+        writer.append('}');
+
+        return false;
+    }
+
+    private boolean encodeSubscriberDelta(
+        final JsonWriter writer, final SubscriberRow row, final SubscriberRow previousRow, final boolean first)
+    {
+        final boolean positionsChanged = !row.positionsEqual(previousRow);
+        final boolean lagsChanged = !row.lagsEqual(previousRow);
+        final boolean ratesChanged = !row.ratesEqual(previousRow);
+        if (row.receiverPosition() == previousRow.receiverPosition() &&
+            row.receiverHighWaterMark() == previousRow.receiverHighWaterMark() &&
+            row.lagTrend() == previousRow.lagTrend() &&
+            row.catchUpMs() == previousRow.catchUpMs() &&
+            !positionsChanged && !lagsChanged && !ratesChanged)
+        {
+            return first;
+        }
+        writeKey(writer.separator(first), row.labelId(), row.channelId(), row.streamId(), row.sessionId());
+        boolean firstField = true;
+        if (positionsChanged)
+        {
+            encodeSubscriberPositions(writer, row);
+            firstField = false;
+        }
+        if (lagsChanged && row.hasPositions())
+        {
+            encodeSubscriberLags(writer.separator(firstField), row);
+            firstField = false;
+        }
+        firstField = writeIfChanged(
+            writer, RECEIVER_POSITION, row.receiverPosition(), previousRow.receiverPosition(), firstField);
+        firstField = writeIfChanged(
+            writer, RECEIVER_HIGH_WATER_MARK, row.receiverHighWaterMark(), previousRow.receiverHighWaterMark(),
+            firstField);
+        firstField = writeIfChanged(writer, LAG_TREND, row.lagTrend(), previousRow.lagTrend(), firstField);
+        firstField = writeIfChanged(writer, CATCH_UP_MS, row.catchUpMs(), previousRow.catchUpMs(), firstField);
+        if (ratesChanged)
+        {
+            encodeRates(writer.separator(firstField), RECEIVER_RATES, row.receiverRates()).append(',');
+            encodeRates(writer, SUBSCRIBER_RATES, row.subscriberRates());
+        }
+        writer.append('}');
+
+        return false;
+    }
+
+    private void writeKey(
+        final JsonWriter writer, final int labelId, final int channelId, final int streamId, final int sessionId)
+    {
+        writer.append('"').append(escaped(labelId)).append('/').append(escaped(channelId))
+            .append('/').append(streamId).append('/').append(sessionId).append('"').append(':').append('{');
+    }
+
+    private static boolean writeIfChanged(
+        final JsonWriter writer, final byte[] fieldName, final long value, final long previousValue,
+        final boolean first)
+    {
+        if (value == previousValue)
+        {
+            return first;
+        }
+        writer.separator(first).field(fieldName, value);
+        return false;
+    }
+
+    private byte[] escaped(final int stringId)
+    {
+        if (escapedStringsVersion != model.stringTableVersion())
+        {
+            Arrays.fill(escapedStrings, null);
+            escapedStringsVersion = model.stringTableVersion();
+        }
+        if (stringId >= escapedStrings.length)
+        {
+            escapedStrings = Arrays.copyOf(escapedStrings, Math.max(stringId + 1, escapedStrings.length * 2));
+        }
+        byte[] escaped = escapedStrings[stringId];
+        if (escaped == null)
+        {
+            escaped = JsonStrings.escape(model.string(stringId));
+            escapedStrings[stringId] = escaped;
+        }
+        return escaped;
+    }
+
+    // rates were previously collected in a HashMap, so keep its iteration order for compatibility
+    private int[] rateWriteOrder()
+    {
+        final RateKeys rateKeys = model.rateKeys();
+        if (rateWriteOrder.length != rateKeys.count())
+        {
+            final Map<String, Integer> indexByName = new HashMap<>();
+            escapedRateNames = new byte[rateKeys.count()][];
+            for (int i = 0; i < rateKeys.count(); i++)
+            {
+                indexByName.put(rateKeys.name(i), i);
+                escapedRateNames[i] = JsonStrings.escape(rateKeys.name(i));
+            }
+            final int[] order = new int[rateKeys.count()];
+            int position = 0;
+            for (final Integer index : indexByName.values())
+            {
+                order[position++] = index;
+            }
+            rateWriteOrder = order;
+        }
+        return rateWriteOrder;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.TopMetric;
+import com.aitusoftware.aether.net.model.TopSessions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes the {@code /top} views: for each metric, the worst sessions in rank order, for example
+ * <pre>
+ * {"type":"top","sequence":42,"lag":[{"label":"server","channel":"aeron:ipc","streamId":10,"sessionId":7,
+ *  "value":1048576}],...}
+ * </pre>
+ */
+public final class TopEncoder
+{
+    private static final byte[] HEADER = "{\"type\":\"top\",".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEQUENCE = JsonWriter.fieldName("sequence");
+    private static final byte[] LABEL = JsonWriter.fieldName("label");
+    private static final byte[] CHANNEL = JsonWriter.fieldName("channel");
+    private static final byte[] STREAM_ID = JsonWriter.fieldName("streamId");
+    private static final byte[] SESSION_ID = JsonWriter.fieldName("sessionId");
+    private static final byte[] VALUE = JsonWriter.fieldName("value");
+    private static final TopMetric[] METRICS = TopMetric.values();
+    private static final byte[][] METRIC_FIELDS = new byte[METRICS.length][];
+
+    static
+    {
+        for (final TopMetric metric : METRICS)
+        {
+            METRIC_FIELDS[metric.ordinal()] = JsonWriter.fieldName(metric.fieldName());
+        }
+    }
+
+    private final SnapshotModel model;
+    private final TopSessions topSessions;
+    private byte[][] escapedStrings = new byte[16][];
+    private int escapedStringsVersion;
+
+    public TopEncoder(final SnapshotModel model, final TopSessions topSessions)
+    {
+        this.model = model;
+        this.topSessions = topSessions;
+    }
+
+    // every ranking, as pushed to dashboard clients and served from /top
+    public JsonWriter encode(final JsonWriter writer, final long sequence)
+    {
+        writer.append(HEADER).field(SEQUENCE, sequence);
+        for (final TopMetric metric : METRICS)
+        {
+            encodeRanking(writer.append(','), metric);
+        }
+        return writer.append('}');
+    }
+
+    // a single ranking, as served from /top/<metric>
+    public JsonWriter encode(final JsonWriter writer, final long sequence, final TopMetric metric)
+    {
+        writer.append(HEADER).field(SEQUENCE, sequence).append(',');
+        return encodeRanking(writer, metric).append('}');
+    }
+
+    private JsonWriter encodeRanking(final JsonWriter writer, final TopMetric metric)
+    {
+        writer.append(METRIC_FIELDS[metric.ordinal()]).append('[');
+        for (int rank = 0; rank < topSessions.count(metric); rank++)
+        {
+            writer.separator(rank == 0).append('{');
+            final SubscriberRow subscriber = topSessions.subscriber(model, metric, rank);
+            if (subscriber != null)
+            {
+                writeKey(writer, subscriber.labelId(), subscriber.channelId(), subscriber.streamId(),
+                    subscriber.sessionId());
+            }
+            else
+            {
+                final PublisherRow publisher = topSessions.publisher(model, metric, rank);
+                writeKey(writer, publisher.labelId(), publisher.channelId(), publisher.streamId(),
+                    publisher.sessionId());
+            }
+            writer.field(VALUE, topSessions.value(metric, rank)).append('}');
+        }
+        return writer.append(']');
+    }
+
+    private void writeKey(
+        final JsonWriter writer, final int labelId, final int channelId, final int streamId, final int sessionId)
+    {
+        writer
+            .field(LABEL, escaped(labelId)).append(',')
+            .field(CHANNEL, escaped(channelId)).append(',')
+            .field(STREAM_ID, streamId).append(',')
+            .field(SESSION_ID, sessionId).append(',');
+    }
+
+    private byte[] escaped(final int stringId)
+    {
+        if (escapedStringsVersion != model.stringTableVersion())
+        {
+            Arrays.fill(escapedStrings, null);
+            escapedStringsVersion = model.stringTableVersion();
+        }
+        if (stringId >= escapedStrings.length)
+        {
+            escapedStrings = Arrays.copyOf(escapedStrings, Math.max(stringId + 1, escapedStrings.length * 2));
+        }
+        byte[] escaped = escapedStrings[stringId];
+        if (escaped == null)
+        {
+            escaped = JsonStrings.escape(model.string(stringId));
+            escapedStrings[stringId] = escaped;
+        }
+        return escaped;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.metrics;
+
+import com.aitusoftware.aether.net.binary.BinarySnapshotDecoder;
+import com.aitusoftware.aether.net.json.JsonWriter;
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+import com.aitusoftware.aether.net.util.ConflatingListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Renders a binary snapshot in the OpenMetrics text format. Label values are escaped once per string id,
+ * relying on ids being stable for the lifetime of the server, so encoding does not allocate per series.
+ */
+public final class OpenMetricsEncoder
+{
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final int PUBLISHER_POSITION = 0;
+    private static final int PUBLISHER_LIMIT = 1;
+    private static final int SENDER_POSITION = 2;
+    private static final int SENDER_LIMIT = 3;
+    private static final int SEND_BACKLOG = 4;
+    private static final int REMAINING_BUFFER = 5;
+    private static final int BACK_PRESSURE_EVENTS = 6;
+    private static final String[][] PUBLISHER_FAMILIES =
+    {
+        {"aether_publisher_position_bytes", "gauge", "Publisher position"},
+        {"aether_publisher_limit_bytes", "gauge", "Publisher limit"},
+        {"aether_sender_position_bytes", "gauge", "Sender position"},
+        {"aether_sender_limit_bytes", "gauge", "Sender limit"},
+        {"aether_send_backlog_bytes", "gauge", "Bytes published but not yet sent"},
+        {"aether_remaining_buffer_bytes", "gauge", "Bytes that can be published before back pressure"},
+        {"aether_back_pressure_events", "counter", "Back pressure events"},
+    };
+
+    private static final int RECEIVER_POSITION = 0;
+    private static final int RECEIVER_HIGH_WATER_MARK = 1;
+    private static final int SUBSCRIBER_POSITION = 2;
+    private static final int SUBSCRIBER_LAG = 3;
+    private static final String[][] SUBSCRIBER_FAMILIES =
+    {
+        {"aether_receiver_position_bytes", "gauge", "Receiver position"},
+        {"aether_receiver_high_water_mark_bytes", "gauge", "Receiver high water mark"},
+        {"aether_subscriber_position_bytes", "gauge", "Subscriber position"},
+        {"aether_subscriber_lag_bytes", "gauge", "Bytes available to a subscriber but not yet consumed"},
+    };
+
+    private static final String[][] SYSTEM_COUNTER_FAMILIES =
+    {
+        {"aether_bytes_sent", "counter", "Bytes sent by the media driver"},
+        {"aether_bytes_received", "counter", "Bytes received by the media driver"},
+        {"aether_naks_sent", "counter", "NAKs sent"},
+        {"aether_naks_received", "counter", "NAKs received"},
+        {"aether_errors", "counter", "Media driver errors"},
+        {"aether_client_timeouts", "counter", "Client timeouts"},
+    };
+
+    private static final int SNAPSHOTS_RECEIVED = 0;
+    private static final int SNAPSHOTS_CONFLATED = 1;
+    private static final int SNAPSHOTS_APPLIED = 2;
+    private static final String[][] INGEST_FAMILIES =
+    {
+        {"aether_net_snapshots_received", "counter", "Snapshots received from collectors"},
+        {"aether_net_snapshots_conflated", "counter", "Snapshots replaced by a later snapshot before being applied"},
+        {"aether_net_snapshots_applied", "counter", "Snapshots applied to the model"},
+    };
+
+    private static final byte[] LABEL = "{label=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHANNEL = "\",channel=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STREAM_ID = "\",stream_id=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SESSION_ID = "\",session_id=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REGISTRATION_ID = "\",registration_id=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LABELS_END = "\"} ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOTAL = "_total".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] publisherNames = names(PUBLISHER_FAMILIES);
+    private final byte[][] publisherHeaders = headers(PUBLISHER_FAMILIES);
+    private final byte[][] subscriberNames = names(SUBSCRIBER_FAMILIES);
+    private final byte[][] subscriberHeaders = headers(SUBSCRIBER_FAMILIES);
+    private final byte[][] systemCounterNames = names(SYSTEM_COUNTER_FAMILIES);
+    private final byte[][] systemCounterHeaders = headers(SYSTEM_COUNTER_FAMILIES);
+    private final byte[][] ingestNames = names(INGEST_FAMILIES);
+    private final byte[][] ingestHeaders = headers(INGEST_FAMILIES);
+    private byte[][] escapedStrings = new byte[16][];
+    private boolean[] ipcChannels = new boolean[16];
+    private int escapedStringsVersion;
+
+    public JsonWriter encode(final BinarySnapshotDecoder decoder, final JsonWriter writer)
+    {
+        return encode(decoder, null, writer);
+    }
+
+    public JsonWriter encode(
+        final BinarySnapshotDecoder decoder, final ConflatingListener ingest, final JsonWriter writer)
+    {
+        writer.reset();
+        for (int family = 0; family < PUBLISHER_FAMILIES.length; family++)
+        {
+            writer.append(publisherHeaders[family]);
+            for (int i = 0; i < decoder.publisherCount(); i++)
+            {
+                final BinarySnapshotDecoder.PublisherDecoder publisher = decoder.publisher(i);
+                writer.append(publisherNames[family]);
+                if (family == BACK_PRESSURE_EVENTS)
+                {
+                    writer.append(TOTAL);
+                }
+                sessionLabels(writer, decoder,
+                    publisher.labelId(), publisher.channelId(), publisher.streamId(), publisher.sessionId());
+                writer.append(LABELS_END).append(publisherValue(publisher, family)).append('\n');
+            }
+        }
+
+        for (int family = 0; family < SUBSCRIBER_FAMILIES.length; family++)
+        {
+            writer.append(subscriberHeaders[family]);
+            for (int i = 0; i < decoder.publisherCount(); i++)
+            {
+                final BinarySnapshotDecoder.PublisherDecoder publisher = decoder.publisher(i);
+                final int firstSubscriber = publisher.firstSubscriber();
+                for (int j = 0; j < publisher.subscriberCount(); j++)
+                {
+                    encodeSubscriber(writer, decoder, publisher, decoder.subscriber(firstSubscriber + j), family);
+                }
+            }
+        }
+
+        for (int counter = 0; counter < SystemCountersRow.COUNTER_COUNT; counter++)
+        {
+            writer.append(systemCounterHeaders[counter]);
+            for (int i = 0; i < decoder.systemCountersCount(); i++)
+            {
+                final BinarySnapshotDecoder.SystemCountersDecoder systemCounters = decoder.systemCounters(i);
+                writer.append(systemCounterNames[counter]).append(TOTAL)
+                    .append(LABEL).append(escaped(decoder, systemCounters.labelId())).append(LABELS_END)
+                    .append(systemCounters.value(counter)).append('\n');
+            }
+        }
+
+        if (ingest != null)
+        {
+            encodeIngest(writer, SNAPSHOTS_RECEIVED, ingest.receivedCount());
+            encodeIngest(writer, SNAPSHOTS_CONFLATED, ingest.conflatedCount());
+            encodeIngest(writer, SNAPSHOTS_APPLIED, ingest.appliedCount());
+        }
+
+        return writer.append(EOF);
+    }
+
+    private void encodeIngest(final JsonWriter writer, final int family, final long value)
+    {
+        writer.append(ingestHeaders[family]).append(ingestNames[family]).append(TOTAL).append(' ')
+            .append(value).append('\n');
+    }
+
+    private void encodeSubscriber(
+        final JsonWriter writer,
+        final BinarySnapshotDecoder decoder,
+        final BinarySnapshotDecoder.PublisherDecoder publisher,
+        final BinarySnapshotDecoder.SubscriberDecoder subscriber,
+        final int family)
+    {
+        if (family == RECEIVER_POSITION || family == RECEIVER_HIGH_WATER_MARK)
+        {
+            writer.append(subscriberNames[family]);
+            sessionLabels(writer, decoder,
+                subscriber.labelId(), subscriber.channelId(), subscriber.streamId(), subscriber.sessionId());
+            writer.append(LABELS_END).append(family == RECEIVER_POSITION ?
+                subscriber.receiverPosition() : subscriber.receiverHighWaterMark()).append('\n');
+            return;
+        }
+        final long availablePosition = isIpc(decoder, subscriber.channelId()) ?
+            publisher.publisherPosition() : subscriber.receiverPosition();
+        final int firstPosition = subscriber.firstPosition();
+        for (int k = 0; k < subscriber.positionCount(); k++)
+        {
+            final long position = decoder.position(firstPosition + k);
+            writer.append(subscriberNames[family]);
+            sessionLabels(writer, decoder,
+                subscriber.labelId(), subscriber.channelId(), subscriber.streamId(), subscriber.sessionId());
+            writer.append(REGISTRATION_ID).append(decoder.registrationId(firstPosition + k)).append(LABELS_END)
+                .append(family == SUBSCRIBER_POSITION ? position : Math.max(0, availablePosition - position))
+                .append('\n');
+        }
+    }
+
+    private void sessionLabels(
+        final JsonWriter writer,
+        final BinarySnapshotDecoder decoder,
+        final int labelId,
+        final int channelId,
+        final int streamId,
+        final int sessionId)
+    {
+        writer.append(LABEL).append(escaped(decoder, labelId))
+            .append(CHANNEL).append(escaped(decoder, channelId))
+            .append(STREAM_ID).append(streamId)
+            .append(SESSION_ID).append(sessionId);
+    }
+
+    private static long publisherValue(final BinarySnapshotDecoder.PublisherDecoder publisher, final int family)
+    {
+        switch (family)
+        {
+            case PUBLISHER_POSITION:
+                return publisher.publisherPosition();
+            case PUBLISHER_LIMIT:
+                return publisher.publisherLimit();
+            case SENDER_POSITION:
+                return publisher.senderPosition();
+            case SENDER_LIMIT:
+                return publisher.senderLimit();
+            case SEND_BACKLOG:
+                return publisher.sendBacklog();
+            case REMAINING_BUFFER:
+                return publisher.remainingBuffer();
+            default:
+                return publisher.backPressureEvents();
+        }
+    }
+
+    private boolean isIpc(final BinarySnapshotDecoder decoder, final int channelId)
+    {
+        escaped(decoder, channelId);
+        return ipcChannels[channelId];
+    }
+
+    private byte[] escaped(final BinarySnapshotDecoder decoder, final int stringId)
+    {
+        if (escapedStringsVersion != decoder.stringTableVersion())
+        {
+            Arrays.fill(escapedStrings, null);
+            escapedStringsVersion = decoder.stringTableVersion();
+        }
+        if (stringId >= escapedStrings.length)
+        {
+            final int length = Math.max(stringId + 1, escapedStrings.length * 2);
+            escapedStrings = Arrays.copyOf(escapedStrings, length);
+            ipcChannels = Arrays.copyOf(ipcChannels, length);
+        }
+        byte[] escaped = escapedStrings[stringId];
+        if (escaped == null)
+        {
+            final String value = decoder.string(stringId);
+            escaped = escapeLabelValue(value);
+            escapedStrings[stringId] = escaped;
+            ipcChannels[stringId] = value.startsWith("aeron:ipc");
+        }
+        return escaped;
+    }
+
+    static byte[] escapeLabelValue(final String value)
+    {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            switch (c)
+            {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] names(final String[][] families)
+    {
+        final byte[][] names = new byte[families.length][];
+        for (int i = 0; i < families.length; i++)
+        {
+            names[i] = families[i][0].getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    private static byte[][] headers(final String[][] families)
+    {
+        final byte[][] headers = new byte[families.length][];
+        for (int i = 0; i < families.length; i++)
+        {
+            final String[] family = families[i];
+            final String unit = family[0].endsWith("_bytes") ? "# UNIT " + family[0] + " bytes\n" : "";
+            headers[i] = ("# TYPE " + family[0] + " " + family[1] + "\n" + unit +
+                "# HELP " + family[0] + " " + family[2] + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        return headers;
+    }
+}
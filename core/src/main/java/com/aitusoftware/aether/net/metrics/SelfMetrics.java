@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.metrics;
+
+import com.aitusoftware.aether.net.json.JsonWriter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * aether-net's own hot-path latencies, frame sizes and client counts. Values are recorded into HdrHistogram
+ * recorders and striped counters, which any thread may write to without locking or allocating; {@link #sample}
+ * swaps out the interval histograms, recycling those from the previous sample, and renders them as JSON.
+ */
+public final class SelfMetrics
+{
+    public static final int POLL_NS = 0;
+    public static final int APPLY_NS = 1;
+    public static final int ENCODE_NS = 2;
+    public static final int WEBSOCKET_WRITE_NS = 3;
+    public static final int JSON_SNAPSHOT_BYTES = 4;
+    public static final int JSON_DELTA_BYTES = 5;
+    public static final int BINARY_FRAME_BYTES = 6;
+    private static final String[] NAMES =
+    {
+        "pollNs", "applyNs", "encodeNs", "webSocketWriteNs", "jsonSnapshotBytes", "jsonDeltaBytes", "binaryFrameBytes"
+    };
+    private static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final byte[] HEADER = "{\"type\":\"selfMetrics\",".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INTERVAL_MS = JsonWriter.fieldName("intervalMs");
+    private static final byte[] COUNT = JsonWriter.fieldName("count");
+    private static final byte[] P50 = JsonWriter.fieldName("p50");
+    private static final byte[] P90 = JsonWriter.fieldName("p90");
+    private static final byte[] P99 = JsonWriter.fieldName("p99");
+    private static final byte[] P999 = JsonWriter.fieldName("p999");
+    private static final byte[] MAX = JsonWriter.fieldName("max");
+    private static final byte[] CLIENTS = JsonWriter.fieldName("clients");
+    private static final byte[] BYTES_SENT_PER_SECOND = JsonWriter.fieldName("bytesSentPerSecond");
+    private static final byte[] FRAMES_SENT = JsonWriter.fieldName("framesSent");
+    private static final byte[] FRAMES_DROPPED = JsonWriter.fieldName("framesDropped");
+
+    private final Recorder[] recorders = new Recorder[NAMES.length];
+    private final Histogram[] intervals = new Histogram[NAMES.length];
+    private final byte[][] fieldNames = new byte[NAMES.length][];
+    private final AtomicInteger clientCount = new AtomicInteger();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final JsonWriter writer = new JsonWriter(1024);
+    private volatile String latestSample;
+    private long lastSampleMs;
+    private long lastBytesSent;
+
+    public SelfMetrics(final long nowMs)
+    {
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            recorders[i] = new Recorder(HIGHEST_TRACKABLE_VALUE, SIGNIFICANT_DIGITS);
+            fieldNames[i] = JsonWriter.fieldName(NAMES[i]);
+        }
+        lastSampleMs = nowMs;
+        sample(nowMs);
+    }
+
+    public void record(final int metric, final long value)
+    {
+        // the recorder rejects values beyond its range rather than resizing
+        recorders[metric].recordValue(Math.min(value, HIGHEST_TRACKABLE_VALUE));
+    }
+
+    public void onClientConnected()
+    {
+        clientCount.incrementAndGet();
+    }
+
+    public void onClientDisconnected()
+    {
+        clientCount.decrementAndGet();
+    }
+
+    public void onFrameSent(final int length)
+    {
+        framesSent.increment();
+        bytesSent.add(length);
+    }
+
+    // a frame skipped because the client's write queue was full
+    public void onFrameDropped()
+    {
+        framesDropped.increment();
+    }
+
+    /**
+     * Renders the values recorded since the previous sample, which then becomes available from
+     * {@link #latestSample()}. Only one thread may sample.
+     *
+     * @param nowMs current time
+     */
+    public void sample(final long nowMs)
+    {
+        final long intervalMs = Math.max(1, nowMs - lastSampleMs);
+        final long totalBytesSent = bytesSent.sum();
+        writer.reset().append(HEADER).field(INTERVAL_MS, intervalMs);
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            final Histogram interval = recorders[i].getIntervalHistogram(intervals[i]);
+            intervals[i] = interval;
+            writer.append(',').append(fieldNames[i]).append('{')
+                .field(COUNT, interval.getTotalCount()).append(',')
+                .field(P50, interval.getValueAtPercentile(50)).append(',')
+                .field(P90, interval.getValueAtPercentile(90)).append(',')
+                .field(P99, interval.getValueAtPercentile(99)).append(',')
+                .field(P999, interval.getValueAtPercentile(99.9)).append(',')
+                .field(MAX, interval.getMaxValue()).append('}');
+        }
+        writer.append(',').field(CLIENTS, clientCount.get())
+            .append(',').field(BYTES_SENT_PER_SECOND, (totalBytesSent - lastBytesSent) * 1000 / intervalMs)
+            .append(',').field(FRAMES_SENT, framesSent.sum())
+            .append(',').field(FRAMES_DROPPED, framesDropped.sum())
+            .append('}');
+        lastSampleMs = nowMs;
+        lastBytesSent = totalBytesSent;
+        latestSample = writer.asString();
+    }
+
+    // a new instance for each sample, so readers can detect a change by identity
+    public String latestSample()
+    {
+        return latestSample;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Object2IntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Counters for every monitored session, held in a flat off-heap array of longs and updated in place as snapshots
+ * arrive.
+ * <p>
+ * Sessions are interned to an int id by their {@link SessionKeys} key when they first appear, so the steady state
+ * neither allocates nor boxes; the model's session objects are views over their records.
+ */
+final class CounterStore
+{
+    private static final int MIN_RECORD_LONGS = 8;
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+    private final Object2IntHashMap<String> idsByKey = new Object2IntHashMap<>(-1);
+    private final IntArrayList freeIds = new IntArrayList();
+    // free records, by log2 of their length in longs
+    private final IntArrayList[] freeRecords = new IntArrayList[Integer.SIZE];
+    private String[] keys = new String[16];
+    private int[] recordOffsets = new int[16];
+    private int[] recordLengths = new int[16];
+    private int[] references = new int[16];
+    private int idCount;
+    private int limit;
+
+    /**
+     * Returns the id of a session, allocating a record for it if it is not already held.
+     *
+     * @param key     role and label/channel/streamId/sessionId of the session
+     * @param longs   number of counters in the record
+     * @return the session id
+     */
+    int acquire(final String key, final int longs)
+    {
+        int id = idsByKey.getValue(key);
+        if (id == idsByKey.missingValue())
+        {
+            id = freeIds.isEmpty() ? newId() : freeIds.popInt();
+            keys[id] = key;
+            recordLengths[id] = capacity(longs);
+            recordOffsets[id] = allocate(recordLengths[id]);
+            buffer.setMemory(recordOffsets[id], recordLengths[id] * Long.BYTES, (byte)0);
+            idsByKey.put(key, id);
+        }
+        else
+        {
+            ensureCapacity(id, longs);
+        }
+        references[id]++;
+        return id;
+    }
+
+    // the record is freed once every session object holding it has moved on
+    void release(final int id)
+    {
+        if (--references[id] == 0)
+        {
+            idsByKey.removeKey(keys[id]);
+            keys[id] = null;
+            freeRecords(recordLengths[id]).pushInt(recordOffsets[id]);
+            freeIds.pushInt(id);
+        }
+    }
+
+    // retains existing counters when the record has to move
+    void ensureCapacity(final int id, final int longs)
+    {
+        if (longs > recordLengths[id])
+        {
+            final int length = capacity(longs);
+            final int offset = allocate(length);
+            buffer.putBytes(offset, buffer, recordOffsets[id], recordLengths[id] * Long.BYTES);
+            buffer.setMemory(
+                offset + recordLengths[id] * Long.BYTES, (length - recordLengths[id]) * Long.BYTES, (byte)0);
+            freeRecords(recordLengths[id]).pushInt(recordOffsets[id]);
+            recordOffsets[id] = offset;
+            recordLengths[id] = length;
+        }
+    }
+
+    long get(final int id, final int field)
+    {
+        return buffer.getLong(recordOffsets[id] + field * Long.BYTES);
+    }
+
+    void set(final int id, final int field, final long value)
+    {
+        buffer.putLong(recordOffsets[id] + field * Long.BYTES, value);
+    }
+
+    // off-heap bytes in use or held for reuse
+    int allocatedBytes()
+    {
+        return limit;
+    }
+
+    private int newId()
+    {
+        if (idCount == keys.length)
+        {
+            final int length = idCount * 2;
+            keys = Arrays.copyOf(keys, length);
+            recordOffsets = Arrays.copyOf(recordOffsets, length);
+            recordLengths = Arrays.copyOf(recordLengths, length);
+            references = Arrays.copyOf(references, length);
+        }
+        return idCount++;
+    }
+
+    private int allocate(final int longs)
+    {
+        final IntArrayList free = freeRecords(longs);
+        if (!free.isEmpty())
+        {
+            return free.popInt();
+        }
+        final int offset = limit;
+        limit += longs * Long.BYTES;
+        buffer.checkLimit(limit);
+        return offset;
+    }
+
+    private IntArrayList freeRecords(final int longs)
+    {
+        final int sizeClass = Integer.numberOfTrailingZeros(longs);
+        if (freeRecords[sizeClass] == null)
+        {
+            freeRecords[sizeClass] = new IntArrayList();
+        }
+        return freeRecords[sizeClass];
+    }
+
+    private static int capacity(final int longs)
+    {
+        return Math.max(MIN_RECORD_LONGS, Integer.highestOneBit(longs - 1) << 1);
+    }
+}
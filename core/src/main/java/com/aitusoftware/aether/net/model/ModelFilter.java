@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Selects a subtree of the model: publishers (with all of their subscribers) matching a context label, channel
+ * prefix, stream id and session id, optionally paged. System counters are only filtered by label.
+ * <p>
+ * Filters are values, so that clients viewing the same subtree share a single encoding.
+ */
+public final class ModelFilter
+{
+    public static final ModelFilter ALL = new ModelFilter(null, null, null, null, 0, 0);
+    public static final String LABEL_PARAMETER = "label";
+    public static final String CHANNEL_PARAMETER = "channel";
+    public static final String STREAM_ID_PARAMETER = "streamId";
+    public static final String SESSION_ID_PARAMETER = "sessionId";
+    public static final String OFFSET_PARAMETER = "offset";
+    public static final String LIMIT_PARAMETER = "limit";
+
+    private final String label;
+    private final String channelPrefix;
+    private final Integer streamId;
+    private final Integer sessionId;
+    private final int offset;
+    private final int limit;
+
+    /**
+     * @param label         context label of the publisher or one of its subscribers, or null for any
+     * @param channelPrefix prefix of the publisher channel, or null for any
+     * @param streamId      stream id, or null for any
+     * @param sessionId     session id, or null for any
+     * @param offset        number of matching publishers to skip
+     * @param limit         maximum number of publishers to select, or 0 for no limit
+     */
+    public ModelFilter(
+        final String label,
+        final String channelPrefix,
+        final Integer streamId,
+        final Integer sessionId,
+        final int offset,
+        final int limit)
+    {
+        if (offset < 0 || limit < 0)
+        {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        this.label = label;
+        this.channelPrefix = channelPrefix;
+        this.streamId = streamId;
+        this.sessionId = sessionId;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads a filter from named parameters, such as HTTP query parameters or the fields of a subscribe message.
+     *
+     * @param parameters parameter value by name, or null if absent
+     * @return the filter, which is {@link #ALL} if no parameters are present
+     * @throws IllegalArgumentException if a numeric parameter is invalid
+     */
+    public static ModelFilter parse(final Function<String, String> parameters)
+    {
+        final ModelFilter filter = new ModelFilter(
+            parameters.apply(LABEL_PARAMETER),
+            parameters.apply(CHANNEL_PARAMETER),
+            optionalInt(parameters.apply(STREAM_ID_PARAMETER)),
+            optionalInt(parameters.apply(SESSION_ID_PARAMETER)),
+            intOrZero(parameters.apply(OFFSET_PARAMETER)),
+            intOrZero(parameters.apply(LIMIT_PARAMETER)));
+
+        return ALL.equals(filter) ? ALL : filter;
+    }
+
+    public boolean isAll()
+    {
+        return this == ALL;
+    }
+
+    public boolean isPaged()
+    {
+        return offset != 0 || limit != 0;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public boolean matches(final PublisherRow row)
+    {
+        if (channelPrefix != null && !row.channel().startsWith(channelPrefix))
+        {
+            return false;
+        }
+        if (streamId != null && streamId != row.streamId())
+        {
+            return false;
+        }
+        if (sessionId != null && sessionId != row.sessionId())
+        {
+            return false;
+        }
+        if (label == null || label.equals(row.label()))
+        {
+            return true;
+        }
+        for (int i = 0; i < row.subscriberCount(); i++)
+        {
+            if (label.equals(row.subscriber(i).label()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // index is the position of the row among those that match
+    public boolean inPage(final int index)
+    {
+        return index >= offset && (limit == 0 || index < offset + limit);
+    }
+
+    public boolean matches(final SystemCountersRow row)
+    {
+        return label == null || label.equals(row.label());
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final ModelFilter that = (ModelFilter)o;
+        return offset == that.offset &&
+            limit == that.limit &&
+            Objects.equals(label, that.label) &&
+            Objects.equals(channelPrefix, that.channelPrefix) &&
+            Objects.equals(streamId, that.streamId) &&
+            Objects.equals(sessionId, that.sessionId);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(label, channelPrefix, streamId, sessionId, offset, limit);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ModelFilter{" +
+            "label='" + label + '\'' +
+            ", channelPrefix='" + channelPrefix + '\'' +
+            ", streamId=" + streamId +
+            ", sessionId=" + sessionId +
+            ", offset=" + offset +
+            ", limit=" + limit +
+            '}';
+    }
+
+    private static Integer optionalInt(final String value)
+    {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static int intOrZero(final String value)
+    {
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import java.util.Arrays;
+import java.util.List;
+
+final class ProcessSessions
+{
+    private final String label;
+    private final CounterStore store;
+    private final int systemCountersId;
+    private PublisherSession[] publishers = new PublisherSession[0];
+    private SubscriberSession[] subscribers = new SubscriberSession[0];
+    private int publisherCount;
+    private int subscriberCount;
+    private boolean hasSystemCounters;
+    private long timestamp;
+    // assigned by SnapshotModel when the topology is rebuilt
+    private int labelId;
+    private int rateSeries = -1;
+
+    ProcessSessions(final String label, final CounterStore store)
+    {
+        this.label = label;
+        this.store = store;
+        systemCountersId = store.acquire(SessionKeys.systemCountersKey(label), SystemCountersRow.COUNTER_COUNT);
+    }
+
+    /**
+     * Refreshes session counters in place.
+     *
+     * @return true if the same sessions were reported, in the same order, as in the previous snapshot
+     */
+    boolean update(
+        final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters counters)
+    {
+        this.timestamp = timestamp;
+        boolean sameSessions = publisherCounters.size() == publisherCount &&
+            subscriberCounters.size() == subscriberCount && (counters != null) == hasSystemCounters;
+
+        for (int i = publisherCounters.size(); i < publisherCount; i++)
+        {
+            publishers[i].release();
+        }
+        publisherCount = publisherCounters.size();
+        if (publisherCount > publishers.length)
+        {
+            publishers = Arrays.copyOf(publishers, publisherCount);
+        }
+        for (int i = 0; i < publisherCount; i++)
+        {
+            final PublisherCounterSet counterSet = publisherCounters.get(i);
+            if (publishers[i] == null)
+            {
+                publishers[i] = new PublisherSession(label, store);
+                publishers[i].identify(counterSet);
+                sameSessions = false;
+            }
+            else if (!publishers[i].sameSession(counterSet))
+            {
+                publishers[i].identify(counterSet);
+                sameSessions = false;
+            }
+            publishers[i].update(counterSet, timestamp);
+        }
+
+        for (int i = subscriberCounters.size(); i < subscriberCount; i++)
+        {
+            subscribers[i].release();
+        }
+        subscriberCount = subscriberCounters.size();
+        if (subscriberCount > subscribers.length)
+        {
+            subscribers = Arrays.copyOf(subscribers, subscriberCount);
+        }
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            final SubscriberCounterSet counterSet = subscriberCounters.get(i);
+            if (subscribers[i] == null)
+            {
+                subscribers[i] = new SubscriberSession(label, store);
+                subscribers[i].identify(counterSet);
+                sameSessions = false;
+            }
+            else if (!subscribers[i].sameSession(counterSet))
+            {
+                subscribers[i].identify(counterSet);
+                sameSessions = false;
+            }
+            subscribers[i].update(counterSet, timestamp);
+        }
+
+        hasSystemCounters = counters != null;
+        if (hasSystemCounters)
+        {
+            store.set(systemCountersId, SystemCountersRow.BYTES_SENT, counters.bytesSent());
+            store.set(systemCountersId, SystemCountersRow.BYTES_RECEIVED, counters.bytesReceived());
+            store.set(systemCountersId, SystemCountersRow.NAKS_SENT, counters.naksSent());
+            store.set(systemCountersId, SystemCountersRow.NAKS_RECEIVED, counters.naksReceived());
+            store.set(systemCountersId, SystemCountersRow.ERRORS, counters.errors());
+            store.set(systemCountersId, SystemCountersRow.CLIENT_TIMEOUTS, counters.clientTimeouts());
+        }
+
+        return sameSessions;
+    }
+
+    // once evicted from the topology index
+    void release()
+    {
+        for (int i = 0; i < publisherCount; i++)
+        {
+            publishers[i].release();
+        }
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            subscribers[i].release();
+        }
+        store.release(systemCountersId);
+    }
+
+    void labelId(final int labelId)
+    {
+        this.labelId = labelId;
+    }
+
+    void rateSeries(final int rateSeries)
+    {
+        this.rateSeries = rateSeries;
+    }
+
+    long timestamp()
+    {
+        return timestamp;
+    }
+
+    String label()
+    {
+        return label;
+    }
+
+    int labelId()
+    {
+        return labelId;
+    }
+
+    int rateSeries()
+    {
+        return rateSeries;
+    }
+
+    int publisherCount()
+    {
+        return publisherCount;
+    }
+
+    PublisherSession publisher(final int index)
+    {
+        return publishers[index];
+    }
+
+    int subscriberCount()
+    {
+        return subscriberCount;
+    }
+
+    SubscriberSession subscriber(final int index)
+    {
+        return subscribers[index];
+    }
+
+    boolean hasSystemCounters()
+    {
+        return hasSystemCounters;
+    }
+
+    long systemCounter(final int counter)
+    {
+        return store.get(systemCountersId, counter);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.net.rate.TrendTracker;
+
+import java.util.Arrays;
+
+public final class PublisherRow
+{
+    private final int rateCount;
+    private final RateSet publishRates;
+    private String streamChannel;
+    private int streamChannelId;
+    private int streamStreamId;
+    private String label;
+    private int labelId;
+    private String channel;
+    private int channelId;
+    private int streamId;
+    private int sessionId;
+    private long publisherPosition;
+    private long publisherLimit;
+    private long senderPosition;
+    private long senderLimit;
+    private long backPressureEvents;
+    private long timestamp;
+    private long remainingBufferTrend;
+    private long timeToBackPressureMs;
+    private SubscriberRow[] subscribers = new SubscriberRow[0];
+    private int rateSeries = -1;
+    private int subscriberCount;
+
+    PublisherRow(final int rateCount)
+    {
+        this.rateCount = rateCount;
+        publishRates = new RateSet(rateCount);
+    }
+
+    void set(final PublisherSession session)
+    {
+        streamChannel = session.channel();
+        streamChannelId = session.channelId();
+        streamStreamId = session.streamId();
+        label = session.label();
+        labelId = session.labelId();
+        channel = session.channel();
+        channelId = session.channelId();
+        streamId = session.streamId();
+        sessionId = session.sessionId();
+        publisherPosition = session.publisherPosition();
+        publisherLimit = session.publisherLimit();
+        senderPosition = session.senderPosition();
+        senderLimit = session.senderLimit();
+        backPressureEvents = session.backPressureEvents();
+        timestamp = session.timestamp();
+        remainingBufferTrend = 0;
+        timeToBackPressureMs = TrendTracker.NO_ESTIMATE;
+        rateSeries = session.rateSeries();
+        publishRates.clear();
+        subscriberCount = 0;
+    }
+
+    SubscriberRow addSubscriber(final SubscriberSession session)
+    {
+        if (subscriberCount == subscribers.length)
+        {
+            subscribers = Arrays.copyOf(subscribers, Math.max(4, subscribers.length * 2));
+        }
+        if (subscribers[subscriberCount] == null)
+        {
+            subscribers[subscriberCount] = new SubscriberRow(rateCount);
+        }
+        final SubscriberRow subscriber = subscribers[subscriberCount++];
+        subscriber.set(session);
+        subscriber.lags(isIpc() ? publisherPosition : subscriber.receiverPosition());
+        return subscriber;
+    }
+
+    public String streamChannel()
+    {
+        return streamChannel;
+    }
+
+    public int streamChannelId()
+    {
+        return streamChannelId;
+    }
+
+    public int streamStreamId()
+    {
+        return streamStreamId;
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    public int labelId()
+    {
+        return labelId;
+    }
+
+    public String channel()
+    {
+        return channel;
+    }
+
+    public int channelId()
+    {
+        return channelId;
+    }
+
+    public int streamId()
+    {
+        return streamId;
+    }
+
+    public int sessionId()
+    {
+        return sessionId;
+    }
+
+    public long publisherPosition()
+    {
+        return publisherPosition;
+    }
+
+    public long publisherLimit()
+    {
+        return publisherLimit;
+    }
+
+    public long senderPosition()
+    {
+        return senderPosition;
+    }
+
+    public long senderLimit()
+    {
+        return senderLimit;
+    }
+
+    public long backPressureEvents()
+    {
+        return backPressureEvents;
+    }
+
+    void remainingBufferTrend(final long trend)
+    {
+        remainingBufferTrend = trend == TrendTracker.NO_TREND ? 0 : trend;
+        timeToBackPressureMs = TrendTracker.timeToZeroMs(remainingBuffer(), trend);
+    }
+
+    public long timestamp()
+    {
+        return timestamp;
+    }
+
+    // smoothed bytes per second by which the remaining buffer is growing, or if negative shrinking
+    public long remainingBufferTrend()
+    {
+        return remainingBufferTrend;
+    }
+
+    // estimated time until the publisher is back-pressured, or TrendTracker.NO_ESTIMATE if the buffer is not shrinking
+    public long timeToBackPressureMs()
+    {
+        return timeToBackPressureMs;
+    }
+
+    public boolean isIpc()
+    {
+        return channel.startsWith("aeron:ipc");
+    }
+
+    public long remainingBuffer()
+    {
+        return publisherLimit - publisherPosition;
+    }
+
+    public long sendBacklog()
+    {
+        return Math.max(0, publisherPosition - senderPosition);
+    }
+
+    public RateSet publishRates()
+    {
+        return publishRates;
+    }
+
+    public boolean hasRate(final int index)
+    {
+        return publishRates.has(index);
+    }
+
+    public long rate(final int index)
+    {
+        return publishRates.get(index);
+    }
+
+    public boolean ratesEqual(final PublisherRow other)
+    {
+        return publishRates.valuesEqual(other.publishRates);
+    }
+
+    public int subscriberCount()
+    {
+        return subscriberCount;
+    }
+
+    public SubscriberRow subscriber(final int index)
+    {
+        return subscribers[index];
+    }
+
+    boolean sameTopology(final PublisherRow other)
+    {
+        if (compare(this, other) != 0 || subscriberCount != other.subscriberCount)
+        {
+            return false;
+        }
+        for (int i = 0; i < subscriberCount; i++)
+        {
+            if (SubscriberRow.compare(subscribers[i], other.subscribers[i]) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int compare(final PublisherRow a, final PublisherRow b)
+    {
+        int fieldDiff = a.streamChannel.compareTo(b.streamChannel);
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.streamStreamId, b.streamStreamId);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = a.channel.compareTo(b.channel);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = a.label.compareTo(b.label);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.streamId, b.streamId);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.sessionId, b.sessionId);
+        }
+        return fieldDiff;
+    }
+
+    // first series of this row in the RateTracker, or -1 if not yet tracked
+    public int rateSeries()
+    {
+        return rateSeries;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+
+final class PublisherSession
+{
+    private static final int PUBLISHER_POSITION = 0;
+    private static final int PUBLISHER_LIMIT = 1;
+    private static final int SENDER_POSITION = 2;
+    private static final int SENDER_LIMIT = 3;
+    private static final int BACK_PRESSURE_EVENTS = 4;
+    private static final int TIMESTAMP = 5;
+    private static final int COUNTER_COUNT = 6;
+    private final String label;
+    private final CounterStore store;
+    private String channel;
+    private int streamId;
+    private int sessionId;
+    private int storeId = -1;
+    // assigned by SnapshotModel when the topology is rebuilt
+    private int labelId;
+    private int channelId;
+    private int rateSeries = -1;
+
+    PublisherSession(final String label, final CounterStore store)
+    {
+        this.label = label;
+        this.store = store;
+    }
+
+    boolean sameSession(final PublisherCounterSet counterSet)
+    {
+        return storeId >= 0 && streamId == counterSet.streamId() && sessionId == counterSet.sessionId() &&
+            TopologyIndex.contentEquals(channel, counterSet.channel());
+    }
+
+    void identify(final PublisherCounterSet counterSet)
+    {
+        channel = counterSet.channel().toString();
+        streamId = counterSet.streamId();
+        sessionId = counterSet.sessionId();
+        rateSeries = -1;
+        final int previousStoreId = storeId;
+        storeId = store.acquire(SessionKeys.publisherKey(label, channel, streamId, sessionId), COUNTER_COUNT);
+        if (previousStoreId >= 0)
+        {
+            store.release(previousStoreId);
+        }
+    }
+
+    void update(final PublisherCounterSet counterSet, final long timestamp)
+    {
+        store.set(storeId, TIMESTAMP, timestamp);
+        store.set(storeId, PUBLISHER_POSITION, counterSet.publisherPosition());
+        store.set(storeId, PUBLISHER_LIMIT, counterSet.publisherLimit());
+        store.set(storeId, SENDER_POSITION, counterSet.senderPosition());
+        store.set(storeId, SENDER_LIMIT, counterSet.senderLimit());
+        store.set(storeId, BACK_PRESSURE_EVENTS, counterSet.backPressureEvents());
+    }
+
+    // when the process no longer reports the session
+    void release()
+    {
+        if (storeId >= 0)
+        {
+            store.release(storeId);
+            storeId = -1;
+        }
+    }
+
+    void ids(final int labelId, final int channelId)
+    {
+        this.labelId = labelId;
+        this.channelId = channelId;
+    }
+
+    void rateSeries(final int rateSeries)
+    {
+        this.rateSeries = rateSeries;
+    }
+
+    String label()
+    {
+        return label;
+    }
+
+    String channel()
+    {
+        return channel;
+    }
+
+    int streamId()
+    {
+        return streamId;
+    }
+
+    int sessionId()
+    {
+        return sessionId;
+    }
+
+    long publisherPosition()
+    {
+        return store.get(storeId, PUBLISHER_POSITION);
+    }
+
+    long publisherLimit()
+    {
+        return store.get(storeId, PUBLISHER_LIMIT);
+    }
+
+    long senderPosition()
+    {
+        return store.get(storeId, SENDER_POSITION);
+    }
+
+    long senderLimit()
+    {
+        return store.get(storeId, SENDER_LIMIT);
+    }
+
+    long backPressureEvents()
+    {
+        return store.get(storeId, BACK_PRESSURE_EVENTS);
+    }
+
+    // of the snapshot that last reported the counters
+    long timestamp()
+    {
+        return store.get(storeId, TIMESTAMP);
+    }
+
+    int labelId()
+    {
+        return labelId;
+    }
+
+    int channelId()
+    {
+        return channelId;
+    }
+
+    int rateSeries()
+    {
+        return rateSeries;
+    }
+
+    static int compare(final PublisherSession a, final PublisherSession b)
+    {
+        int fieldDiff = a.channel.compareTo(b.channel);
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.streamId, b.streamId);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = a.label.compareTo(b.label);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.sessionId, b.sessionId);
+        }
+        return fieldDiff;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import java.util.concurrent.TimeUnit;
+
+public final class RateKeys
+{
+    private static final int MAX_KEYS = Long.SIZE;
+    private final long[] durations = new long[MAX_KEYS];
+    private final TimeUnit[] units = new TimeUnit[MAX_KEYS];
+    private final String[] names = new String[MAX_KEYS];
+    private int count;
+
+    public int indexOf(final long duration, final TimeUnit unit)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (durations[i] == duration && units[i] == unit)
+            {
+                return i;
+            }
+        }
+        if (count == MAX_KEYS)
+        {
+            throw new IllegalStateException("Too many rate buckets: " + count);
+        }
+        durations[count] = duration;
+        units[count] = unit;
+        names[count] = duration + "_" + unit;
+        return count++;
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public String name(final int index)
+    {
+        return names[index];
+    }
+
+    public long duration(final int index)
+    {
+        return durations[index];
+    }
+
+    public TimeUnit unit(final int index)
+    {
+        return units[index];
+    }
+}
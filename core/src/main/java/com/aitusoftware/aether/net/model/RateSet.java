@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+/**
+ * Rates of one counter, indexed by {@link RateKeys} index.
+ */
+public final class RateSet
+{
+    private final long[] rates;
+    private long mask;
+
+    /**
+     * @param rateCount number of rate keys, at most {@link Long#SIZE}
+     */
+    RateSet(final int rateCount)
+    {
+        rates = new long[rateCount];
+    }
+
+    void clear()
+    {
+        mask = 0;
+    }
+
+    void set(final int index, final long rate)
+    {
+        rates[index] = rate;
+        mask |= 1L << index;
+    }
+
+    public boolean isEmpty()
+    {
+        return mask == 0;
+    }
+
+    public long mask()
+    {
+        return mask;
+    }
+
+    public boolean has(final int index)
+    {
+        return (mask & (1L << index)) != 0;
+    }
+
+    public long get(final int index)
+    {
+        return rates[index];
+    }
+
+    public boolean valuesEqual(final RateSet other)
+    {
+        if (mask != other.mask)
+        {
+            return false;
+        }
+        long remaining = mask;
+        while (remaining != 0)
+        {
+            final int index = Long.numberOfTrailingZeros(remaining);
+            if (rates[index] != other.rates[index])
+            {
+                return false;
+            }
+            remaining &= remaining - 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+public final class SessionKeys
+{
+    private SessionKeys()
+    {
+    }
+
+    // label/channel/streamId/sessionId, as used in WebSocket deltas and history queries
+    public static String key(final String label, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        return label + "/" + channel + "/" + streamId + "/" + sessionId;
+    }
+
+    // CounterStore keys are prefixed by role, as a process may both publish and subscribe to a session
+    static String publisherKey(
+        final String label, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        return "P:" + key(label, channel, streamId, sessionId);
+    }
+
+    static String subscriberKey(
+        final String label, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        return "S:" + key(label, channel, streamId, sessionId);
+    }
+
+    static String systemCountersKey(final String label)
+    {
+        return "C:" + label;
+    }
+}
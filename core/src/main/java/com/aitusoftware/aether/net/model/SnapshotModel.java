@@ -0,0 +1,457 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.net.rate.RateRollup;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.rate.TrendTracker;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Object2IntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+public final class SnapshotModel
+{
+    private static final SubscriberSession[] NO_SUBSCRIBERS = new SubscriberSession[0];
+
+    private final Object2IntHashMap<String> stringIds = new Object2IntHashMap<>(-1);
+    private final IntArrayList freeStringIds = new IntArrayList();
+    private final RateKeys rateKeys = new RateKeys();
+    private final TrendTracker trendTracker;
+    private final IntConsumer resetTrend;
+    private String[] strings = new String[16];
+    private long[] stringMarks = new long[16];
+    private int stringCount;
+    private int stringTableVersion;
+    // strings marked with the current generation are in use
+    private long stringGeneration;
+    private boolean stringsReferencedByPreviousRows;
+    private PublisherRow[] rows = new PublisherRow[0];
+    private PublisherRow[] previousRows = new PublisherRow[0];
+    private SystemCountersRow[] systemCounters = new SystemCountersRow[0];
+    private SystemCountersRow[] previousSystemCounters = new SystemCountersRow[0];
+    private int rowCount;
+    private int previousRowCount;
+    private int systemCountersCount;
+    private int previousSystemCountersCount;
+    private PublisherSession[] topologyPublishers = new PublisherSession[0];
+    private SubscriberSession[][] topologySubscribers = new SubscriberSession[0][];
+    private ProcessSessions[] topologyProcesses = new ProcessSessions[0];
+    private int topologyPublisherCount;
+    private int topologyProcessCount;
+    private long topologyVersion = -1;
+
+    public SnapshotModel(final RateWindows rateWindows)
+    {
+        this(rateWindows, TrendTracker.DEFAULT_TIME_CONSTANT_MS);
+    }
+
+    /**
+     * @param rateWindows         windows over which rates are reported
+     * @param trendTimeConstantMs time constant of the lag and remaining buffer trends
+     */
+    public SnapshotModel(final RateWindows rateWindows, final long trendTimeConstantMs)
+    {
+        trendTracker = new TrendTracker(trendTimeConstantMs);
+        resetTrend = trendTracker::reset;
+        // rate key indices are the window indices
+        for (int i = 0; i < rateWindows.count(); i++)
+        {
+            rateKeys.indexOf(rateWindows.duration(i), rateWindows.unit(i));
+        }
+    }
+
+    /**
+     * Captures the current state of the system, retaining the previous state for delta encoding.
+     * <p>
+     * The ordered publisher to subscriber graph is only rebuilt when the topology index reports a change; otherwise
+     * counter values are copied from the already resolved sessions in a single linear pass. Trends of sessions whose
+     * rate series have been released are cleared before the series can be reused, and the rate series of processes
+     * evicted from the topology index are released first.
+     *
+     * @param topologyIndex sessions and counters reported by each monitored process
+     * @param rateTracker   rates of publisher, subscriber and system counters
+     * @return true if publishers, subscribers or system counter labels have changed since the last update
+     */
+    public boolean update(final TopologyIndex topologyIndex, final RateTracker rateTracker)
+    {
+        final List<String> evictedLabels = topologyIndex.evictedLabels();
+        for (int i = 0; i < evictedLabels.size(); i++)
+        {
+            final String label = evictedLabels.get(i);
+            if (!topologyIndex.hasProcess(label))
+            {
+                rateTracker.release(label);
+            }
+        }
+        evictedLabels.clear();
+        rateTracker.drainReleasedSeries(resetTrend);
+        swapBuffers();
+        final boolean rebuilt = topologyIndex.version() != topologyVersion;
+        if (rebuilt)
+        {
+            rebuildTopology(topologyIndex, rateTracker);
+            topologyVersion = topologyIndex.version();
+        }
+
+        final RateRollup rollup = rateTracker.rollup();
+        for (int i = 0; i < topologyPublisherCount; i++)
+        {
+            final PublisherSession publisher = topologyPublishers[i];
+            if (publisher.rateSeries() < 0)
+            {
+                publisher.rateSeries(rateTracker.publisherSeries(SessionKeys.key(
+                    publisher.label(), publisher.channel(), publisher.streamId(), publisher.sessionId())));
+            }
+            final PublisherRow row = nextRow();
+            row.set(publisher);
+            copyRates(rollup, row.rateSeries(), RateTracker.PUBLISHER_POSITION_SERIES, row.publishRates());
+            if (row.rateSeries() >= 0)
+            {
+                trendTracker.update(row.rateSeries(), row.timestamp(), row.remainingBuffer());
+                row.remainingBufferTrend(trendTracker.trend(row.rateSeries()));
+            }
+            final SubscriberSession[] subscribers = topologySubscribers[i];
+            for (final SubscriberSession subscriber : subscribers)
+            {
+                if (subscriber.rateSeries() < 0)
+                {
+                    subscriber.rateSeries(rateTracker.subscriberSeries(SessionKeys.key(
+                        subscriber.label(), subscriber.channel(), subscriber.streamId(), subscriber.sessionId())));
+                }
+                final SubscriberRow subscriberRow = row.addSubscriber(subscriber);
+                final int series = subscriberRow.rateSeries();
+                copyRates(rollup, series, RateTracker.RECEIVER_POSITION_SERIES, subscriberRow.receiverRates());
+                copyRates(rollup, series, RateTracker.SUBSCRIBER_POSITION_SERIES, subscriberRow.subscriberRates());
+                if (series >= 0)
+                {
+                    trendTracker.update(series, subscriberRow.timestamp(), subscriberRow.lag());
+                    subscriberRow.lagTrend(trendTracker.trend(series));
+                }
+            }
+        }
+
+        for (int i = 0; i < topologyProcessCount; i++)
+        {
+            final ProcessSessions process = topologyProcesses[i];
+            if (process.rateSeries() < 0)
+            {
+                process.rateSeries(rateTracker.systemCountersSeries(process.label()));
+            }
+            final SystemCountersRow row = nextSystemCountersRow();
+            row.set(process);
+            for (int j = 0; j < SystemCountersRow.COUNTER_COUNT; j++)
+            {
+                copyRates(rollup, row.rateSeries(), j, row.rates(j));
+            }
+        }
+
+        // strings only referenced by the rows replaced by a rebuild are released once they are no longer previous
+        if (rebuilt || stringsReferencedByPreviousRows)
+        {
+            releaseUnusedStrings();
+            stringsReferencedByPreviousRows = rebuilt;
+        }
+
+        return rebuilt && !sameTopology();
+    }
+
+    public int publisherCount()
+    {
+        return rowCount;
+    }
+
+    public PublisherRow publisher(final int index)
+    {
+        return rows[index];
+    }
+
+    public PublisherRow previousPublisher(final int index)
+    {
+        return previousRows[index];
+    }
+
+    public int systemCountersCount()
+    {
+        return systemCountersCount;
+    }
+
+    public SystemCountersRow systemCounters(final int index)
+    {
+        return systemCounters[index];
+    }
+
+    public SystemCountersRow previousSystemCounters(final int index)
+    {
+        return previousSystemCounters[index];
+    }
+
+    public RateKeys rateKeys()
+    {
+        return rateKeys;
+    }
+
+    /**
+     * Upper bound of the ids of the strings referenced by the model.
+     *
+     * @return number of string ids
+     */
+    public int stringCount()
+    {
+        return stringCount;
+    }
+
+    /**
+     * @param id id of a label or channel
+     * @return the string, or null if the id is not in use
+     */
+    public String string(final int id)
+    {
+        return strings[id];
+    }
+
+    /**
+     * Changes whenever string ids are released, after which they may be reused for different strings.
+     *
+     * @return the current string table version
+     */
+    public int stringTableVersion()
+    {
+        return stringTableVersion;
+    }
+
+    int stringId(final String value)
+    {
+        int id = stringIds.getValue(value);
+        if (id == stringIds.missingValue())
+        {
+            if (freeStringIds.isEmpty())
+            {
+                if (stringCount == strings.length)
+                {
+                    strings = Arrays.copyOf(strings, stringCount * 2);
+                    stringMarks = Arrays.copyOf(stringMarks, stringCount * 2);
+                }
+                id = stringCount++;
+            }
+            else
+            {
+                id = freeStringIds.popInt();
+            }
+            strings[id] = value;
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    // strings of evicted processes and sessions no longer reported, unless the current or previous rows refer to them
+    private void releaseUnusedStrings()
+    {
+        final long mark = ++stringGeneration;
+        markStrings(rows, rowCount, systemCounters, systemCountersCount, mark);
+        markStrings(previousRows, previousRowCount, previousSystemCounters, previousSystemCountersCount, mark);
+        boolean released = false;
+        for (int i = 0; i < stringCount; i++)
+        {
+            if (strings[i] != null && stringMarks[i] != mark)
+            {
+                stringIds.removeKey(strings[i]);
+                strings[i] = null;
+                freeStringIds.addInt(i);
+                released = true;
+            }
+        }
+        if (released)
+        {
+            stringTableVersion++;
+        }
+    }
+
+    private void markStrings(
+        final PublisherRow[] publisherRows, final int publisherRowCount,
+        final SystemCountersRow[] systemCountersRows, final int systemCountersRowCount, final long mark)
+    {
+        for (int i = 0; i < publisherRowCount; i++)
+        {
+            final PublisherRow row = publisherRows[i];
+            stringMarks[row.labelId()] = mark;
+            stringMarks[row.channelId()] = mark;
+            for (int j = 0; j < row.subscriberCount(); j++)
+            {
+                stringMarks[row.subscriber(j).labelId()] = mark;
+                stringMarks[row.subscriber(j).channelId()] = mark;
+            }
+        }
+        for (int i = 0; i < systemCountersRowCount; i++)
+        {
+            stringMarks[systemCountersRows[i].labelId()] = mark;
+        }
+    }
+
+    private void copyRates(final RateRollup rollup, final int series, final int seriesOffset, final RateSet target)
+    {
+        if (series < 0)
+        {
+            return;
+        }
+        for (int i = 0; i < rateKeys.count(); i++)
+        {
+            if (rollup.hasRate(series + seriesOffset, i))
+            {
+                target.set(i, rollup.rate(series + seriesOffset, i));
+            }
+        }
+    }
+
+    private void rebuildTopology(final TopologyIndex topologyIndex, final RateTracker rateTracker)
+    {
+        final Map<String, List<SubscriberSession>> subscribersBySession = new HashMap<>();
+        topologyPublisherCount = 0;
+        topologyProcessCount = 0;
+        for (int i = 0; i < topologyIndex.processCount(); i++)
+        {
+            final ProcessSessions process = topologyIndex.process(i);
+            process.labelId(stringId(process.label()));
+            process.rateSeries(rateTracker.systemCountersSeries(process.label()));
+            if (process.hasSystemCounters())
+            {
+                if (topologyProcessCount == topologyProcesses.length)
+                {
+                    topologyProcesses = Arrays.copyOf(topologyProcesses, Math.max(4, topologyProcessCount * 2));
+                }
+                topologyProcesses[topologyProcessCount++] = process;
+            }
+            for (int j = 0; j < process.publisherCount(); j++)
+            {
+                final PublisherSession publisher = process.publisher(j);
+                publisher.ids(process.labelId(), stringId(publisher.channel()));
+                publisher.rateSeries(rateTracker.publisherSeries(SessionKeys.key(
+                    publisher.label(), publisher.channel(), publisher.streamId(), publisher.sessionId())));
+                if (topologyPublisherCount == topologyPublishers.length)
+                {
+                    topologyPublishers = Arrays.copyOf(
+                        topologyPublishers, Math.max(16, topologyPublisherCount * 2));
+                }
+                topologyPublishers[topologyPublisherCount++] = publisher;
+            }
+            for (int j = 0; j < process.subscriberCount(); j++)
+            {
+                final SubscriberSession subscriber = process.subscriber(j);
+                subscriber.ids(process.labelId(), stringId(subscriber.channel()));
+                subscriber.rateSeries(rateTracker.subscriberSeries(SessionKeys.key(
+                    subscriber.label(), subscriber.channel(), subscriber.streamId(), subscriber.sessionId())));
+                subscribersBySession.computeIfAbsent(
+                    sessionKey(subscriber.channel(), subscriber.streamId(), subscriber.sessionId()),
+                    k -> new ArrayList<>()).add(subscriber);
+            }
+        }
+
+        Arrays.sort(topologyPublishers, 0, topologyPublisherCount, PublisherSession::compare);
+        Arrays.sort(topologyProcesses, 0, topologyProcessCount, Comparator.comparing(ProcessSessions::label));
+        if (topologySubscribers.length < topologyPublisherCount)
+        {
+            topologySubscribers = new SubscriberSession[topologyPublishers.length][];
+        }
+        for (int i = 0; i < topologyPublisherCount; i++)
+        {
+            final PublisherSession publisher = topologyPublishers[i];
+            final List<SubscriberSession> subscribers = subscribersBySession.getOrDefault(
+                sessionKey(publisher.channel(), publisher.streamId(), publisher.sessionId()),
+                Collections.emptyList());
+            topologySubscribers[i] = subscribers.toArray(NO_SUBSCRIBERS);
+            Arrays.sort(topologySubscribers[i], SubscriberSession::compare);
+        }
+    }
+
+    private static String sessionKey(final String channel, final int streamId, final int sessionId)
+    {
+        return channel + "/" + streamId + "/" + sessionId;
+    }
+
+    private boolean sameTopology()
+    {
+        if (rowCount != previousRowCount || systemCountersCount != previousSystemCountersCount)
+        {
+            return false;
+        }
+        for (int i = 0; i < rowCount; i++)
+        {
+            if (!rows[i].sameTopology(previousRows[i]))
+            {
+                return false;
+            }
+        }
+        for (int i = 0; i < systemCountersCount; i++)
+        {
+            if (systemCounters[i].labelId() != previousSystemCounters[i].labelId())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void swapBuffers()
+    {
+        final PublisherRow[] tmpRows = previousRows;
+        previousRows = rows;
+        rows = tmpRows;
+        previousRowCount = rowCount;
+        rowCount = 0;
+
+        final SystemCountersRow[] tmpSystemCounters = previousSystemCounters;
+        previousSystemCounters = systemCounters;
+        systemCounters = tmpSystemCounters;
+        previousSystemCountersCount = systemCountersCount;
+        systemCountersCount = 0;
+    }
+
+    private PublisherRow nextRow()
+    {
+        if (rowCount == rows.length)
+        {
+            rows = Arrays.copyOf(rows, Math.max(16, rows.length * 2));
+        }
+        if (rows[rowCount] == null)
+        {
+            rows[rowCount] = new PublisherRow(rateKeys.count());
+        }
+        return rows[rowCount++];
+    }
+
+    private SystemCountersRow nextSystemCountersRow()
+    {
+        if (systemCountersCount == systemCounters.length)
+        {
+            systemCounters = Arrays.copyOf(systemCounters, Math.max(4, systemCounters.length * 2));
+        }
+        if (systemCounters[systemCountersCount] == null)
+        {
+            systemCounters[systemCountersCount] = new SystemCountersRow(rateKeys.count());
+        }
+        return systemCounters[systemCountersCount++];
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.net.rate.TrendTracker;
+
+public final class SubscriberRow
+{
+    private final RateSet receiverRates;
+    private final RateSet subscriberRates;
+    private String label;
+    private int labelId;
+    private String channel;
+    private int channelId;
+    private int streamId;
+    private int sessionId;
+    private boolean hasPositions;
+    private long[] registrationIds = new long[4];
+    private long[] positions = new long[4];
+    private long[] lags = new long[4];
+    private int positionCount;
+    private long lag;
+    private long timestamp;
+    private long lagTrend;
+    private long catchUpMs;
+    private long receiverPosition;
+    private long receiverHighWaterMark;
+    private int rateSeries = -1;
+
+    SubscriberRow(final int rateCount)
+    {
+        receiverRates = new RateSet(rateCount);
+        subscriberRates = new RateSet(rateCount);
+    }
+
+    void set(final SubscriberSession session)
+    {
+        label = session.label();
+        labelId = session.labelId();
+        channel = session.channel();
+        channelId = session.channelId();
+        streamId = session.streamId();
+        sessionId = session.sessionId();
+        receiverPosition = session.receiverPosition();
+        receiverHighWaterMark = session.receiverHighWaterMark();
+        timestamp = session.timestamp();
+        lagTrend = 0;
+        catchUpMs = TrendTracker.NO_ESTIMATE;
+        rateSeries = session.rateSeries();
+        receiverRates.clear();
+        subscriberRates.clear();
+        hasPositions = session.hasPositions();
+        positionCount = session.positionCount();
+        if (positionCount > positions.length)
+        {
+            registrationIds = new long[positionCount];
+            positions = new long[positionCount];
+            lags = new long[positionCount];
+        }
+        for (int i = 0; i < positionCount; i++)
+        {
+            registrationIds[i] = session.registrationId(i);
+            positions[i] = session.position(i);
+        }
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    public int labelId()
+    {
+        return labelId;
+    }
+
+    public String channel()
+    {
+        return channel;
+    }
+
+    public int channelId()
+    {
+        return channelId;
+    }
+
+    public int streamId()
+    {
+        return streamId;
+    }
+
+    public int sessionId()
+    {
+        return sessionId;
+    }
+
+    public boolean hasPositions()
+    {
+        return hasPositions;
+    }
+
+    public int positionCount()
+    {
+        return positionCount;
+    }
+
+    public long registrationId(final int index)
+    {
+        return registrationIds[index];
+    }
+
+    public long position(final int index)
+    {
+        return positions[index];
+    }
+
+    // bytes available to, but not yet consumed by, the subscriber with this registration
+    public long lag(final int index)
+    {
+        return lags[index];
+    }
+
+    // the largest lag of any registration, or 0 if positions were not reported
+    public long lag()
+    {
+        return lag;
+    }
+
+    void lagTrend(final long trend)
+    {
+        lagTrend = trend == TrendTracker.NO_TREND ? 0 : trend;
+        catchUpMs = TrendTracker.timeToZeroMs(lag, trend);
+    }
+
+    public long timestamp()
+    {
+        return timestamp;
+    }
+
+    // smoothed bytes per second by which the lag is growing, or if negative the consumer is catching up
+    public long lagTrend()
+    {
+        return lagTrend;
+    }
+
+    // estimated time until the lag is consumed, or TrendTracker.NO_ESTIMATE if it is not falling
+    public long catchUpMs()
+    {
+        return catchUpMs;
+    }
+
+    public long receiverPosition()
+    {
+        return receiverPosition;
+    }
+
+    public long receiverHighWaterMark()
+    {
+        return receiverHighWaterMark;
+    }
+
+    public RateSet receiverRates()
+    {
+        return receiverRates;
+    }
+
+    // rates of the slowest subscriber position
+    public RateSet subscriberRates()
+    {
+        return subscriberRates;
+    }
+
+    // available data is the publisher position for IPC, and otherwise the receiver position
+    void lags(final long available)
+    {
+        lag = 0;
+        for (int i = 0; i < positionCount; i++)
+        {
+            lags[i] = Math.max(0, available - positions[i]);
+            lag = Math.max(lag, lags[i]);
+        }
+    }
+
+    public boolean ratesEqual(final SubscriberRow other)
+    {
+        return receiverRates.valuesEqual(other.receiverRates) && subscriberRates.valuesEqual(other.subscriberRates);
+    }
+
+    public boolean positionsEqual(final SubscriberRow other)
+    {
+        if (hasPositions != other.hasPositions || positionCount != other.positionCount)
+        {
+            return false;
+        }
+        for (int i = 0; i < positionCount; i++)
+        {
+            if (registrationIds[i] != other.registrationIds[i] || positions[i] != other.positions[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean lagsEqual(final SubscriberRow other)
+    {
+        if (positionCount != other.positionCount)
+        {
+            return false;
+        }
+        for (int i = 0; i < positionCount; i++)
+        {
+            if (lags[i] != other.lags[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int compare(final SubscriberRow a, final SubscriberRow b)
+    {
+        int fieldDiff = a.channel.compareTo(b.channel);
+        if (fieldDiff == 0)
+        {
+            fieldDiff = a.label.compareTo(b.label);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.streamId, b.streamId);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.sessionId, b.sessionId);
+        }
+        return fieldDiff;
+    }
+
+    // first series of this row in the RateTracker, or -1 if not yet tracked
+    public int rateSeries()
+    {
+        return rateSeries;
+    }
+}
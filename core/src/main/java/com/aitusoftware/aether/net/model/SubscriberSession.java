@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+
+import java.util.Map;
+
+final class SubscriberSession
+{
+    private static final int RECEIVER_POSITION = 0;
+    private static final int RECEIVER_HIGH_WATER_MARK = 1;
+    // -1 if the subscriber positions were not reported
+    private static final int POSITION_COUNT = 2;
+    private static final int TIMESTAMP = 3;
+    // followed by registration id and position pairs
+    private static final int POSITIONS = 4;
+    private final String label;
+    private final CounterStore store;
+    private String channel;
+    private int streamId;
+    private int sessionId;
+    private int storeId = -1;
+    // assigned by SnapshotModel when the topology is rebuilt
+    private int labelId;
+    private int channelId;
+    private int rateSeries = -1;
+
+    SubscriberSession(final String label, final CounterStore store)
+    {
+        this.label = label;
+        this.store = store;
+    }
+
+    boolean sameSession(final SubscriberCounterSet counterSet)
+    {
+        return storeId >= 0 && streamId == counterSet.streamId() && sessionId == counterSet.sessionId() &&
+            TopologyIndex.contentEquals(channel, counterSet.channel());
+    }
+
+    void identify(final SubscriberCounterSet counterSet)
+    {
+        channel = counterSet.channel().toString();
+        streamId = counterSet.streamId();
+        sessionId = counterSet.sessionId();
+        rateSeries = -1;
+        final int previousStoreId = storeId;
+        storeId = store.acquire(SessionKeys.subscriberKey(label, channel, streamId, sessionId), POSITIONS);
+        if (previousStoreId >= 0)
+        {
+            store.release(previousStoreId);
+        }
+    }
+
+    void update(final SubscriberCounterSet counterSet, final long timestamp)
+    {
+        store.set(storeId, TIMESTAMP, timestamp);
+        store.set(storeId, RECEIVER_POSITION, counterSet.receiverPosition());
+        store.set(storeId, RECEIVER_HIGH_WATER_MARK, counterSet.receiverHighWaterMark());
+        final Map<Long, Long> subscriberPositions = counterSet.subscriberPositions();
+        if (subscriberPositions == null)
+        {
+            store.set(storeId, POSITION_COUNT, -1);
+            return;
+        }
+        store.ensureCapacity(storeId, POSITIONS + 2 * subscriberPositions.size());
+        int positionCount = 0;
+        for (final Map.Entry<Long, Long> position : subscriberPositions.entrySet())
+        {
+            store.set(storeId, POSITIONS + 2 * positionCount, position.getKey());
+            store.set(storeId, POSITIONS + 2 * positionCount + 1, position.getValue());
+            positionCount++;
+        }
+        store.set(storeId, POSITION_COUNT, positionCount);
+    }
+
+    // when the process no longer reports the session
+    void release()
+    {
+        if (storeId >= 0)
+        {
+            store.release(storeId);
+            storeId = -1;
+        }
+    }
+
+    void ids(final int labelId, final int channelId)
+    {
+        this.labelId = labelId;
+        this.channelId = channelId;
+    }
+
+    void rateSeries(final int rateSeries)
+    {
+        this.rateSeries = rateSeries;
+    }
+
+    boolean connectsTo(final PublisherSession publisher)
+    {
+        return streamId == publisher.streamId() && sessionId == publisher.sessionId() &&
+            channel.equals(publisher.channel());
+    }
+
+    String label()
+    {
+        return label;
+    }
+
+    String channel()
+    {
+        return channel;
+    }
+
+    int streamId()
+    {
+        return streamId;
+    }
+
+    int sessionId()
+    {
+        return sessionId;
+    }
+
+    long receiverPosition()
+    {
+        return store.get(storeId, RECEIVER_POSITION);
+    }
+
+    long receiverHighWaterMark()
+    {
+        return store.get(storeId, RECEIVER_HIGH_WATER_MARK);
+    }
+
+    // of the snapshot that last reported the counters
+    long timestamp()
+    {
+        return store.get(storeId, TIMESTAMP);
+    }
+
+    boolean hasPositions()
+    {
+        return store.get(storeId, POSITION_COUNT) >= 0;
+    }
+
+    int positionCount()
+    {
+        return (int)Math.max(0, store.get(storeId, POSITION_COUNT));
+    }
+
+    long registrationId(final int index)
+    {
+        return store.get(storeId, POSITIONS + 2 * index);
+    }
+
+    long position(final int index)
+    {
+        return store.get(storeId, POSITIONS + 2 * index + 1);
+    }
+
+    int labelId()
+    {
+        return labelId;
+    }
+
+    int channelId()
+    {
+        return channelId;
+    }
+
+    int rateSeries()
+    {
+        return rateSeries;
+    }
+
+    static int compare(final SubscriberSession a, final SubscriberSession b)
+    {
+        int fieldDiff = a.channel.compareTo(b.channel);
+        if (fieldDiff == 0)
+        {
+            fieldDiff = a.label.compareTo(b.label);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.streamId, b.streamId);
+        }
+        if (fieldDiff == 0)
+        {
+            fieldDiff = Integer.compare(a.sessionId, b.sessionId);
+        }
+        return fieldDiff;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+public final class SystemCountersRow
+{
+    public static final int BYTES_SENT = 0;
+    public static final int BYTES_RECEIVED = 1;
+    public static final int NAKS_SENT = 2;
+    public static final int NAKS_RECEIVED = 3;
+    public static final int ERRORS = 4;
+    public static final int CLIENT_TIMEOUTS = 5;
+    public static final int COUNTER_COUNT = 6;
+
+    private final long[] values = new long[COUNTER_COUNT];
+    private final RateSet[] rates = new RateSet[COUNTER_COUNT];
+    private String label;
+    private int labelId;
+    private int rateSeries = -1;
+
+    SystemCountersRow(final int rateCount)
+    {
+        for (int i = 0; i < COUNTER_COUNT; i++)
+        {
+            rates[i] = new RateSet(rateCount);
+        }
+    }
+
+    void set(final ProcessSessions process)
+    {
+        label = process.label();
+        labelId = process.labelId();
+        rateSeries = process.rateSeries();
+        for (int i = 0; i < COUNTER_COUNT; i++)
+        {
+            values[i] = process.systemCounter(i);
+            rates[i].clear();
+        }
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    public int labelId()
+    {
+        return labelId;
+    }
+
+    public long value(final int counter)
+    {
+        return values[counter];
+    }
+
+    public RateSet rates(final int counter)
+    {
+        return rates[counter];
+    }
+
+    public boolean ratesEqual(final SystemCountersRow other)
+    {
+        for (int i = 0; i < COUNTER_COUNT; i++)
+        {
+            if (!rates[i].valuesEqual(other.rates[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // first series of this row in the RateTracker, or -1 if not yet tracked
+    public int rateSeries()
+    {
+        return rateSeries;
+    }
+}
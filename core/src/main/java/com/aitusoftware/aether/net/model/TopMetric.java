@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+/**
+ * Measures by which sessions are ranked for triage, each named as it appears in the {@code /top} views.
+ */
+public enum TopMetric
+{
+    /**
+     * Largest number of bytes available to, but not yet consumed by, any subscriber of a subscription.
+     */
+    SUBSCRIBER_LAG("lag"),
+    /**
+     * Bytes published but not yet sent.
+     */
+    SEND_BACKLOG("sendBacklog"),
+    /**
+     * Bytes that can be published before the publisher is back-pressured, ranked lowest first.
+     */
+    REMAINING_BUFFER("remainingBuffer"),
+    /**
+     * Back pressure events per second, over the shortest rate window.
+     */
+    BACK_PRESSURE_RATE("backPressureRate");
+
+    private static final TopMetric[] VALUES = values();
+    private final String fieldName;
+
+    TopMetric(final String fieldName)
+    {
+        this.fieldName = fieldName;
+    }
+
+    public String fieldName()
+    {
+        return fieldName;
+    }
+
+    // null if no metric has this name
+    public static TopMetric forFieldName(final String fieldName)
+    {
+        for (final TopMetric metric : VALUES)
+        {
+            if (metric.fieldName.equals(fieldName))
+            {
+                return metric;
+            }
+        }
+        return null;
+    }
+}
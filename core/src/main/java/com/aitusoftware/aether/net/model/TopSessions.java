@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.net.rate.RateRollup;
+import com.aitusoftware.aether.net.rate.RateTracker;
+
+import java.util.Arrays;
+
+/**
+ * The worst sessions by each {@link TopMetric}, found in a single pass over the model after each generation.
+ * <p>
+ * Each ranking is a bounded min-heap of the {@code k} highest scores seen so far, so ranking costs
+ * O(n log k) and reading it O(k). Entries refer to rows of the model by index, and are valid until its next update.
+ */
+public final class TopSessions
+{
+    private static final int METRIC_COUNT = TopMetric.values().length;
+    private final int capacity;
+    private final long[][] scores;
+    private final int[][] publisherIndices;
+    private final int[][] subscriberIndices;
+    private final int[] counts = new int[METRIC_COUNT];
+
+    public TopSessions(final int capacity)
+    {
+        this.capacity = capacity;
+        scores = new long[METRIC_COUNT][capacity];
+        publisherIndices = new int[METRIC_COUNT][capacity];
+        subscriberIndices = new int[METRIC_COUNT][capacity];
+    }
+
+    public void update(final SnapshotModel model, final RateTracker rateTracker)
+    {
+        Arrays.fill(counts, 0);
+        if (capacity == 0)
+        {
+            return;
+        }
+        final RateRollup rollup = rateTracker.rollup();
+        final int lag = TopMetric.SUBSCRIBER_LAG.ordinal();
+        final int sendBacklog = TopMetric.SEND_BACKLOG.ordinal();
+        final int remainingBuffer = TopMetric.REMAINING_BUFFER.ordinal();
+        final int backPressureRate = TopMetric.BACK_PRESSURE_RATE.ordinal();
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            if (row.sendBacklog() > 0)
+            {
+                offer(sendBacklog, row.sendBacklog(), i, -1);
+            }
+            // lowest first
+            offer(remainingBuffer, -row.remainingBuffer(), i, -1);
+            final int series = row.rateSeries() + RateTracker.BACK_PRESSURE_SERIES;
+            if (row.rateSeries() >= 0 && rollup.hasRate(series, 0) && rollup.rate(series, 0) > 0)
+            {
+                offer(backPressureRate, rollup.rate(series, 0), i, -1);
+            }
+            for (int j = 0; j < row.subscriberCount(); j++)
+            {
+                final long subscriberLag = row.subscriber(j).lag();
+                if (subscriberLag > 0)
+                {
+                    offer(lag, subscriberLag, i, j);
+                }
+            }
+        }
+        for (int m = 0; m < METRIC_COUNT; m++)
+        {
+            sortDescending(m);
+        }
+    }
+
+    public int count(final TopMetric metric)
+    {
+        return counts[metric.ordinal()];
+    }
+
+    public long value(final TopMetric metric, final int rank)
+    {
+        final long score = scores[metric.ordinal()][rank];
+        return metric == TopMetric.REMAINING_BUFFER ? -score : score;
+    }
+
+    public PublisherRow publisher(final SnapshotModel model, final TopMetric metric, final int rank)
+    {
+        return model.publisher(publisherIndices[metric.ordinal()][rank]);
+    }
+
+    // null for publisher metrics
+    public SubscriberRow subscriber(final SnapshotModel model, final TopMetric metric, final int rank)
+    {
+        final int subscriberIndex = subscriberIndices[metric.ordinal()][rank];
+        return subscriberIndex < 0 ? null : publisher(model, metric, rank).subscriber(subscriberIndex);
+    }
+
+    private void offer(final int metric, final long score, final int publisherIndex, final int subscriberIndex)
+    {
+        final long[] heap = scores[metric];
+        final int count = counts[metric];
+        if (count < capacity)
+        {
+            set(metric, count, score, publisherIndex, subscriberIndex);
+            counts[metric]++;
+            siftUp(metric, count);
+        }
+        else if (score > heap[0])
+        {
+            set(metric, 0, score, publisherIndex, subscriberIndex);
+            siftDown(metric, 0, count);
+        }
+    }
+
+    // heapsort with a min-heap leaves the highest score first
+    private void sortDescending(final int metric)
+    {
+        for (int end = counts[metric] - 1; end > 0; end--)
+        {
+            swap(metric, 0, end);
+            siftDown(metric, 0, end);
+        }
+    }
+
+    private void siftUp(final int metric, final int index)
+    {
+        final long[] heap = scores[metric];
+        int child = index;
+        while (child > 0)
+        {
+            final int parent = (child - 1) >>> 1;
+            if (heap[parent] <= heap[child])
+            {
+                return;
+            }
+            swap(metric, parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(final int metric, final int index, final int size)
+    {
+        final long[] heap = scores[metric];
+        int parent = index;
+        while (true)
+        {
+            final int left = 2 * parent + 1;
+            if (left >= size)
+            {
+                return;
+            }
+            final int right = left + 1;
+            final int smallest = right < size && heap[right] < heap[left] ? right : left;
+            if (heap[parent] <= heap[smallest])
+            {
+                return;
+            }
+            swap(metric, parent, smallest);
+            parent = smallest;
+        }
+    }
+
+    private void set(
+        final int metric, final int index, final long score, final int publisherIndex, final int subscriberIndex)
+    {
+        scores[metric][index] = score;
+        publisherIndices[metric][index] = publisherIndex;
+        subscriberIndices[metric][index] = subscriberIndex;
+    }
+
+    private void swap(final int metric, final int a, final int b)
+    {
+        final long score = scores[metric][a];
+        final int publisherIndex = publisherIndices[metric][a];
+        final int subscriberIndex = subscriberIndices[metric][a];
+        set(metric, a, scores[metric][b], publisherIndices[metric][b], subscriberIndices[metric][b]);
+        set(metric, b, score, publisherIndex, subscriberIndex);
+    }
+}
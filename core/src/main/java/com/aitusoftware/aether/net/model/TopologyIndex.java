@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sessions reported by each monitored process, maintained incrementally from counter snapshots.
+ * <p>
+ * While a process keeps reporting the same sessions in the same order, their counters are refreshed in place.
+ * Any other change increments {@link #version()} so that a {@link SnapshotModel} rebuilds its publisher to
+ * subscriber graph; otherwise the model is updated with a linear walk over the sessions it has already resolved.
+ * <p>
+ * A process that has not reported for the eviction timeout, measured against the newest snapshot timestamp
+ * received from any process, is evicted and its counters released.
+ */
+public final class TopologyIndex implements CounterSnapshotListener
+{
+    public static final long DEFAULT_EVICTION_TIMEOUT_MS = 60_000L;
+
+    private final Map<String, ProcessSessions> processesByLabel = new HashMap<>();
+    private final CounterStore counterStore = new CounterStore();
+    private final List<String> evictedLabels = new ArrayList<>();
+    private final long evictionTimeoutMs;
+    private ProcessSessions[] processes = new ProcessSessions[0];
+    private int processCount;
+    private long version;
+    private long latestTimestamp = Long.MIN_VALUE;
+    private long nextEvictionCheckMs = Long.MAX_VALUE;
+
+    public TopologyIndex()
+    {
+        this(DEFAULT_EVICTION_TIMEOUT_MS);
+    }
+
+    /**
+     * @param evictionTimeoutMs time without a snapshot after which a process is evicted, 0 to never evict
+     */
+    public TopologyIndex(final long evictionTimeoutMs)
+    {
+        this.evictionTimeoutMs = evictionTimeoutMs;
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        ProcessSessions process = processesByLabel.get(label);
+        if (process == null)
+        {
+            process = new ProcessSessions(label, counterStore);
+            processesByLabel.put(label, process);
+            if (processCount == processes.length)
+            {
+                processes = Arrays.copyOf(processes, Math.max(4, processCount * 2));
+            }
+            processes[processCount++] = process;
+            version++;
+            if (evictionTimeoutMs > 0)
+            {
+                nextEvictionCheckMs = Math.min(nextEvictionCheckMs, timestamp + evictionTimeoutMs + 1);
+            }
+        }
+        if (!process.update(timestamp, publisherCounters, subscriberCounters, systemCounters))
+        {
+            version++;
+        }
+        latestTimestamp = Math.max(latestTimestamp, timestamp);
+        if (latestTimestamp >= nextEvictionCheckMs)
+        {
+            evictStale();
+        }
+    }
+
+    /**
+     * Changes whenever a process reports a different set of sessions.
+     *
+     * @return the current topology version
+     */
+    public long version()
+    {
+        return version;
+    }
+
+    /**
+     * Size of the off-heap store holding the latest counters of every session.
+     *
+     * @return allocated bytes
+     */
+    public int counterStoreBytes()
+    {
+        return counterStore.allocatedBytes();
+    }
+
+    int processCount()
+    {
+        return processCount;
+    }
+
+    boolean hasProcess(final String label)
+    {
+        return processesByLabel.containsKey(label);
+    }
+
+    // labels of the processes evicted since last cleared by the snapshot model
+    List<String> evictedLabels()
+    {
+        return evictedLabels;
+    }
+
+    ProcessSessions process(final int index)
+    {
+        return processes[index];
+    }
+
+    private void evictStale()
+    {
+        final long evictBeforeMs = latestTimestamp - evictionTimeoutMs;
+        long oldestTimestamp = Long.MAX_VALUE;
+        int retainedCount = 0;
+        for (int i = 0; i < processCount; i++)
+        {
+            final ProcessSessions process = processes[i];
+            if (process.timestamp() < evictBeforeMs)
+            {
+                process.release();
+                processesByLabel.remove(process.label());
+                evictedLabels.add(process.label());
+            }
+            else
+            {
+                oldestTimestamp = Math.min(oldestTimestamp, process.timestamp());
+                processes[retainedCount++] = process;
+            }
+        }
+        if (retainedCount != processCount)
+        {
+            Arrays.fill(processes, retainedCount, processCount, null);
+            processCount = retainedCount;
+            version++;
+        }
+        nextEvictionCheckMs = retainedCount == 0 ? Long.MAX_VALUE : oldestTimestamp + evictionTimeoutMs + 1;
+    }
+
+    static boolean contentEquals(final String value, final CharSequence other)
+    {
+        if (value == other)
+        {
+            return true;
+        }
+        final int length = value.length();
+        if (length != other.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (value.charAt(i) != other.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Per-second rates of monotonic counters over several windows.
+ *
+ * <p>Each series keeps, for each window, a ring of {@link #SLOTS_PER_WINDOW} samples, where a slot spans
+ * {@code window / SLOTS_PER_WINDOW} and retains the first sample taken within it. Longer windows are therefore
+ * downsampled rather than holding every sample, and an update costs a bounded number of array accesses per
+ * window. A rate is measured from the oldest sample still in the ring, or from the previous sample when the
+ * window is shorter than the sampling interval.
+ */
+public final class RateRollup
+{
+    public static final int SLOTS_PER_WINDOW = 12;
+    public static final long NO_RATE = Long.MIN_VALUE;
+
+    private final int windowCount;
+    private final long[] slotLengthMs;
+    private final Int2ObjectHashMap<IntArrayList> releasedSeries = new Int2ObjectHashMap<>();
+    private long[] sampleTimes = new long[0];
+    private long[] sampleValues = new long[0];
+    private long[] lastTimes = new long[0];
+    private long[] lastValues = new long[0];
+    private long[] rates = new long[0];
+    private int seriesCount;
+
+    public RateRollup(final RateWindows windows)
+    {
+        windowCount = windows.count();
+        slotLengthMs = new long[windowCount];
+        for (int i = 0; i < windowCount; i++)
+        {
+            slotLengthMs[i] = Math.max(1, windows.millis(i) / SLOTS_PER_WINDOW);
+        }
+    }
+
+    public int addSeries()
+    {
+        return addSeries(1);
+    }
+
+    /**
+     * Adds consecutive series, reusing series that were released in a block of the same length if there are any.
+     *
+     * @param count number of series
+     * @return the first of the series
+     */
+    public int addSeries(final int count)
+    {
+        final IntArrayList released = releasedSeries.get(count);
+        if (released != null && !released.isEmpty())
+        {
+            return released.popInt();
+        }
+        if (seriesCount + count > lastTimes.length)
+        {
+            final int capacity = Math.max(16, Math.max(seriesCount + count, seriesCount * 2));
+            sampleTimes = Arrays.copyOf(sampleTimes, capacity * windowCount * SLOTS_PER_WINDOW);
+            sampleValues = Arrays.copyOf(sampleValues, capacity * windowCount * SLOTS_PER_WINDOW);
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            lastValues = Arrays.copyOf(lastValues, capacity);
+            rates = Arrays.copyOf(rates, capacity * windowCount);
+            Arrays.fill(rates, seriesCount * windowCount, rates.length, NO_RATE);
+        }
+        final int series = seriesCount;
+        seriesCount += count;
+        return series;
+    }
+
+    // the series are cleared, and may be returned by a later addSeries of the same count
+    public void releaseSeries(final int series, final int count)
+    {
+        final int samplesPerSeries = windowCount * SLOTS_PER_WINDOW;
+        Arrays.fill(sampleTimes, series * samplesPerSeries, (series + count) * samplesPerSeries, 0);
+        Arrays.fill(lastTimes, series, series + count, 0);
+        Arrays.fill(lastValues, series, series + count, 0);
+        Arrays.fill(rates, series * windowCount, (series + count) * windowCount, NO_RATE);
+        releasedSeries.computeIfAbsent(count, ignored -> new IntArrayList()).addInt(series);
+    }
+
+    public int seriesCount()
+    {
+        return seriesCount;
+    }
+
+    public void update(final int series, final long timestampMs, final long value)
+    {
+        final long lastTime = lastTimes[series];
+        if (timestampMs <= lastTime)
+        {
+            return;
+        }
+        for (int window = 0; window < windowCount; window++)
+        {
+            final long slotLength = slotLengthMs[window];
+            final long epoch = timestampMs / slotLength;
+            final int base = (series * windowCount + window) * SLOTS_PER_WINDOW;
+            final int slot = (int)(epoch % SLOTS_PER_WINDOW);
+
+            // oldest retained sample, scanning from the slot after the current one
+            long fromTime = lastTime;
+            long fromValue = lastValues[series];
+            for (int i = 1; i <= SLOTS_PER_WINDOW; i++)
+            {
+                final int index = base + (slot + i) % SLOTS_PER_WINDOW;
+                final long sampleTime = sampleTimes[index];
+                if (sampleTime != 0 && epoch - sampleTime / slotLength < SLOTS_PER_WINDOW)
+                {
+                    fromTime = sampleTime;
+                    fromValue = sampleValues[index];
+                    break;
+                }
+            }
+
+            final int index = base + slot;
+            if (sampleTimes[index] == 0 || sampleTimes[index] / slotLength != epoch)
+            {
+                sampleTimes[index] = timestampMs;
+                sampleValues[index] = value;
+            }
+            rates[series * windowCount + window] = fromTime == 0 ?
+                NO_RATE : Math.max(0, (value - fromValue) * 1000 / (timestampMs - fromTime));
+        }
+        lastTimes[series] = timestampMs;
+        lastValues[series] = value;
+    }
+
+    public boolean hasRate(final int series, final int window)
+    {
+        return rates[series * windowCount + window] != NO_RATE;
+    }
+
+    // bytes or events per second
+    public long rate(final int series, final int window)
+    {
+        return rates[series * windowCount + window];
+    }
+}
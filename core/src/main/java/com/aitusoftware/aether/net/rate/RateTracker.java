@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.util.ReportedSessions;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Object2IntHashMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Feeds counters from each snapshot into a {@link RateRollup}. Publishers have two series (publisher position,
+ * then back pressure events), subscribers two (receiver position, then the slowest subscriber position) and
+ * system counters one per counter, in {@link com.aitusoftware.aether.net.model.SystemCountersRow} order.
+ *
+ * <p>The series of a session are released once its process no longer reports it, and those of every session and
+ * the system counters of a process once it is released, but are only reused after
+ * {@link #drainReleasedSeries(IntConsumer)} has reported them, so that state kept elsewhere by series can be
+ * cleared first.
+ */
+public final class RateTracker implements CounterSnapshotListener
+{
+    public static final int PUBLISHER_POSITION_SERIES = 0;
+    public static final int BACK_PRESSURE_SERIES = 1;
+    public static final int RECEIVER_POSITION_SERIES = 0;
+    public static final int SUBSCRIBER_POSITION_SERIES = 1;
+    public static final int SYSTEM_COUNTER_SERIES = 6;
+    private static final int SESSION_SERIES = 2;
+
+    private final Object2IntHashMap<String> publisherSeries = new Object2IntHashMap<>(-1);
+    private final Object2IntHashMap<String> subscriberSeries = new Object2IntHashMap<>(-1);
+    private final Object2IntHashMap<String> systemCountersSeries = new Object2IntHashMap<>(-1);
+    private final Map<String, ReportedSeries> reportedSeries = new HashMap<>();
+    private final Int2ObjectHashMap<String> sessionKeys = new Int2ObjectHashMap<>();
+    private final IntArrayList replacedSeries = new IntArrayList();
+    private final IntHashSet reportedSeriesSet = new IntHashSet();
+    private final IntArrayList releasedSeries = new IntArrayList();
+    private final IntArrayList releasedSystemCountersSeries = new IntArrayList();
+    private final RateWindows windows;
+    private final RateRollup rollup;
+
+    public RateTracker(final RateWindows windows)
+    {
+        this.windows = windows;
+        this.rollup = new RateRollup(windows);
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        final ReportedSeries reported = reportedSeries.computeIfAbsent(label, ignored -> new ReportedSeries());
+        for (int i = 0; i < publisherCounters.size(); i++)
+        {
+            final PublisherCounterSet counters = publisherCounters.get(i);
+            final int series = sessionSeries(reported.publishers, publisherSeries, label, i,
+                counters.channel(), counters.streamId(), counters.sessionId());
+            rollup.update(series + PUBLISHER_POSITION_SERIES, timestamp, counters.publisherPosition());
+            rollup.update(series + BACK_PRESSURE_SERIES, timestamp, counters.backPressureEvents());
+        }
+        for (int i = 0; i < subscriberCounters.size(); i++)
+        {
+            final SubscriberCounterSet counters = subscriberCounters.get(i);
+            final int series = sessionSeries(reported.subscribers, subscriberSeries, label, i,
+                counters.channel(), counters.streamId(), counters.sessionId());
+            rollup.update(series + RECEIVER_POSITION_SERIES, timestamp, counters.receiverPosition());
+            final Map<Long, Long> positions = counters.subscriberPositions();
+            if (positions != null && !positions.isEmpty())
+            {
+                long minPosition = Long.MAX_VALUE;
+                for (final Long position : positions.values())
+                {
+                    minPosition = Math.min(minPosition, position);
+                }
+                rollup.update(series + SUBSCRIBER_POSITION_SERIES, timestamp, minPosition);
+            }
+        }
+        releaseUnreported(reported.publishers, publisherSeries, publisherCounters.size());
+        releaseUnreported(reported.subscribers, subscriberSeries, subscriberCounters.size());
+        if (systemCounters != null)
+        {
+            if (reported.systemCountersSeries < 0)
+            {
+                reported.systemCountersSeries = series(systemCountersSeries, label, SYSTEM_COUNTER_SERIES);
+            }
+            final int series = reported.systemCountersSeries;
+            rollup.update(series, timestamp, systemCounters.bytesSent());
+            rollup.update(series + 1, timestamp, systemCounters.bytesReceived());
+            rollup.update(series + 2, timestamp, systemCounters.naksSent());
+            rollup.update(series + 3, timestamp, systemCounters.naksReceived());
+            rollup.update(series + 4, timestamp, systemCounters.errors());
+            rollup.update(series + 5, timestamp, systemCounters.clientTimeouts());
+        }
+    }
+
+    public RateWindows windows()
+    {
+        return windows;
+    }
+
+    public RateRollup rollup()
+    {
+        return rollup;
+    }
+
+    public int publisherSeries(final String key)
+    {
+        return publisherSeries.getValue(key);
+    }
+
+    public int subscriberSeries(final String key)
+    {
+        return subscriberSeries.getValue(key);
+    }
+
+    public int systemCountersSeries(final String label)
+    {
+        return systemCountersSeries.getValue(label);
+    }
+
+    /**
+     * Releases the series of a process that is no longer reporting.
+     *
+     * @param label label of the process
+     */
+    public void release(final String label)
+    {
+        final ReportedSeries reported = reportedSeries.remove(label);
+        if (reported == null)
+        {
+            return;
+        }
+        releaseUnreported(reported.publishers, publisherSeries, 0);
+        releaseUnreported(reported.subscribers, subscriberSeries, 0);
+        if (reported.systemCountersSeries >= 0)
+        {
+            systemCountersSeries.removeKey(label);
+            releasedSystemCountersSeries.addInt(reported.systemCountersSeries);
+        }
+    }
+
+    /**
+     * Reports each series released since the last call, then makes the series available for reuse.
+     *
+     * @param consumer receives the index of each released series
+     */
+    public void drainReleasedSeries(final IntConsumer consumer)
+    {
+        for (int i = 0; i < releasedSeries.size(); i++)
+        {
+            final int series = releasedSeries.getInt(i);
+            for (int j = 0; j < SESSION_SERIES; j++)
+            {
+                consumer.accept(series + j);
+            }
+            rollup.releaseSeries(series, SESSION_SERIES);
+        }
+        releasedSeries.clear();
+        for (int i = 0; i < releasedSystemCountersSeries.size(); i++)
+        {
+            final int series = releasedSystemCountersSeries.getInt(i);
+            for (int j = 0; j < SYSTEM_COUNTER_SERIES; j++)
+            {
+                consumer.accept(series + j);
+            }
+            rollup.releaseSeries(series, SYSTEM_COUNTER_SERIES);
+        }
+        releasedSystemCountersSeries.clear();
+    }
+
+    private int sessionSeries(
+        final ReportedSessions reported, final Object2IntHashMap<String> seriesByKey, final String label,
+        final int index, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        int series = reported.id(index, channel, streamId, sessionId);
+        if (series == ReportedSessions.UNKNOWN_ID)
+        {
+            if (index < reported.count())
+            {
+                replacedSeries.addInt(reported.id(index));
+            }
+            final String key = SessionKeys.key(label, channel, streamId, sessionId);
+            series = series(seriesByKey, key, SESSION_SERIES);
+            sessionKeys.put(series, key);
+            reported.set(index, channel, streamId, sessionId, series);
+        }
+        return series;
+    }
+
+    // sessions replaced at their position, or no longer reported at all, are released unless reported elsewhere
+    private void releaseUnreported(
+        final ReportedSessions reported, final Object2IntHashMap<String> seriesByKey, final int count)
+    {
+        for (int i = count; i < reported.count(); i++)
+        {
+            replacedSeries.addInt(reported.id(i));
+        }
+        reported.truncate(count);
+        if (replacedSeries.isEmpty())
+        {
+            return;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            reportedSeriesSet.add(reported.id(i));
+        }
+        for (int i = 0; i < replacedSeries.size(); i++)
+        {
+            final int series = replacedSeries.getInt(i);
+            // also guards against releasing a session reported at more than one position twice
+            if (reportedSeriesSet.add(series))
+            {
+                seriesByKey.removeKey(sessionKeys.remove(series));
+                releasedSeries.addInt(series);
+            }
+        }
+        replacedSeries.clear();
+        reportedSeriesSet.clear();
+    }
+
+    private int series(final Object2IntHashMap<String> seriesByKey, final String key, final int seriesPerKey)
+    {
+        int series = seriesByKey.getValue(key);
+        if (series == seriesByKey.missingValue())
+        {
+            series = rollup.addSeries(seriesPerKey);
+            seriesByKey.put(key, series);
+        }
+        return series;
+    }
+
+    // the sessions each process reported in its previous snapshot, so that keys are built only on change
+    private static final class ReportedSeries
+    {
+        private final ReportedSessions publishers = new ReportedSessions();
+        private final ReportedSessions subscribers = new ReportedSessions();
+        private int systemCountersSeries = -1;
+    }
+}
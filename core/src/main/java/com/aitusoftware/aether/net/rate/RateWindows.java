@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate windows parsed from a comma-separated list such as {@code 1s,10s,1m,5m,1h}.
+ * Supported suffixes are {@code ms}, {@code s}, {@code m} and {@code h}.
+ */
+public final class RateWindows
+{
+    private final long[] durations;
+    private final TimeUnit[] units;
+
+    private RateWindows(final long[] durations, final TimeUnit[] units)
+    {
+        this.durations = durations;
+        this.units = units;
+    }
+
+    public static RateWindows parse(final String windows)
+    {
+        final String[] tokens = windows.split(",");
+        final long[] durations = new long[tokens.length];
+        final TimeUnit[] units = new TimeUnit[tokens.length];
+        for (int i = 0; i < tokens.length; i++)
+        {
+            final String token = tokens[i].trim();
+            final int suffixStart = suffixStart(token);
+            if (suffixStart == 0 || suffixStart == token.length())
+            {
+                throw new IllegalArgumentException("Invalid rate window: " + token);
+            }
+            durations[i] = Long.parseLong(token.substring(0, suffixStart));
+            units[i] = unit(token.substring(suffixStart));
+            if (durations[i] <= 0)
+            {
+                throw new IllegalArgumentException("Invalid rate window: " + token);
+            }
+        }
+        if (tokens.length > Long.SIZE)
+        {
+            throw new IllegalArgumentException("Too many rate windows: " + tokens.length);
+        }
+        return new RateWindows(durations, units);
+    }
+
+    public int count()
+    {
+        return durations.length;
+    }
+
+    public long duration(final int window)
+    {
+        return durations[window];
+    }
+
+    public TimeUnit unit(final int window)
+    {
+        return units[window];
+    }
+
+    public long millis(final int window)
+    {
+        return units[window].toMillis(durations[window]);
+    }
+
+    public int indexOf(final long millis)
+    {
+        for (int i = 0; i < durations.length; i++)
+        {
+            if (millis(i) == millis)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // parses a single duration such as 30s into milliseconds
+    public static long parseMillis(final String duration)
+    {
+        return parse(duration).millis(0);
+    }
+
+    private static int suffixStart(final String token)
+    {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static TimeUnit unit(final String suffix)
+    {
+        switch (suffix)
+        {
+            case "ms":
+                return TimeUnit.MILLISECONDS;
+            case "s":
+                return TimeUnit.SECONDS;
+            case "m":
+                return TimeUnit.MINUTES;
+            case "h":
+                return TimeUnit.HOURS;
+            default:
+                throw new IllegalArgumentException("Unknown rate window unit: " + suffix);
+        }
+    }
+}
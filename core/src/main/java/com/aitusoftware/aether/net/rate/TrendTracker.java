@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import java.util.Arrays;
+
+/**
+ * Smoothed rates of change of gauges, such as lag or remaining buffer, which unlike counters may fall as well as
+ * rise.
+ *
+ * <p>Each sample's slope is folded into an exponentially weighted moving average, weighted by the time since the
+ * previous sample so that irregular snapshot intervals are handled: a sample {@code dt} after the last one has
+ * weight {@code 1 - exp(-dt / timeConstant)}.
+ */
+public final class TrendTracker
+{
+    public static final long DEFAULT_TIME_CONSTANT_MS = 10_000;
+    public static final long NO_TREND = Long.MIN_VALUE;
+    public static final long NO_ESTIMATE = -1;
+
+    private final double timeConstantMs;
+    private long[] lastTimes = new long[0];
+    private long[] lastValues = new long[0];
+    private double[] trends = new double[0];
+
+    public TrendTracker(final long timeConstantMs)
+    {
+        this.timeConstantMs = timeConstantMs;
+    }
+
+    // ignored unless the timestamp is later than that of the previous sample of the series
+    public void update(final int series, final long timestampMs, final long value)
+    {
+        ensureCapacity(series);
+        final long lastTime = lastTimes[series];
+        if (timestampMs <= lastTime)
+        {
+            return;
+        }
+        if (lastTime != 0)
+        {
+            final double elapsedMs = timestampMs - lastTime;
+            final double slope = (value - lastValues[series]) * 1000D / elapsedMs;
+            final double trend = trends[series];
+            trends[series] = Double.isNaN(trend) ?
+                slope : trend + (1 - Math.exp(-elapsedMs / timeConstantMs)) * (slope - trend);
+        }
+        lastTimes[series] = timestampMs;
+        lastValues[series] = value;
+    }
+
+    // forgets the samples of a series, such as one released by the RateTracker before it is reused
+    public void reset(final int series)
+    {
+        if (series < trends.length)
+        {
+            lastTimes[series] = 0;
+            lastValues[series] = 0;
+            trends[series] = Double.NaN;
+        }
+    }
+
+    // units per second, or NO_TREND until two samples have been seen
+    public long trend(final int series)
+    {
+        return series >= trends.length || Double.isNaN(trends[series]) ? NO_TREND : Math.round(trends[series]);
+    }
+
+    /**
+     * Estimates how long a gauge falling at its current trend will take to reach zero.
+     *
+     * @param value current value
+     * @param trend rate of change per second
+     * @return milliseconds until the value reaches zero, or NO_ESTIMATE if it is not falling
+     */
+    public static long timeToZeroMs(final long value, final long trend)
+    {
+        if (value <= 0)
+        {
+            return 0;
+        }
+        if (trend == NO_TREND || trend >= 0)
+        {
+            return NO_ESTIMATE;
+        }
+        return value * 1000 / -trend;
+    }
+
+    private void ensureCapacity(final int series)
+    {
+        if (series >= trends.length)
+        {
+            final int capacity = Math.max(16, Math.max(series + 1, trends.length * 2));
+            final int previousLength = trends.length;
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            lastValues = Arrays.copyOf(lastValues, capacity);
+            trends = Arrays.copyOf(trends, capacity);
+            Arrays.fill(trends, previousLength, capacity, Double.NaN);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.util.List;
 public final class AggregateUpdateListener implements CounterSnapshotListener
 {
     private final CounterSnapshotListener[] delegates;
+    private long generation;
 
     public AggregateUpdateListener(final CounterSnapshotListener... delegates)
     {
@@ -44,5 +45,11 @@ public final class AggregateUpdateListener implements CounterSnapshotListener
         {
             delegate.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
         }
+        generation++;
+    }
+
+    public long generation()
+    {
+        return generation;
     }
 }
@@ -15,33 +15,25 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.aitusoftware.aether.net;
+package com.aitusoftware.aether.net.util;
 
-import java.util.Optional;
-
-public final class Context
+final class CharSequences
 {
-    private Mode mode = Configuration.mode();
-
-    public Mode mode()
-    {
-        return mode;
-    }
-
-    public Context mode(final Mode mode)
+    private CharSequences()
     {
-        this.mode = mode;
-        return this;
     }
 
-    public static final class Configuration
+    // channels rarely change for a given holder, so the previous copy is kept while the content matches
+    static String copyOf(final String previous, final CharSequence value)
     {
-        public static final String MODE_PROPERTY_NAME = "aether.net.mode";
-
-        public static Mode mode()
+        if (value == null)
+        {
+            return null;
+        }
+        if (previous != null && previous.contentEquals(value))
         {
-            return Optional.ofNullable(System.getProperty(MODE_PROPERTY_NAME))
-                .map(Mode::valueOf).orElse(Mode.NETWORK);
+            return previous;
         }
+        return value.toString();
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.agrona.concurrent.NanoClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the latest snapshot from each label until the conflation window closes, so that a burst of snapshots
+ * costs one downstream update per label. Snapshots keep their original timestamps, and counters are cumulative,
+ * so rates computed from the conflated stream are unchanged.
+ * <p>
+ * Counter sets are copied on arrival, as the sets passed to {@link #onSnapshot} are only valid for the call.
+ * Counts may be read from any thread.
+ */
+public final class ConflatingListener implements CounterSnapshotListener
+{
+    private final Map<String, PendingSnapshot> snapshotByLabel = new HashMap<>();
+    private final List<PendingSnapshot> pendingSnapshots = new ArrayList<>();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong conflatedCount = new AtomicLong();
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final long windowNs;
+    private final NanoClock nanoClock;
+    private final CounterSnapshotListener delegate;
+    private long windowCloseNs;
+
+    public ConflatingListener(
+        final long windowMs, final NanoClock nanoClock, final CounterSnapshotListener delegate)
+    {
+        this.windowNs = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.nanoClock = nanoClock;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        receivedCount.lazySet(receivedCount.get() + 1);
+        if (windowNs == 0)
+        {
+            delegate.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+            appliedCount.lazySet(appliedCount.get() + 1);
+            return;
+        }
+
+        final PendingSnapshot snapshot = snapshotByLabel.computeIfAbsent(label, PendingSnapshot::new);
+        if (snapshot.pending)
+        {
+            conflatedCount.lazySet(conflatedCount.get() + 1);
+        }
+        else
+        {
+            if (pendingSnapshots.isEmpty())
+            {
+                windowCloseNs = nanoClock.nanoTime() + windowNs;
+            }
+            snapshot.pending = true;
+            pendingSnapshots.add(snapshot);
+        }
+        snapshot.copy(timestamp, publisherCounters, subscriberCounters, systemCounters);
+    }
+
+    /**
+     * Delivers the held snapshots if the window has closed.
+     *
+     * @param nowNs current time from the same clock passed to the constructor
+     * @return the number of snapshots delivered
+     */
+    public int flush(final long nowNs)
+    {
+        final int pendingCount = pendingSnapshots.size();
+        if (pendingCount == 0 || nowNs - windowCloseNs < 0)
+        {
+            return 0;
+        }
+        for (int i = 0; i < pendingCount; i++)
+        {
+            final PendingSnapshot snapshot = pendingSnapshots.get(i);
+            snapshot.pending = false;
+            delegate.onSnapshot(
+                snapshot.label, snapshot.timestamp,
+                snapshot.publishers, snapshot.subscribers, snapshot.systemCountersOrNull());
+        }
+        pendingSnapshots.clear();
+        appliedCount.lazySet(appliedCount.get() + pendingCount);
+        return pendingCount;
+    }
+
+    public long receivedCount()
+    {
+        return receivedCount.get();
+    }
+
+    public long conflatedCount()
+    {
+        return conflatedCount.get();
+    }
+
+    public long appliedCount()
+    {
+        return appliedCount.get();
+    }
+
+    private static final class PendingSnapshot
+    {
+        private final String label;
+        private final List<PublisherCounterSet> publishers = new ArrayList<>();
+        private final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+        private final List<MutablePublisherCounterSet> publisherPool = new ArrayList<>();
+        private final List<MutableSubscriberCounterSet> subscriberPool = new ArrayList<>();
+        private final MutableSystemCounters systemCounters = new MutableSystemCounters();
+        private boolean hasSystemCounters;
+        private boolean pending;
+        private long timestamp;
+
+        PendingSnapshot(final String label)
+        {
+            this.label = label;
+        }
+
+        void copy(
+            final long timestamp,
+            final List<PublisherCounterSet> publisherCounters,
+            final List<SubscriberCounterSet> subscriberCounters,
+            final SystemCounters systemCounters)
+        {
+            this.timestamp = timestamp;
+            publishers.clear();
+            for (int i = 0; i < publisherCounters.size(); i++)
+            {
+                if (i == publisherPool.size())
+                {
+                    publisherPool.add(new MutablePublisherCounterSet());
+                }
+                publishers.add(publisherPool.get(i).copy(publisherCounters.get(i)));
+            }
+            subscribers.clear();
+            for (int i = 0; i < subscriberCounters.size(); i++)
+            {
+                if (i == subscriberPool.size())
+                {
+                    subscriberPool.add(new MutableSubscriberCounterSet());
+                }
+                subscribers.add(subscriberPool.get(i).copy(subscriberCounters.get(i)));
+            }
+            hasSystemCounters = systemCounters != null;
+            if (hasSystemCounters)
+            {
+                this.systemCounters.copy(systemCounters);
+            }
+        }
+
+        SystemCounters systemCountersOrNull()
+        {
+            return hasSystemCounters ? systemCounters : null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.agrona.collections.Object2LongHashMap;
+
+import java.util.List;
+
+/**
+ * Forwards at most one snapshot per label in each interval, by snapshot timestamp. Counters are cumulative, so
+ * dropped snapshots lose resolution but not totals.
+ */
+public final class DownsamplingListener implements CounterSnapshotListener
+{
+    private final Object2LongHashMap<String> lastForwardedByLabel = new Object2LongHashMap<>(Long.MIN_VALUE);
+    private final long intervalMs;
+    private final CounterSnapshotListener delegate;
+
+    public DownsamplingListener(final long intervalMs, final CounterSnapshotListener delegate)
+    {
+        this.intervalMs = intervalMs;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        final long lastForwarded = lastForwardedByLabel.getValue(label);
+        if (lastForwarded != lastForwardedByLabel.missingValue() && timestamp - lastForwarded < intervalMs)
+        {
+            return;
+        }
+        lastForwardedByLabel.put(label, timestamp);
+        delegate.onSnapshot(label, timestamp, publisherCounters, subscriberCounters, systemCounters);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+
+/**
+ * A publisher counter set owned by the holder, for snapshots that must outlive the listener call that delivered
+ * them.
+ */
+public final class MutablePublisherCounterSet extends PublisherCounterSet
+{
+    private String channel;
+    private int streamId;
+    private int sessionId;
+    private long publisherPosition;
+    private long publisherLimit;
+    private long senderPosition;
+    private long senderLimit;
+    private long backPressureEvents;
+
+    public MutablePublisherCounterSet copy(final PublisherCounterSet source)
+    {
+        return set(
+            CharSequences.copyOf(channel, source.channel()),
+            source.streamId(),
+            source.sessionId(),
+            source.publisherPosition(),
+            source.publisherLimit(),
+            source.senderPosition(),
+            source.senderLimit(),
+            source.backPressureEvents());
+    }
+
+    public MutablePublisherCounterSet set(
+        final String channel,
+        final int streamId,
+        final int sessionId,
+        final long publisherPosition,
+        final long publisherLimit,
+        final long senderPosition,
+        final long senderLimit,
+        final long backPressureEvents)
+    {
+        this.channel = channel;
+        this.streamId = streamId;
+        this.sessionId = sessionId;
+        this.publisherPosition = publisherPosition;
+        this.publisherLimit = publisherLimit;
+        this.senderPosition = senderPosition;
+        this.senderLimit = senderLimit;
+        this.backPressureEvents = backPressureEvents;
+        return this;
+    }
+
+    @Override
+    public CharSequence channel()
+    {
+        return channel;
+    }
+
+    @Override
+    public int streamId()
+    {
+        return streamId;
+    }
+
+    @Override
+    public int sessionId()
+    {
+        return sessionId;
+    }
+
+    @Override
+    public long publisherPosition()
+    {
+        return publisherPosition;
+    }
+
+    @Override
+    public long publisherLimit()
+    {
+        return publisherLimit;
+    }
+
+    @Override
+    public long senderPosition()
+    {
+        return senderPosition;
+    }
+
+    @Override
+    public long senderLimit()
+    {
+        return senderLimit;
+    }
+
+    @Override
+    public long backPressureEvents()
+    {
+        return backPressureEvents;
+    }
+}
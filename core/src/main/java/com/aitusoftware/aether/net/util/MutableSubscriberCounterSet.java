@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A subscriber counter set owned by the holder, for snapshots that must outlive the listener call that delivered
+ * them.
+ */
+public final class MutableSubscriberCounterSet extends SubscriberCounterSet
+{
+    private final Map<Long, Long> subscriberPositions = new HashMap<>();
+    private String channel;
+    private int streamId;
+    private int sessionId;
+    private long receiverPosition;
+    private long receiverHighWaterMark;
+    private boolean hasPositions;
+
+    public MutableSubscriberCounterSet copy(final SubscriberCounterSet source)
+    {
+        set(
+            CharSequences.copyOf(channel, source.channel()),
+            source.streamId(),
+            source.sessionId(),
+            source.receiverPosition(),
+            source.receiverHighWaterMark());
+        final Map<Long, Long> sourcePositions = source.subscriberPositions();
+        if (sourcePositions == null)
+        {
+            return withoutPositions();
+        }
+        subscriberPositions.putAll(sourcePositions);
+        return this;
+    }
+
+    // clears the subscriber positions, which are then added through subscriberPositions()
+    public MutableSubscriberCounterSet set(
+        final String channel,
+        final int streamId,
+        final int sessionId,
+        final long receiverPosition,
+        final long receiverHighWaterMark)
+    {
+        this.channel = channel;
+        this.streamId = streamId;
+        this.sessionId = sessionId;
+        this.receiverPosition = receiverPosition;
+        this.receiverHighWaterMark = receiverHighWaterMark;
+        subscriberPositions.clear();
+        hasPositions = true;
+        return this;
+    }
+
+    // subscriberPositions() then returns null, as for a subscriber whose positions were not reported
+    public MutableSubscriberCounterSet withoutPositions()
+    {
+        subscriberPositions.clear();
+        hasPositions = false;
+        return this;
+    }
+
+    @Override
+    public CharSequence channel()
+    {
+        return channel;
+    }
+
+    @Override
+    public int streamId()
+    {
+        return streamId;
+    }
+
+    @Override
+    public int sessionId()
+    {
+        return sessionId;
+    }
+
+    @Override
+    public Map<Long, Long> subscriberPositions()
+    {
+        return hasPositions ? subscriberPositions : null;
+    }
+
+    @Override
+    public long receiverPosition()
+    {
+        return receiverPosition;
+    }
+
+    @Override
+    public long receiverHighWaterMark()
+    {
+        return receiverHighWaterMark;
+    }
+}
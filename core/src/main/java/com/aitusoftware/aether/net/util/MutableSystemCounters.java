@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.model.SystemCounters;
+
+/**
+ * System counters owned by the holder, for snapshots that must outlive the listener call that delivered them.
+ */
+public final class MutableSystemCounters extends SystemCounters
+{
+    private long bytesSent;
+    private long bytesReceived;
+    private long naksSent;
+    private long naksReceived;
+    private long errors;
+    private long clientTimeouts;
+
+    public MutableSystemCounters copy(final SystemCounters source)
+    {
+        return set(
+            source.bytesSent(),
+            source.bytesReceived(),
+            source.naksSent(),
+            source.naksReceived(),
+            source.errors(),
+            source.clientTimeouts());
+    }
+
+    public MutableSystemCounters set(
+        final long bytesSent,
+        final long bytesReceived,
+        final long naksSent,
+        final long naksReceived,
+        final long errors,
+        final long clientTimeouts)
+    {
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.naksSent = naksSent;
+        this.naksReceived = naksReceived;
+        this.errors = errors;
+        this.clientTimeouts = clientTimeouts;
+        return this;
+    }
+
+    @Override
+    public long bytesSent()
+    {
+        return bytesSent;
+    }
+
+    @Override
+    public long bytesReceived()
+    {
+        return bytesReceived;
+    }
+
+    @Override
+    public long naksSent()
+    {
+        return naksSent;
+    }
+
+    @Override
+    public long naksReceived()
+    {
+        return naksReceived;
+    }
+
+    @Override
+    public long errors()
+    {
+        return errors;
+    }
+
+    @Override
+    public long clientTimeouts()
+    {
+        return clientTimeouts;
+    }
+}
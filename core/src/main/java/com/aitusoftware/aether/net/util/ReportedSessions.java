@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import java.util.Arrays;
+
+/**
+ * The sessions of one role that a process reported in its previous snapshot, in order, each with an id assigned
+ * by the holder. While a process keeps reporting the same sessions, their ids are found by comparing with the
+ * previous snapshot rather than by building and hashing a key.
+ */
+public final class ReportedSessions
+{
+    public static final int UNKNOWN_ID = -1;
+
+    private String[] channels = new String[0];
+    private int[] streamIds = new int[0];
+    private int[] sessionIds = new int[0];
+    private int[] ids = new int[0];
+    private int count;
+
+    /**
+     * Id of the session reported at a position in the previous snapshot, if it is the given session.
+     *
+     * @param index     position of the session in the snapshot
+     * @param channel   channel of the session
+     * @param streamId  stream id of the session
+     * @param sessionId session id of the session
+     * @return the id, or UNKNOWN_ID if a different session, or none, was reported at the position
+     */
+    public int id(final int index, final CharSequence channel, final int streamId, final int sessionId)
+    {
+        if (index >= count || streamIds[index] != streamId || sessionIds[index] != sessionId ||
+            !channels[index].contentEquals(channel))
+        {
+            return UNKNOWN_ID;
+        }
+        return ids[index];
+    }
+
+    public int id(final int index)
+    {
+        return ids[index];
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public void set(
+        final int index, final CharSequence channel, final int streamId, final int sessionId, final int id)
+    {
+        if (index >= channels.length)
+        {
+            final int capacity = Math.max(16, Math.max(index + 1, channels.length * 2));
+            channels = Arrays.copyOf(channels, capacity);
+            streamIds = Arrays.copyOf(streamIds, capacity);
+            sessionIds = Arrays.copyOf(sessionIds, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        channels[index] = CharSequences.copyOf(channels[index], channel);
+        streamIds[index] = streamId;
+        sessionIds[index] = sessionId;
+        ids[index] = id;
+        count = Math.max(count, index + 1);
+    }
+
+    // forgets the sessions after the number reported in the latest snapshot
+    public void truncate(final int count)
+    {
+        this.count = Math.min(this.count, count);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefixes the labels of snapshots from one source with the source name, so that processes with the same label
+ * in different sources remain distinct once merged.
+ */
+public final class SourceTaggingListener implements CounterSnapshotListener
+{
+    public static final char SEPARATOR = ':';
+
+    private final Map<String, String> taggedLabels = new HashMap<>();
+    private final String source;
+    private final CounterSnapshotListener delegate;
+
+    public SourceTaggingListener(final String source, final CounterSnapshotListener delegate)
+    {
+        this.source = source;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onSnapshot(
+        final String label, final long timestamp,
+        final List<PublisherCounterSet> publisherCounters,
+        final List<SubscriberCounterSet> subscriberCounters,
+        final SystemCounters systemCounters)
+    {
+        String taggedLabel = taggedLabels.get(label);
+        if (taggedLabel == null)
+        {
+            taggedLabel = source + SEPARATOR + label;
+            taggedLabels.put(label, taggedLabel);
+        }
+        delegate.onSnapshot(taggedLabel, timestamp, publisherCounters, subscriberCounters, systemCounters);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.alert;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AlertEngineTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:40123";
+    private static final String KEY = SessionKeys.key("host-1", CHANNEL, 10, 7);
+
+    private final RateWindows rateWindows = RateWindows.parse("1s");
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(rateWindows);
+    private final SnapshotModel model = new SnapshotModel(rateWindows);
+    private final List<Alert> alerts = new ArrayList<>();
+    private final AlertEngine alertEngine = new AlertEngine(rules(), this::time, alerts::add);
+    private long timeMs;
+
+    @Test
+    void shouldFireOnceBreachedForDurationAndResolvePastClearThreshold()
+    {
+        sendBacklog(1000L, 2000L);
+        sendBacklog(2000L, 2000L);
+        assertThat(alerts).isEmpty();
+
+        sendBacklog(3000L, 2000L);
+        assertThat(alerts).hasSize(1);
+        assertAlert(alerts.get(0), Alert.State.FIRING, 2000L, 3000L);
+
+        sendBacklog(4000L, 3000L);
+        // below the threshold, but not past the clear threshold
+        sendBacklog(5000L, 800L);
+        assertThat(alerts).hasSize(1);
+
+        sendBacklog(6000L, 400L);
+        assertThat(alerts).hasSize(2);
+        assertAlert(alerts.get(1), Alert.State.RESOLVED, 400L, 6000L);
+    }
+
+    @Test
+    void shouldRestartDurationWhenBreachIsInterrupted()
+    {
+        sendBacklog(1000L, 2000L);
+        sendBacklog(2000L, 2000L);
+        sendBacklog(3000L, 900L);
+        sendBacklog(4000L, 2000L);
+        sendBacklog(5000L, 2000L);
+        assertThat(alerts).isEmpty();
+
+        sendBacklog(6000L, 2000L);
+        assertThat(alerts).hasSize(1);
+        assertAlert(alerts.get(0), Alert.State.FIRING, 2000L, 6000L);
+    }
+
+    @Test
+    void shouldResolveWhenSessionDisappears()
+    {
+        sendBacklog(1000L, 2000L);
+        sendBacklog(3000L, 2000L);
+        assertThat(alerts).hasSize(1);
+
+        timeMs = 4000L;
+        snapshot(Collections.emptyList());
+        assertThat(alerts).hasSize(2);
+        assertAlert(alerts.get(1), Alert.State.RESOLVED, Long.MIN_VALUE, 4000L);
+    }
+
+    @Test
+    void shouldRejectInvalidRules()
+    {
+        final Properties properties = properties();
+        properties.setProperty("aether.net.alert.backlog.below", "100");
+        assertThrows(IllegalArgumentException.class, () -> AlertRule.parse(properties, rateWindows));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new AlertRule("backlog", AlertMetric.SEND_BACKLOG, true, 1000L, 2000L, 0L, 0));
+    }
+
+    private void sendBacklog(final long timestamp, final long backlog)
+    {
+        timeMs = timestamp;
+        snapshot(Collections.singletonList(
+            new MutablePublisherCounterSet().set(CHANNEL, 10, 7, 10_000L + backlog, 100_000L, 10_000L, 0L, 0L)));
+    }
+
+    private void snapshot(final List<PublisherCounterSet> publishers)
+    {
+        topologyIndex.onSnapshot("host-1", timeMs, publishers, Collections.emptyList(), null);
+        rateTracker.onSnapshot("host-1", timeMs, publishers, Collections.emptyList(), null);
+        model.update(topologyIndex, rateTracker);
+        alertEngine.evaluate(model, rateTracker);
+    }
+
+    private long time()
+    {
+        return timeMs;
+    }
+
+    private static void assertAlert(final Alert alert, final Alert.State state, final long value, final long timestamp)
+    {
+        assertThat(alert.rule()).isEqualTo("backlog");
+        assertThat(alert.state()).isEqualTo(state);
+        assertThat(alert.key()).isEqualTo(KEY);
+        assertThat(alert.value()).isEqualTo(value);
+        assertThat(alert.threshold()).isEqualTo(1000L);
+        assertThat(alert.timestamp()).isEqualTo(timestamp);
+    }
+
+    private List<AlertRule> rules()
+    {
+        return AlertRule.parse(properties(), rateWindows);
+    }
+
+    private static Properties properties()
+    {
+        final Properties properties = new Properties();
+        properties.setProperty(AlertRule.RULES_PROPERTY_NAME, "backlog");
+        properties.setProperty("aether.net.alert.backlog.metric", AlertMetric.SEND_BACKLOG.name());
+        properties.setProperty("aether.net.alert.backlog.above", "1000");
+        properties.setProperty("aether.net.alert.backlog.clear", "500");
+        properties.setProperty("aether.net.alert.backlog.for", "2s");
+        return properties;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.binary;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.SystemCountersRow;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class BinarySnapshotEncoderTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:54567";
+
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(RateWindows.parse("1s,1m"));
+    private final SnapshotModel model = new SnapshotModel(rateTracker.windows());
+    private final BinarySnapshotEncoder encoder = new BinarySnapshotEncoder(model);
+    private final BinarySnapshotDecoder decoder = new BinarySnapshotDecoder();
+
+    @Test
+    void shouldDecodeEncodedSnapshot()
+    {
+        snapshot(1000L, 0L);
+        snapshot(2000L, 4096L);
+
+        final int length = encoder.encode(42L);
+        final byte[] bytes = new byte[length + 3];
+        encoder.buffer().getBytes(0, bytes, 3, length);
+        decoder.wrap(new UnsafeBuffer(bytes), 3);
+
+        assertThat(decoder.sequence()).isEqualTo(42L);
+        assertThat(decoder.rateCount()).isEqualTo(2);
+        assertThat(decoder.rateWindowMillis(0)).isEqualTo(1000L);
+        assertThat(decoder.rateWindowMillis(1)).isEqualTo(60_000L);
+        assertThat(decoder.publisherCount()).isEqualTo(model.publisherCount());
+        assertThat(decoder.subscriberCount()).isEqualTo(2);
+        assertThat(decoder.positionCount()).isEqualTo(2);
+        assertThat(decoder.systemCountersCount()).isEqualTo(1);
+        assertThat(decoder.stringCount()).isEqualTo(model.stringCount());
+        for (int i = 0; i < model.stringCount(); i++)
+        {
+            assertThat(decoder.string(i)).isEqualTo(model.string(i));
+        }
+
+        final PublisherRow publisher = model.publisher(0);
+        final BinarySnapshotDecoder.PublisherDecoder publisherDecoder = decoder.publisher(0);
+        assertThat(decoder.string(publisherDecoder.labelId())).isEqualTo("host-1");
+        assertThat(decoder.string(publisherDecoder.channelId())).isEqualTo(CHANNEL);
+        assertThat(publisherDecoder.streamId()).isEqualTo(10);
+        assertThat(publisherDecoder.sessionId()).isEqualTo(7);
+        assertThat(publisherDecoder.publisherPosition()).isEqualTo(4096L);
+        assertThat(publisherDecoder.publisherLimit()).isEqualTo(publisher.publisherLimit());
+        assertThat(publisherDecoder.senderPosition()).isEqualTo(publisher.senderPosition());
+        assertThat(publisherDecoder.senderLimit()).isEqualTo(publisher.senderLimit());
+        assertThat(publisherDecoder.backPressureEvents()).isEqualTo(3L);
+        assertThat(publisherDecoder.sendBacklog()).isEqualTo(publisher.sendBacklog());
+        assertThat(publisherDecoder.remainingBuffer()).isEqualTo(publisher.remainingBuffer());
+        assertThat(publisherDecoder.firstSubscriber()).isEqualTo(0);
+        assertThat(publisherDecoder.subscriberCount()).isEqualTo(2);
+        assertThat(publisherDecoder.hasRate(0)).isTrue();
+        assertThat(publisherDecoder.rate(0)).isEqualTo(4096L);
+
+        for (int i = 0; i < publisher.subscriberCount(); i++)
+        {
+            final SubscriberRow subscriber = publisher.subscriber(i);
+            final BinarySnapshotDecoder.SubscriberDecoder subscriberDecoder = decoder.subscriber(i);
+            assertThat(decoder.string(subscriberDecoder.labelId())).isEqualTo(subscriber.label());
+            assertThat(subscriberDecoder.sessionId()).isEqualTo(7);
+            assertThat(subscriberDecoder.receiverPosition()).isEqualTo(subscriber.receiverPosition());
+            assertThat(subscriberDecoder.receiverHighWaterMark()).isEqualTo(subscriber.receiverHighWaterMark());
+            assertThat(subscriberDecoder.positionCount()).isEqualTo(subscriber.positionCount());
+            assertThat(subscriberDecoder.hasReceiverRate(0)).isTrue();
+            assertThat(subscriberDecoder.receiverRate(0)).isEqualTo(subscriber.receiverRates().get(0));
+            assertThat(subscriberDecoder.hasSubscriberRate(0)).isEqualTo(subscriber.subscriberRates().has(0));
+            for (int j = 0; j < subscriber.positionCount(); j++)
+            {
+                final int positionIndex = subscriberDecoder.firstPosition() + j;
+                assertThat(decoder.registrationId(positionIndex)).isEqualTo(subscriber.registrationId(j));
+                assertThat(decoder.position(positionIndex)).isEqualTo(subscriber.position(j));
+            }
+        }
+        assertThat(decoder.subscriber(0).positionCount() + decoder.subscriber(1).positionCount()).isEqualTo(2);
+
+        final BinarySnapshotDecoder.SystemCountersDecoder systemCounters = decoder.systemCounters(0);
+        assertThat(decoder.string(systemCounters.labelId())).isEqualTo("host-1");
+        assertThat(systemCounters.value(SystemCountersRow.BYTES_SENT)).isEqualTo(2000L);
+        assertThat(systemCounters.value(SystemCountersRow.CLIENT_TIMEOUTS)).isEqualTo(6L);
+        assertThat(systemCounters.hasRate(SystemCountersRow.BYTES_SENT, 0)).isTrue();
+        assertThat(systemCounters.rate(SystemCountersRow.BYTES_SENT, 0)).isEqualTo(1000L);
+        assertThat(systemCounters.hasRate(SystemCountersRow.ERRORS, 1)).isTrue();
+        assertThat(systemCounters.rate(SystemCountersRow.ERRORS, 1)).isEqualTo(0L);
+    }
+
+    // host-1 publishes and subscribes with positions, host-2 subscribes without reporting positions
+    private void snapshot(final long timestamp, final long position)
+    {
+        final PublisherCounterSet publisher = new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, position, position + 65536, position, position, 3L);
+        final MutableSubscriberCounterSet withPositions = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, position, position);
+        withPositions.subscriberPositions().put(100L, position - 1024);
+        withPositions.subscriberPositions().put(101L, position - 2048);
+        final SubscriberCounterSet withoutPositions = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, position, position)
+            .withoutPositions();
+
+        apply("host-1", timestamp, Collections.singletonList(publisher), Collections.singletonList(withPositions),
+            new MutableSystemCounters().set(timestamp, 2, 3, 4, 5, 6));
+        apply("host-2", timestamp, Collections.emptyList(), Collections.singletonList(withoutPositions), null);
+        model.update(topologyIndex, rateTracker);
+    }
+
+    private void apply(
+        final String label,
+        final long timestamp,
+        final List<PublisherCounterSet> publishers,
+        final List<SubscriberCounterSet> subscribers,
+        final SystemCounters systemCounters)
+    {
+        topologyIndex.onSnapshot(label, timestamp, publishers, subscribers, systemCounters);
+        rateTracker.onSnapshot(label, timestamp, publishers, subscribers, systemCounters);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.history;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import org.agrona.IoUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class HistoryWriterTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:54567";
+
+    private File directory;
+    private HistoryWriter writer;
+    private HistoryReader reader;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("history").toFile();
+        writer = new HistoryWriter(directory, 1024 * 1024, 2);
+        reader = new HistoryReader(directory);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        writer.close();
+        IoUtil.delete(directory, true);
+    }
+
+    @Test
+    void shouldQueryRecordsBySessionAndType() throws IOException
+    {
+        writer.onSnapshot("host-1", 1000L,
+            Collections.singletonList(publisher(7, 4096L)), Collections.emptyList(), null);
+        writer.onSnapshot("host-1", 2000L,
+            Collections.singletonList(publisher(7, 8192L)), Collections.emptyList(), null);
+        writer.onSnapshot("host-2", 2000L,
+            Collections.singletonList(publisher(7, 65536L)), Collections.emptyList(), null);
+
+        final List<long[]> records = query("host-1", 7, HistoryLayout.PUBLISHER, 0, Long.MAX_VALUE);
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0)[0]).isEqualTo(1000L);
+        assertThat(records.get(0)[1]).isEqualTo(4096L);
+        assertThat(records.get(1)[0]).isEqualTo(2000L);
+        assertThat(records.get(1)[1]).isEqualTo(8192L);
+        assertThat(query("host-1", 7, HistoryLayout.SUBSCRIBER, 0, Long.MAX_VALUE)).isEmpty();
+        assertThat(query("host-1", 7, HistoryLayout.PUBLISHER, 1500L, Long.MAX_VALUE)).hasSize(1);
+        assertThat(query("host-1", 8, HistoryLayout.PUBLISHER, 0, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void shouldRecordSubscribersWithAndWithoutPositions() throws IOException
+    {
+        final MutableSubscriberCounterSet withPositions = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, 900L, 950L);
+        withPositions.subscriberPositions().put(1L, 700L);
+        withPositions.subscriberPositions().put(2L, 800L);
+        final SubscriberCounterSet withoutPositions = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 8, 900L, 950L)
+            .withoutPositions();
+
+        writer.onSnapshot("host-1", 1000L,
+            Collections.emptyList(), Arrays.asList(withPositions, withoutPositions), null);
+
+        final long[] positions = query("host-1", 7, HistoryLayout.SUBSCRIBER, 0, Long.MAX_VALUE).get(0);
+        assertThat(positions).isEqualTo(new long[]{1000L, 900L, 950L, 700L, 800L, 2L});
+        final long[] noPositions = query("host-1", 8, HistoryLayout.SUBSCRIBER, 0, Long.MAX_VALUE).get(0);
+        assertThat(noPositions).isEqualTo(new long[]{1000L, 900L, 950L, 0L, 0L, -1L});
+    }
+
+    @Test
+    void shouldFindKeysAddedAfterPreviousQuery() throws IOException
+    {
+        assertThat(query("host-1", 7, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).isEmpty();
+
+        writer.onSnapshot("host-1", 1000L,
+            Collections.singletonList(publisher(7, 4096L)), Collections.emptyList(), null);
+        assertThat(query("host-1", 7, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+        assertThat(query("host-1", 8, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).isEmpty();
+
+        writer.onSnapshot("host-1", 2000L,
+            Collections.singletonList(publisher(8, 4096L)), Collections.emptyList(), null);
+        assertThat(query("host-1", 7, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+        assertThat(query("host-1", 8, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+    }
+
+    @Test
+    void shouldCompactKeysOfDeletedSegments() throws IOException
+    {
+        writer.close();
+        IoUtil.delete(directory, true);
+        writer = new HistoryWriter(directory, HistoryLayout.RECORD_LENGTH * 2, 1);
+
+        writer.onSnapshot("host-1", 1000L,
+            Collections.singletonList(publisher(7, 4096L)), Collections.emptyList(), null);
+        writer.onSnapshot("host-1", 2000L,
+            Collections.singletonList(publisher(8, 4096L)), Collections.emptyList(), null);
+        assertThat(query("host-1", 7, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+        assertThat(keyLineCount()).isEqualTo(2);
+
+        writer.onSnapshot("host-1", 3000L,
+            Collections.singletonList(publisher(8, 8192L)), Collections.emptyList(), null);
+
+        assertThat(keyLineCount()).isEqualTo(1);
+        assertThat(query("host-1", 7, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).isEmpty();
+        assertThat(query("host-1", 8, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+
+        writer.close();
+        writer = new HistoryWriter(directory, HistoryLayout.RECORD_LENGTH * 2, 1);
+        writer.onSnapshot("host-1", 4000L,
+            Collections.singletonList(publisher(9, 4096L)), Collections.emptyList(), null);
+
+        assertThat(keyLineCount()).isEqualTo(2);
+        assertThat(query("host-1", 8, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+        assertThat(query("host-1", 9, HistoryReader.ANY_TYPE, 0, Long.MAX_VALUE)).hasSize(1);
+    }
+
+    private int keyLineCount() throws IOException
+    {
+        return Files.readAllLines(new File(directory, HistoryLayout.KEYS_FILE_NAME).toPath()).size();
+    }
+
+    // timestamp followed by the columns of each matching record
+    private List<long[]> query(
+        final String label, final int sessionId, final int type, final long from, final long to) throws IOException
+    {
+        final List<long[]> records = new ArrayList<>();
+        reader.query(SessionKeys.key(label, CHANNEL, 10, sessionId), type, from, to,
+            (timestamp, recordType, columns) ->
+            {
+                final long[] record = new long[columns.length + 1];
+                record[0] = timestamp;
+                System.arraycopy(columns, 0, record, 1, columns.length);
+                records.add(record);
+            });
+        return records;
+    }
+
+    private static PublisherCounterSet publisher(final int sessionId, final long position)
+    {
+        return new MutablePublisherCounterSet().set(CHANNEL, 10, sessionId, position, position * 2, 0, 0, 0);
+    }
+}
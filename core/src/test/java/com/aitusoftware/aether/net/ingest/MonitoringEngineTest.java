@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.Context;
+import com.aitusoftware.aether.net.Mode;
+import com.aitusoftware.aether.net.alert.Alert;
+import com.aitusoftware.aether.net.alert.AlertMetric;
+import com.aitusoftware.aether.net.alert.AlertRule;
+import com.aitusoftware.aether.net.journal.JournalWriter;
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.SubscriberRow;
+import com.aitusoftware.aether.net.model.TopMetric;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class MonitoringEngineTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final List<Alert> alerts = new ArrayList<>();
+    private final List<Boolean> generations = new ArrayList<>();
+    private File journal;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        journal = File.createTempFile("journal", ".bin");
+        try (JournalWriter writer = new JournalWriter(journal))
+        {
+            writer.onSnapshot("host-1", 1000L, publisher(1000L, 1000L), Collections.emptyList(),
+                new MutableSystemCounters().set(0, 0, 0, 0, 0, 0));
+            writer.onSnapshot("host-2", 1000L, Collections.emptyList(), subscriber(1000L), null);
+            writer.onSnapshot("host-1", 2000L, publisher(5000L, 3000L), Collections.emptyList(),
+                new MutableSystemCounters().set(2048, 0, 0, 0, 0, 0));
+            writer.onSnapshot("host-2", 2000L, Collections.emptyList(), subscriber(3000L), null);
+        }
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        journal.delete();
+    }
+
+    @Test
+    void shouldApplyReplayedSnapshotsToModelRankingsAndAlerts()
+    {
+        try (MonitoringEngine engine = new MonitoringEngine(context(), alerts::add))
+        {
+            assertThat(engine.model().publisherCount()).isEqualTo(0);
+            engine.addListener((monitoringEngine, topologyChanged) -> generations.add(topologyChanged));
+
+            assertThat(engine.doWork()).isGreaterThan(0);
+            assertThat(engine.doWork()).isEqualTo(0);
+
+            assertThat(generations).containsExactly(true);
+            assertThat(engine.ingestCounters().receivedCount()).isEqualTo(4L);
+
+            final SnapshotModel model = engine.model();
+            assertThat(model.publisherCount()).isEqualTo(1);
+            final PublisherRow publisher = model.publisher(0);
+            assertThat(publisher.label()).isEqualTo("host-1");
+            assertThat(publisher.publisherPosition()).isEqualTo(5000L);
+            assertThat(publisher.rate(0)).isEqualTo(4000L);
+            assertThat(publisher.subscriberCount()).isEqualTo(1);
+            final SubscriberRow subscriber = publisher.subscriber(0);
+            assertThat(subscriber.label()).isEqualTo("host-2");
+            assertThat(subscriber.lag()).isEqualTo(2000L);
+            assertThat(model.systemCountersCount()).isEqualTo(1);
+            assertThat(model.systemCounters(0).rates(0).get(0)).isEqualTo(2048L);
+
+            assertThat(engine.topSessions().count(TopMetric.SUBSCRIBER_LAG)).isEqualTo(1);
+            assertThat(engine.topSessions().subscriber(model, TopMetric.SUBSCRIBER_LAG, 0).label())
+                .isEqualTo("host-2");
+
+            assertThat(alerts).hasSize(1);
+            assertThat(alerts.get(0).rule()).isEqualTo("backlog");
+            assertThat(alerts.get(0).state()).isEqualTo(Alert.State.FIRING);
+            assertThat(alerts.get(0).value()).isEqualTo(2000L);
+        }
+    }
+
+    private Context context()
+    {
+        final Properties alertProperties = new Properties();
+        alertProperties.setProperty(AlertRule.RULES_PROPERTY_NAME, "backlog");
+        alertProperties.setProperty("aether.net.alert.backlog.metric", AlertMetric.SEND_BACKLOG.name());
+        alertProperties.setProperty("aether.net.alert.backlog.above", "1000");
+
+        return new Context()
+            .mode(Mode.REPLAY)
+            .journalFile(journal.getAbsolutePath())
+            .replaySpeed(0)
+            .pollIntervalMs(0)
+            .conflationWindowMs(0)
+            .rateWindows(RateWindows.parse("1s"))
+            .topCount(4)
+            .historyDirectory(null)
+            .alertWebhookUrl(null)
+            .alertProperties(alertProperties);
+    }
+
+    private static List<PublisherCounterSet> publisher(final long position, final long senderPosition)
+    {
+        return Collections.singletonList(new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, position, position + 64 * 1024, senderPosition, 0L, 0L));
+    }
+
+    private static List<SubscriberCounterSet> subscriber(final long position)
+    {
+        final MutableSubscriberCounterSet subscriber = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, position, position);
+        subscriber.subscriberPositions().put(1L, position);
+        return Collections.singletonList(subscriber);
+    }
+}
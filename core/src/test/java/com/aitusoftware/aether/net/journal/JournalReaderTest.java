@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.journal;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class JournalReaderTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=localhost:54567";
+
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        file = File.createTempFile("journal", ".bin");
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    void shouldReadBackRecordedSnapshots()
+    {
+        final MutableSubscriberCounterSet withPositions = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, 900L, 950L);
+        withPositions.subscriberPositions().put(1L, 700L);
+        withPositions.subscriberPositions().put(2L, 800L);
+        final MutableSubscriberCounterSet withoutPositions = new MutableSubscriberCounterSet()
+            .set("aeron:ipc", 11, 8, 300L, 350L)
+            .withoutPositions();
+        final PublisherCounterSet publisher = new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, 1000L, 2000L, 1100L, 2100L, 5L);
+
+        try (JournalWriter writer = new JournalWriter(file))
+        {
+            writer.onSnapshot("host-1", 1000L, Collections.singletonList(publisher),
+                Arrays.asList(withPositions, withoutPositions), new MutableSystemCounters().set(1, 2, 3, 4, 5, 6));
+            writer.onSnapshot("host-2", 2000L, Collections.emptyList(), Collections.emptyList(), null);
+        }
+
+        try (JournalReader reader = new JournalReader(file))
+        {
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.timestamp()).isEqualTo(1000L);
+            reader.deliver(this::assertFirstSnapshot);
+
+            assertThat(reader.next()).isTrue();
+            reader.deliver((label, timestamp, publishers, subscribers, systemCounters) ->
+            {
+                assertThat(label).isEqualTo("host-2");
+                assertThat(timestamp).isEqualTo(2000L);
+                assertThat(publishers).isEmpty();
+                assertThat(subscribers).isEmpty();
+                assertThat(systemCounters).isNull();
+            });
+
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    @Test
+    void shouldRecordChannelsOfSessionsReplacedBetweenSnapshots()
+    {
+        final PublisherCounterSet first = new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, 1000L, 2000L, 1100L, 2100L, 0L);
+        final PublisherCounterSet second = new MutablePublisherCounterSet()
+            .set("aeron:ipc", 11, 8, 3000L, 4000L, 3100L, 4100L, 0L);
+
+        try (JournalWriter writer = new JournalWriter(file))
+        {
+            writer.onSnapshot("host-1", 1000L, Arrays.asList(first, second), Collections.emptyList(), null);
+            writer.onSnapshot("host-1", 2000L, Arrays.asList(second, first), Collections.emptyList(), null);
+            writer.onSnapshot("host-1", 3000L, Collections.singletonList(second), Collections.emptyList(), null);
+        }
+
+        try (JournalReader reader = new JournalReader(file))
+        {
+            assertThat(reader.next()).isTrue();
+            reader.deliver((label, timestamp, publishers, subscribers, systemCounters) ->
+                assertChannels(publishers, CHANNEL, "aeron:ipc"));
+            assertThat(reader.next()).isTrue();
+            reader.deliver((label, timestamp, publishers, subscribers, systemCounters) ->
+                assertChannels(publishers, "aeron:ipc", CHANNEL));
+            assertThat(reader.next()).isTrue();
+            reader.deliver((label, timestamp, publishers, subscribers, systemCounters) ->
+                assertChannels(publishers, "aeron:ipc"));
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    private static void assertChannels(final List<PublisherCounterSet> publishers, final String... channels)
+    {
+        assertThat(publishers).hasSize(channels.length);
+        for (int i = 0; i < channels.length; i++)
+        {
+            assertThat(publishers.get(i).channel().toString()).isEqualTo(channels[i]);
+        }
+    }
+
+    private void assertFirstSnapshot(
+        final String label,
+        final long timestamp,
+        final List<PublisherCounterSet> publishers,
+        final List<SubscriberCounterSet> subscribers,
+        final SystemCounters systemCounters)
+    {
+        assertThat(label).isEqualTo("host-1");
+        assertThat(publishers).hasSize(1);
+        final PublisherCounterSet publisher = publishers.get(0);
+        assertThat(publisher.channel().toString()).isEqualTo(CHANNEL);
+        assertThat(publisher.streamId()).isEqualTo(10);
+        assertThat(publisher.sessionId()).isEqualTo(7);
+        assertThat(publisher.publisherPosition()).isEqualTo(1000L);
+        assertThat(publisher.publisherLimit()).isEqualTo(2000L);
+        assertThat(publisher.senderPosition()).isEqualTo(1100L);
+        assertThat(publisher.senderLimit()).isEqualTo(2100L);
+        assertThat(publisher.backPressureEvents()).isEqualTo(5L);
+
+        assertThat(subscribers).hasSize(2);
+        assertThat(subscribers.get(0).channel().toString()).isEqualTo(CHANNEL);
+        assertThat(subscribers.get(0).receiverPosition()).isEqualTo(900L);
+        assertThat(subscribers.get(0).receiverHighWaterMark()).isEqualTo(950L);
+        assertThat(subscribers.get(0).subscriberPositions()).containsExactly(1L, 700L, 2L, 800L);
+        assertThat(subscribers.get(1).channel().toString()).isEqualTo("aeron:ipc");
+        assertThat(subscribers.get(1).streamId()).isEqualTo(11);
+        assertThat(subscribers.get(1).sessionId()).isEqualTo(8);
+        assertThat(subscribers.get(1).subscriberPositions()).isNull();
+
+        assertThat(systemCounters.bytesSent()).isEqualTo(1L);
+        assertThat(systemCounters.clientTimeouts()).isEqualTo(6L);
+    }
+}
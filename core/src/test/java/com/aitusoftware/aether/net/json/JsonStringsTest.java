@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class JsonStringsTest
+{
+    private final Gson gson = new Gson();
+
+    @Test
+    void shouldEscapeChannelsInTheSameWayAsGson()
+    {
+        assertEscapedLikeGson("aeron:udp?endpoint=localhost:54567|interface=192.168.0.1");
+        assertEscapedLikeGson("aeron:ipc?alias='<tag>'&term-length=65536");
+    }
+
+    @Test
+    void shouldEscapeControlAndQuoteCharactersInTheSameWayAsGson()
+    {
+        assertEscapedLikeGson("label \"quoted\" \\ back\tslash\n\r\b\f\u0001\u001f");
+        assertEscapedLikeGson("line\u2028paragraph\u2029");
+    }
+
+    @Test
+    void shouldPreserveNonAsciiCharacters()
+    {
+        assertEscapedLikeGson("caf\u00e9-\u4e2d\u6587");
+    }
+
+    @Test
+    void shouldWriteNumbersAndStrings()
+    {
+        final JsonWriter writer = new JsonWriter(8);
+        writer.append('{').field(JsonWriter.fieldName("label"), JsonStrings.escape("a=b")).append(',')
+            .field(JsonWriter.fieldName("position"), Long.MIN_VALUE).append(',')
+            .field(JsonWriter.fieldName("limit"), 1234567890123L).append('}');
+
+        assertThat(writer.asString()).isEqualTo(
+            "{\"label\":\"a\\u003db\",\"position\":-9223372036854775808,\"limit\":1234567890123}");
+        assertThat(writer.reset().length()).isEqualTo(0);
+    }
+
+    private void assertEscapedLikeGson(final String value)
+    {
+        final String expected = gson.toJson(value);
+        final String actual = "\"" + new String(JsonStrings.escape(value), StandardCharsets.UTF_8) + "\"";
+
+        assertThat(actual).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.json;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ModelEncoderTest
+{
+    private final RateWindows rateWindows = RateWindows.parse("1s");
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(rateWindows);
+    private final SnapshotModel model = new SnapshotModel(rateWindows);
+    private final ModelEncoder encoder = new ModelEncoder(model);
+    private final JsonWriter writer = new JsonWriter();
+
+    @Test
+    void shouldEncodeOnlyChangedFieldsInDelta()
+    {
+        report(1000L, 0L);
+        report(2000L, 0L);
+        // the first rate was reported at 2000, so nothing changes in the next report
+        report(3000L, 0L);
+        encoder.encodeDelta(writer.reset(), 3L);
+        assertThat(writer.asString()).isEqualTo(
+            "{\"type\":\"delta\",\"sequence\":3,\"publishers\":{},\"subscribers\":{},\"systemCounters\":{}}");
+
+        report(4000L, 1L);
+        encoder.encodeDelta(writer.reset(), 4L);
+
+        assertThat(writer.asString()).isEqualTo(
+            "{\"type\":\"delta\",\"sequence\":4,\"publishers\":" +
+            "{\"host-1/aeron:ipc/10/1\":{\"backPressureEvents\":1}},\"subscribers\":{},\"systemCounters\":{}}");
+    }
+
+    private void report(final long timestamp, final long backPressureEvents)
+    {
+        final List<PublisherCounterSet> publishers = Collections.singletonList(
+            new MutablePublisherCounterSet().set("aeron:ipc", 10, 1, 100L, 1000L, 100L, 1000L, backPressureEvents));
+        final List<SubscriberCounterSet> subscribers = Collections.emptyList();
+        topologyIndex.onSnapshot("host-1", timestamp, publishers, subscribers, null);
+        rateTracker.onSnapshot("host-1", timestamp, publishers, subscribers, null);
+        model.update(topologyIndex, rateTracker);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class OpenMetricsEncoderTest
+{
+    @Test
+    void shouldEscapeLabelValues()
+    {
+        assertThat(escape("aeron:udp?endpoint=localhost:54567")).isEqualTo("aeron:udp?endpoint=localhost:54567");
+        assertThat(escape("a \"quoted\" \\ label\nvalue")).isEqualTo("a \\\"quoted\\\" \\\\ label\\nvalue");
+    }
+
+    private static String escape(final String value)
+    {
+        return new String(OpenMetricsEncoder.escapeLabelValue(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class CounterStoreTest
+{
+    private final CounterStore store = new CounterStore();
+
+    @Test
+    void shouldShareRecordBetweenHoldersOfSameKey()
+    {
+        final int id = store.acquire("P:host-1/aeron:ipc/10/7", 5);
+        store.set(id, 0, 42L);
+
+        assertThat(store.acquire("P:host-1/aeron:ipc/10/7", 5)).isEqualTo(id);
+        store.release(id);
+        assertThat(store.acquire("P:host-1/aeron:ipc/10/7", 5)).isEqualTo(id);
+        assertThat(store.get(id, 0)).isEqualTo(42L);
+        assertThat(store.acquire("S:host-1/aeron:ipc/10/7", 5)).isNotEqualTo(id);
+    }
+
+    @Test
+    void shouldReuseIdAndRecordOnceEveryHolderHasReleased()
+    {
+        final int id = store.acquire("P:host-1/aeron:ipc/10/7", 5);
+        store.acquire("P:host-1/aeron:ipc/10/7", 5);
+        store.set(id, 4, 42L);
+        final int allocatedBytes = store.allocatedBytes();
+
+        store.release(id);
+        store.release(id);
+        final int reused = store.acquire("P:host-1/aeron:ipc/10/8", 5);
+
+        assertThat(reused).isEqualTo(id);
+        assertThat(store.get(reused, 4)).isEqualTo(0L);
+        assertThat(store.allocatedBytes()).isEqualTo(allocatedBytes);
+        assertThat(store.acquire("P:host-1/aeron:ipc/10/7", 5)).isNotEqualTo(id);
+    }
+
+    @Test
+    void shouldRetainCountersWhenRecordGrows()
+    {
+        final int id = store.acquire("S:host-1/aeron:ipc/10/7", 5);
+        final int other = store.acquire("S:host-1/aeron:ipc/10/8", 5);
+        store.set(id, 4, 42L);
+        store.set(other, 4, 7L);
+
+        assertThat(store.acquire("S:host-1/aeron:ipc/10/7", 20)).isEqualTo(id);
+        store.set(id, 19, 43L);
+
+        assertThat(store.get(id, 4)).isEqualTo(42L);
+        assertThat(store.get(id, 19)).isEqualTo(43L);
+        assertThat(store.get(other, 4)).isEqualTo(7L);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModelFilterTest
+{
+    private static final String IPC = "aeron:ipc";
+    private static final String UDP_A = "aeron:udp?endpoint=a:40123";
+    private static final String UDP_B = "aeron:udp?endpoint=b:40123";
+
+    private final RateWindows rateWindows = RateWindows.parse("1s");
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(rateWindows);
+    private final SnapshotModel model = new SnapshotModel(rateWindows);
+
+    @BeforeEach
+    void setUp()
+    {
+        snapshot("host-1", Arrays.asList(publisher(UDP_A, 10, 1), publisher(UDP_B, 11, 2)),
+            Collections.emptyList());
+        snapshot("host-2", Collections.singletonList(publisher(IPC, 10, 3)), Collections.emptyList());
+        snapshot("host-3", Collections.emptyList(), Collections.singletonList(subscriber(UDP_A, 10, 1)));
+        model.update(topologyIndex, rateTracker);
+    }
+
+    @Test
+    void shouldSelectAllPublishers()
+    {
+        assertThat(selected(ModelFilter.ALL)).containsExactly(IPC, UDP_A, UDP_B).inOrder();
+    }
+
+    @Test
+    void shouldSelectPublishersOfLabelAndPublishersWithSubscribersOfLabel()
+    {
+        assertThat(selected(filter("host-1", null, null, null))).containsExactly(UDP_A, UDP_B).inOrder();
+        assertThat(selected(filter("host-3", null, null, null))).containsExactly(UDP_A);
+        assertThat(selected(filter("host-4", null, null, null))).isEmpty();
+    }
+
+    @Test
+    void shouldSelectPublishersByChannelPrefixStreamAndSession()
+    {
+        assertThat(selected(filter(null, "aeron:udp", null, null))).containsExactly(UDP_A, UDP_B).inOrder();
+        assertThat(selected(filter(null, "aeron:udp", 11, null))).containsExactly(UDP_B);
+        assertThat(selected(filter(null, null, 10, null))).containsExactly(IPC, UDP_A).inOrder();
+        assertThat(selected(filter(null, null, null, 3))).containsExactly(IPC);
+        assertThat(selected(filter("host-2", null, null, 1))).isEmpty();
+    }
+
+    @Test
+    void shouldPageMatchingPublishers()
+    {
+        final ModelFilter filter = new ModelFilter(null, null, null, null, 1, 1);
+        final List<String> page = new ArrayList<>();
+        int matched = 0;
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            if (filter.matches(row) && filter.inPage(matched++))
+            {
+                page.add(row.channel());
+            }
+        }
+
+        assertThat(filter.isPaged()).isTrue();
+        assertThat(page).containsExactly(UDP_A);
+        assertThat(new ModelFilter(null, null, null, null, 2, 0).inPage(100)).isTrue();
+    }
+
+    @Test
+    void shouldFilterSystemCountersByLabel()
+    {
+        final ModelFilter filter = filter("host-1", IPC, 99, 99);
+        assertThat(model.systemCountersCount()).isEqualTo(3);
+        assertThat(filter.matches(model.systemCounters(0))).isTrue();
+        assertThat(filter.matches(model.systemCounters(1))).isFalse();
+    }
+
+    @Test
+    void shouldParseParameters()
+    {
+        final Map<String, String> parameters = new HashMap<>();
+        assertThat(ModelFilter.parse(parameters::get).isAll()).isTrue();
+
+        parameters.put(ModelFilter.LABEL_PARAMETER, "host-1");
+        parameters.put(ModelFilter.STREAM_ID_PARAMETER, "11");
+        parameters.put(ModelFilter.LIMIT_PARAMETER, "5");
+        assertThat(ModelFilter.parse(parameters::get)).isEqualTo(new ModelFilter("host-1", null, 11, null, 0, 5));
+
+        parameters.put(ModelFilter.SESSION_ID_PARAMETER, "x");
+        assertThrows(IllegalArgumentException.class, () -> ModelFilter.parse(parameters::get));
+        assertThrows(IllegalArgumentException.class, () -> new ModelFilter(null, null, null, null, -1, 0));
+    }
+
+    private List<String> selected(final ModelFilter filter)
+    {
+        final List<String> channels = new ArrayList<>();
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            if (filter.matches(model.publisher(i)))
+            {
+                channels.add(model.publisher(i).channel());
+            }
+        }
+        return channels;
+    }
+
+    private void snapshot(
+        final String label, final List<PublisherCounterSet> publishers, final List<SubscriberCounterSet> subscribers)
+    {
+        final MutableSystemCounters systemCounters = new MutableSystemCounters().set(0, 0, 0, 0, 0, 0);
+        topologyIndex.onSnapshot(label, 1000L, publishers, subscribers, systemCounters);
+        rateTracker.onSnapshot(label, 1000L, publishers, subscribers, systemCounters);
+    }
+
+    private static ModelFilter filter(
+        final String label, final String channelPrefix, final Integer streamId, final Integer sessionId)
+    {
+        return new ModelFilter(label, channelPrefix, streamId, sessionId, 0, 0);
+    }
+
+    private static PublisherCounterSet publisher(final String channel, final int streamId, final int sessionId)
+    {
+        return new MutablePublisherCounterSet().set(channel, streamId, sessionId, 0L, 0L, 0L, 0L, 0L);
+    }
+
+    private static SubscriberCounterSet subscriber(final String channel, final int streamId, final int sessionId)
+    {
+        return new MutableSubscriberCounterSet().set(channel, streamId, sessionId, 0L, 0L);
+    }
+}
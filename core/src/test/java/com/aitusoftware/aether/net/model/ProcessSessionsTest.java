@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ProcessSessionsTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final CounterStore store = new CounterStore();
+    private final ProcessSessions process = new ProcessSessions("process", store);
+
+    @Test
+    void shouldHoldSeparateCountersForPublisherAndSubscriberOfTheSameSession()
+    {
+        final MutableSubscriberCounterSet subscriberCounters = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, 7, 900L, 950L);
+        subscriberCounters.subscriberPositions().put(3L, 800L);
+        subscriberCounters.subscriberPositions().put(4L, 850L);
+
+        final PublisherCounterSet publisherCounters = new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, 1000L, 2000L, 1100L, 2100L, 5L);
+
+        process.update(
+            1000L,
+            Collections.singletonList(publisherCounters),
+            Collections.<SubscriberCounterSet>singletonList(subscriberCounters),
+            new MutableSystemCounters().set(1L, 2L, 3L, 4L, 5L, 6L));
+
+        final PublisherSession publisher = process.publisher(0);
+        assertThat(publisher.publisherPosition()).isEqualTo(1000L);
+        assertThat(publisher.publisherLimit()).isEqualTo(2000L);
+        assertThat(publisher.senderPosition()).isEqualTo(1100L);
+        assertThat(publisher.senderLimit()).isEqualTo(2100L);
+        assertThat(publisher.backPressureEvents()).isEqualTo(5L);
+
+        final SubscriberSession subscriber = process.subscriber(0);
+        assertThat(subscriber.receiverPosition()).isEqualTo(900L);
+        assertThat(subscriber.receiverHighWaterMark()).isEqualTo(950L);
+        assertThat(subscriber.positionCount()).isEqualTo(2);
+        assertThat(subscriber.position(0) + subscriber.position(1)).isEqualTo(1650L);
+
+        assertThat(process.systemCounter(SystemCountersRow.BYTES_SENT)).isEqualTo(1L);
+        assertThat(process.systemCounter(SystemCountersRow.CLIENT_TIMEOUTS)).isEqualTo(6L);
+    }
+}
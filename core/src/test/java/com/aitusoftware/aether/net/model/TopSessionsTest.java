@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TopSessionsTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final RateWindows rateWindows = RateWindows.parse("1s");
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(rateWindows);
+    private final SnapshotModel model = new SnapshotModel(rateWindows);
+    private final TopSessions topSessions = new TopSessions(2);
+
+    @Test
+    void shouldRankHighestPublisherScoresFirst()
+    {
+        update(1000L, 0L);
+
+        assertThat(topSessions.count(TopMetric.SEND_BACKLOG)).isEqualTo(2);
+        assertRanked(TopMetric.SEND_BACKLOG, 0, 2, 500L);
+        assertRanked(TopMetric.SEND_BACKLOG, 1, 1, 100L);
+        assertThat(topSessions.subscriber(model, TopMetric.SEND_BACKLOG, 0)).isNull();
+    }
+
+    @Test
+    void shouldRankLowestRemainingBufferFirst()
+    {
+        update(1000L, 0L);
+
+        assertThat(topSessions.count(TopMetric.REMAINING_BUFFER)).isEqualTo(2);
+        assertRanked(TopMetric.REMAINING_BUFFER, 0, 2, 500L);
+        assertRanked(TopMetric.REMAINING_BUFFER, 1, 3, 3000L);
+    }
+
+    @Test
+    void shouldRankSubscribersByLag()
+    {
+        update(1000L, 0L);
+
+        assertThat(topSessions.count(TopMetric.SUBSCRIBER_LAG)).isEqualTo(2);
+        assertRanked(TopMetric.SUBSCRIBER_LAG, 0, 3, 2000L);
+        assertRanked(TopMetric.SUBSCRIBER_LAG, 1, 1, 600L);
+        final SubscriberRow subscriber = topSessions.subscriber(model, TopMetric.SUBSCRIBER_LAG, 0);
+        assertThat(subscriber.label()).isEqualTo("host-2");
+        assertThat(subscriber.sessionId()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRankOnlyPublishersBeingBackPressured()
+    {
+        update(1000L, 0L);
+        assertThat(topSessions.count(TopMetric.BACK_PRESSURE_RATE)).isEqualTo(0);
+
+        update(2000L, 10L);
+        assertThat(topSessions.count(TopMetric.BACK_PRESSURE_RATE)).isEqualTo(1);
+        assertRanked(TopMetric.BACK_PRESSURE_RATE, 0, 1, 10L);
+    }
+
+    private void assertRanked(final TopMetric metric, final int rank, final int sessionId, final long value)
+    {
+        assertThat(topSessions.publisher(model, metric, rank).sessionId()).isEqualTo(sessionId);
+        assertThat(topSessions.value(metric, rank)).isEqualTo(value);
+    }
+
+    private void update(final long timestamp, final long backPressureEvents)
+    {
+        // send backlogs of 100, 500 and 0, remaining buffers of 4000, 500 and 3000
+        final List<PublisherCounterSet> publishers = Arrays.asList(
+            new MutablePublisherCounterSet().set(CHANNEL, 10, 1, 1000L, 5000L, 900L, 0L, backPressureEvents),
+            new MutablePublisherCounterSet().set(CHANNEL, 10, 2, 2000L, 2500L, 1500L, 0L, 0L),
+            new MutablePublisherCounterSet().set(CHANNEL, 10, 3, 3000L, 6000L, 3000L, 0L, 0L));
+        // lags of 600, 0 and 2000
+        final List<SubscriberCounterSet> subscribers = Arrays.asList(
+            subscriber(1, 400L), subscriber(2, 2000L), subscriber(3, 2990L, 1000L));
+
+        topologyIndex.onSnapshot("host-1", timestamp, publishers, Collections.emptyList(), null);
+        rateTracker.onSnapshot("host-1", timestamp, publishers, Collections.emptyList(), null);
+        topologyIndex.onSnapshot("host-2", timestamp, Collections.emptyList(), subscribers, null);
+        rateTracker.onSnapshot("host-2", timestamp, Collections.emptyList(), subscribers, null);
+        model.update(topologyIndex, rateTracker);
+        topSessions.update(model, rateTracker);
+    }
+
+    private static SubscriberCounterSet subscriber(final int sessionId, final long... positions)
+    {
+        final MutableSubscriberCounterSet subscriber = new MutableSubscriberCounterSet()
+            .set(CHANNEL, 10, sessionId, 0L, 0L);
+        for (int i = 0; i < positions.length; i++)
+        {
+            subscriber.subscriberPositions().put((long)i, positions[i]);
+        }
+        return subscriber;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.model;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import com.aitusoftware.aether.net.util.MutableSubscriberCounterSet;
+import com.aitusoftware.aether.net.util.MutableSystemCounters;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TopologyIndexTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+
+    @Test
+    void shouldRefreshCountersInPlaceWhileSameSessionsAreReported()
+    {
+        topologyIndex.onSnapshot("host-1", 1000L, publishers(publisher(1, 100L)), subscribers(), null);
+        final long version = topologyIndex.version();
+
+        topologyIndex.onSnapshot("host-1", 2000L, publishers(publisher(1, 200L)), subscribers(), null);
+
+        assertThat(topologyIndex.version()).isEqualTo(version);
+        final PublisherSession publisher = topologyIndex.process(0).publisher(0);
+        assertThat(publisher.publisherPosition()).isEqualTo(200L);
+        assertThat(publisher.timestamp()).isEqualTo(2000L);
+    }
+
+    @Test
+    void shouldChangeVersionWhenProcessAppears()
+    {
+        topologyIndex.onSnapshot("host-1", 1000L, publishers(), subscribers(), null);
+        final long version = topologyIndex.version();
+
+        topologyIndex.onSnapshot("host-2", 1000L, publishers(), subscribers(), null);
+
+        assertThat(topologyIndex.version()).isGreaterThan(version);
+        assertThat(topologyIndex.processCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldChangeVersionWhenSessionsChange()
+    {
+        topologyIndex.onSnapshot("host-1", 1000L, publishers(publisher(1, 0L)), subscribers(), null);
+
+        long version = assertVersionChanged(topologyIndex.version(),
+            publishers(publisher(1, 0L), publisher(2, 0L)), subscribers());
+        version = assertVersionChanged(version, publishers(publisher(2, 0L), publisher(1, 0L)), subscribers());
+        version = assertVersionChanged(version, publishers(publisher(1, 0L)), subscribers());
+        version = assertVersionChanged(version, publishers(publisher(1, 0L)), subscribers(subscriber(1)));
+        assertVersionChanged(version, publishers(publisher(1, 0L)), subscribers(subscriber(3)));
+    }
+
+    @Test
+    void shouldChangeVersionWhenSystemCountersAppearOrDisappear()
+    {
+        topologyIndex.onSnapshot("host-1", 1000L, publishers(), subscribers(), null);
+        final long version = topologyIndex.version();
+
+        topologyIndex.onSnapshot(
+            "host-1", 2000L, publishers(), subscribers(), new MutableSystemCounters().set(1, 2, 3, 4, 5, 6));
+        assertThat(topologyIndex.version()).isGreaterThan(version);
+        final long withSystemCounters = topologyIndex.version();
+
+        topologyIndex.onSnapshot(
+            "host-1", 3000L, publishers(), subscribers(), new MutableSystemCounters().set(2, 3, 4, 5, 6, 7));
+        assertThat(topologyIndex.version()).isEqualTo(withSystemCounters);
+        assertThat(topologyIndex.process(0).systemCounter(SystemCountersRow.BYTES_SENT)).isEqualTo(2L);
+
+        topologyIndex.onSnapshot("host-1", 4000L, publishers(), subscribers(), null);
+        assertThat(topologyIndex.version()).isGreaterThan(withSystemCounters);
+    }
+
+    @Test
+    void shouldEvictProcessesThatStopReporting()
+    {
+        final TopologyIndex index = new TopologyIndex(10_000L);
+        index.onSnapshot("host-1", 1000L, publishers(publisher(1, 0L)), subscribers(subscriber(1)), null);
+        index.onSnapshot("host-2", 1000L, publishers(publisher(2, 0L)), subscribers(), null);
+        index.onSnapshot("host-2", 11_000L, publishers(publisher(2, 0L)), subscribers(), null);
+        final long version = index.version();
+        assertThat(index.processCount()).isEqualTo(2);
+
+        index.onSnapshot("host-2", 11_001L, publishers(publisher(2, 0L)), subscribers(), null);
+
+        assertThat(index.version()).isGreaterThan(version);
+        assertThat(index.processCount()).isEqualTo(1);
+        assertThat(index.process(0).label()).isEqualTo("host-2");
+        assertThat(index.hasProcess("host-1")).isFalse();
+        assertThat(index.evictedLabels()).containsExactly("host-1");
+
+        index.onSnapshot("host-1", 12_000L, publishers(publisher(1, 0L)), subscribers(), null);
+        assertThat(index.processCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReleaseStringsOfEvictedProcesses()
+    {
+        final RateWindows rateWindows = RateWindows.parse("1s");
+        final TopologyIndex index = new TopologyIndex(10_000L);
+        final RateTracker rateTracker = new RateTracker(rateWindows);
+        final SnapshotModel model = new SnapshotModel(rateWindows);
+        final String evictedChannel = "aeron:udp?endpoint=host-1:40123";
+        report(index, rateTracker, "host-1", 1000L, evictedChannel);
+        report(index, rateTracker, "host-2", 1000L, CHANNEL);
+        model.update(index, rateTracker);
+        final int stringTableVersion = model.stringTableVersion();
+        assertThat(strings(model)).containsExactly("host-1", "host-2", evictedChannel, CHANNEL);
+
+        report(index, rateTracker, "host-2", 11_001L, CHANNEL);
+        model.update(index, rateTracker);
+        assertThat(model.publisherCount()).isEqualTo(1);
+        assertThat(rateTracker.systemCountersSeries("host-1")).isLessThan(0);
+        model.update(index, rateTracker);
+
+        assertThat(strings(model)).containsExactly("host-2", CHANNEL);
+        assertThat(model.stringTableVersion()).isGreaterThan(stringTableVersion);
+
+        report(index, rateTracker, "host-3", 11_002L, CHANNEL);
+        model.update(index, rateTracker);
+        assertThat(strings(model)).containsExactly("host-2", "host-3", CHANNEL);
+        assertThat(model.stringCount()).isEqualTo(4);
+    }
+
+    private static void report(
+        final TopologyIndex index, final RateTracker rateTracker, final String label, final long timestamp,
+        final String channel)
+    {
+        final List<PublisherCounterSet> publishers = Arrays.asList(
+            new MutablePublisherCounterSet().set(channel, 10, 1, 0L, 0L, 0L, 0L, 0L));
+        final MutableSystemCounters systemCounters = new MutableSystemCounters().set(1, 2, 3, 4, 5, 6);
+        index.onSnapshot(label, timestamp, publishers, subscribers(), systemCounters);
+        rateTracker.onSnapshot(label, timestamp, publishers, subscribers(), systemCounters);
+    }
+
+    private static List<String> strings(final SnapshotModel model)
+    {
+        final List<String> strings = new ArrayList<>();
+        for (int i = 0; i < model.stringCount(); i++)
+        {
+            if (model.string(i) != null)
+            {
+                strings.add(model.string(i));
+            }
+        }
+        return strings;
+    }
+
+    private long assertVersionChanged(
+        final long version, final List<PublisherCounterSet> publishers, final List<SubscriberCounterSet> subscribers)
+    {
+        topologyIndex.onSnapshot("host-1", 1000L, publishers, subscribers, null);
+        assertThat(topologyIndex.version()).isGreaterThan(version);
+        return topologyIndex.version();
+    }
+
+    private static PublisherCounterSet publisher(final int sessionId, final long position)
+    {
+        return new MutablePublisherCounterSet().set(CHANNEL, 10, sessionId, position, 0L, 0L, 0L, 0L);
+    }
+
+    private static SubscriberCounterSet subscriber(final int sessionId)
+    {
+        return new MutableSubscriberCounterSet().set(CHANNEL, 10, sessionId, 0L, 0L);
+    }
+
+    private static List<PublisherCounterSet> publishers(final PublisherCounterSet... publishers)
+    {
+        return Arrays.asList(publishers);
+    }
+
+    private static List<SubscriberCounterSet> subscribers(final SubscriberCounterSet... subscribers)
+    {
+        return Arrays.asList(subscribers);
+    }
+}
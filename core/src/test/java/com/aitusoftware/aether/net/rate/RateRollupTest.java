@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class RateRollupTest
+{
+    private static final int SHORT_WINDOW = 0;
+    private static final int LONG_WINDOW = 1;
+
+    private final RateRollup rollup = new RateRollup(RateWindows.parse("1s,12s"));
+
+    @Test
+    void shouldHaveNoRateUntilSecondSample()
+    {
+        final int series = rollup.addSeries();
+        assertThat(rollup.hasRate(series, SHORT_WINDOW)).isFalse();
+
+        rollup.update(series, 1000L, 500L);
+        assertThat(rollup.hasRate(series, SHORT_WINDOW)).isFalse();
+        assertThat(rollup.rate(series, LONG_WINDOW)).isEqualTo(RateRollup.NO_RATE);
+
+        rollup.update(series, 1500L, 1500L);
+        assertThat(rollup.rate(series, SHORT_WINDOW)).isEqualTo(2000L);
+        assertThat(rollup.rate(series, LONG_WINDOW)).isEqualTo(2000L);
+    }
+
+    @Test
+    void shouldMeasureEachWindowFromOldestRetainedSample()
+    {
+        final int series = rollup.addSeries();
+        rollup.update(series, 1000L, 0L);
+        rollup.update(series, 2000L, 1000L);
+        rollup.update(series, 3000L, 1000L);
+        rollup.update(series, 4000L, 1000L);
+
+        // the short window's slots have all rotated past the previous sample, which is used instead
+        assertThat(rollup.rate(series, SHORT_WINDOW)).isEqualTo(0L);
+        assertThat(rollup.rate(series, LONG_WINDOW)).isEqualTo(333L);
+    }
+
+    @Test
+    void shouldExpireSamplesOlderThanWindow()
+    {
+        final int series = rollup.addSeries();
+        for (long timestamp = 1000L; timestamp <= 20_000L; timestamp += 1000L)
+        {
+            rollup.update(series, timestamp, Math.max(0, timestamp - 10_000L));
+        }
+
+        // measured from the sample at 9s, the oldest of the twelve one second slots
+        assertThat(rollup.rate(series, LONG_WINDOW)).isEqualTo(909L);
+        assertThat(rollup.rate(series, SHORT_WINDOW)).isEqualTo(1000L);
+    }
+
+    @Test
+    void shouldIgnoreStaleSamplesAndNotReportNegativeRates()
+    {
+        final int series = rollup.addSeries();
+        rollup.update(series, 1000L, 1000L);
+        rollup.update(series, 2000L, 3000L);
+        rollup.update(series, 1500L, 0L);
+        assertThat(rollup.rate(series, SHORT_WINDOW)).isEqualTo(2000L);
+
+        rollup.update(series, 3000L, 0L);
+        assertThat(rollup.rate(series, SHORT_WINDOW)).isEqualTo(0L);
+    }
+
+    @Test
+    void shouldReuseReleasedBlocksOfSameLength()
+    {
+        final int single = rollup.addSeries();
+        final int block = rollup.addSeries(2);
+        assertThat(block).isEqualTo(single + 1);
+        rollup.update(block + 1, 1000L, 0L);
+        rollup.update(block + 1, 2000L, 1000L);
+
+        rollup.releaseSeries(block, 2);
+
+        assertThat(rollup.addSeries()).isEqualTo(block + 2);
+        assertThat(rollup.addSeries(2)).isEqualTo(block);
+        assertThat(rollup.hasRate(block + 1, SHORT_WINDOW)).isFalse();
+        rollup.update(block + 1, 3000L, 5000L);
+        assertThat(rollup.hasRate(block + 1, SHORT_WINDOW)).isFalse();
+        assertThat(rollup.seriesCount()).isEqualTo(block + 3);
+    }
+}
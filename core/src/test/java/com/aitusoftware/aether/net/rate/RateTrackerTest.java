@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.util.MutablePublisherCounterSet;
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class RateTrackerTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final RateTracker rateTracker = new RateTracker(RateWindows.parse("1s,1m"));
+    private final IntArrayList released = new IntArrayList();
+
+    @Test
+    void shouldKeepSeriesOfSessionsReportedAtAnotherPosition()
+    {
+        final PublisherCounterSet first = publisher(1, 1000L);
+        final PublisherCounterSet second = publisher(2, 2000L);
+        rateTracker.onSnapshot("host-1", 1000L, Arrays.asList(first, second), Collections.emptyList(), null);
+        final int firstSeries = rateTracker.publisherSeries(key(1));
+        final int secondSeries = rateTracker.publisherSeries(key(2));
+
+        rateTracker.onSnapshot("host-1", 2000L, Arrays.asList(second, first), Collections.emptyList(), null);
+        rateTracker.drainReleasedSeries(released::addInt);
+
+        assertThat(released).isEmpty();
+        assertThat(rateTracker.publisherSeries(key(1))).isEqualTo(firstSeries);
+        assertThat(rateTracker.publisherSeries(key(2))).isEqualTo(secondSeries);
+    }
+
+    @Test
+    void shouldReuseSeriesOfDroppedSessionsOnceDrained()
+    {
+        rateTracker.onSnapshot("host-1", 1000L,
+            Arrays.asList(publisher(1, 1000L), publisher(2, 1000L)), Collections.emptyList(), null);
+        rateTracker.onSnapshot("host-1", 2000L,
+            Arrays.asList(publisher(1, 2000L), publisher(2, 3000L)), Collections.emptyList(), null);
+        final int droppedSeries = rateTracker.publisherSeries(key(2));
+        assertThat(rateTracker.rollup().hasRate(droppedSeries + RateTracker.PUBLISHER_POSITION_SERIES, 0)).isTrue();
+
+        rateTracker.onSnapshot("host-1", 3000L,
+            Collections.singletonList(publisher(1, 3000L)), Collections.emptyList(), null);
+        assertThat(rateTracker.publisherSeries(key(2))).isEqualTo(-1);
+
+        rateTracker.onSnapshot("host-1", 4000L,
+            Arrays.asList(publisher(1, 4000L), publisher(3, 100L)), Collections.emptyList(), null);
+        assertThat(rateTracker.publisherSeries(key(3))).isNotEqualTo(droppedSeries);
+
+        rateTracker.drainReleasedSeries(released::addInt);
+        assertThat(released).containsExactly(droppedSeries, droppedSeries + 1);
+
+        rateTracker.onSnapshot("host-1", 5000L,
+            Arrays.asList(publisher(1, 5000L), publisher(3, 200L), publisher(4, 9000L)), Collections.emptyList(),
+            null);
+        assertThat(rateTracker.publisherSeries(key(4))).isEqualTo(droppedSeries);
+        assertThat(rateTracker.rollup().hasRate(droppedSeries + RateTracker.PUBLISHER_POSITION_SERIES, 0)).isFalse();
+    }
+
+    private static PublisherCounterSet publisher(final int sessionId, final long position)
+    {
+        return new MutablePublisherCounterSet().set(CHANNEL, 10, sessionId, position, 0L, 0L, 0L, 0L);
+    }
+
+    private static String key(final int sessionId)
+    {
+        return SessionKeys.key("host-1", CHANNEL, 10, sessionId);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.rate;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TrendTrackerTest
+{
+    private final TrendTracker trendTracker = new TrendTracker(1000L);
+
+    @Test
+    void shouldStartFromFirstSlope()
+    {
+        trendTracker.update(0, 1000L, 0L);
+        assertThat(trendTracker.trend(0)).isEqualTo(TrendTracker.NO_TREND);
+
+        trendTracker.update(0, 2000L, 1000L);
+        assertThat(trendTracker.trend(0)).isEqualTo(1000L);
+    }
+
+    @Test
+    void shouldWeightSlopesByElapsedTime()
+    {
+        trendTracker.update(0, 1000L, 0L);
+        trendTracker.update(0, 2000L, 1000L);
+        trendTracker.update(0, 3000L, 1000L);
+        // 1000 + (1 - e^-1) * (0 - 1000)
+        assertThat(trendTracker.trend(0)).isEqualTo(368L);
+
+        trendTracker.update(1, 1000L, 0L);
+        trendTracker.update(1, 2000L, 1000L);
+        trendTracker.update(1, 12_000L, 1000L);
+        // a gap of ten time constants leaves little of the previous trend
+        assertThat(trendTracker.trend(1)).isEqualTo(0L);
+    }
+
+    @Test
+    void shouldIgnoreStaleSamples()
+    {
+        trendTracker.update(0, 1000L, 0L);
+        trendTracker.update(0, 2000L, -500L);
+        trendTracker.update(0, 2000L, 9000L);
+        trendTracker.update(0, 1500L, 9000L);
+        assertThat(trendTracker.trend(0)).isEqualTo(-500L);
+    }
+
+    @Test
+    void shouldForgetResetSeries()
+    {
+        trendTracker.update(3, 1000L, 0L);
+        trendTracker.update(3, 2000L, 1000L);
+        trendTracker.reset(3);
+        assertThat(trendTracker.trend(3)).isEqualTo(TrendTracker.NO_TREND);
+
+        trendTracker.update(3, 3000L, 5000L);
+        assertThat(trendTracker.trend(3)).isEqualTo(TrendTracker.NO_TREND);
+        trendTracker.reset(100);
+        assertThat(trendTracker.trend(100)).isEqualTo(TrendTracker.NO_TREND);
+    }
+
+    @Test
+    void shouldEstimateTimeToZero()
+    {
+        assertThat(TrendTracker.timeToZeroMs(1000L, -500L)).isEqualTo(2000L);
+        assertThat(TrendTracker.timeToZeroMs(0L, -500L)).isEqualTo(0L);
+        assertThat(TrendTracker.timeToZeroMs(-10L, 500L)).isEqualTo(0L);
+        assertThat(TrendTracker.timeToZeroMs(1000L, 0L)).isEqualTo(TrendTracker.NO_ESTIMATE);
+        assertThat(TrendTracker.timeToZeroMs(1000L, 500L)).isEqualTo(TrendTracker.NO_ESTIMATE);
+        assertThat(TrendTracker.timeToZeroMs(1000L, TrendTracker.NO_TREND)).isEqualTo(TrendTracker.NO_ESTIMATE);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ConflatingListenerTest
+{
+    private static final String CHANNEL = "aeron:ipc";
+
+    private final List<String> delivered = new ArrayList<>();
+    private long nowNs = 1_000_000L;
+
+    @Test
+    void shouldCountReceivedConflatedAndAppliedSnapshotsDuringBurst()
+    {
+        final ConflatingListener listener = new ConflatingListener(100L, () -> nowNs, this::onSnapshot);
+        final MutablePublisherCounterSet publisher = new MutablePublisherCounterSet();
+
+        for (int i = 1; i <= 3; i++)
+        {
+            publisher.set(CHANNEL, 10, 7, i * 1024L, 0L, 0L, 0L, 0L);
+            listener.onSnapshot("host-1", i * 10L, Collections.singletonList(publisher), Collections.emptyList(), null);
+        }
+        publisher.set(CHANNEL, 10, 8, 4096L, 0L, 0L, 0L, 0L);
+        listener.onSnapshot("host-2", 20L, Collections.singletonList(publisher), Collections.emptyList(), null);
+        // counter sets are only valid for the call
+        publisher.set(CHANNEL, 10, 8, 0L, 0L, 0L, 0L, 0L);
+
+        assertThat(listener.flush(nowNs + TimeUnit.MILLISECONDS.toNanos(99L))).isEqualTo(0);
+        assertThat(delivered).isEmpty();
+        assertThat(listener.receivedCount()).isEqualTo(4L);
+        assertThat(listener.conflatedCount()).isEqualTo(2L);
+        assertThat(listener.appliedCount()).isEqualTo(0L);
+
+        assertThat(listener.flush(nowNs + TimeUnit.MILLISECONDS.toNanos(100L))).isEqualTo(2);
+        assertThat(delivered).containsExactly("host-1@30:3072", "host-2@20:4096").inOrder();
+        assertThat(listener.appliedCount()).isEqualTo(2L);
+
+        nowNs += TimeUnit.MILLISECONDS.toNanos(100L);
+        listener.onSnapshot("host-1", 40L, Collections.singletonList(publisher), Collections.emptyList(), null);
+        assertThat(listener.flush(nowNs + TimeUnit.MILLISECONDS.toNanos(100L))).isEqualTo(1);
+        assertThat(listener.receivedCount()).isEqualTo(5L);
+        assertThat(listener.conflatedCount()).isEqualTo(2L);
+        assertThat(listener.appliedCount()).isEqualTo(3L);
+    }
+
+    @Test
+    void shouldApplyEverySnapshotWithoutWindow()
+    {
+        final ConflatingListener listener = new ConflatingListener(0L, () -> nowNs, this::onSnapshot);
+        final MutablePublisherCounterSet publisher = new MutablePublisherCounterSet()
+            .set(CHANNEL, 10, 7, 1024L, 0L, 0L, 0L, 0L);
+
+        listener.onSnapshot("host-1", 10L, Collections.singletonList(publisher), Collections.emptyList(), null);
+        listener.onSnapshot("host-1", 20L, Collections.singletonList(publisher), Collections.emptyList(), null);
+
+        assertThat(delivered).containsExactly("host-1@10:1024", "host-1@20:1024").inOrder();
+        assertThat(listener.flush(nowNs)).isEqualTo(0);
+        assertThat(listener.receivedCount()).isEqualTo(2L);
+        assertThat(listener.conflatedCount()).isEqualTo(0L);
+        assertThat(listener.appliedCount()).isEqualTo(2L);
+    }
+
+    private void onSnapshot(
+        final String label, final long timestamp, final List<PublisherCounterSet> publishers,
+        final List<SubscriberCounterSet> subscribers, final SystemCounters systemCounters)
+    {
+        delivered.add(label + "@" + timestamp + ":" + publishers.get(0).publisherPosition());
+    }
+}
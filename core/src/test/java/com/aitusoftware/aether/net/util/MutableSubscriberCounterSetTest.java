@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import org.junit.jupiter.api.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class MutableSubscriberCounterSetTest
+{
+    @Test
+    void shouldCopySubscriberPositions()
+    {
+        final MutableSubscriberCounterSet source = new MutableSubscriberCounterSet()
+            .set("aeron:ipc", 10, 7, 900L, 950L);
+        source.subscriberPositions().put(3L, 800L);
+
+        final MutableSubscriberCounterSet copy = new MutableSubscriberCounterSet().copy(source);
+
+        assertThat(copy.channel().toString()).isEqualTo("aeron:ipc");
+        assertThat(copy.receiverPosition()).isEqualTo(900L);
+        assertThat(copy.subscriberPositions()).containsExactly(3L, 800L);
+    }
+
+    @Test
+    void shouldPreserveMissingSubscriberPositions()
+    {
+        final MutableSubscriberCounterSet source = new MutableSubscriberCounterSet()
+            .set("aeron:ipc", 10, 7, 900L, 950L)
+            .withoutPositions();
+        final MutableSubscriberCounterSet copy = new MutableSubscriberCounterSet();
+        copy.set("aeron:ipc", 10, 7, 0L, 0L).subscriberPositions().put(3L, 800L);
+
+        copy.copy(source);
+
+        assertThat(copy.subscriberPositions()).isNull();
+        assertThat(copy.set("aeron:ipc", 10, 7, 0L, 0L).subscriberPositions()).isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.util;
+
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.net.ingest.SnapshotSource;
+import com.aitusoftware.aether.net.model.PublisherRow;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SourceTaggingListenerTest
+{
+    private static final String CHANNEL = "aeron:udp?endpoint=london-1:40123";
+
+    private final RateWindows rateWindows = RateWindows.parse("1s");
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final RateTracker rateTracker = new RateTracker(rateWindows);
+    private final SnapshotModel model = new SnapshotModel(rateWindows);
+    private final AggregateUpdateListener merged = new AggregateUpdateListener(topologyIndex, rateTracker);
+
+    @Test
+    void shouldMergeSourcesKeepingProcessesWithTheSameLabelDistinct()
+    {
+        final SourceTaggingListener london = new SourceTaggingListener("london", merged);
+        final SourceTaggingListener tokyo = new SourceTaggingListener("tokyo", merged);
+
+        london.onSnapshot("host", 1000L,
+            Collections.singletonList(publisher(7)), Collections.emptyList(), null);
+        tokyo.onSnapshot("host", 1000L,
+            Collections.singletonList(publisher(8)), Collections.singletonList(subscriber(7)), null);
+        model.update(topologyIndex, rateTracker);
+
+        assertThat(merged.generation()).isEqualTo(2L);
+        final List<String> publishers = new ArrayList<>();
+        for (int i = 0; i < model.publisherCount(); i++)
+        {
+            final PublisherRow row = model.publisher(i);
+            publishers.add(row.label() + "/" + row.sessionId());
+        }
+        assertThat(publishers).containsExactly("london:host/7", "tokyo:host/8").inOrder();
+        assertThat(model.publisher(0).subscriberCount()).isEqualTo(1);
+        assertThat(model.publisher(0).subscriber(0).label()).isEqualTo("tokyo:host");
+        assertThat(model.publisher(1).subscriberCount()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldParseNamedSources()
+    {
+        final Properties properties = new Properties();
+        properties.setProperty(SnapshotSource.SOURCES_PROPERTY_NAME, "london, tokyo");
+        properties.setProperty("aether.net.source.london.channel", "aeron:udp?endpoint=0.0.0.0:18996");
+        properties.setProperty("aether.net.source.tokyo.channel", "aeron:udp?endpoint=0.0.0.0:18997");
+        properties.setProperty("aether.net.source.tokyo.streamId", "7");
+
+        final List<SnapshotSource> sources = SnapshotSource.parse(properties);
+
+        assertThat(sources).hasSize(2);
+        assertThat(sources.get(0).name()).isEqualTo("london");
+        assertThat(sources.get(0).streamId()).isEqualTo(SnapshotSource.DEFAULT_STREAM_ID);
+        assertThat(sources.get(1).name()).isEqualTo("tokyo");
+        assertThat(sources.get(1).channel()).isEqualTo("aeron:udp?endpoint=0.0.0.0:18997");
+        assertThat(sources.get(1).streamId()).isEqualTo(7);
+    }
+
+    private static PublisherCounterSet publisher(final int sessionId)
+    {
+        return new MutablePublisherCounterSet().set(CHANNEL, 10, sessionId, 4096L, 8192L, 4096L, 8192L, 0L);
+    }
+
+    private static SubscriberCounterSet subscriber(final int sessionId)
+    {
+        return new MutableSubscriberCounterSet().set(CHANNEL, 10, sessionId, 4096L, 4096L);
+    }
+}
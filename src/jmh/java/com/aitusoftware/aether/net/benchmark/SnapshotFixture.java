@@ -0,0 +1,261 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.benchmark;
+
+import com.aitusoftware.aether.event.CounterSnapshotListener;
+import com.aitusoftware.aether.model.PublisherCounterSet;
+import com.aitusoftware.aether.model.SubscriberCounterSet;
+import com.aitusoftware.aether.model.SystemCounters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic counter snapshots shaped like {@code snapshot-sample.txt}: publishers reported by a {@code client}
+ * process, each with up to three subscribers reported by a {@code server} process.
+ */
+public final class SnapshotFixture
+{
+    static final String CLIENT_LABEL = "client";
+    static final String SERVER_LABEL = "server";
+    private static final int STREAM_ID = 37;
+    private static final int CHANNEL_COUNT = 16;
+    private static final int SESSION_ID_BASE = 864489062;
+    private static final long POSITION_STEP = 4096;
+
+    private final List<PublisherCounterSet> publishers = new ArrayList<>();
+    private final List<SubscriberCounterSet> subscribers = new ArrayList<>();
+    private final FixtureSystemCounters clientCounters = new FixtureSystemCounters();
+    private final FixtureSystemCounters serverCounters = new FixtureSystemCounters();
+    private long timestamp = 1558542415002L;
+
+    public SnapshotFixture(final int sessionCount)
+    {
+        long registrationId = 1;
+        for (int i = 0; i < sessionCount; i++)
+        {
+            final String channel = "aeron:udp?endpoint=localhost:" + (54567 + (i % CHANNEL_COUNT) * 10);
+            final int sessionId = SESSION_ID_BASE + i;
+            publishers.add(new FixturePublisherCounterSet(channel, sessionId));
+            final FixtureSubscriberCounterSet subscriber = new FixtureSubscriberCounterSet(channel, sessionId);
+            for (int j = 0; j <= i % 3; j++)
+            {
+                subscriber.positions.put(registrationId++, 0L);
+            }
+            subscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * Moves every counter forward and delivers the next snapshot from each process to the listener.
+     *
+     * @param listener receives one snapshot per process
+     */
+    public void advance(final CounterSnapshotListener listener)
+    {
+        timestamp += 100;
+        for (int i = 0; i < publishers.size(); i++)
+        {
+            ((FixturePublisherCounterSet)publishers.get(i)).advance(i);
+        }
+        for (int i = 0; i < subscribers.size(); i++)
+        {
+            ((FixtureSubscriberCounterSet)subscribers.get(i)).advance(i);
+        }
+        clientCounters.advance();
+        serverCounters.advance();
+        listener.onSnapshot(CLIENT_LABEL, timestamp, publishers, Collections.emptyList(), clientCounters);
+        listener.onSnapshot(SERVER_LABEL, timestamp, Collections.emptyList(), subscribers, serverCounters);
+    }
+
+    private static final class FixturePublisherCounterSet extends PublisherCounterSet
+    {
+        private final String channel;
+        private final int sessionId;
+        private long position;
+        private long backPressureEvents;
+
+        FixturePublisherCounterSet(final String channel, final int sessionId)
+        {
+            this.channel = channel;
+            this.sessionId = sessionId;
+        }
+
+        void advance(final int index)
+        {
+            position += POSITION_STEP;
+            backPressureEvents += index & 1;
+        }
+
+        @Override
+        public CharSequence channel()
+        {
+            return channel;
+        }
+
+        @Override
+        public int streamId()
+        {
+            return STREAM_ID;
+        }
+
+        @Override
+        public int sessionId()
+        {
+            return sessionId;
+        }
+
+        @Override
+        public long publisherPosition()
+        {
+            return position;
+        }
+
+        @Override
+        public long publisherLimit()
+        {
+            return position + 65536;
+        }
+
+        @Override
+        public long senderPosition()
+        {
+            return position - 1024;
+        }
+
+        @Override
+        public long senderLimit()
+        {
+            return position + 32768;
+        }
+
+        @Override
+        public long backPressureEvents()
+        {
+            return backPressureEvents;
+        }
+    }
+
+    private static final class FixtureSubscriberCounterSet extends SubscriberCounterSet
+    {
+        private final String channel;
+        private final int sessionId;
+        private final Map<Long, Long> positions = new HashMap<>();
+        private long receiverPosition;
+
+        FixtureSubscriberCounterSet(final String channel, final int sessionId)
+        {
+            this.channel = channel;
+            this.sessionId = sessionId;
+        }
+
+        void advance(final int index)
+        {
+            receiverPosition += POSITION_STEP;
+            final long lag = (index % 8) * 512L;
+            positions.replaceAll((registrationId, position) -> Math.max(position, receiverPosition - lag));
+        }
+
+        @Override
+        public CharSequence channel()
+        {
+            return channel;
+        }
+
+        @Override
+        public int streamId()
+        {
+            return STREAM_ID;
+        }
+
+        @Override
+        public int sessionId()
+        {
+            return sessionId;
+        }
+
+        @Override
+        public Map<Long, Long> subscriberPositions()
+        {
+            return positions;
+        }
+
+        @Override
+        public long receiverPosition()
+        {
+            return receiverPosition;
+        }
+
+        @Override
+        public long receiverHighWaterMark()
+        {
+            return receiverPosition;
+        }
+    }
+
+    private static final class FixtureSystemCounters extends SystemCounters
+    {
+        private long bytes;
+        private long naks;
+
+        void advance()
+        {
+            bytes += POSITION_STEP;
+            naks++;
+        }
+
+        @Override
+        public long bytesSent()
+        {
+            return bytes;
+        }
+
+        @Override
+        public long bytesReceived()
+        {
+            return bytes;
+        }
+
+        @Override
+        public long naksSent()
+        {
+            return naks;
+        }
+
+        @Override
+        public long naksReceived()
+        {
+            return naks;
+        }
+
+        @Override
+        public long errors()
+        {
+            return 0;
+        }
+
+        @Override
+        public long clientTimeouts()
+        {
+            return 0;
+        }
+    }
+}
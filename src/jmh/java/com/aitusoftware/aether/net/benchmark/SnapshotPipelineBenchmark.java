@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.benchmark;
+
+import com.aitusoftware.aether.net.binary.BinarySnapshotEncoder;
+import com.aitusoftware.aether.net.json.JsonWriter;
+import com.aitusoftware.aether.net.json.ModelEncoder;
+import com.aitusoftware.aether.net.model.SnapshotModel;
+import com.aitusoftware.aether.net.model.TopologyIndex;
+import com.aitusoftware.aether.net.rate.RateTracker;
+import com.aitusoftware.aether.net.rate.RateWindows;
+import com.aitusoftware.aether.net.util.AggregateUpdateListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Stages of the snapshot-to-wire pipeline run by the monitoring agent for every generation.
+ */
+@State(Scope.Benchmark)
+public class SnapshotPipelineBenchmark
+{
+    @Param({"10", "1000", "10000"})
+    int sessionCount;
+
+    private SnapshotFixture fixture;
+    private TopologyIndex topologyIndex;
+    private RateTracker rateTracker;
+    private AggregateUpdateListener listener;
+    private SnapshotModel snapshotModel;
+    private ModelEncoder modelEncoder;
+    private BinarySnapshotEncoder binaryEncoder;
+    private final JsonWriter modelWriter = new JsonWriter();
+    private final JsonWriter messageWriter = new JsonWriter();
+    private long sequence;
+
+    @Setup
+    public void setUp()
+    {
+        final RateWindows rateWindows = RateWindows.parse("1s,10s,1m,5m,1h");
+        fixture = new SnapshotFixture(sessionCount);
+        topologyIndex = new TopologyIndex();
+        rateTracker = new RateTracker(rateWindows);
+        listener = new AggregateUpdateListener(topologyIndex, rateTracker);
+        snapshotModel = new SnapshotModel(rateWindows);
+        modelEncoder = new ModelEncoder(snapshotModel);
+        binaryEncoder = new BinarySnapshotEncoder(snapshotModel);
+        fixture.advance(listener);
+        snapshotModel.update(topologyIndex, rateTracker);
+        fixture.advance(listener);
+        snapshotModel.update(topologyIndex, rateTracker);
+    }
+
+    @Benchmark
+    public long ingestSnapshot()
+    {
+        fixture.advance(listener);
+        return listener.generation();
+    }
+
+    @Benchmark
+    public RateTracker updateRates()
+    {
+        fixture.advance(rateTracker);
+        return rateTracker;
+    }
+
+    @Benchmark
+    public boolean buildModel()
+    {
+        return snapshotModel.update(topologyIndex, rateTracker);
+    }
+
+    @Benchmark
+    public int encodeModel()
+    {
+        modelEncoder.encodeModel(modelWriter.reset());
+        return modelWriter.length();
+    }
+
+    @Benchmark
+    public int encodeDelta()
+    {
+        modelEncoder.encodeDelta(messageWriter.reset(), ++sequence);
+        return messageWriter.length();
+    }
+
+    @Benchmark
+    public int encodeBinary()
+    {
+        return binaryEncoder.encode(++sequence);
+    }
+
+    @Benchmark
+    public int publishGeneration()
+    {
+        fixture.advance(listener);
+        snapshotModel.update(topologyIndex, rateTracker);
+        modelEncoder.encodeModel(modelWriter.reset());
+        modelEncoder.encodeDelta(messageWriter.reset(), ++sequence);
+        return binaryEncoder.encode(sequence) + messageWriter.length();
+    }
+}
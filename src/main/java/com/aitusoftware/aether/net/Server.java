@@ -17,188 +17,541 @@
  */
 package com.aitusoftware.aether.net;
 
-import com.aitusoftware.aether.Aether;
-import com.aitusoftware.aether.aggregation.RateBucket;
-import com.aitusoftware.aether.aggregation.StreamRate;
-import com.aitusoftware.aether.event.RateMonitor;
-import com.aitusoftware.aether.event.StreamKey;
-import com.aitusoftware.aether.event.SystemSnapshot;
-import com.aitusoftware.aether.model.ChannelSessionKey;
-import com.aitusoftware.aether.model.SubscriberCounterSet;
-import com.aitusoftware.aether.net.model.PublisherData;
-import com.aitusoftware.aether.net.model.SubscriberData;
-import com.aitusoftware.aether.net.util.AggregateUpdateListener;
-import com.aitusoftware.aether.transport.CounterSnapshotSubscriber;
-import com.google.gson.Gson;
-import io.aeron.driver.MediaDriver;
-import io.aeron.driver.ThreadingMode;
+import com.aitusoftware.aether.net.alert.Alert;
+import com.aitusoftware.aether.net.alert.QueueingAlertSink;
+import com.aitusoftware.aether.net.binary.BinarySnapshotDecoder;
+import com.aitusoftware.aether.net.binary.BinarySnapshotLayout;
+import com.aitusoftware.aether.net.history.HistoryLayout;
+import com.aitusoftware.aether.net.history.HistoryReader;
+import com.aitusoftware.aether.net.ingest.AggregatorAgent;
+import com.aitusoftware.aether.net.ingest.IngestService;
+import com.aitusoftware.aether.net.ingest.ModelFrame;
+import com.aitusoftware.aether.net.ingest.ModelPublication;
+import com.aitusoftware.aether.net.json.AlertEncoder;
+import com.aitusoftware.aether.net.json.HistoryEncoder;
+import com.aitusoftware.aether.net.json.JsonWriter;
+import com.aitusoftware.aether.net.metrics.OpenMetricsEncoder;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.model.ModelFilter;
+import com.aitusoftware.aether.net.model.TopMetric;
+import com.aitusoftware.aether.net.model.SessionKeys;
+import com.aitusoftware.aether.net.util.ConflatingListener;
+import com.aitusoftware.aether.net.util.Gzip;
+import com.aitusoftware.aether.net.web.SnapshotBroadcaster;
+import com.aitusoftware.aether.net.web.StaticAsset;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
-import org.agrona.CloseHelper;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
 import org.agrona.SystemUtil;
-import org.agrona.concurrent.SleepingMillisIdleStrategy;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.agrona.concurrent.UnsafeBuffer;
 
 import java.io.Closeable;
-import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public final class Server extends AbstractVerticle
 {
     public static final int HTTP_PORT = Integer.getInteger("aether.net.http.port", 8090);
+    private static final long SELF_METRICS_INTERVAL_MS = 1000;
+    private static final long EVENT_STREAM_HEARTBEAT_MS = 15_000;
+    private static final long TOP_INTERVAL_MS = 1000;
     private final Context context;
-    private MediaDriver mediaDriver;
-    private CounterSnapshotSubscriber counterSnapshotSubscriber;
-    private Aether aether;
+    private final IngestService ingest;
+    private final ModelPublication publication;
+    private final SelfMetrics selfMetrics;
+    private final SnapshotBroadcaster broadcaster;
+    private final HistoryReader historyReader;
+    private final QueueingAlertSink alertQueue = new QueueingAlertSink(1024);
+    private final Map<String, String> activeAlerts = new LinkedHashMap<>();
+    private final JsonWriter alertWriter = new JsonWriter(256);
+    private final OpenMetricsEncoder metricsEncoder = new OpenMetricsEncoder();
+    private final BinarySnapshotDecoder metricsDecoder = new BinarySnapshotDecoder();
+    private final UnsafeBuffer metricsSource = new UnsafeBuffer(0, 0);
+    private final JsonWriter metricsWriter = new JsonWriter();
+    private Runnable publishHandler;
+    private ModelFrame currentFrame;
+    private Buffer currentModel;
+    private Buffer currentGzipModel;
+    private long gzipModelSequence = -1;
+    private StaticAsset monitorScript;
+    private StaticAsset monitorPage;
+    private Buffer binaryFrame;
+    private long lastBroadcastSequence;
+    private Buffer metrics;
+    private long metricsSequence = -1;
+    private long metricsReceivedCount = -1;
+    private String selfMetricsSample;
+    private long topSequence = -1;
+    private Buffer selfMetricsBuffer;
 
-    public Server(final Context context)
+    public Server(final Context context, final IngestService ingest)
     {
         this.context = context;
+        this.ingest = ingest;
+        this.publication = ingest.publication();
+        this.selfMetrics = ingest.selfMetrics();
+        this.broadcaster = new SnapshotBroadcaster(publication, selfMetrics);
+        this.historyReader = context.historyDirectory() == null ?
+            null : new HistoryReader(new File(context.historyDirectory()));
     }
 
     public static void main(final String[] args)
     {
         SystemUtil.loadPropertiesFiles(args);
-        launchServer(new Context());
+        final Context context = new Context();
+        if (context.mode() == Mode.AGGREGATOR)
+        {
+            final AgentRunner aggregator = launchAggregator(context);
+            try
+            {
+                new ShutdownSignalBarrier().await();
+            }
+            finally
+            {
+                aggregator.close();
+            }
+        }
+        else
+        {
+            launchServer(context);
+        }
+    }
+
+    public static AgentRunner launchAggregator(final Context context)
+    {
+        final AgentRunner agentRunner = new AgentRunner(
+            context.idleStrategy(), Throwable::printStackTrace, null, new AggregatorAgent(context));
+        AgentRunner.startOnThread(agentRunner);
+        return agentRunner;
     }
 
     public static Closeable launchServer(final Context context)
     {
         final VertxOptions vertxOptions = new VertxOptions();
         final Vertx vertx = Vertx.vertx(vertxOptions);
-        final Closeable closeable = vertx::close;
-        final DeploymentOptions deploymentOptions = new DeploymentOptions();
-        vertx.deployVerticle(new Server(context), deploymentOptions);
+        final IngestService ingest = new IngestService(context, vertx);
+        final Closeable closeable = () ->
+        {
+            vertx.close();
+            ingest.close();
+        };
+        // instances share the listening port, with connections distributed between their event loops
+        final DeploymentOptions deploymentOptions = new DeploymentOptions().setInstances(context.serverInstances());
+        vertx.deployVerticle(() -> new Server(context, ingest), deploymentOptions);
         return closeable;
     }
 
     @Override
     public void start()
     {
-        final SystemSnapshot systemSnapshot = new SystemSnapshot();
-        final RateMonitor rateMonitor = new RateMonitor(Arrays.asList(
-            new RateBucket(10, TimeUnit.SECONDS),
-            new RateBucket(1, TimeUnit.MINUTES)
-        ));
-        final AggregateUpdateListener listener = new AggregateUpdateListener(
-            systemSnapshot, rateMonitor);
-        final HttpServer httpServer = vertx.createHttpServer();
-        final Gson gson = new Gson();
-        final Mode mode = context.mode();
-        if (mode == Mode.LOCAL)
-        {
-            aether = Aether.launch(new Aether.Context()
-                .counterSnapshotListener(listener)
-                .mode(Aether.Mode.LOCAL)
-                .transport(Aether.Transport.LOCAL));
-        }
-        else
+        final io.vertx.core.Context vertxContext = vertx.getOrCreateContext();
+        publishHandler = () -> vertxContext.runOnContext(v -> broadcastLatest());
+        publication.addPublishHandler(publishHandler);
+        ingest.alertSink().add(alertQueue);
+        pushSelfMetrics();
+        vertx.setPeriodic(SELF_METRICS_INTERVAL_MS, id -> pushSelfMetrics());
+        vertx.setPeriodic(EVENT_STREAM_HEARTBEAT_MS, id -> broadcaster.heartbeat());
+        vertx.setPeriodic(TOP_INTERVAL_MS, id -> pushTop());
+
+        monitorScript = StaticAsset.load(vertx, "monitor.js", "text/javascript");
+        monitorPage = StaticAsset.load(vertx, "monitor.html", "text/html");
+        final HttpServerOptions serverOptions = new HttpServerOptions()
+            .setWebsocketSubProtocols(BinarySnapshotLayout.WEBSOCKET_SUB_PROTOCOL);
+        // permessage-deflate keeps a compression context per connection, so frames are compressed per client
+        final int compressionLevel = context.webSocketCompressionLevel();
+        serverOptions
+            .setPerMessageWebsocketCompressionSupported(compressionLevel > 0)
+            .setPerFrameWebsocketCompressionSupported(compressionLevel > 0);
+        if (compressionLevel > 0)
         {
-            mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
-                .threadingMode(ThreadingMode.SHARED)
-                .sharedIdleStrategy(new SleepingMillisIdleStrategy(1L)));
-            counterSnapshotSubscriber = new CounterSnapshotSubscriber(new CounterSnapshotSubscriber.Context()
-                .aeronDirectoryName(mediaDriver.aeronDirectoryName())
-                .counterSnapshotListener(listener));
+            serverOptions.setWebsocketCompressionLevel(compressionLevel);
         }
-        vertx.periodicStream(100).handler(i ->
+        final HttpServer httpServer = vertx.createHttpServer(serverOptions);
+        httpServer.requestHandler(req ->
         {
-            if (counterSnapshotSubscriber != null)
+            if (req.uri().endsWith(".js"))
             {
-                counterSnapshotSubscriber.doWork();
+                monitorScript.serve(req);
             }
-            else if (aether != null)
+            else if (req.uri().endsWith(".bin"))
             {
-                aether.doWork();
+                updateFrame();
+                req.response().putHeader("content-type", "application/octet-stream").end(binaryFrame);
             }
-        });
-        httpServer.requestHandler(req ->
-        {
-            if (req.uri().endsWith(".js"))
+            else if ("/metrics".equals(req.path()))
             {
-                req.response().putHeader("content-type", "text/javascript").sendFile("monitor.js");
+                updateFrame();
+                req.response().putHeader("content-type", OpenMetricsEncoder.CONTENT_TYPE).end(metrics());
             }
-            else if (req.uri().endsWith(".json"))
+            else if ("/internal/metrics".equals(req.path()))
             {
-                final StringBuilder data = new StringBuilder();
-
-                serialiseModel(systemSnapshot, rateMonitor, gson, data);
-                req.response().putHeader("content-type", "application/json").end(data.toString());
+                pushSelfMetrics();
+                req.response().putHeader("content-type", "application/json").end(selfMetricsBuffer);
+            }
+            else if ("/top".equals(req.path()) || req.path().startsWith("/top/"))
+            {
+                serveTop(req);
+            }
+            else if ("/events".equals(req.path()))
+            {
+                serveEventStream(req);
+            }
+            else if ("/history.json".equals(req.path()))
+            {
+                serveHistory(req);
+            }
+            else if (req.path().endsWith(".json"))
+            {
+                serveModel(req, vertxContext);
             }
             else
             {
-                req.response().putHeader("content-type", "text/html").sendFile("monitor.html");
+                monitorPage.serve(req);
             }
         });
         httpServer
-            .websocketHandler(ws -> ws.handler(buffer ->
+            .websocketHandler(ws ->
             {
-                final StringBuilder data = new StringBuilder();
+                updateFrame();
+                final String subProtocols = ws.headers().get("Sec-WebSocket-Protocol");
+                if (subProtocols != null && subProtocols.contains(BinarySnapshotLayout.WEBSOCKET_SUB_PROTOCOL))
+                {
+                    ws.writeBinaryMessage(binaryFrame);
+                    broadcaster.addBinary(ws);
+                    return;
+                }
+                broadcaster.add(ws, currentFrame);
+                activeAlerts.values().forEach(ws::writeTextMessage);
+                ws.handler(buffer -> onClientMessage(ws, buffer));
+            })
+            .listen(HTTP_PORT);
+    }
 
-                serialiseModel(systemSnapshot, rateMonitor, gson, data);
+    private void serveTop(final HttpServerRequest req)
+    {
+        updateFrame();
+        if ("/top".equals(req.path()))
+        {
+            req.response().putHeader("content-type", "application/json").end(currentFrame.topMessage());
+            return;
+        }
+        final TopMetric metric = TopMetric.forFieldName(req.path().substring("/top/".length()));
+        if (metric == null)
+        {
+            req.response().setStatusCode(404).end("Unknown metric");
+            return;
+        }
+        req.response().putHeader("content-type", "application/json")
+            .end(Buffer.buffer(currentFrame.topRanking(metric)));
+    }
 
-                ws.writeTextMessage(data.toString());
-            }))
-            .listen(HTTP_PORT);
+    private void serveEventStream(final HttpServerRequest req)
+    {
+        final ModelFilter filter;
+        try
+        {
+            filter = ModelFilter.parse(req::getParam);
+        }
+        catch (final IllegalArgumentException e)
+        {
+            req.response().setStatusCode(400).end(String.valueOf(e.getMessage()));
+            return;
+        }
+        // browsers send the header on reconnect; the parameter allows a client to resume a fresh connection
+        String lastEventId = req.getHeader("Last-Event-ID");
+        if (lastEventId == null)
+        {
+            lastEventId = req.getParam("lastEventId");
+        }
+        broadcaster.addEventStream(req.response(), filter, parseSequence(lastEventId));
+        activeAlerts.values().forEach(alert -> req.response().write("data: " + alert + "\n\n"));
     }
 
-    private void serialiseModel(
-        final SystemSnapshot systemSnapshot,
-        final RateMonitor rateMonitor,
-        final Gson gson, final StringBuilder data)
+    private static long parseSequence(final String value)
     {
-        final Map<StreamKey, Map<ChannelSessionKey, Set<ChannelSessionKey>>> connectionsByStream =
-            systemSnapshot.getConnectionsByStream();
-        final Map<String, Map<Integer, Set<PublisherData>>> treeView = new TreeMap<>();
+        if (value == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (final NumberFormatException e)
+        {
+            return -1;
+        }
+    }
 
-        for (final Map.Entry<StreamKey, Map<ChannelSessionKey, Set<ChannelSessionKey>>> streamKeyMapEntry :
-            connectionsByStream.entrySet())
+    private void serveModel(final HttpServerRequest req, final io.vertx.core.Context vertxContext)
+    {
+        final ModelFilter filter;
+        try
         {
-            for (final ChannelSessionKey pubChannelSessionKey : streamKeyMapEntry.getValue().keySet())
-            {
-                final Set<SubscriberData> subscriberList = new TreeSet<>();
-                final Set<ChannelSessionKey> subChannelSessionKeys =
-                    streamKeyMapEntry.getValue().get(pubChannelSessionKey);
-                for (final ChannelSessionKey subChannelSessionKey : subChannelSessionKeys)
-                {
-                    final SubscriberCounterSet subscriberCounterSet =
-                        systemSnapshot.getSubscriberCounterSet(subChannelSessionKey);
-                    subscriberList.add(new SubscriberData(subChannelSessionKey.getLabel(), subscriberCounterSet));
-                }
+            filter = ModelFilter.parse(req::getParam);
+        }
+        catch (final IllegalArgumentException e)
+        {
+            req.response().setStatusCode(400).end(String.valueOf(e.getMessage()));
+            return;
+        }
+        final boolean gzip = StaticAsset.acceptsGzip(req);
+        if (filter.isAll())
+        {
+            updateFrame();
+            respondWithModel(req, gzip ? gzipModel() : currentModel, gzip);
+            return;
+        }
+        final boolean queued = publication.query(filter, result -> vertxContext.runOnContext(
+            v -> respondWithModel(req, Buffer.buffer(gzip ? Gzip.compress(result) : result), gzip)));
+        if (!queued)
+        {
+            req.response().setStatusCode(503).end("Too many outstanding queries");
+        }
+    }
 
-                final Set<PublisherData> streamMap =
-                    treeView.computeIfAbsent(streamKeyMapEntry.getKey().getChannel(), key -> new TreeMap<>())
-                    .computeIfAbsent(streamKeyMapEntry.getKey().getStreamId(), key -> new TreeSet<>());
+    private Buffer gzipModel()
+    {
+        if (gzipModelSequence != currentFrame.sequence())
+        {
+            currentGzipModel = Buffer.buffer(currentFrame.gzipModel());
+            gzipModelSequence = currentFrame.sequence();
+        }
+        return currentGzipModel;
+    }
+
+    private static void respondWithModel(final HttpServerRequest req, final Buffer model, final boolean gzip)
+    {
+        final HttpServerResponse response = req.response()
+            .putHeader("content-type", "application/json")
+            .putHeader("vary", "accept-encoding");
+        if (gzip)
+        {
+            response.putHeader("content-encoding", "gzip");
+        }
+        response.end(model);
+    }
 
-                final PublisherData publisherData =
-                    new PublisherData(pubChannelSessionKey.getLabel(),
-                    systemSnapshot.getPublisherCounterSet(pubChannelSessionKey));
-                final StreamRate streamRate = rateMonitor.publisherRates().get(pubChannelSessionKey);
-                streamRate.consumeRates((duration, durationUnit, bytesPerSecond) ->
+    private void onClientMessage(final ServerWebSocket ws, final Buffer message)
+    {
+        final JsonObject request;
+        try
+        {
+            request = message.length() == 0 ? null : message.toJsonObject();
+        }
+        catch (final DecodeException | ClassCastException e)
+        {
+            return;
+        }
+        if (request == null)
+        {
+            return;
+        }
+        updateFrame();
+        final Object type = request.getValue("type");
+        if ("resync".equals(type))
+        {
+            broadcaster.resync(ws, currentFrame);
+        }
+        else if ("subscribe".equals(type))
+        {
+            try
+            {
+                final ModelFilter filter = ModelFilter.parse(name ->
                 {
-                    publisherData.addPublishRate(duration + "_" + durationUnit, bytesPerSecond);
+                    final Object value = request.getValue(name);
+                    return value == null ? null : String.valueOf(value);
                 });
-                subscriberList.forEach(publisherData::addSubscriberData);
-                streamMap.add(publisherData);
+                broadcaster.subscribe(ws, filter, currentFrame);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                ws.writeTextMessage(new JsonObject().put("type", "error").put("message", e.getMessage()).encode());
             }
         }
+    }
 
-        final Map<String, Object> allData = new HashMap<>();
-        allData.put("streams", treeView);
-        allData.put("systemCounters", systemSnapshot.getSystemCounters());
+    private Buffer metrics()
+    {
+        // snapshots can be received without publishing a new frame while they are held for conflation
+        final ConflatingListener ingestCounters = ingest.ingestCounters();
+        final long receivedCount = ingestCounters.receivedCount();
+        if (metricsSequence != currentFrame.sequence() || metricsReceivedCount != receivedCount)
+        {
+            metricsSource.wrap(currentFrame.binarySnapshot());
+            metricsEncoder.encode(metricsDecoder.wrap(metricsSource, 0), ingestCounters, metricsWriter);
+            metrics = Buffer.buffer(metricsWriter.toByteArray());
+            metricsSequence = currentFrame.sequence();
+            metricsReceivedCount = receivedCount;
+        }
+        return metrics;
+    }
 
+    private void serveHistory(final HttpServerRequest req)
+    {
+        if (historyReader == null)
+        {
+            req.response().setStatusCode(404).end("History is not enabled");
+            return;
+        }
+        final String key;
+        final int type;
+        final long from;
+        final long to;
+        try
+        {
+            key = SessionKeys.key(
+                requiredParam(req, "label"),
+                requiredParam(req, "channel"),
+                Integer.parseInt(requiredParam(req, "streamId")),
+                Integer.parseInt(requiredParam(req, "sessionId")));
+            type = historyType(req.getParam("type"));
+            from = req.getParam("from") == null ? 0 : Long.parseLong(req.getParam("from"));
+            to = req.getParam("to") == null ? Long.MAX_VALUE : Long.parseLong(req.getParam("to"));
+        }
+        catch (final IllegalArgumentException e)
+        {
+            req.response().setStatusCode(400).end(String.valueOf(e.getMessage()));
+            return;
+        }
+        vertx.<Buffer>executeBlocking(future ->
+        {
+            try
+            {
+                final HistoryEncoder encoder = new HistoryEncoder(new JsonWriter());
+                encoder.begin(key);
+                historyReader.query(key, type, from, to, encoder);
+                future.complete(Buffer.buffer(encoder.end().toByteArray()));
+            }
+            catch (final IOException e)
+            {
+                future.fail(e);
+            }
+        }, false, result -> respondWithJson(req, result));
+    }
+
+    private static void respondWithJson(final HttpServerRequest req, final AsyncResult<Buffer> result)
+    {
+        if (result.succeeded())
+        {
+            req.response().putHeader("content-type", "application/json").end(result.result());
+        }
+        else
+        {
+            req.response().setStatusCode(500).end(String.valueOf(result.cause().getMessage()));
+        }
+    }
 
-        gson.toJson(allData, data);
+    private static String requiredParam(final HttpServerRequest req, final String name)
+    {
+        final String value = req.getParam(name);
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int historyType(final String type)
+    {
+        if (type == null)
+        {
+            return HistoryReader.ANY_TYPE;
+        }
+        switch (type)
+        {
+            case "publisher":
+                return HistoryLayout.PUBLISHER;
+            case "subscriber":
+                return HistoryLayout.SUBSCRIBER;
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    private void broadcastLatest()
+    {
+        alertQueue.drain(this::broadcastAlert);
+        updateFrame();
+        final ModelFrame frame = currentFrame;
+        if (frame == null || frame.sequence() == lastBroadcastSequence)
+        {
+            return;
+        }
+        lastBroadcastSequence = frame.sequence();
+        final long startNs = System.nanoTime();
+        broadcaster.broadcast(frame, binaryFrame);
+        selfMetrics.record(SelfMetrics.WEBSOCKET_WRITE_NS, System.nanoTime() - startNs);
+    }
+
+    // samples are taken by the shared ingest; each instance forwards new samples to its own clients
+    private void pushSelfMetrics()
+    {
+        final String sample = selfMetrics.latestSample();
+        if (sample != selfMetricsSample)
+        {
+            selfMetricsSample = sample;
+            selfMetricsBuffer = Buffer.buffer(sample);
+            broadcaster.broadcastText(sample);
+        }
+    }
+
+    // rankings change with every generation, so dashboards are sent them at most once a second
+    private void pushTop()
+    {
+        updateFrame();
+        if (currentFrame.sequence() != topSequence)
+        {
+            topSequence = currentFrame.sequence();
+            broadcaster.broadcastText(currentFrame.topMessage());
+        }
+    }
+
+    private void broadcastAlert(final Alert alert)
+    {
+        final String message = AlertEncoder.encode(alert, alertWriter.reset()).asString();
+        final String alertKey = alert.rule() + "|" + alert.key();
+        if (alert.state() == Alert.State.FIRING)
+        {
+            activeAlerts.put(alertKey, message);
+        }
+        else
+        {
+            activeAlerts.remove(alertKey);
+        }
+        broadcaster.broadcastText(message);
+    }
+
+    private void updateFrame()
+    {
+        final ModelFrame latest = publication.latest();
+        if (latest != currentFrame && latest != null)
+        {
+            currentFrame = latest;
+            currentModel = Buffer.buffer(latest.model());
+            binaryFrame = Buffer.buffer(latest.binarySnapshot());
+        }
     }
 
     @Override
     public void stop() throws Exception
     {
         super.stop();
-        CloseHelper.quietClose(aether);
-        CloseHelper.quietClose(counterSnapshotSubscriber);
-        CloseHelper.quietClose(mediaDriver);
+        publication.removePublishHandler(publishHandler);
+        ingest.alertSink().remove(alertQueue);
     }
 }
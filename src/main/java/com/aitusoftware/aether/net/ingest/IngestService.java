@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.ingest;
+
+import com.aitusoftware.aether.net.Context;
+import com.aitusoftware.aether.net.IngestThreading;
+import com.aitusoftware.aether.net.alert.FanOutAlertSink;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.util.ConflatingListener;
+import io.vertx.core.Vertx;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.AgentInvoker;
+import org.agrona.concurrent.AgentRunner;
+
+/**
+ * The single ingest pipeline shared by every server instance. One monitoring agent publishes immutable frames
+ * that all instances read; alerts are fanned out to each instance, and self-metrics are sampled once for all.
+ */
+public final class IngestService implements AutoCloseable
+{
+    private static final long SELF_METRICS_INTERVAL_MS = 1000;
+
+    private final ModelPublication publication = new ModelPublication();
+    private final FanOutAlertSink alertSink = new FanOutAlertSink();
+    private final SelfMetrics selfMetrics = new SelfMetrics(System.currentTimeMillis());
+    private final MonitoringAgent monitoringAgent;
+    private final Vertx vertx;
+    private final long sampleTimerId;
+    private AgentRunner agentRunner;
+    private AgentInvoker agentInvoker;
+    private long invokeTimerId = -1;
+
+    public IngestService(final Context context, final Vertx vertx)
+    {
+        this.vertx = vertx;
+        monitoringAgent = new MonitoringAgent(context, publication, alertSink, selfMetrics);
+        if (context.ingestThreading() == IngestThreading.EVENT_LOOP)
+        {
+            agentInvoker = new AgentInvoker(Throwable::printStackTrace, null, monitoringAgent);
+            agentInvoker.start();
+            invokeTimerId = vertx.setPeriodic(Math.max(1, context.pollIntervalMs()), id -> agentInvoker.invoke());
+        }
+        else
+        {
+            agentRunner = new AgentRunner(context.idleStrategy(), Throwable::printStackTrace, null, monitoringAgent);
+            AgentRunner.startOnThread(agentRunner);
+        }
+        sampleTimerId = vertx.setPeriodic(
+            SELF_METRICS_INTERVAL_MS, id -> selfMetrics.sample(System.currentTimeMillis()));
+    }
+
+    public ModelPublication publication()
+    {
+        return publication;
+    }
+
+    public FanOutAlertSink alertSink()
+    {
+        return alertSink;
+    }
+
+    public SelfMetrics selfMetrics()
+    {
+        return selfMetrics;
+    }
+
+    public ConflatingListener ingestCounters()
+    {
+        return monitoringAgent.engine().ingestCounters();
+    }
+
+    @Override
+    public void close()
+    {
+        vertx.cancelTimer(sampleTimerId);
+        if (invokeTimerId != -1)
+        {
+            vertx.cancelTimer(invokeTimerId);
+        }
+        CloseHelper.quietClose(agentRunner);
+        CloseHelper.quietClose(agentInvoker);
+    }
+}
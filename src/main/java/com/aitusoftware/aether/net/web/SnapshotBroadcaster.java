@@ -0,0 +1,358 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.web;
+
+import com.aitusoftware.aether.net.ingest.ModelFrame;
+import com.aitusoftware.aether.net.ingest.ModelPublication;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.model.ModelFilter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends each generation to connected WebSocket and Server-Sent Events clients. JSON clients receive the subtree
+ * selected by their subscription, as a delta if they hold the previous sequence and as a snapshot otherwise.
+ */
+public final class SnapshotBroadcaster
+{
+    private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+    private final List<TextClient> textClients = new ArrayList<>();
+    private final List<ServerWebSocket> binaryWebSockets = new ArrayList<>();
+    private final List<EventStreamClient> eventStreamClients = new ArrayList<>();
+    // each distinct message is encoded as an event once per broadcast, however many clients receive it
+    private final Map<String, Buffer> encodedEvents = new IdentityHashMap<>();
+    private final ModelPublication publication;
+    private final SelfMetrics selfMetrics;
+
+    public SnapshotBroadcaster(final ModelPublication publication, final SelfMetrics selfMetrics)
+    {
+        this.publication = publication;
+        this.selfMetrics = selfMetrics;
+    }
+
+    public void add(final ServerWebSocket webSocket, final ModelFrame currentFrame)
+    {
+        final TextClient client = new TextClient(webSocket);
+        textClients.add(client);
+        selfMetrics.onClientConnected();
+        webSocket.closeHandler(v ->
+        {
+            textClients.remove(client);
+            publication.unsubscribe(client.filter);
+            selfMetrics.onClientDisconnected();
+        });
+        sendSnapshot(client, currentFrame);
+    }
+
+    public void addBinary(final ServerWebSocket webSocket)
+    {
+        binaryWebSockets.add(webSocket);
+        selfMetrics.onClientConnected();
+        webSocket.closeHandler(v ->
+        {
+            binaryWebSockets.remove(webSocket);
+            selfMetrics.onClientDisconnected();
+        });
+    }
+
+    /**
+     * Streams generations as Server-Sent Events, each tagged with its sequence as the event id. A client
+     * reconnecting with the id of the last event it received is sent the deltas it missed, if they are still
+     * retained, and otherwise a snapshot.
+     *
+     * @param response    the open response
+     * @param filter      the selection to send
+     * @param lastEventId sequence last received by the client, or -1
+     */
+    public void addEventStream(final HttpServerResponse response, final ModelFilter filter, final long lastEventId)
+    {
+        final EventStreamClient client = new EventStreamClient(response, filter);
+        publication.subscribe(filter);
+        eventStreamClients.add(client);
+        selfMetrics.onClientConnected();
+        response.closeHandler(v ->
+        {
+            eventStreamClients.remove(client);
+            publication.unsubscribe(client.filter);
+            selfMetrics.onClientDisconnected();
+        });
+        response.setChunked(true)
+            .putHeader("content-type", "text/event-stream")
+            .putHeader("cache-control", "no-cache");
+
+        final ModelFrame latest = publication.latest();
+        if (!resume(client, lastEventId, latest))
+        {
+            writeEvent(client, latest.sequence(), latest.snapshotMessage(filter));
+        }
+        encodedEvents.clear();
+    }
+
+    /**
+     * Changes the subtree sent to a JSON client. The client receives a snapshot of the new subtree once a frame
+     * encoded with its filter is available.
+     *
+     * @param webSocket    the client
+     * @param filter       the selection to send
+     * @param currentFrame the latest frame
+     */
+    public void subscribe(final ServerWebSocket webSocket, final ModelFilter filter, final ModelFrame currentFrame)
+    {
+        final TextClient client = client(webSocket);
+        if (client != null)
+        {
+            publication.subscribe(filter);
+            publication.unsubscribe(client.filter);
+            client.filter = filter;
+            sendSnapshot(client, currentFrame);
+        }
+    }
+
+    public void resync(final ServerWebSocket webSocket, final ModelFrame currentFrame)
+    {
+        final TextClient client = client(webSocket);
+        if (client != null)
+        {
+            sendSnapshot(client, currentFrame);
+        }
+    }
+
+    public void broadcast(final ModelFrame frame, final Buffer binaryFrame)
+    {
+        for (int i = 0; i < textClients.size(); i++)
+        {
+            final TextClient client = textClients.get(i);
+            // a delta is only meaningful to clients holding the previous sequence
+            final boolean delta = client.lastSequence == frame.sequence() - 1;
+            final String message = delta ? frame.updateMessage(client.filter) : frame.snapshotMessage(client.filter);
+            if (message == null)
+            {
+                continue;
+            }
+            if (client.webSocket.writeQueueFull())
+            {
+                // a newer generation will supersede this frame, so slow consumers simply miss it
+                selfMetrics.onFrameDropped();
+            }
+            else
+            {
+                client.webSocket.writeTextMessage(message);
+                client.lastSequence = frame.sequence();
+                selfMetrics.onFrameSent(delta ?
+                    frame.updateMessageLength(client.filter) : frame.snapshotMessageLength(client.filter));
+            }
+        }
+        for (int i = 0; i < binaryWebSockets.size(); i++)
+        {
+            final ServerWebSocket webSocket = binaryWebSockets.get(i);
+            if (webSocket.writeQueueFull())
+            {
+                selfMetrics.onFrameDropped();
+            }
+            else
+            {
+                webSocket.writeBinaryMessage(binaryFrame);
+                selfMetrics.onFrameSent(binaryFrame.length());
+            }
+        }
+        for (int i = 0; i < eventStreamClients.size(); i++)
+        {
+            final EventStreamClient client = eventStreamClients.get(i);
+            final String message = client.lastSequence == frame.sequence() - 1 ?
+                frame.updateMessage(client.filter) : frame.snapshotMessage(client.filter);
+            if (message == null)
+            {
+                continue;
+            }
+            if (client.response.writeQueueFull())
+            {
+                selfMetrics.onFrameDropped();
+            }
+            else
+            {
+                writeEvent(client, frame.sequence(), message);
+            }
+        }
+        encodedEvents.clear();
+    }
+
+    // keeps idle event streams open through proxies that close silent connections
+    public void heartbeat()
+    {
+        for (int i = 0; i < eventStreamClients.size(); i++)
+        {
+            final HttpServerResponse response = eventStreamClients.get(i).response;
+            if (!response.writeQueueFull())
+            {
+                response.write(HEARTBEAT);
+            }
+        }
+    }
+
+    // JSON clients only; like frames, dropped for clients that are not keeping up rather than queued without bound
+    public void broadcastText(final String message)
+    {
+        final Buffer encoded = Buffer.buffer(message);
+        for (int i = 0; i < textClients.size(); i++)
+        {
+            final ServerWebSocket webSocket = textClients.get(i).webSocket;
+            if (webSocket.writeQueueFull())
+            {
+                selfMetrics.onFrameDropped();
+            }
+            else
+            {
+                webSocket.writeTextMessage(message);
+                selfMetrics.onFrameSent(encoded.length());
+            }
+        }
+        if (!eventStreamClients.isEmpty())
+        {
+            // not part of the generation sequence, so sent without an id
+            final Buffer event = Buffer.buffer(encoded.length() + 8).appendString("data: ").appendBuffer(encoded)
+                .appendString("\n\n");
+            for (int i = 0; i < eventStreamClients.size(); i++)
+            {
+                final HttpServerResponse response = eventStreamClients.get(i).response;
+                if (response.writeQueueFull())
+                {
+                    selfMetrics.onFrameDropped();
+                }
+                else
+                {
+                    response.write(event);
+                    selfMetrics.onFrameSent(event.length());
+                }
+            }
+        }
+    }
+
+    // requested by the client, so dropped as broadcasts are if it is not keeping up; the next broadcast resends it
+    private void sendSnapshot(final TextClient client, final ModelFrame frame)
+    {
+        final String snapshotMessage = frame.snapshotMessage(client.filter);
+        client.lastSequence = -1;
+        if (snapshotMessage == null)
+        {
+            return;
+        }
+        if (client.webSocket.writeQueueFull())
+        {
+            selfMetrics.onFrameDropped();
+        }
+        else
+        {
+            client.webSocket.writeTextMessage(snapshotMessage);
+            client.lastSequence = frame.sequence();
+            selfMetrics.onFrameSent(frame.snapshotMessageLength(client.filter));
+        }
+    }
+
+    // true if the client is current, or has been sent every delta since its last event
+    private boolean resume(final EventStreamClient client, final long lastEventId, final ModelFrame latest)
+    {
+        if (lastEventId < 0 || lastEventId > latest.sequence())
+        {
+            return false;
+        }
+        for (long sequence = lastEventId + 1; sequence <= latest.sequence(); sequence++)
+        {
+            final ModelFrame frame = publication.frame(sequence);
+            if (frame == null || frame.updateMessage(client.filter) == null)
+            {
+                return false;
+            }
+        }
+        client.lastSequence = lastEventId;
+        for (long sequence = lastEventId + 1; sequence <= latest.sequence(); sequence++)
+        {
+            final ModelFrame frame = publication.frame(sequence);
+            if (frame == null)
+            {
+                // overwritten by the agent while catching up
+                return false;
+            }
+            writeEvent(client, sequence, frame.updateMessage(client.filter));
+        }
+        return true;
+    }
+
+    private void writeEvent(final EventStreamClient client, final long sequence, final String message)
+    {
+        if (message == null)
+        {
+            client.lastSequence = -1;
+            return;
+        }
+        Buffer event = encodedEvents.get(message);
+        if (event == null)
+        {
+            event = Buffer.buffer(message.length() + 32)
+                .appendString("id: ").appendString(Long.toString(sequence))
+                .appendString("\ndata: ").appendString(message).appendString("\n\n");
+            encodedEvents.put(message, event);
+        }
+        client.response.write(event);
+        client.lastSequence = sequence;
+        selfMetrics.onFrameSent(event.length());
+    }
+
+    private TextClient client(final ServerWebSocket webSocket)
+    {
+        for (int i = 0; i < textClients.size(); i++)
+        {
+            if (textClients.get(i).webSocket == webSocket)
+            {
+                return textClients.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static final class EventStreamClient
+    {
+        private final HttpServerResponse response;
+        private final ModelFilter filter;
+        private long lastSequence = -1;
+
+        EventStreamClient(final HttpServerResponse response, final ModelFilter filter)
+        {
+            this.response = response;
+            this.filter = filter;
+        }
+    }
+
+    private static final class TextClient
+    {
+        private final ServerWebSocket webSocket;
+        private ModelFilter filter = ModelFilter.ALL;
+        private long lastSequence = -1;
+
+        TextClient(final ServerWebSocket webSocket)
+        {
+            this.webSocket = webSocket;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.web;
+
+import com.aitusoftware.aether.net.util.Gzip;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.util.zip.CRC32;
+
+/**
+ * A static resource held in memory, gzipped once when loaded. Responses carry an ETag, so browsers revalidate
+ * rather than download the asset again.
+ */
+public final class StaticAsset
+{
+    private final String contentType;
+    private final Buffer content;
+    private final Buffer gzipContent;
+    private final String etag;
+    private final String gzipEtag;
+
+    private StaticAsset(final String contentType, final byte[] content)
+    {
+        this.contentType = contentType;
+        this.content = Buffer.buffer(content);
+        this.gzipContent = Buffer.buffer(Gzip.compress(content));
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final String version = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(content.length);
+        // each encoding is a distinct representation, so needs its own strong ETag
+        this.etag = "\"" + version + "\"";
+        this.gzipEtag = "\"" + version + "-gzip\"";
+    }
+
+    // blocks while reading, so only called during startup
+    public static StaticAsset load(final Vertx vertx, final String path, final String contentType)
+    {
+        return new StaticAsset(contentType, vertx.fileSystem().readFileBlocking(path).getBytes());
+    }
+
+    public static boolean acceptsGzip(final HttpServerRequest req)
+    {
+        final String acceptEncoding = req.getHeader("accept-encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    public void serve(final HttpServerRequest req)
+    {
+        final boolean gzip = acceptsGzip(req);
+        final String representationEtag = gzip ? gzipEtag : etag;
+        final HttpServerResponse response = req.response()
+            .putHeader("content-type", contentType)
+            .putHeader("etag", representationEtag)
+            .putHeader("cache-control", "no-cache")
+            .putHeader("vary", "accept-encoding");
+        final String ifNoneMatch = req.getHeader("if-none-match");
+        if (ifNoneMatch != null && ifNoneMatch.contains(representationEtag))
+        {
+            response.setStatusCode(304).end();
+        }
+        else if (gzip)
+        {
+            response.putHeader("content-encoding", "gzip").end(gzipContent);
+        }
+        else
+        {
+            response.end(content);
+        }
+    }
+}
@@ -16,113 +16,430 @@
  * limitations under the License.
  */
 var aetherSocket;
+var model;
+var lastSequence = -1;
+var publishersByKey = {};
+var subscribersByKey = {};
+var activeAlerts = {};
+// rendered DOM nodes, keyed by system label, stream and session, so that only changed cells are patched
+var blocks = {};
+var renderGeneration = 0;
+var renderScheduled = false;
+var hiddenTimer = null;
+var closedWhileHidden = false;
+// a hidden tab keeps its socket open this long, so that briefly switching away does not force a resync
+var HIDDEN_DISCONNECT_MS = 30000;
 
 function startMonitor() {
-    if (window.WebSocket) {
-        aetherSocket = new WebSocket("ws://localhost:8080/aether");
-        aetherSocket.onmessage = function(event) {
-            renderStreamData(JSON.parse(event.data));
+    if (!window.WebSocket) {
+        alert("WebSockets not supported.");
+        return;
+    }
+    document.addEventListener('visibilitychange', onVisibilityChange);
+    connect();
+}
+
+function connect() {
+    lastSequence = -1;
+    closedWhileHidden = false;
+    aetherSocket = new WebSocket("ws://localhost:8080/aether");
+    aetherSocket.onmessage = function(event) {
+        onUpdate(JSON.parse(event.data));
+    }
+    aetherSocket.onopen = function(event) {
+        var filter = subscriptionFilter();
+        if (filter) {
+            aetherSocket.send(JSON.stringify(filter));
         }
-        aetherSocket.onopen = function(event) {
+    }
+    aetherSocket.onclose = function(event) {
+        if (!closedWhileHidden) {
+            document.getElementById('stream-data').innerHTML = '<h1>Socket closed</h1>';
         }
-        aetherSocket.onclose = function(event) {
+    }
+}
+
+// stops the server sending updates to a tab nobody is looking at, and reconnects for a fresh snapshot on return
+function onVisibilityChange() {
+    if (document.hidden) {
+        hiddenTimer = setTimeout(function() {
+            hiddenTimer = null;
+            closedWhileHidden = true;
+            aetherSocket.close();
+        }, HIDDEN_DISCONNECT_MS);
+    } else if (hiddenTimer) {
+        clearTimeout(hiddenTimer);
+        hiddenTimer = null;
+    } else if (closedWhileHidden) {
+        connect();
+    }
+}
+
+// the page's query parameters select the subtree to monitor, e.g. /?channel=aeron:ipc&streamId=10
+function subscriptionFilter() {
+    var params = new URLSearchParams(window.location.search);
+    var filter = {type: 'subscribe'};
+    var selected = false;
+    ['label', 'channel', 'streamId', 'sessionId', 'offset', 'limit'].forEach(function(name) {
+        if (params.has(name)) {
+            filter[name] = params.get(name);
+            selected = true;
         }
+    });
+    return selected ? filter : null;
+}
+
+function sessionKey(counterSet) {
+    return counterSet.label + '/' + counterSet.channel + '/' + counterSet.streamId + '/' + counterSet.sessionId;
+}
+
+function indexEntry(index, key, value) {
+    if (!index[key]) {
+        index[key] = [];
+    }
+    index[key].push(value);
+}
+
+function indexModel() {
+    publishersByKey = {};
+    subscribersByKey = {};
+    var streamData = model['streams'];
+    for (var channel in streamData) {
+        for (var streamId in streamData[channel]) {
+            var publisherSet = streamData[channel][streamId];
+            for (var i = 0; i < publisherSet.length; i++) {
+                var publisher = publisherSet[i];
+                indexEntry(publishersByKey, sessionKey(publisher), publisher);
+                for (var j = 0; j < publisher.subscribers.length; j++) {
+                    var subscriber = publisher.subscribers[j];
+                    indexEntry(subscribersByKey, sessionKey(subscriber), subscriber);
+                }
+            }
+        }
+    }
+}
+
+function applyPatches(index, patches) {
+    for (var key in patches) {
+        var targets = index[key];
+        if (!targets) {
+            return false;
+        }
+        for (var i = 0; i < targets.length; i++) {
+            var patch = patches[key];
+            for (var field in patch) {
+                targets[i][field] = patch[field];
+            }
+        }
+    }
+    return true;
+}
+
+function applySystemCounters(patches) {
+    var systemCounters = model['systemCounters'];
+    for (var label in patches) {
+        if (!systemCounters[label]) {
+            return false;
+        }
+        for (var field in patches[label]) {
+            systemCounters[label][field] = patches[label][field];
+        }
+    }
+    return true;
+}
+
+function requestResync() {
+    lastSequence = -1;
+    aetherSocket.send(JSON.stringify({type: 'resync'}));
+}
+
+function onAlert(alert) {
+    var alertKey = alert.rule + '|' + alert.key;
+    if (alert.state == 'FIRING') {
+        activeAlerts[alertKey] = alert;
     } else {
-        alert("WebSockets not supported.");
+        delete activeAlerts[alertKey];
+    }
+    var html = '';
+    for (var key in activeAlerts) {
+        var active = activeAlerts[key];
+        html += '<div class="row alert-row"><div class="col-md-3">' + active.rule +
+            '</div><div class="col-md-5">' + active.key + '</div><div class="col-md-4">' +
+            active.value + ' (threshold ' + active.threshold + ')</div></div>';
     }
+    document.getElementById('alerts').innerHTML = html;
+}
 
-    window.setInterval(pollData, 100);
+// aether-net's own latencies (in microseconds) and frame sizes, sampled once a second
+function onSelfMetrics(metrics) {
+    var html = '<div class="row self-metrics bottom-bar"><div class="col-md-12">aether-net: ' +
+        metrics.clients + ' clients, ' + metrics.bytesSentPerSecond + ' bytes/s, ' +
+        metrics.framesSent + ' frames sent, ' + metrics.framesDropped + ' dropped</div></div>';
+    [['pollNs', 'poll us', 1000], ['applyNs', 'apply us', 1000], ['encodeNs', 'encode us', 1000],
+        ['webSocketWriteNs', 'ws write us', 1000], ['jsonSnapshotBytes', 'json snapshot bytes', 1],
+        ['jsonDeltaBytes', 'json delta bytes', 1], ['binaryFrameBytes', 'binary frame bytes', 1]].forEach(function(metric) {
+        var histogram = metrics[metric[0]];
+        var scale = metric[2];
+        html += '<div class="row self-metrics"><div class="col-md-4">' + metric[1] +
+            '</div><div class="col-md-8">n=' + histogram.count +
+            ' p50=' + Math.round(histogram.p50 / scale) + ' p99=' + Math.round(histogram.p99 / scale) +
+            ' p99.9=' + Math.round(histogram.p999 / scale) + ' max=' + Math.round(histogram.max / scale) +
+            '</div></div>';
+    });
+    document.getElementById('self-metrics').innerHTML = html;
 }
 
-function systemStatRow(name, value) {
-    return '<div class="row"><div class="col-md-6 system-stat">' + name +
-        '</div><div class="col-md-6 system-stat">' + value + '</div></div>';
+// the worst sessions by each measure, ranked by the server
+function onTop(top) {
+    var html = '';
+    [['lag', 'Largest lag'], ['sendBacklog', 'Largest send backlog'], ['remainingBuffer', 'Lowest remaining buffer'],
+        ['backPressureRate', 'Highest back pressure rate']].forEach(function(ranking) {
+        var entries = top[ranking[0]].slice(0, 5);
+        if (entries.length == 0) {
+            return;
+        }
+        html += '<div class="row top-sessions bottom-bar"><div class="col-md-12">' + ranking[1] + '</div></div>';
+        entries.forEach(function(entry) {
+            html += '<div class="row top-sessions"><div class="col-md-9">' + sessionKey(entry) +
+                '</div><div class="col-md-3 stat-label">' + entry.value + '</div></div>';
+        });
+    });
+    document.getElementById('top-sessions').innerHTML = html;
 }
 
-function pubStatRow(name, value, extClass, bottomRow) {
-    return '<div class="row pub-data ' + (bottomRow ? 'bottom-bar' : '') +
-        '"><div class="col-md-4"></div><div class="col-md-4 stat-label">' + name +
-        '</div><div class="col-md-4 pub-stat ' + extClass + '">' + value + '</div></div>';
+function onUpdate(message) {
+    if (message.type == 'alert') {
+        onAlert(message);
+        return;
+    }
+    if (message.type == 'selfMetrics') {
+        onSelfMetrics(message);
+        return;
+    }
+    if (message.type == 'top') {
+        onTop(message);
+        return;
+    }
+    if (message.type == 'snapshot') {
+        model = message.data;
+        lastSequence = message.sequence;
+        indexModel();
+    } else if (message.type == 'delta') {
+        if (lastSequence < 0 || message.sequence <= lastSequence) {
+            return;
+        }
+        if (message.sequence != lastSequence + 1 ||
+            !applyPatches(publishersByKey, message.publishers) ||
+            !applyPatches(subscribersByKey, message.subscribers) ||
+            !applySystemCounters(message.systemCounters)) {
+            requestResync();
+            return;
+        }
+        lastSequence = message.sequence;
+    }
+    scheduleRender();
+}
+
+// at most one render per frame; animation frames are not run while the tab is hidden
+function scheduleRender() {
+    if (!renderScheduled) {
+        renderScheduled = true;
+        window.requestAnimationFrame(function() {
+            renderScheduled = false;
+            renderStreamData(model);
+        });
+    }
+}
+
+function headerBlock(key, text) {
+    var entry = blocks[key];
+    if (!entry) {
+        var node = document.createElement('div');
+        node.className = 'channel row bottom-bar top-bar';
+        node.appendChild(document.createElement('div')).className = 'stream col-md-12';
+        node.firstChild.textContent = text;
+        entry = blocks[key] = {node: node};
+    }
+    entry.generation = renderGeneration;
+    return entry.node;
+}
+
+// rows are [name, value, highlight class, bottom bar]; the block is rebuilt only if its row names change
+function statBlock(key, kind, rows, spacer) {
+    var entry = blocks[key];
+    if (!entry) {
+        entry = blocks[key] = {node: document.createElement('div'), names: []};
+    }
+    entry.generation = renderGeneration;
+    if (!sameRows(entry, rows)) {
+        buildRows(entry, kind, rows, spacer);
+    }
+    for (var i = 0; i < rows.length; i++) {
+        var value = rows[i][1];
+        var cls = rows[i][2];
+        if (entry.values[i] !== value) {
+            entry.cells[i].textContent = value;
+            entry.values[i] = value;
+        }
+        if (entry.classes[i] !== cls) {
+            entry.cells[i].className = valueClass(kind) + ' ' + cls;
+            entry.classes[i] = cls;
+        }
+    }
+    return entry.node;
+}
+
+function sameRows(entry, rows) {
+    if (entry.names.length != rows.length) {
+        return false;
+    }
+    for (var i = 0; i < rows.length; i++) {
+        if (entry.names[i] !== rows[i][0]) {
+            return false;
+        }
+    }
+    return true;
 }
 
-function subStatRow(name, value, extClass, bottomRow) {
-    return '<div class="row sub-data ' + (bottomRow ? 'bottom-bar' : '') +
-        '"><div class="col-md-4"></div><div class="col-md-4 stat-label">' + name +
-        '</div><div class="col-md-4 sub-stat ' + extClass + '">' + value + '</div></div>';
+function valueClass(kind) {
+    return kind == 'system' ? 'col-md-6 system-stat' : 'col-md-4 ' + kind + '-stat';
+}
+
+function buildRows(entry, kind, rows, spacer) {
+    var node = entry.node;
+    node.textContent = '';
+    if (spacer) {
+        node.appendChild(document.createElement('div')).className = 'row';
+        node.firstChild.appendChild(document.createElement('div')).className = 'col-md-12';
+    }
+    entry.names = [];
+    entry.cells = [];
+    entry.values = [];
+    entry.classes = [];
+    for (var i = 0; i < rows.length; i++) {
+        var row = document.createElement('div');
+        var name = document.createElement('div');
+        if (kind == 'system') {
+            row.className = 'row';
+            name.className = 'col-md-6 system-stat';
+        } else {
+            row.className = 'row ' + kind + '-data' + (rows[i][3] ? ' bottom-bar' : '');
+            row.appendChild(document.createElement('div')).className = 'col-md-4';
+            name.className = 'col-md-4 stat-label';
+        }
+        name.textContent = rows[i][0];
+        row.appendChild(name);
+        entry.cells.push(row.appendChild(document.createElement('div')));
+        entry.names.push(rows[i][0]);
+        node.appendChild(row);
+    }
+}
+
+// moves only the nodes that are out of place, and removes those no longer rendered
+function placeChildren(container, nodes) {
+    for (var i = 0; i < nodes.length; i++) {
+        var current = container.childNodes[i];
+        if (current !== nodes[i]) {
+            container.insertBefore(nodes[i], current || null);
+        }
+    }
+    while (container.childNodes.length > nodes.length) {
+        container.removeChild(container.lastChild);
+    }
+}
+
+// the server sends -1 when a lag or buffer is not falling
+function estimate(ms) {
+    return ms < 0 ? 'never' : (ms / 1000).toFixed(1) + 's';
 }
 
 function renderStreamData(allData) {
-    var html = '';
+    renderGeneration++;
+    var nodes = [];
     var systemCounters = allData['systemCounters'];
     for (var label in systemCounters) {
-        html += '<div class="channel row bottom-bar top-bar"><div class="stream col-md-12">' + label + '</div></div>';
+        nodes.push(headerBlock('system|' + label, label));
         var systemCounterSet = systemCounters[label];
-        html += systemStatRow('Bytes sent', systemCounterSet.bytesSent);
-        html += systemStatRow('Bytes received', systemCounterSet.bytesReceived);
-        html += systemStatRow('NAKs sent', systemCounterSet.naksSent);
-        html += systemStatRow('NAKs received', systemCounterSet.naksReceived);
-        html += systemStatRow('Errors', systemCounterSet.errors);
-        html += systemStatRow('Client timeouts', systemCounterSet.clientTimeouts);
+        var systemRows = [
+            ['Bytes sent', systemCounterSet.bytesSent, ''],
+            ['Bytes received', systemCounterSet.bytesReceived, ''],
+            ['NAKs sent', systemCounterSet.naksSent, ''],
+            ['NAKs received', systemCounterSet.naksReceived, ''],
+            ['Errors', systemCounterSet.errors, ''],
+            ['Client timeouts', systemCounterSet.clientTimeouts, '']];
+        for (var counter in systemCounterSet.rates) {
+            for (var rateWindow in systemCounterSet.rates[counter]) {
+                systemRows.push([counter + ' rate ' + rateWindow, systemCounterSet.rates[counter][rateWindow], '']);
+            }
+        }
+        nodes.push(statBlock('system-stats|' + label, 'system', systemRows, false));
     }
     var streamData = allData['streams'];
     for (var channel in streamData) {
         for (var streamId in streamData[channel]) {
             var isIpcChannel = channel.indexOf('aeron:ipc') >= 0;
-            html += '<div class="channel row bottom-bar top-bar"><div class="stream col-md-12">' + channel + ' / ' + streamId + '</div></div>';
+            nodes.push(headerBlock('stream|' + channel + '|' + streamId, channel + ' / ' + streamId));
             var publisherSet = streamData[channel][streamId];
             for (var i = 0; i < publisherSet.length; i++) {
                 var publisher = publisherSet[i];
+                var publisherKey = sessionKey(publisher);
                 var bpeCls = publisher.backPressureEvents == 0 ? '' : 'pub-data-highlight';
                 var backlogCls = publisher.sendBacklog == 0 ? '' : 'pub-data-highlight';
-                html += pubStatRow('Context', publisher.label, '', false);
-                html += pubStatRow('Session', publisher.sessionId, '', false);
-                html += pubStatRow('Publisher Position', publisher.publisherPosition, '', false);
-                html += pubStatRow('Publisher Limit', publisher.publisherLimit, '', false);
+                var pubRows = [
+                    ['Context', publisher.label, ''],
+                    ['Session', publisher.sessionId, ''],
+                    ['Publisher Position', publisher.publisherPosition, ''],
+                    ['Publisher Limit', publisher.publisherLimit, '']];
                 if (!isIpcChannel) {
-                    html += pubStatRow('Sender Position', publisher.senderPosition, '', false);
-                    html += pubStatRow('Sender Limit', publisher.senderLimit, '', false);
-                    html += pubStatRow('Queued', publisher.sendBacklog, backlogCls, false);
-                    html += pubStatRow('Remaining Buffer', publisher.remainingBuffer, '', false);
+                    pubRows.push(['Sender Position', publisher.senderPosition, '']);
+                    pubRows.push(['Sender Limit', publisher.senderLimit, '']);
+                    pubRows.push(['Queued', publisher.sendBacklog, backlogCls]);
+                    pubRows.push(['Remaining Buffer', publisher.remainingBuffer, '']);
+                    pubRows.push(['Buffer Trend', publisher.remainingBufferTrend, '']);
+                    pubRows.push(['Back Pressure In', estimate(publisher.timeToBackPressureMs), '']);
                 }
                 for (var rate in publisher.publishRates) {
-                    html += pubStatRow('Rate ' + rate, publisher.publishRates[rate], '', false);
+                    pubRows.push(['Rate ' + rate, publisher.publishRates[rate], '']);
                 }
-                html += pubStatRow('Back Pressure', publisher.backPressureEvents, bpeCls, true);
+                pubRows.push(['Back Pressure', publisher.backPressureEvents, bpeCls, true]);
+                nodes.push(statBlock('pub|' + publisherKey, 'pub', pubRows, false));
                 var subscriberSet = publisher.subscribers;
 
                 for (var j = 0; j < subscriberSet.length; j++) {
                     var subscriber = subscriberSet[j];
-                    html += '<div class="row"><div class="col-md-12"></div></div>';
-                    html += subStatRow('Context', subscriber.label, '', false);
+                    var subRows = [['Context', subscriber.label, '']];
                     if (!isIpcChannel) {
-                        html += subStatRow('Receiver Position', subscriber.receiverPosition, '', false);
-                        html += subStatRow('Receiver HWM', subscriber.receiverHighWaterMark, '', true);
+                        subRows.push(['Receiver Position', subscriber.receiverPosition, '']);
+                        for (var receiveRate in subscriber.receiverRates) {
+                            subRows.push(['Receive Rate ' + receiveRate, subscriber.receiverRates[receiveRate], '']);
+                        }
+                        subRows.push(['Receiver HWM', subscriber.receiverHighWaterMark, '', true]);
+                    }
+                    for (var consumeRate in subscriber.subscriberRates) {
+                        subRows.push(['Consume Rate ' + consumeRate, subscriber.subscriberRates[consumeRate], '']);
                     }
                     for (var reg in subscriber.subscriberPositions) {
-                        var available = 0;
-                        if (isIpcChannel) {
-                            available = Math.max(0, publisher.publisherPosition - subscriber.subscriberPositions[reg]);
-                        } else {
-                            available = Math.max(0, subscriber.receiverPosition - subscriber.subscriberPositions[reg]);
-                        }
-
+                        // computed by the server from the publisher or receiver position
+                        var available = subscriber.subscriberLags[reg];
                         var cls = available > 0 ? 'sub-data-highlight' : '';
-                        html += subStatRow('Subscriber Position', subscriber.subscriberPositions[reg], '', false);
-                        html += subStatRow('Bytes Available', available, cls, true);
+                        subRows.push(['Subscriber Position', subscriber.subscriberPositions[reg], '']);
+                        subRows.push(['Bytes Available', available, cls, true]);
+                    }
+                    if (subscriber.subscriberLags) {
+                        subRows.push(['Lag Trend', subscriber.lagTrend, '']);
+                        subRows.push(['Catch Up In', estimate(subscriber.catchUpMs), '', true]);
                     }
+                    nodes.push(statBlock('sub|' + publisherKey + '|' + sessionKey(subscriber), 'sub', subRows, true));
                 }
 
             }
         }
     }
 
-    document.getElementById('stream-data').innerHTML = html;
-}
-
-function pollData() {
-    if (aetherSocket.readyState == WebSocket.OPEN) {
-        aetherSocket.send('');
-    } else {
-        document.getElementById('stream-data').innerHTML = '<h1>Socket closed</h1>';
+    placeChildren(document.getElementById('stream-data'), nodes);
+    for (var key in blocks) {
+        if (blocks[key].generation != renderGeneration) {
+            delete blocks[key];
+        }
     }
 }
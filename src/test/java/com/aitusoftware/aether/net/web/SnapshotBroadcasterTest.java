@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019-2020 Aitu Software Limited.
+ *
+ * https://aitusoftware.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.aether.net.web;
+
+import com.aitusoftware.aether.net.ingest.ModelFrame;
+import com.aitusoftware.aether.net.ingest.ModelPublication;
+import com.aitusoftware.aether.net.metrics.SelfMetrics;
+import com.aitusoftware.aether.net.model.ModelFilter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class SnapshotBroadcasterTest
+{
+    private final ModelPublication publication = new ModelPublication();
+    private final SnapshotBroadcaster broadcaster = new SnapshotBroadcaster(publication, new SelfMetrics(0L));
+
+    @Test
+    void shouldSendDeltaToWebSocketHoldingPreviousSequenceAndSnapshotAfterGap()
+    {
+        final Connection connection = new Connection();
+        final ServerWebSocket webSocket = connection.webSocket();
+        broadcaster.add(webSocket, publishFrame(1));
+        broadcaster.broadcast(publishFrame(2), Buffer.buffer());
+
+        connection.writeQueueFull = true;
+        broadcaster.broadcast(publishFrame(3), Buffer.buffer());
+        connection.writeQueueFull = false;
+        broadcaster.broadcast(publishFrame(4), Buffer.buffer());
+        broadcaster.broadcast(publishFrame(5), Buffer.buffer());
+
+        assertThat(connection.messages).containsExactly("snapshot-1", "delta-2", "snapshot-4", "delta-5").inOrder();
+    }
+
+    @Test
+    void shouldResumeEventStreamWithDeltasRetainedSinceLastEvent()
+    {
+        publishFrames(1, 70);
+        final Connection connection = new Connection();
+
+        broadcaster.addEventStream(connection.response(), ModelFilter.ALL, 67L);
+
+        assertThat(connection.messages).containsExactly(
+            "id: 68\ndata: delta-68\n\n", "id: 69\ndata: delta-69\n\n", "id: 70\ndata: delta-70\n\n").inOrder();
+
+        broadcaster.broadcast(publishFrame(71), Buffer.buffer());
+        assertThat(connection.messages.get(3)).isEqualTo("id: 71\ndata: delta-71\n\n");
+    }
+
+    @Test
+    void shouldSendSnapshotToEventStreamResumingBeyondRetainedFrames()
+    {
+        // frames 7 to 70 are retained, so the delta for 6 has been overwritten
+        publishFrames(1, 70);
+        final Connection connection = new Connection();
+
+        broadcaster.addEventStream(connection.response(), ModelFilter.ALL, 5L);
+
+        assertThat(connection.messages).containsExactly("id: 70\ndata: snapshot-70\n\n");
+
+        broadcaster.broadcast(publishFrame(71), Buffer.buffer());
+        assertThat(connection.messages.get(1)).isEqualTo("id: 71\ndata: delta-71\n\n");
+    }
+
+    private void publishFrames(final long fromSequence, final long toSequence)
+    {
+        for (long sequence = fromSequence; sequence <= toSequence; sequence++)
+        {
+            publishFrame(sequence);
+        }
+    }
+
+    private ModelFrame publishFrame(final long sequence)
+    {
+        final String snapshot = "snapshot-" + sequence;
+        final String delta = "delta-" + sequence;
+        final ModelFrame frame = new ModelFrame(
+            sequence, false, new byte[0], snapshot, snapshot.length(), delta, delta.length(), new byte[0],
+            Collections.emptyMap(), null, new byte[0][]);
+        publication.publish(frame);
+        return frame;
+    }
+
+    // records what is written to a WebSocket or event stream response
+    static final class Connection implements InvocationHandler
+    {
+        private final List<String> messages = new ArrayList<>();
+        private Object proxy;
+        private boolean writeQueueFull;
+
+        ServerWebSocket webSocket()
+        {
+            return proxy(ServerWebSocket.class);
+        }
+
+        HttpServerResponse response()
+        {
+            return proxy(HttpServerResponse.class);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "writeTextMessage":
+                    messages.add((String)args[0]);
+                    break;
+                case "write":
+                    messages.add(((Buffer)args[0]).toString());
+                    break;
+                case "writeQueueFull":
+                    return writeQueueFull;
+                default:
+                    break;
+            }
+            return method.getReturnType().isInstance(proxy) ? proxy : null;
+        }
+
+        private <T> T proxy(final Class<T> type)
+        {
+            final T connection = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, this));
+            proxy = connection;
+            return connection;
+        }
+    }
+}